@@ -0,0 +1,122 @@
+package com.k.minidoodle;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 各导出格式的光栅化加编码耗时，以及输出大小（写入 logcat，标签 ExportBenchmark）。
+ * 屏幕大小的画布走系统编码器；4096x4096 的画布上 PNG 逐条编码，其他格式整幅编码。
+ * 运行：./gradlew :app:connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.k.minidoodle.ExportBenchmark
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class ExportBenchmark {
+
+    private static final String TAG = "ExportBenchmark";
+    private static final int STROKES = 2_000;
+
+    @Parameterized.Parameters(name = "{0}_{1}x{2}")
+    public static Collection<Object[]> cases() {
+        ExportOptions png = ExportOptions.DEFAULT;
+        ExportOptions pngCropped = new ExportOptions(ExportOptions.FORMAT_PNG, 100, 0, true);
+        ExportOptions webpLossless = new ExportOptions(ExportOptions.FORMAT_WEBP_LOSSLESS, 100, 0, false);
+        ExportOptions webpLossy = new ExportOptions(ExportOptions.FORMAT_WEBP_LOSSY, 90, 0, false);
+        ExportOptions jpeg = new ExportOptions(ExportOptions.FORMAT_JPEG, 90, 0, false);
+        ExportOptions thumbnail = new ExportOptions(ExportOptions.FORMAT_WEBP_LOSSY, 80, 512, false);
+        return Arrays.asList(new Object[][]{
+                {"png", 1080, 2400, png},
+                {"pngCropped", 1080, 2400, pngCropped},
+                {"webpLossless", 1080, 2400, webpLossless},
+                {"webpLossy", 1080, 2400, webpLossy},
+                {"jpeg", 1080, 2400, jpeg},
+                {"thumbnail", 1080, 2400, thumbnail},
+                {"png", 4096, 4096, png},
+                {"webpLossy", 4096, 4096, webpLossy},
+        });
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final String name;
+    private final int width;
+    private final int height;
+    private final ExportOptions options;
+    private DrawingExporter exporter;
+    private ExportSnapshot snapshot;
+
+    public ExportBenchmark(String name, int width, int height, ExportOptions options) {
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.options = options;
+    }
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        exporter = new DrawingExporter(context);
+        snapshot = new ExportSnapshot(randomStrokes(new Random(42)), width, height, 0xFFFFFFFF);
+    }
+
+    @Test
+    public void encode() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            out.count = 0;
+            exporter.encode(snapshot, options, out, null);
+        }
+        Log.i(TAG, String.format(Locale.US, "%s %dx%d: %d bytes", name, width, height, out.count));
+    }
+
+    // 大部分留白的画布：笔画集中在左上四分之一，与日常涂鸦相近
+    private StrokeStore randomStrokes(Random random) {
+        StrokeStore store = new StrokeStore(STROKES, STROKES * 40);
+        for (int s = 0; s < STROKES; s++) {
+            store.beginStroke(0xFF000000 | random.nextInt(8) * 0x202020, 4 + random.nextInt(20));
+            float x = random.nextFloat() * width / 2;
+            float y = random.nextFloat() * height / 2;
+            for (int i = 0; i < 40; i++) {
+                x += random.nextFloat() * 8 - 4;
+                y += random.nextFloat() * 8 - 4;
+                store.addPoint(x, y);
+            }
+            store.endStroke();
+        }
+        return store;
+    }
+
+    // 只统计字节数，不保存内容，测量结果不含存储写入
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
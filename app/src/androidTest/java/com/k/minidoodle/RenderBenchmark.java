@@ -0,0 +1,169 @@
+package com.k.minidoodle;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * PaintView 绘制路径的 Microbenchmark，按笔画数量测量每帧耗时。
+ * 运行：./gradlew :app:connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.k.minidoodle.RenderBenchmark
+ * 结果由 AndroidBenchmarkRunner 写入设备上的 JSON 文件并拉取到 app/build/outputs。
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class RenderBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 2400;
+
+    @Parameterized.Parameters(name = "strokes={0}")
+    public static Collection<Object[]> strokeCounts() {
+        return Arrays.asList(new Object[][]{{1_000}, {10_000}, {50_000}});
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int strokeCount;
+    private PaintView paintView;
+    private Bitmap frame;
+    private Canvas canvas;
+
+    public RenderBenchmark(int strokeCount) {
+        this.strokeCount = strokeCount;
+    }
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        paintView = new PaintView(context);
+        paintView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        paintView.layout(0, 0, WIDTH, HEIGHT);
+        paintView.loadDocument(randomStrokes(strokeCount, new Random(42)));
+        frame = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(frame);
+    }
+
+    @After
+    public void tearDown() {
+        paintView.clear();
+        frame.recycle();
+    }
+
+    /** 整屏重绘，例如平移时的每一帧 */
+    @Test
+    public void drawFullFrame() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            paintView.draw(canvas);
+        }
+    }
+
+    /** 画笔移动时只重绘一小块脏区域 */
+    @Test
+    public void drawDirtyRegion() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            int save = canvas.save();
+            canvas.clipRect(500, 1100, 564, 1164);
+            paintView.draw(canvas);
+            canvas.restoreToCount(save);
+        }
+    }
+
+    /** 缩小到 1/8 查看全图，使用降采样的块 */
+    @Test
+    public void drawZoomedOut() {
+        paintView.getViewport().set(0.125f, 0, 0);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            paintView.draw(canvas);
+        }
+    }
+
+    /** 放大到 4 倍，可见笔画较少时按矢量绘制 */
+    @Test
+    public void drawZoomedIn() {
+        paintView.getViewport().set(4f, -2_000, -4_000);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            paintView.draw(canvas);
+        }
+    }
+
+    /** 撤销后重做最后一笔，撤销只重绘被撤销笔画覆盖的块 */
+    @Test
+    public void undoRedo() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            paintView.undo();
+            paintView.redo();
+        }
+    }
+
+    /** 完整的一笔：按下、60 个各含 4 个采样点的移动事件、抬起，包括流水线处理和光栅化 */
+    @Test
+    public void touchStroke() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            long down = SystemClock.uptimeMillis();
+            dispatch(MotionEvent.obtain(down, down, MotionEvent.ACTION_DOWN, 300, 300, 0));
+            for (int i = 1; i <= 60; i++) {
+                MotionEvent move = MotionEvent.obtain(down, down + i * 16 - 12,
+                        MotionEvent.ACTION_MOVE, 300 + i * 8 - 6, 300 + i * 3 - 2, 0);
+                for (int h = 1; h < 4; h++) {
+                    move.addBatch(down + i * 16 - 12 + h * 4, 300 + i * 8 - 6 + h * 2,
+                            300 + i * 3 - 2 + h, 1f, 1f, 0);
+                }
+                dispatch(move);
+            }
+            dispatch(MotionEvent.obtain(down, down + 970, MotionEvent.ACTION_UP, 780, 480, 0));
+            // 撤销掉这一笔，保持每轮的笔画数相同
+            state.pauseTiming();
+            paintView.undo();
+            state.resumeTiming();
+        }
+    }
+
+    private void dispatch(MotionEvent event) {
+        paintView.onTouchEvent(event);
+        event.recycle();
+    }
+
+    // 随机游走的笔画，分布范围为 4 个屏幕大小
+    private static StrokeStore randomStrokes(int count, Random random) {
+        StrokeStore store = new StrokeStore(count, count * 40);
+        for (int s = 0; s < count; s++) {
+            store.beginStroke(0xFF000000 | random.nextInt(8) * 0x202020, 4 + random.nextInt(20));
+            float x = random.nextFloat() * WIDTH * 2;
+            float y = random.nextFloat() * HEIGHT * 2;
+            for (int i = 0; i < 40; i++) {
+                x += random.nextFloat() * 8 - 4;
+                y += random.nextFloat() * 8 - 4;
+                store.addPoint(x, y);
+            }
+            store.endStroke();
+        }
+        return store;
+    }
+}
@@ -0,0 +1,150 @@
+package com.k.minidoodle;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * 只追加的自动保存日志
+ * 打开时先把当前文档完整重写一遍（压缩掉撤销产生的无效记录），之后每完成一笔只追加这一笔，
+ * 撤销和清空追加一条截断记录，图层属性变化追加图层记录。进程被杀时最多丢失尚未 flush 的最后一条记录。
+ * 截断掉的笔画仍留在文件中，比仍然有效的笔画还多时（见 {@link #needsCompaction}）可以用 {@link #compact} 就地重写。
+ * 本类不是线程安全的，应在同一个后台线程上使用。
+ */
+public class AutosaveJournal implements Closeable {
+
+    // 截断掉的笔画少于这个数时不值得重写
+    private static final int MIN_COMPACT_STROKES = 256;
+
+    private final File file;
+    private FileChannel channel;
+    private DocumentWriter writer;
+    // 自上次重写以来写入文件的笔画数，和其中仍然有效的笔画数
+    private int writtenStrokes;
+    private int liveStrokes;
+
+    public AutosaveJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 读取日志中保存的文档，日志不存在时返回空文档
+     */
+    public StrokeStore load() throws IOException {
+        StrokeStore store = new StrokeStore();
+        if (!file.exists() || file.length() == 0) {
+            return store;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            new DocumentReader(in.getChannel()).read(store);
+        }
+        return store;
+    }
+
+    /**
+     * 用 store 的前 count 条笔画重写日志并保持打开，之后可以追加。
+     * 先写临时文件再改名替换，重写过程中被中断也不会损坏原日志；
+     * 改名后继续使用同一个文件句柄和写入器追加，颜色表编号保持一致。
+     */
+    public void rewrite(StrokeStore store, int count) throws IOException {
+        close();
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            channel = out.getChannel();
+            writer = new DocumentWriter(channel);
+            writer.writeDocument(store, count);
+            writer.flush();
+            writtenStrokes = count;
+            liveStrokes = count;
+            out.getFD().sync();
+            if (!temp.renameTo(file)) {
+                throw new IOException("无法替换自动保存文件");
+            }
+        } catch (IOException e) {
+            channel = null;
+            writer = null;
+            out.close();
+            temp.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * 追加一条笔画并立即写入文件
+     */
+    public void append(StrokeStore store, int stroke) throws IOException {
+        requireOpen();
+        writer.writeStroke(store, stroke);
+        writer.flush();
+        writtenStrokes++;
+        liveStrokes++;
+    }
+
+    /**
+     * 追加图层表并立即写入文件
+     */
+    void appendLayers(LayerTable layers) throws IOException {
+        requireOpen();
+        writer.writeLayers(layers);
+        writer.flush();
+    }
+
+    /**
+     * 记录文档被截断为前 count 条笔画
+     */
+    public void truncate(int count) throws IOException {
+        requireOpen();
+        writer.writeTruncate(count);
+        writer.flush();
+        liveStrokes = Math.min(liveStrokes, count);
+    }
+
+    /**
+     * 截断掉的笔画是否已经多到值得重写：至少 {@link #MIN_COMPACT_STROKES} 条，且比有效的笔画多。
+     * 每次重写的代价由之前写入的无效笔画分摊
+     */
+    public boolean needsCompaction() {
+        int discarded = writtenStrokes - liveStrokes;
+        return discarded >= MIN_COMPACT_STROKES && discarded > liveStrokes;
+    }
+
+    /**
+     * 是否有截断掉的笔画，关闭前可以据此决定是否重写
+     */
+    public boolean hasDiscarded() {
+        return writtenStrokes > liveStrokes;
+    }
+
+    /**
+     * 读出日志当前的内容再重写，去掉截断掉的笔画；之后仍然保持打开，可以继续追加
+     */
+    public void compact() throws IOException {
+        requireOpen();
+        close();
+        StrokeStore store = load();
+        rewrite(store, store.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            try {
+                writer.flush();
+            } finally {
+                channel.close();
+                channel = null;
+                writer = null;
+            }
+        }
+    }
+
+    private void requireOpen() throws IOException {
+        if (writer == null) {
+            throw new IOException("自动保存日志未打开");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.k.minidoodle;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.LongSparseArray;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * 进程内共享的位图池
+ * 分块缓存、降采样块、印章和导出位图用完后交回这里，之后按相同的宽、高和格式取用，
+ * 反复绘制、撤销和保存时不再频繁分配大块内存。池中位图的总字节数有上限，超出时直接回收；
+ * 系统内存紧张时由 {@link #trimMemory} 释放。各线程都可以使用。
+ */
+final class BitmapPool {
+
+    private static final BitmapPool INSTANCE = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+
+    private final long maxBytes;
+    // 按尺寸和格式打包的键，每个键下是空闲的位图
+    private final LongSparseArray<ArrayList<Bitmap>> free = new LongSparseArray<>();
+    private long pooledBytes;
+    private int pooledCount;
+    private long hits;
+    private long misses;
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    static BitmapPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 取一张透明的可变位图，池中没有合适的才新建
+     */
+    Bitmap obtain(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = null;
+        synchronized (this) {
+            ArrayList<Bitmap> list = free.get(key(width, height, config));
+            if (list != null && !list.isEmpty()) {
+                bitmap = list.remove(list.size() - 1);
+                pooledBytes -= bitmap.getAllocationByteCount();
+                pooledCount--;
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        // 清空在锁外进行，大位图不会阻塞其他线程
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * 交回不再使用的位图，调用方之后不能再访问它；池已满或位图不可复用时直接回收
+     */
+    void release(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+        Bitmap.Config config = bitmap.getConfig();
+        int bytes = bitmap.getAllocationByteCount();
+        if (!bitmap.isMutable() || config == null || config == Bitmap.Config.HARDWARE) {
+            bitmap.recycle();
+            return;
+        }
+        synchronized (this) {
+            if (pooledBytes + bytes <= maxBytes) {
+                long key = key(bitmap.getWidth(), bitmap.getHeight(), config);
+                ArrayList<Bitmap> list = free.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    free.put(key, list);
+                }
+                list.add(bitmap);
+                pooledBytes += bytes;
+                pooledCount++;
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    /**
+     * 响应 {@link ComponentCallbacks2#onTrimMemory}：前台内存偏紧时释放一半，更严重时全部释放
+     */
+    void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            trimToSize(maxBytes / 2);
+        }
+    }
+
+    /**
+     * 回收空闲位图，直到总字节数不超过 bytes；先回收最大的尺寸
+     */
+    synchronized void trimToSize(long bytes) {
+        for (int i = free.size() - 1; i >= 0 && pooledBytes > bytes; i--) {
+            ArrayList<Bitmap> list = free.valueAt(i);
+            while (!list.isEmpty() && pooledBytes > bytes) {
+                Bitmap bitmap = list.remove(list.size() - 1);
+                pooledBytes -= bitmap.getAllocationByteCount();
+                pooledCount--;
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /** 池中空闲位图占用的字节数 */
+    synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    synchronized long getHitCount() {
+        return hits;
+    }
+
+    synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * 输出一行池的状态：空闲位图数和字节数、上限，以及取用时的命中和未命中次数
+     */
+    synchronized void dump(PrintWriter out) {
+        out.printf(Locale.US, "bitmap-pool      pooled=%d bytes=%d max=%d hits=%d misses=%d%n",
+                pooledCount, pooledBytes, maxBytes, hits, misses);
+        out.flush();
+    }
+
+    // 高、宽、格式编号依次从高位排列，键按高度升序，trimToSize 由后往前大致先回收大位图
+    private static long key(int width, int height, Bitmap.Config config) {
+        return ((long) height << 32) | ((long) width << 8) | config.ordinal();
+    }
+}
@@ -0,0 +1,87 @@
+package com.k.minidoodle;
+
+/**
+ * 笔刷参数
+ * 每个采样点的权重（0 到 1）由压力和书写速度算出，线宽和不透明度随权重在各自的下限与 1 之间变化。
+ * 笔刷按编号存入文档，预设不可修改，新增笔刷只能追加编号。
+ */
+final class Brush {
+
+    /** 整条笔画一个 Path，线宽固定，忽略权重 */
+    static final int RENDER_PATH = 0;
+    /** 按每点线宽细分出轮廓多边形后填充 */
+    static final int RENDER_OUTLINE = 1;
+    /** 沿笔画按间距盖预先光栅化的笔尖印章 */
+    static final int RENDER_STAMP = 2;
+
+    /** 固定线宽的钢笔，与引入笔刷之前的笔画一致 */
+    static final Brush PEN = new Brush(0, RENDER_PATH, 1f, 0f, 0f, 1f, 1f, 0f);
+    /** 墨水笔：压力越大越粗，写得越快越细 */
+    static final Brush INK = new Brush(1, RENDER_OUTLINE, 0.25f, 1f, 0.6f, 1f, 1f, 0f);
+    /** 喷枪：软边印章，压力同时控制大小和浓淡 */
+    static final Brush AIRBRUSH = new Brush(2, RENDER_STAMP, 0.5f, 1f, 0f, 0.08f, 0.2f, 0.15f);
+
+    private static final Brush[] PRESETS = {PEN, INK, AIRBRUSH};
+
+    final int id;
+    final int renderMode;
+    // 权重为 0 时的线宽与名义线宽之比
+    final float minWidthRatio;
+    // 压力的影响程度，0 表示忽略压力
+    final float pressureResponse;
+    // 速度（像素/毫秒）对权重的衰减系数，0 表示忽略速度
+    final float velocityThinning;
+    // 权重为 0 时的不透明度
+    final float minOpacity;
+    // 笔尖硬度：实心部分占半径的比例，1 为硬边
+    final float hardness;
+    // 印章间距与印章直径之比
+    final float spacing;
+
+    private Brush(int id, int renderMode, float minWidthRatio, float pressureResponse,
+                  float velocityThinning, float minOpacity, float hardness, float spacing) {
+        this.id = id;
+        this.renderMode = renderMode;
+        this.minWidthRatio = minWidthRatio;
+        this.pressureResponse = pressureResponse;
+        this.velocityThinning = velocityThinning;
+        this.minOpacity = minOpacity;
+        this.hardness = hardness;
+        this.spacing = spacing;
+    }
+
+    /**
+     * 按编号取预设，未知编号（较新版本写入的文档）退回钢笔
+     */
+    static Brush get(int id) {
+        return id >= 0 && id < PRESETS.length ? PRESETS[id] : PEN;
+    }
+
+    static int count() {
+        return PRESETS.length;
+    }
+
+    /**
+     * 由压力（0 到 1）和速度（像素/毫秒）算出采样点的权重
+     */
+    float weight(float pressure, float speed) {
+        float p = Math.max(0f, Math.min(1f, pressure));
+        float w = 1f - pressureResponse * (1f - p);
+        w /= 1f + velocityThinning * speed;
+        return Math.max(0f, Math.min(1f, w));
+    }
+
+    /**
+     * 权重对应的实际线宽
+     */
+    float widthAt(float width, float weight) {
+        return width * (minWidthRatio + (1f - minWidthRatio) * weight);
+    }
+
+    /**
+     * 权重对应的不透明度，0 到 1
+     */
+    float opacityAt(float weight) {
+        return minOpacity + (1f - minOpacity) * weight;
+    }
+}
@@ -0,0 +1,88 @@
+package com.k.minidoodle;
+
+/**
+ * 笔刷动态
+ * 流水线输出的点只有几何信息，这里按时间戳回到原始采样点，插值出每个输出点的压力，
+ * 并用指数平滑后的书写速度，交给 {@link Brush#weight} 算出权重，写回输出点的压力通道。
+ * 输出点和原始采样点的时间戳都单调不减，一次扫描即可完成。
+ * 逐帧预览时传入 {@link Cursor}，接着上一帧扫描到的位置只处理新增的点。
+ */
+final class BrushDynamics {
+
+    // 速度平滑的时间常数（毫秒），过滤采样抖动造成的速度尖峰
+    private static final float SPEED_TIME_CONSTANT = 24f;
+
+    private BrushDynamics() {
+    }
+
+    /**
+     * 增量扫描的位置：时间不晚于上一个输出点的最后一个原始点，以及截至该点的平滑速度
+     */
+    static final class Cursor {
+        int raw;
+        float speed;
+
+        void reset() {
+            raw = 0;
+            speed = 0;
+        }
+
+        void set(Cursor other) {
+            raw = other.raw;
+            speed = other.speed;
+        }
+    }
+
+    /**
+     * 用 raw 中的压力和速度计算 points 中每个点的权重，结果写回 points 的压力通道
+     * @param raw 当前笔画的原始采样点
+     * @param points 由 raw 处理得到的点
+     */
+    static void apply(TouchSampleBuffer raw, TouchSampleBuffer points, Brush brush) {
+        apply(raw, points, brush, new Cursor());
+    }
+
+    /**
+     * 同 {@link #apply(TouchSampleBuffer, TouchSampleBuffer, Brush)}，从 position 处接着扫描 raw，
+     * 扫描结束后 position 停在最后一个点的位置；points 中的点须晚于上次处理的点
+     */
+    static void apply(TouchSampleBuffer raw, TouchSampleBuffer points, Brush brush, Cursor position) {
+        int rawSize = raw.size();
+        int n = points.size();
+        if (rawSize == 0) {
+            for (int j = 0; j < n; j++) {
+                points.setPressure(j, brush.weight(1f, 0f));
+            }
+            return;
+        }
+        // cursor 为时间不晚于当前输出点的最后一个原始点，speed 为截至 cursor 的平滑速度
+        int cursor = position.raw;
+        float speed = position.speed;
+        for (int j = 0; j < n; j++) {
+            long time = points.getTime(j);
+            while (cursor + 1 < rawSize && raw.getTime(cursor + 1) <= time) {
+                cursor++;
+                speed = smoothSpeed(raw, cursor, speed);
+            }
+            float pressure = raw.getPressure(cursor);
+            if (cursor + 1 < rawSize && raw.getTime(cursor) < time) {
+                long t0 = raw.getTime(cursor);
+                float f = (float) (time - t0) / (raw.getTime(cursor + 1) - t0);
+                pressure += (raw.getPressure(cursor + 1) - pressure) * f;
+            }
+            points.setPressure(j, brush.weight(pressure, speed));
+        }
+        position.raw = cursor;
+        position.speed = speed;
+    }
+
+    // 把第 i 个原始点与前一点之间的速度并入平滑值
+    private static float smoothSpeed(TouchSampleBuffer raw, int i, float speed) {
+        long dt = Math.max(1, raw.getTime(i) - raw.getTime(i - 1));
+        float dx = raw.getX(i) - raw.getX(i - 1);
+        float dy = raw.getY(i) - raw.getY(i - 1);
+        float instant = (float) Math.sqrt(dx * dx + dy * dy) / dt;
+        float alpha = 1f - (float) Math.exp(-dt / SPEED_TIME_CONSTANT);
+        return speed + (instant - speed) * alpha;
+    }
+}
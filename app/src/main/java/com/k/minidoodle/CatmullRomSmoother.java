@@ -0,0 +1,89 @@
+package com.k.minidoodle;
+
+/**
+ * Catmull-Rom 样条平滑
+ * 曲线经过每一个输入点，相邻两点之间按长度插入若干中间点，抽稀后的折线会变得圆滑。
+ * 输出一段曲线需要后一个点作为控制点，因此有 1 个点的延迟。
+ */
+public class CatmullRomSmoother implements StrokeStage {
+
+    private final float spacing;
+    private final int maxSteps;
+
+    // 滑动窗口 p0, p1, p2：收到 p3 后输出 p1 到 p2 之间的曲线
+    private int count;
+    private float x0, y0, x1, y1, x2, y2;
+    private long t1, t2;
+
+    /**
+     * @param spacing 插值点之间的目标间距（像素）
+     * @param maxSteps 每段最多插入的点数
+     */
+    public CatmullRomSmoother(float spacing, int maxSteps) {
+        this.spacing = spacing;
+        this.maxSteps = Math.max(maxSteps, 1);
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+    }
+
+    @Override
+    public void add(float x, float y, long time, TouchSampleBuffer out) {
+        if (count == 0) {
+            // 第一个点同时作为 p0 和 p1
+            x0 = x1 = x;
+            y0 = y1 = y;
+            t1 = time;
+            out.add(x, y, time);
+            count = 1;
+            return;
+        }
+        if (count == 1) {
+            x2 = x;
+            y2 = y;
+            t2 = time;
+            count = 2;
+            return;
+        }
+        emitSegment(x, y, out);
+        x0 = x1;
+        y0 = y1;
+        x1 = x2;
+        y1 = y2;
+        t1 = t2;
+        x2 = x;
+        y2 = y;
+        t2 = time;
+    }
+
+    @Override
+    public void finish(TouchSampleBuffer out) {
+        if (count == 2) {
+            // 最后一段以终点本身作为 p3
+            emitSegment(x2, y2, out);
+        }
+        count = 0;
+    }
+
+    private void emitSegment(float x3, float y3, TouchSampleBuffer out) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        int steps = Math.max(1, Math.min(maxSteps, (int) Math.ceil(length / spacing)));
+        for (int i = 1; i < steps; i++) {
+            float t = (float) i / steps;
+            float tt = t * t;
+            float ttt = tt * t;
+            float x = 0.5f * (2 * x1 + (x2 - x0) * t
+                    + (2 * x0 - 5 * x1 + 4 * x2 - x3) * tt
+                    + (3 * x1 - x0 - 3 * x2 + x3) * ttt);
+            float y = 0.5f * (2 * y1 + (y2 - y0) * t
+                    + (2 * y0 - 5 * y1 + 4 * y2 - y3) * tt
+                    + (3 * y1 - y0 - 3 * y2 + y3) * ttt);
+            out.add(x, y, t1 + (long) ((t2 - t1) * t));
+        }
+        out.add(x2, y2, t2);
+    }
+}
@@ -0,0 +1,106 @@
+package com.k.minidoodle;
+
+/**
+ * 取色器中颜色与文本的互相转换：十六进制和十进制
+ * 写入调用方提供的 char 数组，从任意 CharSequence（例如 EditText 的 Editable）直接解析，
+ * 拖动滑块和输入时不创建字符串，也不经过 String.format 和 Color.parseColor。不依赖 Android。
+ */
+final class ColorFormat {
+
+    /** {@link #parseHex} 的无效结果 */
+    static final long INVALID = -1L;
+    /** 十六进制文本最多的字符数（AARRGGBB） */
+    static final int MAX_HEX_LENGTH = 8;
+
+    private static final char[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
+            'A', 'B', 'C', 'D', 'E', 'F'};
+
+    private ColorFormat() {
+    }
+
+    /**
+     * 把颜色写成不带 '#' 的大写十六进制：不透明时为 RRGGBB，否则为 AARRGGBB
+     * @return 写入的字符数
+     */
+    static int formatHex(int color, char[] out) {
+        int digits = (color >>> 24) == 0xFF ? 6 : 8;
+        for (int i = 0; i < digits; i++) {
+            out[i] = HEX_DIGITS[(color >>> ((digits - 1 - i) * 4)) & 0xF];
+        }
+        return digits;
+    }
+
+    /**
+     * 解析不带 '#' 的十六进制颜色，大小写均可。
+     * 8 位为 AARRGGBB；不足 6 位时按输入到一半处理，右侧补 0 得到不透明的 RRGGBB
+     * @return 颜色（转为 long 后的非负值），格式不对时返回 {@link #INVALID}
+     */
+    static long parseHex(CharSequence text) {
+        int length = text.length();
+        if (length == 0 || length == 7 || length > MAX_HEX_LENGTH) {
+            return INVALID;
+        }
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = Character.digit(text.charAt(i), 16);
+            if (digit < 0) {
+                return INVALID;
+            }
+            value = value << 4 | digit;
+        }
+        if (length == MAX_HEX_LENGTH) {
+            return value & 0xFFFFFFFFL;
+        }
+        return (0xFF000000 | value << ((6 - length) * 4)) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * 把非负整数写成十进制
+     * @return 写入的字符数
+     */
+    static int formatDecimal(int value, char[] out) {
+        int digits = 1;
+        for (int p = 10; p <= value && digits < 10; p *= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return digits;
+    }
+
+    /**
+     * 解析十进制整数并限制在 [0, max]；空文本或含非数字字符时返回 0
+     */
+    static int parseDecimal(CharSequence text, int max) {
+        int length = text.length();
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+            if (value > max) {
+                return max;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * text 是否与 chars 的前 length 个字符相同，相同时不必重新设置输入框
+     */
+    static boolean contentEquals(CharSequence text, char[] chars, int length) {
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
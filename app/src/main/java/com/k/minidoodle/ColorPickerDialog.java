@@ -0,0 +1,254 @@
+package com.k.minidoodle;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.graphics.Color;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.view.Window;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.SeekBar;
+
+import java.nio.CharBuffer;
+
+/**
+ * 取色对话框，支持 RGB、HSV、透明度和十六进制输入
+ * 布局和预设颜色块只在创建时生成一次，之后每次打开复用同一个对话框。
+ * 所有控件都绑定到同一个 {@link ColorState}：控件只把用户的修改写入状态，状态变化后在下一帧统一刷新其余控件，
+ * 一次拖动中的多次回调只刷新一次。数字和十六进制文本写入复用的 char 数组后原地替换输入框内容，
+ * 内容没变时不替换；刷新期间忽略输入框自己的回调，控件之间不会互相触发。
+ */
+class ColorPickerDialog implements ColorState.Listener {
+
+    /**
+     * 点击确定时在主线程调用
+     */
+    interface Callback {
+        void onColorSelected(int color);
+    }
+
+    private static final int[] PRESET_COLORS = {
+            Color.BLACK, Color.WHITE, Color.RED, Color.GREEN, Color.BLUE,
+            Color.YELLOW, Color.CYAN, Color.MAGENTA, Color.GRAY,
+            Color.rgb(255, 165, 0), // 橙色
+            Color.rgb(128, 0, 128), // 紫色
+            Color.rgb(165, 42, 42), // 棕色
+            Color.rgb(255, 192, 203) // 粉色
+    };
+
+    // 修改的来源：滑块为通道编号，输入框为 SOURCE_TEXT 加通道编号
+    private static final int SOURCE_TEXT = 16;
+    private static final int SOURCE_HEX = 32;
+
+    private final Dialog dialog;
+    private final ColorState state = new ColorState();
+    private final View preview;
+    private final SeekBar[] seekBars = new SeekBar[ColorState.CHANNEL_COUNT];
+    // 没有输入框的通道为 null
+    private final EditText[] editTexts = new EditText[ColorState.CHANNEL_COUNT];
+    private final EditText hexEditText;
+    // 格式化文本的缓冲区，输入框从 charBuffer 读取
+    private final char[] chars = new char[ColorFormat.MAX_HEX_LENGTH];
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private Callback callback;
+    // 下一帧刷新时跳过的控件；一帧内有多个来源时为 SOURCE_NONE，全部刷新
+    private int pendingSource;
+    private boolean refreshPosted;
+    // 正在把状态写回控件
+    private boolean refreshing;
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refreshPosted = false;
+            refresh(pendingSource);
+        }
+    };
+
+    ColorPickerDialog(Context context) {
+        dialog = new Dialog(context);
+        dialog.requestWindowFeature(Window.FEATURE_NO_TITLE);
+        dialog.setContentView(R.layout.dialog_color_picker);
+        dialog.setCancelable(true);
+
+        preview = dialog.findViewById(R.id.colorPreviewInDialog);
+        seekBars[ColorState.CHANNEL_ALPHA] = dialog.findViewById(R.id.alphaSeekBar);
+        seekBars[ColorState.CHANNEL_RED] = dialog.findViewById(R.id.redSeekBar);
+        seekBars[ColorState.CHANNEL_GREEN] = dialog.findViewById(R.id.greenSeekBar);
+        seekBars[ColorState.CHANNEL_BLUE] = dialog.findViewById(R.id.blueSeekBar);
+        seekBars[ColorState.CHANNEL_HUE] = dialog.findViewById(R.id.hueSeekBar);
+        seekBars[ColorState.CHANNEL_SATURATION] = dialog.findViewById(R.id.saturationSeekBar);
+        seekBars[ColorState.CHANNEL_VALUE] = dialog.findViewById(R.id.valueSeekBar);
+        editTexts[ColorState.CHANNEL_ALPHA] = dialog.findViewById(R.id.alphaEditText);
+        editTexts[ColorState.CHANNEL_RED] = dialog.findViewById(R.id.redEditText);
+        editTexts[ColorState.CHANNEL_GREEN] = dialog.findViewById(R.id.greenEditText);
+        editTexts[ColorState.CHANNEL_BLUE] = dialog.findViewById(R.id.blueEditText);
+        hexEditText = dialog.findViewById(R.id.hexEditText);
+
+        for (int channel = 0; channel < ColorState.CHANNEL_COUNT; channel++) {
+            bindSeekBar(channel);
+            if (editTexts[channel] != null) {
+                bindEditText(channel);
+            }
+        }
+        hexEditText.addTextChangedListener(new SimpleTextWatcher() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (refreshing) {
+                    return;
+                }
+                // 输入不完整时右侧补 0 预览，格式不对时保持原来的颜色
+                long color = ColorFormat.parseHex(s);
+                if (color != ColorFormat.INVALID) {
+                    state.setColor((int) color, SOURCE_HEX);
+                }
+            }
+        });
+
+        addPresetColors(context, (LinearLayout) dialog.findViewById(R.id.presetColorsLayout));
+
+        Button selectBtn = dialog.findViewById(R.id.selectColorBtn);
+        selectBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (callback != null) {
+                    callback.onColorSelected(state.getColor());
+                }
+                dialog.dismiss();
+            }
+        });
+        Button cancelBtn = dialog.findViewById(R.id.cancelBtn);
+        cancelBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                dialog.dismiss();
+            }
+        });
+
+        state.setListener(this);
+    }
+
+    /**
+     * 以 color 为初始颜色打开对话框
+     */
+    void show(int color, Callback callback) {
+        this.callback = callback;
+        state.setColor(color, ColorState.SOURCE_NONE);
+        // 打开时立即刷新全部控件，不等下一帧
+        preview.removeCallbacks(refreshRunnable);
+        refreshPosted = false;
+        refresh(ColorState.SOURCE_NONE);
+        dialog.show();
+    }
+
+    void dismiss() {
+        dialog.dismiss();
+    }
+
+    @Override
+    public void onColorChanged(ColorState state, int source) {
+        if (refreshPosted) {
+            if (pendingSource != source) {
+                pendingSource = ColorState.SOURCE_NONE;
+            }
+            return;
+        }
+        pendingSource = source;
+        refreshPosted = true;
+        preview.postOnAnimation(refreshRunnable);
+    }
+
+    private void bindSeekBar(final int channel) {
+        SeekBar seekBar = seekBars[channel];
+        seekBar.setMax(ColorState.getMax(channel));
+        seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                if (fromUser) {
+                    state.set(channel, progress, channel);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {}
+        });
+    }
+
+    private void bindEditText(final int channel) {
+        editTexts[channel].addTextChangedListener(new SimpleTextWatcher() {
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (!refreshing) {
+                    state.set(channel, ColorFormat.parseDecimal(s, ColorState.getMax(channel)),
+                            SOURCE_TEXT + channel);
+                }
+            }
+        });
+    }
+
+    private void addPresetColors(Context context, LinearLayout layout) {
+        int sizePx = (int) (40 * context.getResources().getDisplayMetrics().density); // 40dp
+        for (final int presetColor : PRESET_COLORS) {
+            View colorView = new View(context);
+            LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(sizePx, sizePx);
+            params.setMargins(10, 10, 10, 10);
+            colorView.setLayoutParams(params);
+            colorView.setBackgroundColor(presetColor);
+            colorView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    // 预设颜色不改变透明度
+                    int alpha = state.get(ColorState.CHANNEL_ALPHA);
+                    state.setColor((presetColor & 0xFFFFFF) | alpha << 24, ColorState.SOURCE_NONE);
+                }
+            });
+            layout.addView(colorView);
+        }
+    }
+
+    // 把状态写回控件，跳过 skip 对应的控件
+    private void refresh(int skip) {
+        refreshing = true;
+        int color = state.getColor();
+        preview.setBackgroundColor(color);
+        for (int channel = 0; channel < ColorState.CHANNEL_COUNT; channel++) {
+            int value = state.get(channel);
+            if (channel != skip && seekBars[channel].getProgress() != value) {
+                seekBars[channel].setProgress(value);
+            }
+            if (editTexts[channel] != null && skip != SOURCE_TEXT + channel) {
+                setText(editTexts[channel], ColorFormat.formatDecimal(value, chars));
+            }
+        }
+        if (skip != SOURCE_HEX) {
+            setText(hexEditText, ColorFormat.formatHex(color, chars));
+        }
+        refreshing = false;
+    }
+
+    // 用 chars 的前 length 个字符原地替换输入框内容，不创建新的 Editable
+    private void setText(EditText editText, int length) {
+        Editable text = editText.getText();
+        if (ColorFormat.contentEquals(text, chars, length)) {
+            return;
+        }
+        charBuffer.clear();
+        text.replace(0, text.length(), charBuffer, 0, length);
+    }
+
+    /**
+     * 只关心 afterTextChanged 的 TextWatcher
+     */
+    private abstract static class SimpleTextWatcher implements TextWatcher {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {}
+    }
+}
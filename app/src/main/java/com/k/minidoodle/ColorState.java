@@ -0,0 +1,226 @@
+package com.k.minidoodle;
+
+/**
+ * 取色器的颜色状态，所有控件都从这里读取、向这里写入
+ * 同时保存 ARGB 和 HSV：改 RGB 时重新计算 HSV，但灰色没有色相、黑色没有饱和度，这时保留原来的值，
+ * 拖到灰色再拖回来色相不会跳到红色；改 HSV 时由它算出 RGB。
+ * 各通道都以整数读写，与滑块的进度直接对应。只有颜色或 HSV 真正变化时才通知监听器，
+ * 并附带引起变化的控件，界面据此跳过正在编辑的控件，控件之间不会互相触发。不依赖 Android。
+ */
+final class ColorState {
+
+    static final int CHANNEL_ALPHA = 0;
+    static final int CHANNEL_RED = 1;
+    static final int CHANNEL_GREEN = 2;
+    static final int CHANNEL_BLUE = 3;
+    /** 色相，0 到 359 度 */
+    static final int CHANNEL_HUE = 4;
+    /** 饱和度，0 到 100 */
+    static final int CHANNEL_SATURATION = 5;
+    /** 明度，0 到 100 */
+    static final int CHANNEL_VALUE = 6;
+    static final int CHANNEL_COUNT = 7;
+
+    /** 变化不来自任何控件（打开取色器、点选预设颜色），所有控件都要更新 */
+    static final int SOURCE_NONE = -1;
+
+    // 按通道编号排列的最大值
+    private static final int[] MAX = {255, 255, 255, 255, 359, 100, 100};
+
+    /**
+     * 颜色变化的监听器
+     */
+    interface Listener {
+        /** @param source 调用方在修改时传入的来源，原样转交 */
+        void onColorChanged(ColorState state, int source);
+    }
+
+    private int color = 0xFF000000;
+    // 0 到 360、0 到 1、0 到 1
+    private float hue;
+    private float saturation;
+    private float value;
+    private Listener listener;
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    int getColor() {
+        return color;
+    }
+
+    static int getMax(int channel) {
+        return MAX[channel];
+    }
+
+    /**
+     * 通道的当前值，范围见 {@link #getMax}
+     */
+    int get(int channel) {
+        switch (channel) {
+            case CHANNEL_ALPHA:
+                return color >>> 24;
+            case CHANNEL_RED:
+                return (color >> 16) & 0xFF;
+            case CHANNEL_GREEN:
+                return (color >> 8) & 0xFF;
+            case CHANNEL_BLUE:
+                return color & 0xFF;
+            case CHANNEL_HUE:
+                return Math.round(hue) % 360;
+            case CHANNEL_SATURATION:
+                return Math.round(saturation * 100);
+            case CHANNEL_VALUE:
+                return Math.round(value * 100);
+            default:
+                throw new IllegalArgumentException("channel " + channel);
+        }
+    }
+
+    /**
+     * 设置整个颜色（含透明度），HSV 随之更新
+     */
+    void setColor(int color, int source) {
+        float oldHue = hue;
+        float oldSaturation = saturation;
+        float oldValue = value;
+        int oldColor = this.color;
+        this.color = color;
+        updateHsv();
+        notifyIfChanged(oldColor, oldHue, oldSaturation, oldValue, source);
+    }
+
+    /**
+     * 设置一个通道，超出范围的值被截断；其他通道按需要重新计算
+     */
+    void set(int channel, int newValue, int source) {
+        int v = Math.max(0, Math.min(MAX[channel], newValue));
+        float oldHue = hue;
+        float oldSaturation = saturation;
+        float oldValue = value;
+        int oldColor = color;
+        switch (channel) {
+            case CHANNEL_ALPHA:
+                color = (color & 0xFFFFFF) | v << 24;
+                break;
+            case CHANNEL_RED:
+                color = (color & 0xFF00FFFF) | v << 16;
+                updateHsv();
+                break;
+            case CHANNEL_GREEN:
+                color = (color & 0xFFFF00FF) | v << 8;
+                updateHsv();
+                break;
+            case CHANNEL_BLUE:
+                color = (color & 0xFFFFFF00) | v;
+                updateHsv();
+                break;
+            case CHANNEL_HUE:
+                hue = v;
+                updateRgb();
+                break;
+            case CHANNEL_SATURATION:
+                saturation = v / 100f;
+                updateRgb();
+                break;
+            case CHANNEL_VALUE:
+                value = v / 100f;
+                updateRgb();
+                break;
+            default:
+                throw new IllegalArgumentException("channel " + channel);
+        }
+        notifyIfChanged(oldColor, oldHue, oldSaturation, oldValue, source);
+    }
+
+    private void notifyIfChanged(int oldColor, float oldHue, float oldSaturation, float oldValue, int source) {
+        if (listener != null && (color != oldColor || hue != oldHue || saturation != oldSaturation
+                || value != oldValue)) {
+            listener.onColorChanged(this, source);
+        }
+    }
+
+    // 由 RGB 算出 HSV；无法确定的分量保留原值
+    private void updateHsv() {
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        value = max / 255f;
+        if (max == 0) {
+            return;
+        }
+        int delta = max - min;
+        saturation = delta / (float) max;
+        if (delta == 0) {
+            return;
+        }
+        float h;
+        if (max == r) {
+            h = (g - b) / (float) delta;
+        } else if (max == g) {
+            h = 2 + (b - r) / (float) delta;
+        } else {
+            h = 4 + (r - g) / (float) delta;
+        }
+        h *= 60;
+        hue = h < 0 ? h + 360 : h;
+    }
+
+    private void updateRgb() {
+        color = (color & 0xFF000000) | hsvToRgb(hue, saturation, value);
+    }
+
+    /**
+     * HSV 转为不含透明度的 RGB
+     * @param hue 0 到 360
+     * @param saturation 0 到 1
+     * @param value 0 到 1
+     */
+    static int hsvToRgb(float hue, float saturation, float value) {
+        float h = (hue % 360) / 60;
+        int sector = (int) h;
+        float f = h - sector;
+        float p = value * (1 - saturation);
+        float q = value * (1 - saturation * f);
+        float t = value * (1 - saturation * (1 - f));
+        float r;
+        float g;
+        float b;
+        switch (sector) {
+            case 0:
+                r = value;
+                g = t;
+                b = p;
+                break;
+            case 1:
+                r = q;
+                g = value;
+                b = p;
+                break;
+            case 2:
+                r = p;
+                g = value;
+                b = t;
+                break;
+            case 3:
+                r = p;
+                g = q;
+                b = value;
+                break;
+            case 4:
+                r = t;
+                g = p;
+                b = value;
+                break;
+            default:
+                r = value;
+                g = p;
+                b = q;
+                break;
+        }
+        return Math.round(r * 255) << 16 | Math.round(g * 255) << 8 | Math.round(b * 255);
+    }
+}
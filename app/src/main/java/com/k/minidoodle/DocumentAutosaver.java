@@ -0,0 +1,159 @@
+package com.k.minidoodle;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自动保存
+ * 监听 PaintView 的文档变化，在后台线程上把每条新笔画追加到 {@link AutosaveJournal}，
+ * 主线程只负责提交任务。启动时从日志恢复上次的绘图，撤销截掉的笔画积累到一定数量时以及关闭时压缩日志。
+ * 所有实例共用一个后台线程：上一个实例的关闭（例如 Activity 结束后立即重新打开）和新实例的载入
+ * 按提交顺序执行，不会同时读写同一个日志文件。
+ */
+class DocumentAutosaver implements PaintView.DocumentListener {
+
+    private static final String TAG = "DocumentAutosaver";
+
+    /**
+     * 载入完成回调，在主线程调用
+     */
+    interface LoadCallback {
+        void onLoaded(StrokeStore document);
+    }
+
+    // 单线程保证日志写入顺序与提交顺序一致，跨实例共用，空闲时线程退出
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private final AutosaveJournal journal;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    DocumentAutosaver(File file) {
+        journal = new AutosaveJournal(file);
+    }
+
+    /**
+     * 在后台读取上次保存的文档；日志损坏时返回空文档
+     */
+    void load(final LoadCallback callback) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                StrokeStore document;
+                try {
+                    document = journal.load();
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "自动保存文件无法读取，从空白画布开始", e);
+                    document = new StrokeStore();
+                }
+                final StrokeStore loaded = document;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onLoaded(loaded);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 以 document 为基准重写日志，之后开始追加。document 交出后不应再修改。
+     */
+    void start(final StrokeStore document) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    journal.rewrite(document, document.size());
+                } catch (IOException e) {
+                    Log.w(TAG, "自动保存文件重写失败", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onStrokeAdded(final StrokeStore stroke) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    journal.append(stroke, 0);
+                } catch (IOException e) {
+                    Log.w(TAG, "自动保存失败", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onStrokesTruncated(final int count) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    journal.truncate(count);
+                    if (journal.needsCompaction()) {
+                        journal.compact();
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "自动保存失败", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onLayersChanged(final LayerTable layers) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    journal.appendLayers(layers);
+                } catch (IOException e) {
+                    Log.w(TAG, "自动保存失败", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 写完已提交的内容后关闭日志，有截断掉的笔画时先压缩，下次启动直接读到紧凑的文档
+     */
+    void close() {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (journal.hasDiscarded()) {
+                        journal.compact();
+                    }
+                    journal.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "关闭自动保存文件失败", e);
+                }
+            }
+        });
+    }
+
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "MiniDoodle-autosave");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
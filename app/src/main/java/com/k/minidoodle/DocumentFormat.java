@@ -0,0 +1,137 @@
+package com.k.minidoodle;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 矢量文档的二进制格式
+ *
+ * <pre>
+ * 文件头：  'M' 'D' 'O' 'C'  版本(1 字节)  标志(1 字节)
+ * 记录：    类型(1 字节)  负载长度(varint)  负载
+ *
+ * COLOR     颜色(4 字节 ARGB)，按出现顺序编号，组成颜色表
+ * STROKE    颜色编号(varint)  线宽(float)  点数(varint)
+ *           首点坐标，其后每个点相对前一点的增量；坐标按 1/16 像素量化后 zigzag varint 编码
+ * TRUNCATE  笔画数(varint)，文档只保留前 n 条笔画（撤销、清空）
+ * BRUSH_STROKE  颜色编号(varint)  线宽(float)  笔刷编号(varint)  点数(varint)
+ *           坐标编码同 STROKE，其后每个点 1 字节笔刷权重；固定线宽的钢笔笔画仍写为 STROKE
+ * LAYER     图层编号(varint)  可见(1 字节)  不透明度(1 字节)  混合模式(varint)，设置或追加图层属性
+ * USE_LAYER 图层编号(varint)，之后的笔画都属于该图层，直到下一条 USE_LAYER；文件开头为图层 0
+ * ERASE     标志(1 字节)  笔画数(varint)  每条被擦笔画与本记录的下标之差(varint)；本身计为一条笔画
+ * FRAGMENT  标志(1 字节)  顺序偏移(varint)，只作用于紧随其后的一条笔画：擦除切出的碎片，
+ *           按 下标 - 顺序偏移 的位置绘制（见 {@link StrokeStore#getOrder}）
+ * TIMING    起始时间(zigzag varint，相对上一条 TIMING 的起始时间，第一条相对 0)  点数(varint)
+ *           每个点相对前一点的毫秒数(varint)，首点为 0；只作用于紧接在它前面的一条笔画，点数不符时忽略
+ * </pre>
+ * 记录标志的第 0 位表示与前一条记录属于同一次编辑，一起撤销和重做。
+ *
+ * 每条记录自带长度，读取时可以跳过未知类型的记录，文件末尾不完整的记录（写入中途进程被杀）会被忽略，
+ * 因此同一格式既用于完整保存，也用于只追加的自动保存日志。
+ * 版本 2 增加了 BRUSH_STROKE；旧版本读取时若跳过它，后续 TRUNCATE 的笔画数会错位，因此提升了版本号。
+ * LAYER 和 USE_LAYER 不影响笔画计数，不认识它们的读取方会把所有笔画读进同一个图层，因此没有提升版本号。
+ * 版本 3 增加了 ERASE，它同样计入笔画数，因此提升了版本号。
+ * TIMING 不计入笔画数，不认识它的读取方只是得不到采样时间，回放时按笔画长度估计，因此没有提升版本号。
+ */
+final class DocumentFormat {
+
+    static final byte[] MAGIC = {'M', 'D', 'O', 'C'};
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = MAGIC.length + 2;
+
+    static final int TAG_COLOR = 1;
+    static final int TAG_STROKE = 2;
+    static final int TAG_TRUNCATE = 3;
+    static final int TAG_BRUSH_STROKE = 4;
+    static final int TAG_LAYER = 5;
+    static final int TAG_USE_LAYER = 6;
+    static final int TAG_ERASE = 7;
+    static final int TAG_FRAGMENT = 8;
+    static final int TAG_TIMING = 9;
+
+    // 记录标志：与前一条记录一起撤销
+    static final int FLAG_JOINED = 1;
+
+    // 坐标量化精度：1/16 像素
+    static final float COORDINATE_SCALE = 16f;
+
+    // varint 最多 5 个字节
+    static final int MAX_VARINT_SIZE = 5;
+    // 64 位 varint 最多 10 个字节
+    static final int MAX_LONG_VARINT_SIZE = 10;
+
+    private DocumentFormat() {
+    }
+
+    static int quantize(float coordinate) {
+        return Math.round(coordinate * COORDINATE_SCALE);
+    }
+
+    static float dequantize(int value) {
+        return value / COORDINATE_SCALE;
+    }
+
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer buffer) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,234 @@
+package com.k.minidoodle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * 流式读取矢量文档
+ * 按记录从通道中读取并解码到 {@link StrokeStore}，只缓冲当前记录。
+ * 文件末尾不完整的记录会被忽略，未知类型的记录会被跳过。格式见 {@link DocumentFormat}。
+ */
+public class DocumentReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean endOfStream;
+    private int[] colorTable = new int[16];
+    private int colorCount;
+    // 之后的笔画所属的图层
+    private int currentLayer;
+    // FRAGMENT 记录给下一条笔画的标志和顺序偏移
+    private int fragmentFlags;
+    private int fragmentOffset;
+    // 上一条 TIMING 记录的起始时间
+    private long lastStartTime;
+    private final IntList erased = new IntList();
+
+    public DocumentReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    /**
+     * 读取整个文档到 into，into 应当为空（TRUNCATE 记录按绝对笔画数截断）
+     * @throws IOException 文件头无效或版本过新
+     */
+    public void read(StrokeStore into) throws IOException {
+        readHeader();
+        while (fill(1 + 1)) {
+            int tag = buffer.get() & 0xFF;
+            if (!fill(DocumentFormat.MAX_VARINT_SIZE) && !hasCompleteVarint()) {
+                break;
+            }
+            int length = DocumentFormat.getVarint(buffer);
+            if (!fill(length)) {
+                // 记录不完整：写入中途被中断，之前的内容仍然有效
+                break;
+            }
+            int payloadEnd = buffer.position() + length;
+            switch (tag) {
+                case DocumentFormat.TAG_COLOR:
+                    readColor();
+                    break;
+                case DocumentFormat.TAG_STROKE:
+                    readStroke(into, false);
+                    break;
+                case DocumentFormat.TAG_BRUSH_STROKE:
+                    readStroke(into, true);
+                    break;
+                case DocumentFormat.TAG_LAYER:
+                    readLayer(into.getLayers());
+                    break;
+                case DocumentFormat.TAG_USE_LAYER:
+                    // 超出上限的图层编号（较新版本写入的文档）归入最上层
+                    currentLayer = Math.min(DocumentFormat.getVarint(buffer), LayerTable.MAX_LAYERS - 1);
+                    break;
+                case DocumentFormat.TAG_ERASE:
+                    readErase(into);
+                    break;
+                case DocumentFormat.TAG_FRAGMENT:
+                    fragmentFlags = buffer.get();
+                    fragmentOffset = DocumentFormat.getVarint(buffer);
+                    break;
+                case DocumentFormat.TAG_TIMING:
+                    readTiming(into);
+                    break;
+                case DocumentFormat.TAG_TRUNCATE:
+                    int count = DocumentFormat.getVarint(buffer);
+                    into.truncate(Math.min(count, into.size()));
+                    break;
+                default:
+                    break;
+            }
+            buffer.position(payloadEnd);
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (!fill(DocumentFormat.HEADER_SIZE)) {
+            throw new IOException("文档为空或已损坏");
+        }
+        byte[] magic = new byte[DocumentFormat.MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, DocumentFormat.MAGIC)) {
+            throw new IOException("不是 MiniDoodle 文档");
+        }
+        int version = buffer.get() & 0xFF;
+        if (version > DocumentFormat.VERSION) {
+            throw new IOException("不支持的文档版本: " + version);
+        }
+        // 标志位暂未使用
+        buffer.get();
+    }
+
+    private void readColor() {
+        if (colorCount == colorTable.length) {
+            colorTable = Arrays.copyOf(colorTable, colorCount * 2);
+        }
+        colorTable[colorCount++] = buffer.getInt();
+    }
+
+    private void readStroke(StrokeStore into, boolean weighted) throws IOException {
+        int colorIndex = DocumentFormat.getVarint(buffer);
+        if (colorIndex >= colorCount) {
+            throw new IOException("颜色编号越界: " + colorIndex);
+        }
+        float width = buffer.getFloat();
+        int brush = weighted ? DocumentFormat.getVarint(buffer) : Brush.PEN.id;
+        int n = DocumentFormat.getVarint(buffer);
+        into.beginStroke(colorTable[colorIndex], width, brush);
+        int weightPosition = weighted ? findWeights(n) : 0;
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < n; i++) {
+            x += DocumentFormat.unzigzag(DocumentFormat.getVarint(buffer));
+            y += DocumentFormat.unzigzag(DocumentFormat.getVarint(buffer));
+            float weight = weighted ? (buffer.get(weightPosition + i) & 0xFF) / 255f : 1f;
+            into.addPoint(DocumentFormat.dequantize(x), DocumentFormat.dequantize(y), weight);
+        }
+        int stroke = into.endStroke();
+        into.setLayer(stroke, currentLayer);
+        if (fragmentFlags != 0 || fragmentOffset != 0) {
+            into.setJoined(stroke, (fragmentFlags & DocumentFormat.FLAG_JOINED) != 0);
+            into.setOrder(stroke, stroke - Math.min(fragmentOffset, stroke));
+            fragmentFlags = 0;
+            fragmentOffset = 0;
+        }
+    }
+
+    // 作用于最后读入的笔画；它是擦除记录或点数不符时（不应出现）只更新起始时间的基准
+    private void readTiming(StrokeStore into) {
+        long startTime = lastStartTime + DocumentFormat.unzigzag(DocumentFormat.getVarLong(buffer));
+        lastStartTime = startTime;
+        int n = DocumentFormat.getVarint(buffer);
+        int stroke = into.size() - 1;
+        if (stroke < 0 || into.isErase(stroke) || into.getPointCount(stroke) != n) {
+            return;
+        }
+        int start = into.getPointStart(stroke);
+        long offset = 0;
+        for (int i = 0; i < n; i++) {
+            offset = Math.min(Integer.MAX_VALUE, offset + (DocumentFormat.getVarint(buffer) & 0xFFFFFFFFL));
+            into.setTimeOffset(start + i, (int) offset);
+        }
+        into.setStartTime(stroke, startTime);
+    }
+
+    // 相对下标超出已读笔画或指向擦除记录的项（文档被截断过）忽略
+    private void readErase(StrokeStore into) {
+        boolean joined = (buffer.get() & DocumentFormat.FLAG_JOINED) != 0;
+        int n = DocumentFormat.getVarint(buffer);
+        int record = into.size();
+        erased.clear();
+        for (int i = 0; i < n; i++) {
+            int stroke = record - DocumentFormat.getVarint(buffer);
+            if (stroke >= 0 && stroke < record && !into.isErase(stroke)) {
+                erased.add(stroke);
+            }
+        }
+        into.addErase(erased, joined);
+    }
+
+    private void readLayer(LayerTable layers) {
+        int index = DocumentFormat.getVarint(buffer);
+        boolean visible = buffer.get() != 0;
+        int alpha = buffer.get() & 0xFF;
+        int mode = DocumentFormat.getVarint(buffer);
+        if (index >= LayerTable.MAX_LAYERS) {
+            return;
+        }
+        layers.ensureSize(index + 1);
+        layers.setVisible(index, visible);
+        layers.setAlpha(index, alpha);
+        layers.setBlendMode(index, mode);
+    }
+
+    // 权重排在全部坐标之后：先跳过 n 个点的坐标找到权重的位置，再回到坐标起点
+    private int findWeights(int n) {
+        int coordinateStart = buffer.position();
+        for (int i = 0; i < n * 2; i++) {
+            DocumentFormat.getVarint(buffer);
+        }
+        int weightPosition = buffer.position();
+        buffer.position(coordinateStart);
+        return weightPosition;
+    }
+
+    // 末尾不足 5 字节时，检查剩余字节中是否已有完整的 varint
+    private boolean hasCompleteVarint() {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if ((buffer.get(i) & 0x80) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 确保缓冲区中至少有 bytes 个未读字节，必要时从通道读取或扩大缓冲区
+     * @return 到达流末尾仍不足时返回 false
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        if (bytes > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes);
+            larger.put(buffer);
+            larger.flip();
+            buffer = larger;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes && !endOfStream) {
+            if (channel.read(buffer) < 0) {
+                endOfStream = true;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+}
@@ -0,0 +1,234 @@
+package com.k.minidoodle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 流式写入矢量文档
+ * 记录先编码到内部缓冲区，缓冲区将满或调用 {@link #flush} 时写入通道，
+ * 保存大文档时内存占用与文档大小无关。格式见 {@link DocumentFormat}。
+ */
+public class DocumentWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // 已写入颜色表的颜色及其编号
+    private final Map<Integer, Integer> colorIndices = new HashMap<>();
+    // 之后的笔画所属的图层，与读取方的初始状态一致
+    private int currentLayer;
+    // 上一条 TIMING 记录的起始时间，与读取方的初始状态一致
+    private long lastStartTime;
+
+    public DocumentWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * 写入文件头，新文件必须先调用
+     */
+    public void writeHeader() throws IOException {
+        ensureRemaining(DocumentFormat.HEADER_SIZE);
+        buffer.put(DocumentFormat.MAGIC);
+        buffer.put((byte) DocumentFormat.VERSION);
+        buffer.put((byte) 0);
+    }
+
+    /**
+     * 写入完整文档：文件头、图层表（只有默认图层时省略），加上前 count 条笔画
+     */
+    public void writeDocument(StrokeStore store, int count) throws IOException {
+        writeHeader();
+        if (!store.getLayers().isFlat()) {
+            writeLayers(store.getLayers());
+        }
+        for (int i = 0; i < count; i++) {
+            writeStroke(store, i);
+        }
+    }
+
+    /**
+     * 写入一条笔画，颜色第一次出现时先写入颜色表，有采样时间时随后写入 TIMING；擦除记录写为 ERASE
+     */
+    public void writeStroke(StrokeStore store, int stroke) throws IOException {
+        if (store.isErase(stroke)) {
+            writeErase(store, stroke);
+            return;
+        }
+        int color = store.getColor(stroke);
+        Integer colorIndex = colorIndices.get(color);
+        if (colorIndex == null) {
+            colorIndex = colorIndices.size();
+            colorIndices.put(color, colorIndex);
+            ensureRemaining(2 + 4);
+            buffer.put((byte) DocumentFormat.TAG_COLOR);
+            DocumentFormat.putVarint(buffer, 4);
+            buffer.putInt(color);
+        }
+        int layer = store.getLayer(stroke);
+        if (layer != currentLayer) {
+            currentLayer = layer;
+            ensureRemaining(1 + 1 + DocumentFormat.MAX_VARINT_SIZE);
+            buffer.put((byte) DocumentFormat.TAG_USE_LAYER);
+            DocumentFormat.putVarint(buffer, DocumentFormat.varintSize(layer));
+            DocumentFormat.putVarint(buffer, layer);
+        }
+
+        int orderOffset = stroke - store.getOrder(stroke);
+        if (orderOffset != 0 || store.isJoined(stroke)) {
+            int length = 1 + DocumentFormat.varintSize(orderOffset);
+            ensureRemaining(1 + 1 + length);
+            buffer.put((byte) DocumentFormat.TAG_FRAGMENT);
+            DocumentFormat.putVarint(buffer, length);
+            buffer.put((byte) (store.isJoined(stroke) ? DocumentFormat.FLAG_JOINED : 0));
+            DocumentFormat.putVarint(buffer, orderOffset);
+        }
+
+        int start = store.getPointStart(stroke);
+        int n = store.getPointCount(stroke);
+        int brush = store.getBrush(stroke);
+        boolean weighted = brush != Brush.PEN.id;
+        // 先按上限预留空间，写完负载后再回填实际长度
+        int maxPayload = DocumentFormat.MAX_VARINT_SIZE * 3 + 4
+                + n * (2 * DocumentFormat.MAX_VARINT_SIZE + 1);
+        ensureRemaining(1 + DocumentFormat.MAX_VARINT_SIZE + maxPayload);
+        buffer.put((byte) (weighted ? DocumentFormat.TAG_BRUSH_STROKE : DocumentFormat.TAG_STROKE));
+        int lengthPosition = buffer.position();
+        buffer.position(lengthPosition + DocumentFormat.MAX_VARINT_SIZE);
+        int payloadStart = buffer.position();
+
+        DocumentFormat.putVarint(buffer, colorIndex);
+        buffer.putFloat(store.getWidth(stroke));
+        if (weighted) {
+            DocumentFormat.putVarint(buffer, brush);
+        }
+        DocumentFormat.putVarint(buffer, n);
+        int lastX = 0;
+        int lastY = 0;
+        for (int i = start; i < start + n; i++) {
+            int x = DocumentFormat.quantize(store.getX(i));
+            int y = DocumentFormat.quantize(store.getY(i));
+            DocumentFormat.putVarint(buffer, DocumentFormat.zigzag(x - lastX));
+            DocumentFormat.putVarint(buffer, DocumentFormat.zigzag(y - lastY));
+            lastX = x;
+            lastY = y;
+        }
+        if (weighted) {
+            for (int i = start; i < start + n; i++) {
+                buffer.put((byte) Math.round(store.getWeight(i) * 255));
+            }
+        }
+        closeRecord(lengthPosition, payloadStart);
+        if (store.hasTime(stroke)) {
+            writeTiming(store, stroke);
+        }
+    }
+
+    private void writeTiming(StrokeStore store, int stroke) throws IOException {
+        int start = store.getPointStart(stroke);
+        int n = store.getPointCount(stroke);
+        long startTime = store.getStartTime(stroke);
+        ensureRemaining(1 + DocumentFormat.MAX_VARINT_SIZE + DocumentFormat.MAX_LONG_VARINT_SIZE
+                + DocumentFormat.MAX_VARINT_SIZE * (n + 1));
+        buffer.put((byte) DocumentFormat.TAG_TIMING);
+        int lengthPosition = buffer.position();
+        buffer.position(lengthPosition + DocumentFormat.MAX_VARINT_SIZE);
+        int payloadStart = buffer.position();
+        DocumentFormat.putVarLong(buffer, DocumentFormat.zigzag(startTime - lastStartTime));
+        lastStartTime = startTime;
+        DocumentFormat.putVarint(buffer, n);
+        int last = 0;
+        for (int i = start; i < start + n; i++) {
+            int offset = store.getTimeOffset(i);
+            DocumentFormat.putVarint(buffer, offset - last);
+            last = offset;
+        }
+        closeRecord(lengthPosition, payloadStart);
+    }
+
+    // 被擦笔画按相对下标写入，单独拷贝出来的擦除记录也能正确追加到日志
+    private void writeErase(StrokeStore store, int record) throws IOException {
+        int n = store.getErasureCount(record);
+        ensureRemaining(1 + DocumentFormat.MAX_VARINT_SIZE * (n + 2) + 1);
+        buffer.put((byte) DocumentFormat.TAG_ERASE);
+        int lengthPosition = buffer.position();
+        buffer.position(lengthPosition + DocumentFormat.MAX_VARINT_SIZE);
+        int payloadStart = buffer.position();
+        buffer.put((byte) (store.isJoined(record) ? DocumentFormat.FLAG_JOINED : 0));
+        DocumentFormat.putVarint(buffer, n);
+        for (int i = 0; i < n; i++) {
+            DocumentFormat.putVarint(buffer, record - store.getErasedStroke(record, i));
+        }
+        closeRecord(lengthPosition, payloadStart);
+    }
+
+    /**
+     * 写入全部图层的属性，读取时后写入的属性覆盖先前的
+     */
+    void writeLayers(LayerTable layers) throws IOException {
+        for (int i = 0; i < layers.size(); i++) {
+            int mode = layers.getBlendMode(i);
+            int length = DocumentFormat.varintSize(i) + 2 + DocumentFormat.varintSize(mode);
+            ensureRemaining(1 + 1 + length);
+            buffer.put((byte) DocumentFormat.TAG_LAYER);
+            DocumentFormat.putVarint(buffer, length);
+            DocumentFormat.putVarint(buffer, i);
+            buffer.put((byte) (layers.isVisible(i) ? 1 : 0));
+            buffer.put((byte) layers.getAlpha(i));
+            DocumentFormat.putVarint(buffer, mode);
+        }
+    }
+
+    /**
+     * 记录文档被截断为前 count 条笔画（撤销或清空）
+     */
+    public void writeTruncate(int count) throws IOException {
+        ensureRemaining(1 + 1 + DocumentFormat.MAX_VARINT_SIZE);
+        buffer.put((byte) DocumentFormat.TAG_TRUNCATE);
+        DocumentFormat.putVarint(buffer, DocumentFormat.varintSize(count));
+        DocumentFormat.putVarint(buffer, count);
+    }
+
+    /**
+     * 把缓冲区中的数据全部写入通道
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        if (buffer.capacity() > BUFFER_SIZE) {
+            // 超长笔画临时扩大的缓冲区用完即还原
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+    }
+
+    // 把预留的 5 字节长度字段改写为紧凑的 varint，负载前移
+    private void closeRecord(int lengthPosition, int payloadStart) {
+        int payloadEnd = buffer.position();
+        int length = payloadEnd - payloadStart;
+        buffer.position(lengthPosition);
+        DocumentFormat.putVarint(buffer, length);
+        int newPayloadStart = buffer.position();
+        if (newPayloadStart != payloadStart) {
+            byte[] array = buffer.array();
+            System.arraycopy(array, payloadStart, array, newPayloadStart, length);
+        }
+        buffer.position(newPayloadStart + length);
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        flush();
+        if (buffer.remaining() < bytes) {
+            buffer = ByteBuffer.allocate(bytes);
+        }
+    }
+}
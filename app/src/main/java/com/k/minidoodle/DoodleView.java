@@ -2,10 +2,11 @@
 package com.k.minidoodle;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
@@ -16,14 +17,20 @@ import android.view.View;
  */
 public class DoodleView extends View {
 
-    // 存储绘制内容的位图
-    private Bitmap bitmap;
-    // 位图对应的 Canvas
-    private Canvas bitmapCanvas;
+    // 存储绘制内容的分块画布，只在有墨迹的地方分配位图，尺寸变化时内容保留
+    private final TiledCanvas tiles = new TiledCanvas();
     // 绘制用的画笔
     private Paint paint;
     // 用于绘制连续线条的 Path 对象
     private Path drawPath;
+    // 流水线尚未处理完的最新一段，画在 drawPath 之后
+    private Path tailPath;
+    // 采集当前笔画的所有触摸采样点（含历史点）
+    private final StrokeCapture capture = new StrokeCapture();
+    // 复用的脏区域和 onDraw 裁剪区域
+    private final Rect dirtyRect = new Rect();
+    private final Rect clipBounds = new Rect();
+    private final RectF pathBounds = new RectF();
 
     /**
      * 构造方法
@@ -45,30 +52,29 @@ public class DoodleView extends View {
         paint.setStrokeWidth(10);
         paint.setStyle(Paint.Style.STROKE);
         paint.setAntiAlias(true);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
 
         // 初始化 Path 对象
         drawPath = new Path();
+        tailPath = new Path();
     }
 
     /**
-     * 当视图尺寸改变时创建用于绘制的位图和 Canvas，并填充白色背景
-     */
-    @Override
-    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-        bitmapCanvas = new Canvas(bitmap);
-        bitmapCanvas.drawColor(0xFFFFFFFF);  // 白色背景
-    }
-
-    /**
-     * 绘制方法，将位图显示在屏幕上，并绘制当前正在绘制的 Path
+     * 绘制方法，将已有内容显示在屏幕上，并绘制当前正在绘制的 Path
      */
     @Override
     protected void onDraw(Canvas canvas) {
-        // 先绘制已有的位图
-        canvas.drawBitmap(bitmap, 0, 0, null);
+        long start = System.nanoTime();
+        canvas.drawColor(0xFFFFFFFF);  // 白色背景
+        // 再贴上已有的内容，只贴与裁剪区域（即本次失效的脏区域）相交的块
+        if (canvas.getClipBounds(clipBounds)) {
+            tiles.draw(canvas, clipBounds);
+        }
         // 再绘制当前 Path（不提交到位图缓存中，等待抬起后提交）
         canvas.drawPath(drawPath, paint);
+        canvas.drawPath(tailPath, paint);
+        DrawingMetrics.getInstance().recordFrame(start, 0);
     }
 
     /**
@@ -80,44 +86,56 @@ public class DoodleView extends View {
     }
 
     /**
-     * 清空画布：清除位图中的内容并重置 Path
+     * 清空画布：释放所有块并重置 Path
      */
     public void clear() {
-        if (bitmapCanvas != null) {
-            bitmapCanvas.drawColor(0xFFFFFFFF);  // 重置为白色背景
-            drawPath.reset();
-            invalidate();
-        }
+        tiles.clear();
+        drawPath.reset();
+        tailPath.reset();
+        invalidate();
     }
 
     /**
      * 处理触摸事件，实现连续线条绘制
+     * 每个事件中合并的历史采样点都会被读取，快速划动时线条不会丢点；
+     * 采样点经过抽稀和平滑后才加入 Path
      */
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        float x = event.getX();
-        float y = event.getY();
+        long start = System.nanoTime();
+        boolean handled = handleTouchEvent(event);
+        DrawingMetrics.getInstance().touchTime.recordSince(start);
+        return handled;
+    }
 
+    private boolean handleTouchEvent(MotionEvent event) {
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
-                // 手指按下时重置 Path 并移动到起始位置
+                // 手指按下时重置 Path，第一个采样点作为起始位置
+                capture.reset();
                 drawPath.reset();
-                drawPath.moveTo(x, y);
-                invalidate();
-                return true;
+                capture.ingest(event, drawPath, tailPath);
+                break;
             case MotionEvent.ACTION_MOVE:
-                // 手指移动时把线条连接到当前点
-                drawPath.lineTo(x, y);
-                invalidate();
-                return true;
+                // 手指移动时把线条连接到本批所有采样点
+                capture.ingest(event, drawPath, tailPath);
+                break;
             case MotionEvent.ACTION_UP:
-                // 手指抬起时把当前 Path 绘制到位图上，然后重置 Path
-                bitmapCanvas.drawPath(drawPath, paint);
+                // 手指抬起时补上最后的采样点，把当前 Path 绘制到它覆盖的块上，然后重置 Path
+                capture.ingest(event, drawPath, tailPath);
+                capture.finish(drawPath, tailPath);
+                float pad = StrokePainter.inkPadding(paint.getStrokeWidth());
+                drawPath.computeBounds(pathBounds, true);
+                tiles.drawPath(drawPath, paint, pathBounds.left - pad, pathBounds.top - pad,
+                        pathBounds.right + pad, pathBounds.bottom + pad);
                 drawPath.reset();
-                invalidate();
-                return true;
+                break;
             default:
                 return false;
         }
+        // 只重绘发生变化的区域
+        capture.computeDirtyBounds(StrokePainter.inkPadding(paint.getStrokeWidth()), dirtyRect);
+        invalidate(dirtyRect);
+        return true;
     }
-}
\ No newline at end of file
+}
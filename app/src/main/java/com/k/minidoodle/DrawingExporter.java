@@ -0,0 +1,541 @@
+package com.k.minidoodle;
+
+import android.app.ActivityManager;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.pdf.PdfDocument;
+import android.media.MediaScannerConnection;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.MediaStore;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+
+/**
+ * 后台图片导出
+ * 光栅化、编码和文件写入都在单独的后台线程上执行，进度和结果回调到主线程，
+ * 导出期间用户可以继续绘制。格式、尺寸和裁剪见 {@link ExportOptions}，几何参数见 {@link ExportLayout}：
+ * 一般整幅光栅化后交给系统编码器；大图的 PNG 逐条光栅化并由 {@link PngStreamEncoder} 逐行编码，
+ * 内存占用与图片高度无关。导出位图从 {@link BitmapPool} 取用，连续保存时复用同一块内存。
+ * SVG 和 PDF 由 {@link StrokeVectorizer} 直接从笔画生成路径，不经过光栅化。
+ * 延时视频由 {@link TimelapseEncoder} 逐帧回放，用 {@link VideoFrameSink} 编码为 MP4；
+ * 设备没有合适的编码器时改用 {@link FrameSequenceWriter} 输出图片序列。
+ */
+class DrawingExporter {
+
+    /**
+     * 导出回调，全部在主线程调用
+     */
+    interface Callback {
+        /** @param percent 0 到 100 */
+        void onProgress(int percent);
+
+        /** @param location 保存位置的描述（Uri 或文件路径） */
+        void onComplete(String location);
+
+        void onError(Exception e);
+    }
+
+    // 光栅化占总进度的比例，其余为编码和写入
+    private static final int RASTER_PROGRESS = 80;
+    // 光栅化时每隔多少条笔画报告一次进度
+    private static final int PROGRESS_STEP = 256;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final Context context;
+    // 低内存设备上，不透明背景的导出改用每像素 2 字节的 RGB_565
+    private final boolean lowRamDevice;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "MiniDoodle-export");
+        }
+    });
+
+    DrawingExporter(Context context) {
+        this.context = context.getApplicationContext();
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        lowRamDevice = activityManager != null && activityManager.isLowRamDevice();
+    }
+
+    /**
+     * 按 requested 把快照保存到相册的 MiniDoodle 目录；设备不能编码延时视频时改存为图片序列
+     * @param baseName 不含扩展名的文件名，扩展名由格式决定
+     */
+    void export(final ExportSnapshot snapshot, final ExportOptions requested, final String baseName,
+                final Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                long start = System.nanoTime();
+                try {
+                    final ExportOptions options = resolveFormat(snapshot, requested);
+                    final String location = write(baseName + options.getExtension(), options,
+                            new Encoder() {
+                                @Override
+                                public void encode(OutputStream out) throws IOException {
+                                    DrawingExporter.this.encode(snapshot, options, out, callback);
+                                }
+                            });
+                    DrawingMetrics.getInstance().exportTime.recordSince(start);
+                    postProgress(callback, 100);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onComplete(location);
+                        }
+                    });
+                } catch (final Exception e) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onError(e);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * 不再接受新任务，已提交的导出会继续完成
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 在调用线程上光栅化快照（或生成矢量路径）并编码写入 out，不关闭 out
+     * @param callback 接收光栅化进度，可以为 null
+     */
+    void encode(ExportSnapshot snapshot, ExportOptions options, OutputStream out, @Nullable Callback callback)
+            throws IOException {
+        ExportLayout layout = ExportLayout.compute(snapshot.strokes, snapshot.width, snapshot.height, options);
+        if (options.isTimelapse()) {
+            encodeTimelapse(snapshot, options, layout, out, callback);
+        } else if (options.format == ExportOptions.FORMAT_SVG) {
+            encodeSvg(snapshot, layout, out);
+        } else if (options.format == ExportOptions.FORMAT_PDF) {
+            encodePdf(snapshot, layout, out);
+        } else if (layout.strips) {
+            encodeStrips(snapshot, layout, out, callback);
+        } else {
+            encodeBitmap(snapshot, options, layout, out, callback);
+        }
+    }
+
+    // 没有能编码该尺寸的视频编码器时，延时视频改为图片序列
+    private static ExportOptions resolveFormat(ExportSnapshot snapshot, ExportOptions options) {
+        if (options.format != ExportOptions.FORMAT_TIMELAPSE) {
+            return options;
+        }
+        ExportLayout layout = ExportLayout.compute(snapshot.strokes, snapshot.width, snapshot.height, options);
+        return VideoFrameSink.isSupported(videoSize(layout.width), videoSize(layout.height))
+                ? options : options.withFormat(ExportOptions.FORMAT_FRAME_SEQUENCE);
+    }
+
+    // 视频编码器要求宽高为偶数，多出的一行或一列裁掉
+    private static int videoSize(int size) {
+        return Math.max(2, size & ~1);
+    }
+
+    /**
+     * 把导出内容编码后写入输出流
+     */
+    private interface Encoder {
+        void encode(OutputStream out) throws IOException;
+    }
+
+    // 整幅光栅化后交给系统编码器
+    private void encodeBitmap(ExportSnapshot snapshot, ExportOptions options, ExportLayout layout,
+                              OutputStream out, @Nullable Callback callback) throws IOException {
+        // 背景不透明时结果不需要透明度，低内存设备上用 RGB_565 减半内存，代价是颜色精度
+        boolean opaque = Color.alpha(snapshot.backgroundColor) == 0xFF || !options.supportsAlpha();
+        Bitmap.Config config = lowRamDevice && opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapPool.getInstance().obtain(layout.width, layout.height, config);
+        try {
+            Canvas canvas = new Canvas(bitmap);
+            canvas.drawColor(snapshot.backgroundColor);
+            canvas.scale(layout.scale, layout.scale);
+            canvas.translate(-layout.left, -layout.top);
+            drawStrokes(canvas, snapshot.strokes, null, callback);
+            // 无损 WebP 的质量参数表示压缩力度
+            int quality = options.format == ExportOptions.FORMAT_WEBP_LOSSLESS ? 100 : options.quality;
+            if (!bitmap.compress(compressFormat(options.format), quality, out)) {
+                throw new IOException("图片编码失败");
+            }
+        } finally {
+            BitmapPool.getInstance().release(bitmap);
+        }
+    }
+
+    // 逐条光栅化并逐行编码为 PNG，只持有一条的位图；每条只绘制空间索引中与它相交的笔画
+    private void encodeStrips(ExportSnapshot snapshot, ExportLayout layout, OutputStream out,
+                              @Nullable Callback callback) throws IOException {
+        StrokeStore strokes = snapshot.strokes;
+        SpatialGrid index = new SpatialGrid(TiledCanvas.TILE_SIZE);
+        for (int i = 0; i < strokes.size(); i++) {
+            float pad = StrokePainter.inkPadding(strokes.getWidth(i));
+            index.insert(i, strokes.getLeft(i) - pad, strokes.getTop(i) - pad,
+                    strokes.getRight(i) + pad, strokes.getBottom(i) + pad);
+        }
+        IntList visible = new IntList();
+        int[] row = new int[layout.width];
+        boolean alpha = Color.alpha(snapshot.backgroundColor) != 0xFF;
+        Bitmap strip = BitmapPool.getInstance().obtain(layout.width, ExportLayout.STRIP_HEIGHT,
+                Bitmap.Config.ARGB_8888);
+        try (PngStreamEncoder encoder = new PngStreamEncoder(out, layout.width, layout.height, alpha,
+                Deflater.DEFAULT_COMPRESSION)) {
+            Canvas canvas = new Canvas(strip);
+            int count = layout.getStripCount();
+            for (int i = 0; i < count; i++) {
+                int stripTop = layout.getStripTop(i);
+                int stripHeight = layout.getStripHeight(i);
+                strip.eraseColor(snapshot.backgroundColor);
+                int save = canvas.save();
+                canvas.translate(0, -stripTop);
+                canvas.scale(layout.scale, layout.scale);
+                canvas.translate(-layout.left, -layout.top);
+                index.query(layout.left, layout.toDocumentY(stripTop),
+                        layout.left + layout.width / layout.scale, layout.toDocumentY(stripTop + stripHeight),
+                        visible);
+                drawStrokes(canvas, strokes, visible, null);
+                canvas.restoreToCount(save);
+                for (int y = 0; y < stripHeight; y++) {
+                    strip.getPixels(row, 0, layout.width, 0, y, layout.width, 1);
+                    encoder.writeRow(row, 0);
+                }
+                postProgress(callback, (i + 1) * 99 / count);
+            }
+            encoder.finish();
+        } finally {
+            BitmapPool.getInstance().release(strip);
+        }
+    }
+
+    // MediaMuxer 只能写文件：先编码到缓存目录的临时文件，再拷贝到输出流
+    private void encodeTimelapse(ExportSnapshot snapshot, ExportOptions options, ExportLayout layout,
+                                 OutputStream out, @Nullable final Callback callback) throws IOException {
+        int width = videoSize(layout.width);
+        int height = videoSize(layout.height);
+        TimelapseEncoder.FrameListener listener = new TimelapseEncoder.FrameListener() {
+            private int reported = -1;
+
+            @Override
+            public void onFrame(int frame, int frameCount) {
+                int percent = (int) ((long) frame * RASTER_PROGRESS / frameCount);
+                if (percent != reported) {
+                    reported = percent;
+                    postProgress(callback, percent);
+                }
+            }
+        };
+        if (options.format == ExportOptions.FORMAT_FRAME_SEQUENCE) {
+            try (FrameSequenceWriter writer = new FrameSequenceWriter(out, width, height,
+                    TimelapseEncoder.FRAME_RATE)) {
+                TimelapseEncoder.encode(snapshot, layout, width, height, writer, listener);
+            }
+            return;
+        }
+        File video = File.createTempFile("timelapse", ".mp4", context.getCacheDir());
+        try {
+            try (VideoFrameSink sink = new VideoFrameSink(video, width, height, TimelapseEncoder.FRAME_RATE,
+                    TimelapseEncoder.bitRate(width, height))) {
+                TimelapseEncoder.encode(snapshot, layout, width, height, sink, listener);
+            }
+            try (FileInputStream in = new FileInputStream(video)) {
+                byte[] buffer = new byte[OUTPUT_BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        } finally {
+            video.delete();
+        }
+    }
+
+    // 路径边生成边写出，内存占用与笔画数无关
+    private static void encodeSvg(ExportSnapshot snapshot, ExportLayout layout, OutputStream out) throws IOException {
+        SvgWriter writer = new SvgWriter(out, layout.width, layout.height, snapshot.backgroundColor);
+        new StrokeVectorizer(layout.left, layout.top, layout.scale).write(snapshot.strokes, writer);
+        writer.finish();
+    }
+
+    // 单页 PDF，1 个输出像素对应 1 点。PdfDocument 在 finishPage 时序列化页面，路径合并后页面内容小得多
+    private static void encodePdf(ExportSnapshot snapshot, ExportLayout layout, OutputStream out) throws IOException {
+        PdfDocument document = new PdfDocument();
+        try {
+            PdfDocument.Page page = document.startPage(
+                    new PdfDocument.PageInfo.Builder(layout.width, layout.height, 1).create());
+            Canvas canvas = page.getCanvas();
+            canvas.drawColor(snapshot.backgroundColor);
+            // 与光栅导出一致：有多个图层时先在透明底上合成，再整体叠到背景上
+            int save = snapshot.strokes.getLayers().isFlat() ? canvas.save() : canvas.saveLayer(null, null);
+            canvas.scale(1f / StrokeVectorizer.QUANTUM, 1f / StrokeVectorizer.QUANTUM);
+            new StrokeVectorizer(layout.left, layout.top, layout.scale)
+                    .write(snapshot.strokes, new CanvasPathSink(canvas));
+            canvas.restoreToCount(save);
+            document.finishPage(page);
+            document.writeTo(out);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * 按顺序绘制笔画，ids 为 null 时绘制全部并报告光栅化进度，否则只绘制 ids 中的笔画。
+     * 与屏幕显示一致：有多个图层时，图层先在透明底上逐层合成，再整体叠到背景上
+     */
+    private void drawStrokes(Canvas canvas, StrokeStore strokes, @Nullable IntList ids,
+                             @Nullable Callback callback) {
+        StrokePainter painter = new StrokePainter();
+        int count = ids == null ? strokes.size() : ids.size();
+        LayerTable layers = strokes.getLayers();
+        if (layers.isFlat()) {
+            for (int start = 0; start < count; start += PROGRESS_STEP) {
+                int end = Math.min(start + PROGRESS_STEP, count);
+                drawBatch(painter, canvas, strokes, ids, start, end, -1);
+                if (ids == null) {
+                    postProgress(callback, (int) ((long) end * RASTER_PROGRESS / count));
+                }
+            }
+            return;
+        }
+        int visibleLayers = 0;
+        for (int layer = 0; layer < layers.size(); layer++) {
+            if (layers.isVisible(layer)) {
+                visibleLayers++;
+            }
+        }
+        long total = (long) count * Math.max(visibleLayers, 1);
+        long done = 0;
+        Paint layerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        int outer = canvas.saveLayer(null, null);
+        for (int layer = 0; layer < layers.size(); layer++) {
+            if (!layers.isVisible(layer)) {
+                continue;
+            }
+            boolean isolated = !layers.isPlain(layer);
+            if (isolated) {
+                StrokePainter.configureLayerPaint(layerPaint, layers, layer);
+                canvas.saveLayer(null, layerPaint);
+            }
+            for (int start = 0; start < count; start += PROGRESS_STEP) {
+                int end = Math.min(start + PROGRESS_STEP, count);
+                drawBatch(painter, canvas, strokes, ids, start, end, layer);
+                if (ids == null) {
+                    postProgress(callback, (int) ((done + end) * RASTER_PROGRESS / total));
+                }
+            }
+            done += count;
+            if (isolated) {
+                canvas.restore();
+            }
+        }
+        canvas.restoreToCount(outer);
+    }
+
+    // 绘制第 [start, end) 条（ids 不为 null 时为 ids 中的这一段）；layer 为 -1 时不按图层筛选
+    private static void drawBatch(StrokePainter painter, Canvas canvas, StrokeStore strokes, @Nullable IntList ids,
+                                  int start, int end, int layer) {
+        if (ids == null) {
+            if (layer < 0) {
+                painter.drawRange(canvas, strokes, start, end);
+            } else {
+                painter.drawRange(canvas, strokes, start, end, layer);
+            }
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            int stroke = ids.get(i);
+            if (layer < 0 || strokes.getLayer(stroke) == layer) {
+                painter.draw(canvas, strokes, stroke);
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat compressFormat(int format) {
+        boolean api30 = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R;
+        switch (format) {
+            case ExportOptions.FORMAT_WEBP_LOSSLESS:
+                // Android 11 之前没有无损 WebP，质量 100 的 WEBP 最接近
+                return api30 ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP;
+            case ExportOptions.FORMAT_WEBP_LOSSY:
+                return api30 ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+            case ExportOptions.FORMAT_JPEG:
+                return Bitmap.CompressFormat.JPEG;
+            default:
+                return Bitmap.CompressFormat.PNG;
+        }
+    }
+
+    // 图片保存到相册的 Pictures/MiniDoodle，视频保存到 Movies/MiniDoodle，
+    // PDF 和图片序列不属于媒体，保存到 Documents/MiniDoodle
+    private String write(String fileName, ExportOptions options, Encoder encoder) throws IOException {
+        String mimeType = options.getMimeType();
+        boolean video = options.format == ExportOptions.FORMAT_TIMELAPSE;
+        boolean document = options.format == ExportOptions.FORMAT_PDF
+                || options.format == ExportOptions.FORMAT_FRAME_SEQUENCE;
+        String directory = video ? Environment.DIRECTORY_MOVIES
+                : document ? Environment.DIRECTORY_DOCUMENTS : Environment.DIRECTORY_PICTURES;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // Android 10及以上使用MediaStore，写完之前标记为 pending，避免相册读到半个文件
+            ContentResolver resolver = context.getContentResolver();
+            ContentValues values = new ContentValues();
+            values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
+            values.put(MediaStore.MediaColumns.MIME_TYPE, mimeType);
+            values.put(MediaStore.MediaColumns.RELATIVE_PATH, directory + "/MiniDoodle");
+            values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+
+            Uri collection = video ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI
+                    : document ? MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL)
+                    : MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+            Uri uri = resolver.insert(collection, values);
+            if (uri == null) {
+                throw new IOException("无法创建媒体文件");
+            }
+            try (OutputStream os = resolver.openOutputStream(uri)) {
+                if (os == null) {
+                    throw new IOException("无法打开媒体文件");
+                }
+                encodeBuffered(encoder, os);
+            } catch (IOException | RuntimeException e) {
+                resolver.delete(uri, null, null);
+                throw e;
+            }
+            values.clear();
+            values.put(MediaStore.MediaColumns.IS_PENDING, 0);
+            resolver.update(uri, values, null, null);
+            return uri.toString();
+        } else {
+            // Android 9及以下使用传统文件存储
+            File publicDir = Environment.getExternalStoragePublicDirectory(directory);
+            File miniDoodleDir = new File(publicDir, "MiniDoodle");
+            if (!miniDoodleDir.exists()) {
+                miniDoodleDir.mkdirs();
+            }
+
+            File file = new File(miniDoodleDir, fileName);
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                encodeBuffered(encoder, fos);
+            }
+            // 通知图库更新；矢量文件和视频不能解码为位图，只交给媒体扫描
+            if (!options.isImage()) {
+                MediaScannerConnection.scanFile(context, new String[]{file.getAbsolutePath()},
+                        new String[]{mimeType}, null);
+            } else {
+                MediaStore.Images.Media.insertImage(context.getContentResolver(), file.getAbsolutePath(), fileName,
+                        null);
+            }
+            return file.getAbsolutePath();
+        }
+    }
+
+    // 逐行编码写出的是很多小块，经缓冲后再写入文件
+    private static void encodeBuffered(Encoder encoder, OutputStream out) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+        encoder.encode(buffered);
+        buffered.flush();
+    }
+
+    private void postProgress(@Nullable final Callback callback, final int percent) {
+        if (callback == null) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onProgress(percent);
+            }
+        });
+    }
+
+    /**
+     * 把矢量路径画到 Canvas 上，用于 PDF 页面；坐标是量化单位，画布已预先缩小 QUANTUM 倍
+     */
+    private static class CanvasPathSink implements StrokeVectorizer.Sink {
+        private final Canvas canvas;
+        private final Path path = new Path();
+        private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final Paint layerPaint = new Paint();
+        private Paint pathPaint;
+
+        CanvasPathSink(Canvas canvas) {
+            this.canvas = canvas;
+            strokePaint.setStyle(Paint.Style.STROKE);
+            strokePaint.setStrokeCap(Paint.Cap.ROUND);
+            strokePaint.setStrokeJoin(Paint.Join.ROUND);
+            fillPaint.setStyle(Paint.Style.FILL);
+        }
+
+        @Override
+        public void beginLayer(LayerTable layers, int layer) {
+            StrokePainter.configureLayerPaint(layerPaint, layers, layer);
+            canvas.saveLayer(null, layerPaint);
+        }
+
+        @Override
+        public void endLayer() {
+            canvas.restore();
+        }
+
+        @Override
+        public void beginPath(int style, int color, int width) {
+            path.rewind();
+            pathPaint = style == StrokeVectorizer.STYLE_STROKE ? strokePaint : fillPaint;
+            pathPaint.setColor(color);
+            pathPaint.setStrokeWidth(width);
+        }
+
+        @Override
+        public void moveTo(int x, int y) {
+            path.moveTo(x, y);
+        }
+
+        @Override
+        public void lineTo(int x, int y) {
+            path.lineTo(x, y);
+        }
+
+        @Override
+        public void closePath() {
+            path.close();
+        }
+
+        @Override
+        public void circle(int x, int y, int radius) {
+            path.addCircle(x, y, radius, Path.Direction.CW);
+        }
+
+        @Override
+        public void endPath() {
+            canvas.drawPath(path, pathPaint);
+        }
+    }
+}
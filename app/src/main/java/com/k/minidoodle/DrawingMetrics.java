@@ -0,0 +1,116 @@
+package com.k.minidoodle;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 绘图性能指标
+ * 进程内唯一的一组直方图和计数器，绘制、触摸、导出等路径直接记录，代码中可随时查询，
+ * 也可以输出为文本写入日志或文件。记录只使用原子变量，不加锁也不分配对象。
+ */
+public class DrawingMetrics {
+
+    private static final DrawingMetrics INSTANCE = new DrawingMetrics();
+
+    /** onDraw 耗时 */
+    public final LatencyHistogram drawTime = new LatencyHistogram("draw", "ns");
+    /** onTouchEvent 处理耗时 */
+    public final LatencyHistogram touchTime = new LatencyHistogram("touch", "ns");
+    /** 触摸事件发生到随后一次 onDraw（使用湿墨层时为画到前缓冲区）的延迟 */
+    public final LatencyHistogram touchToDrawLatency = new LatencyHistogram("touch-to-draw", "ns");
+    /** 一次导出从开始到完成的耗时 */
+    public final LatencyHistogram exportTime = new LatencyHistogram("export", "ns");
+    /** 抬笔后识别一条笔画形状的耗时 */
+    public final LatencyHistogram shapeTime = new LatencyHistogram("shape", "ns");
+    /** 每次笔画变化后，笔画数据和光栅缓存占用的内存 */
+    public final LatencyHistogram historyBytes = new LatencyHistogram("history-memory", "bytes");
+
+    // 最近一次记录时的可见笔画数
+    private final AtomicLong strokeCount = new AtomicLong();
+    private final AtomicLong framesDrawn = new AtomicLong();
+
+    public static DrawingMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 记录一次绘制：耗时，以及有未显示的触摸时从触摸到本次绘制的延迟
+     * @param touchNanos 尚未显示的最早触摸时间（System.nanoTime 时基），没有时传 0
+     */
+    public void recordFrame(long startNanos, long touchNanos) {
+        long now = System.nanoTime();
+        drawTime.record(now - startNanos);
+        if (touchNanos != 0) {
+            touchToDrawLatency.record(now - touchNanos);
+        }
+        framesDrawn.incrementAndGet();
+    }
+
+    /**
+     * 记录笔画变化后的状态
+     */
+    public void recordHistory(int strokes, long bytes) {
+        strokeCount.set(strokes);
+        historyBytes.record(bytes);
+    }
+
+    public long getStrokeCount() {
+        return strokeCount.get();
+    }
+
+    public long getFramesDrawn() {
+        return framesDrawn.get();
+    }
+
+    public void reset() {
+        drawTime.reset();
+        touchTime.reset();
+        touchToDrawLatency.reset();
+        exportTime.reset();
+        shapeTime.reset();
+        historyBytes.reset();
+        strokeCount.set(0);
+        framesDrawn.set(0);
+    }
+
+    /**
+     * 输出所有指标的文本报告：每个直方图一行，包括次数、平均值、P50/P90/P99 和最大值
+     */
+    public void dump(PrintWriter out) {
+        out.printf(Locale.US, "strokes=%d frames=%d%n", strokeCount.get(), framesDrawn.get());
+        dump(out, drawTime);
+        dump(out, touchTime);
+        dump(out, touchToDrawLatency);
+        dump(out, exportTime);
+        dump(out, shapeTime);
+        dump(out, historyBytes);
+        out.flush();
+    }
+
+    /**
+     * 把报告写入文件，覆盖原有内容
+     */
+    public void dump(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            dump(out);
+        }
+    }
+
+    private static void dump(PrintWriter out, LatencyHistogram histogram) {
+        boolean nanos = "ns".equals(histogram.getUnit());
+        // 时间统一换算为毫秒输出
+        double scale = nanos ? 1e-6 : 1;
+        String unit = nanos ? "ms" : histogram.getUnit();
+        out.printf(Locale.US, "%-16s n=%-8d mean=%.3f p50=%.3f p90=%.3f p99=%.3f max=%.3f %s%n",
+                histogram.getName(), histogram.getCount(),
+                histogram.getMean() * scale,
+                histogram.getPercentile(50) * scale,
+                histogram.getPercentile(90) * scale,
+                histogram.getPercentile(99) * scale,
+                histogram.getMax() * scale, unit);
+    }
+}
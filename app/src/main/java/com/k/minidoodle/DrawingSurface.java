@@ -0,0 +1,93 @@
+package com.k.minidoodle;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 画布的绘图接口，所有方法都在主线程调用
+ * {@link PaintView} 在主线程的 onDraw 中合成；{@link SurfacePaintView} 只在主线程入队，
+ * 由专用渲染线程合成。两者可以在布局中互换。
+ */
+interface DrawingSurface {
+
+    /**
+     * 接管 state 中保存的画布状态，在设置其他状态和处理触摸之前调用一次。
+     * 配置变化后重建的画布由此继续显示原来的内容和撤销历史
+     */
+    void attachState(DrawingViewModel state);
+
+    void setPathColor(int color);
+
+    /**
+     * 设置之后笔画使用的笔刷，已完成的笔画不受影响
+     */
+    void setBrush(Brush brush);
+
+    /**
+     * 设置之后笔画的名义线宽，实际线宽由笔刷按权重缩放
+     */
+    void setStrokeWidth(float width);
+
+    /**
+     * 图层表的拷贝，修改拷贝不影响画布
+     */
+    LayerTable copyLayers();
+
+    /**
+     * 更新图层属性，可以在末尾追加图层，不能删除
+     */
+    void setLayers(LayerTable layers);
+
+    /**
+     * 设置之后笔画所在的图层，橡皮也只擦除该图层
+     */
+    void setCurrentLayer(int layer);
+
+    /**
+     * 切换橡皮：{@link StrokeEraser#MODE_OFF} 为绘画，其余模式下触摸改为擦除当前图层
+     */
+    void setEraserMode(int mode);
+
+    /**
+     * 开关形状识别：开启后每条笔画抬起时识别是否为直线、折线、椭圆或矩形（见 {@link ShapeRecognizer}），
+     * 是则换成规整的形状；识别不在主线程上进行，已完成的笔画不受影响
+     */
+    void setShapeRecognition(boolean enabled);
+
+    /**
+     * 开关套索模式：开启后触摸改为圈选当前图层上已完成的笔画并拖动选区；{@link PaintView} 还支持双指缩放和旋转选区。
+     * 每次变换抬起时提交为一次可撤销的编辑（见 {@link StrokeLayer#beginTransform}），关闭时取消选择
+     */
+    void setLassoMode(boolean enabled);
+
+    /**
+     * 系统内存紧张时释放可以重建的缓存，level 为 onTrimMemory 的级别
+     */
+    void trimMemory(int level);
+
+    void undo();
+
+    void redo();
+
+    void clear();
+
+    void setDocumentListener(@Nullable PaintView.DocumentListener listener);
+
+    /**
+     * 用载入的文档替换当前内容，撤销历史随之清空
+     */
+    void loadDocument(StrokeStore document);
+
+    /**
+     * 拷贝当前可见的笔画，拷贝可以交给其他线程
+     */
+    StrokeStore copyVisibleStrokes();
+
+    /**
+     * 拷贝可见笔画和画布参数，供后台导出使用
+     */
+    ExportSnapshot createExportSnapshot();
+
+    int getWidth();
+
+    int getHeight();
+}
@@ -0,0 +1,219 @@
+package com.k.minidoodle;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.ViewModel;
+
+import java.io.File;
+
+/**
+ * 画布状态的持有者，生命周期跨越旋转、分屏调整大小等配置变化
+ * 笔画、撤销历史和分块光栅缓存都放在这里而不是 View 中，重建的画布直接接管，不需要重新光栅化。
+ * 进程被杀后由自动保存日志流式恢复笔画，工具设置和视口由 Activity 的 saved state 恢复。
+ * 后台导出也由这里发起，进度和结果转交给当前 Activity 设置的回调；重建期间没有回调时暂存结果，
+ * 后台任务不会持有已销毁的 Activity 或它的 View。
+ * 所有方法都在主线程调用。
+ */
+public class DrawingViewModel extends ViewModel {
+
+    // PaintView 的已完成笔画和视口
+    private final StrokeLayer strokeLayer = new StrokeLayer();
+    private final Viewport viewport = new Viewport();
+    // SurfacePaintView 在主线程上的记录镜像，画布重建时交给新的渲染线程
+    private final StrokeStore surfaceRecords = new StrokeStore();
+
+    private DocumentAutosaver autosaver;
+    // 日志已读出、尚未交给画布的文档
+    @Nullable
+    private StrokeStore pendingDocument;
+    @Nullable
+    private DocumentAutosaver.LoadCallback loadCallback;
+    // 载入的文档已交给画布，自动保存已经开始
+    private boolean autosaveStarted;
+    // 本实例是否已有画布接管过状态；为 false 时说明是新启动或进程被杀后恢复
+    private boolean attached;
+
+    @Nullable
+    private DrawingExporter exporter;
+    @Nullable
+    private DrawingExporter.Callback exportCallback;
+    // 最近一次导出的选项，还没有导出过时为 null
+    @Nullable
+    private ExportOptions exportOptions;
+    private boolean exportRunning;
+    private int exportProgress;
+    // 导出已结束、结果尚未交给回调
+    private boolean exportResultPending;
+    @Nullable
+    private String exportLocation;
+    @Nullable
+    private Exception exportError;
+
+    StrokeLayer getStrokeLayer() {
+        return strokeLayer;
+    }
+
+    Viewport getViewport() {
+        return viewport;
+    }
+
+    StrokeStore getSurfaceRecords() {
+        return surfaceRecords;
+    }
+
+    /**
+     * 标记画布已接管状态
+     * @return 之前是否已经接管过，即这次是配置变化后的重建
+     */
+    boolean markAttached() {
+        boolean restored = attached;
+        attached = true;
+        return restored;
+    }
+
+    /**
+     * 第一次调用时在后台读取自动保存日志，之后的调用不再读取
+     */
+    void loadAutosave(File file) {
+        if (autosaver != null) {
+            return;
+        }
+        autosaver = new DocumentAutosaver(file);
+        autosaver.load(new DocumentAutosaver.LoadCallback() {
+            @Override
+            public void onLoaded(StrokeStore document) {
+                if (loadCallback != null) {
+                    loadCallback.onLoaded(document);
+                } else {
+                    // 读取期间 Activity 正在重建，留给下一个设置回调的 Activity
+                    pendingDocument = document;
+                }
+            }
+        });
+    }
+
+    /**
+     * 设置载入完成的回调；日志已经读出时立即回调。传 null 取消。
+     * 回调中应把文档交给画布并调用 {@link #startAutosave}
+     */
+    void setLoadCallback(@Nullable DocumentAutosaver.LoadCallback callback) {
+        loadCallback = callback;
+        if (callback != null && pendingDocument != null) {
+            StrokeStore document = pendingDocument;
+            pendingDocument = null;
+            callback.onLoaded(document);
+        }
+    }
+
+    /**
+     * 以 document 为基准开始追加保存，document 交出后不应再修改
+     */
+    void startAutosave(StrokeStore document) {
+        autosaver.start(document);
+        autosaveStarted = true;
+    }
+
+    /**
+     * 自动保存是否已经开始，开始后画布的文档变化应交给 {@link #getAutosaver}
+     */
+    boolean isAutosaveStarted() {
+        return autosaveStarted;
+    }
+
+    DocumentAutosaver getAutosaver() {
+        return autosaver;
+    }
+
+    /**
+     * 在后台导出快照，见 {@link DrawingExporter#export}；进度和结果交给 {@link #setExportCallback} 设置的回调
+     * @param context 只用来取 Application
+     */
+    void export(Context context, ExportSnapshot snapshot, ExportOptions options, String baseName) {
+        if (exporter == null) {
+            exporter = new DrawingExporter(context);
+        }
+        exportOptions = options;
+        exportRunning = true;
+        exportProgress = 0;
+        exportResultPending = false;
+        exporter.export(snapshot, options, baseName, new DrawingExporter.Callback() {
+            @Override
+            public void onProgress(int percent) {
+                exportProgress = percent;
+                if (exportCallback != null) {
+                    exportCallback.onProgress(percent);
+                }
+            }
+
+            @Override
+            public void onComplete(String location) {
+                finishExport(location, null);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                finishExport(null, e);
+            }
+        });
+    }
+
+    /**
+     * 最近一次导出的选项，回调中据此描述结果；还没有导出过时为 null
+     */
+    @Nullable
+    ExportOptions getExportOptions() {
+        return exportOptions;
+    }
+
+    /**
+     * 设置导出回调，Activity 销毁时传 null。导出正在进行时立即回调当前进度，
+     * 之前没有回调期间结束的导出立即回调结果
+     */
+    void setExportCallback(@Nullable DrawingExporter.Callback callback) {
+        exportCallback = callback;
+        if (callback == null) {
+            return;
+        }
+        if (exportRunning) {
+            callback.onProgress(exportProgress);
+        } else if (exportResultPending) {
+            deliverExportResult();
+        }
+    }
+
+    private void finishExport(@Nullable String location, @Nullable Exception error) {
+        exportRunning = false;
+        exportResultPending = true;
+        exportLocation = location;
+        exportError = error;
+        deliverExportResult();
+    }
+
+    private void deliverExportResult() {
+        if (exportCallback == null) {
+            return;
+        }
+        exportResultPending = false;
+        if (exportError != null) {
+            exportCallback.onError(exportError);
+        } else {
+            exportCallback.onComplete(exportLocation);
+        }
+        exportLocation = null;
+        exportError = null;
+    }
+
+    @Override
+    protected void onCleared() {
+        loadCallback = null;
+        exportCallback = null;
+        if (autosaver != null) {
+            autosaver.close();
+        }
+        if (exporter != null) {
+            // 已开始的导出会在后台继续完成
+            exporter.shutdown();
+        }
+    }
+}
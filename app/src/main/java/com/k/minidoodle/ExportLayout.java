@@ -0,0 +1,108 @@
+package com.k.minidoodle;
+
+/**
+ * 导出图片的几何参数：导出的文档区域、缩放比例、输出尺寸，以及逐条光栅化时每条的高度
+ * 由快照和 {@link ExportOptions} 计算，不依赖 Android。
+ * 裁剪到笔画范围时按笔画包围盒加墨迹宽度求并集，再留出边距；隐藏图层上的笔画不计入。
+ * 大图用 PNG 导出时逐条光栅化和编码；只能整幅编码的格式在输出像素超过上限时自动缩小，
+ * 避免导出超大画布时一次分配过多内存。矢量格式不缩小，输出尺寸即页面尺寸。
+ */
+final class ExportLayout {
+
+    /** 裁剪到笔画范围时四周留出的边距（文档像素） */
+    static final int CROP_MARGIN = 16;
+    /** 逐条光栅化时每条的高度（输出像素） */
+    static final int STRIP_HEIGHT = 256;
+    /** 整幅编码时输出图片最多的像素数，ARGB_8888 约 64MB */
+    static final long MAX_BITMAP_PIXELS = 16L * 1024 * 1024;
+    /** 可以逐条编码的格式超过这个像素数（ARGB_8888 约 16MB）时逐条编码，更小的图交给系统编码器 */
+    static final long STREAM_PIXELS = 4L * 1024 * 1024;
+
+    /** 导出区域左上角的文档坐标 */
+    final float left;
+    final float top;
+    /** 文档坐标到输出像素的缩放比例 */
+    final float scale;
+    /** 输出图片的尺寸 */
+    final int width;
+    final int height;
+    /** 是否逐条光栅化和编码 */
+    final boolean strips;
+
+    ExportLayout(float left, float top, float scale, int width, int height, boolean strips) {
+        this.left = left;
+        this.top = top;
+        this.scale = scale;
+        this.width = width;
+        this.height = height;
+        this.strips = strips;
+    }
+
+    /**
+     * @param strokes 要导出的笔画（快照中的可见笔画）
+     * @param canvasWidth 不裁剪时导出的画布宽度（文档像素）
+     */
+    static ExportLayout compute(StrokeStore strokes, int canvasWidth, int canvasHeight, ExportOptions options) {
+        float left = 0;
+        float top = 0;
+        float right = canvasWidth;
+        float bottom = canvasHeight;
+        if (options.cropToContent) {
+            float contentLeft = Float.POSITIVE_INFINITY;
+            float contentTop = Float.POSITIVE_INFINITY;
+            float contentRight = Float.NEGATIVE_INFINITY;
+            float contentBottom = Float.NEGATIVE_INFINITY;
+            LayerTable layers = strokes.getLayers();
+            for (int i = 0; i < strokes.size(); i++) {
+                if (strokes.getPointCount(i) == 0 || !layers.isVisible(strokes.getLayer(i))) {
+                    continue;
+                }
+                float pad = StrokePainter.inkPadding(strokes.getWidth(i));
+                contentLeft = Math.min(contentLeft, strokes.getLeft(i) - pad);
+                contentTop = Math.min(contentTop, strokes.getTop(i) - pad);
+                contentRight = Math.max(contentRight, strokes.getRight(i) + pad);
+                contentBottom = Math.max(contentBottom, strokes.getBottom(i) + pad);
+            }
+            // 没有笔画时仍导出整个画布
+            if (contentLeft <= contentRight) {
+                left = (float) Math.floor(contentLeft) - CROP_MARGIN;
+                top = (float) Math.floor(contentTop) - CROP_MARGIN;
+                right = (float) Math.ceil(contentRight) + CROP_MARGIN;
+                bottom = (float) Math.ceil(contentBottom) + CROP_MARGIN;
+            }
+        }
+        float regionWidth = Math.max(1, right - left);
+        float regionHeight = Math.max(1, bottom - top);
+        float scale = 1f;
+        if (options.maxSize > 0) {
+            scale = Math.min(scale, options.maxSize / Math.max(regionWidth, regionHeight));
+        }
+        if (!options.canStream() && !options.isVector() && (double) regionWidth * regionHeight * scale * scale > MAX_BITMAP_PIXELS) {
+            scale = (float) Math.sqrt(MAX_BITMAP_PIXELS / ((double) regionWidth * regionHeight));
+        }
+        int width = Math.max(1, (int) Math.floor(regionWidth * scale));
+        int height = Math.max(1, (int) Math.floor(regionHeight * scale));
+        boolean strips = options.canStream() && (long) width * height > STREAM_PIXELS;
+        return new ExportLayout(left, top, scale, width, height, strips);
+    }
+
+    /** 逐条光栅化时的条数 */
+    int getStripCount() {
+        return strips ? (height + STRIP_HEIGHT - 1) / STRIP_HEIGHT : 1;
+    }
+
+    /** 第 i 条的首行 */
+    int getStripTop(int i) {
+        return strips ? i * STRIP_HEIGHT : 0;
+    }
+
+    /** 第 i 条的行数 */
+    int getStripHeight(int i) {
+        return strips ? Math.min(STRIP_HEIGHT, height - i * STRIP_HEIGHT) : height;
+    }
+
+    /** 输出像素 y 对应的文档纵坐标 */
+    float toDocumentY(float y) {
+        return top + y / scale;
+    }
+}
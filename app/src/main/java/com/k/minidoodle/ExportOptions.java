@@ -0,0 +1,88 @@
+package com.k.minidoodle;
+
+/**
+ * 导出参数：图片格式和质量、输出尺寸上限，以及是否裁剪到笔画范围
+ * 只读，可以交给后台线程。格式的编码开销和文件大小差别很大：几乎全白的画布用 WebP 通常比 PNG 小得多，
+ * 有损格式编码也更快。WebP 和 JPEG 由系统编码，需要一次持有整幅图像；PNG 可以逐条编码，见 {@link PngStreamEncoder}。
+ * SVG 和 PDF 直接由笔画生成矢量路径（见 {@link StrokeVectorizer}），不经过光栅化，质量参数不起作用。
+ * 延时视频回放整个绘制过程（见 {@link TimelapseEncoder}），尺寸上限作用于视频画面；
+ * 设备没有视频编码器时改为 ZIP 打包的图片序列。
+ */
+final class ExportOptions {
+
+    static final int FORMAT_PNG = 0;
+    static final int FORMAT_WEBP_LOSSLESS = 1;
+    static final int FORMAT_WEBP_LOSSY = 2;
+    static final int FORMAT_JPEG = 3;
+    static final int FORMAT_SVG = 4;
+    static final int FORMAT_PDF = 5;
+    static final int FORMAT_TIMELAPSE = 6;
+    static final int FORMAT_FRAME_SEQUENCE = 7;
+
+    /** 原尺寸的无损 PNG，与之前的保存结果相同 */
+    static final ExportOptions DEFAULT = new ExportOptions(FORMAT_PNG, 100, 0, false);
+
+    // 按格式编号排列
+    private static final String[] MIME_TYPES = {"image/png", "image/webp", "image/webp", "image/jpeg", "image/svg+xml",
+            "application/pdf", "video/mp4", "application/zip"};
+    private static final String[] EXTENSIONS = {".png", ".webp", ".webp", ".jpg", ".svg", ".pdf", ".mp4", ".zip"};
+
+    final int format;
+    /** 有损格式的质量，0 到 100 */
+    final int quality;
+    /** 输出图片长边的上限（像素），0 表示不缩小 */
+    final int maxSize;
+    /** 只导出笔画覆盖的范围（留少量边距），而不是整个画布 */
+    final boolean cropToContent;
+
+    ExportOptions(int format, int quality, int maxSize, boolean cropToContent) {
+        if (format < FORMAT_PNG || format > FORMAT_FRAME_SEQUENCE) {
+            throw new IllegalArgumentException("format " + format);
+        }
+        if (quality < 0 || quality > 100 || maxSize < 0) {
+            throw new IllegalArgumentException("quality " + quality + ", maxSize " + maxSize);
+        }
+        this.format = format;
+        this.quality = quality;
+        this.maxSize = maxSize;
+        this.cropToContent = cropToContent;
+    }
+
+    /** 能否逐条编码；其他格式由系统编码器编码，需要一次持有整幅图像 */
+    boolean canStream() {
+        return format == FORMAT_PNG;
+    }
+
+    /** 矢量格式，由笔画直接生成，输出尺寸不受位图内存限制 */
+    boolean isVector() {
+        return format == FORMAT_SVG || format == FORMAT_PDF;
+    }
+
+    /** 延时视频或代替它的图片序列，逐帧回放绘制过程 */
+    boolean isTimelapse() {
+        return format == FORMAT_TIMELAPSE || format == FORMAT_FRAME_SEQUENCE;
+    }
+
+    /** 结果是单张图片，可以交给相册解码 */
+    boolean isImage() {
+        return !isVector() && !isTimelapse();
+    }
+
+    /** JPEG 和视频没有透明通道 */
+    boolean supportsAlpha() {
+        return format != FORMAT_JPEG && !isTimelapse();
+    }
+
+    /** 其他参数相同，换一种格式 */
+    ExportOptions withFormat(int format) {
+        return new ExportOptions(format, quality, maxSize, cropToContent);
+    }
+
+    String getMimeType() {
+        return MIME_TYPES[format];
+    }
+
+    String getExtension() {
+        return EXTENSIONS[format];
+    }
+}
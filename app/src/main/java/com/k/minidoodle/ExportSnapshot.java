@@ -0,0 +1,21 @@
+package com.k.minidoodle;
+
+/**
+ * 导出用的绘图快照
+ * 在主线程上拷贝可见笔画和画布参数，之后只读，可以交给后台线程光栅化，
+ * 原画布上的后续绘制不会影响快照。
+ */
+class ExportSnapshot {
+
+    final StrokeStore strokes;
+    final int width;
+    final int height;
+    final int backgroundColor;
+
+    ExportSnapshot(StrokeStore strokes, int width, int height, int backgroundColor) {
+        this.strokes = strokes;
+        this.width = width;
+        this.height = height;
+        this.backgroundColor = backgroundColor;
+    }
+}
@@ -0,0 +1,101 @@
+package com.k.minidoodle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 把延时视频的帧写成 ZIP 打包的 PNG 图片序列，在没有视频编码器时代替 {@link VideoFrameSink}
+ * 每帧一个条目，按顺序命名为 00000.png、00001.png……，帧率写在 ZIP 的注释里。
+ * PNG 本身已经压缩，条目不再压缩；每帧由 {@link PngStreamEncoder} 逐行编码，不需要额外的整幅缓冲。
+ * 不依赖 Android，不是线程安全的。
+ */
+final class FrameSequenceWriter implements FrameSink {
+
+    private final ZipOutputStream zip;
+    private final int width;
+    private final int height;
+    private int frameCount;
+
+    /**
+     * @param out 写完后不关闭
+     * @param frameRate 每秒帧数，只记录在注释里
+     */
+    FrameSequenceWriter(OutputStream out, int width, int height, int frameRate) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        zip = new ZipOutputStream(new NonClosingStream(out));
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        zip.setComment("MiniDoodle timelapse " + width + "x" + height + " " + frameRate + "fps");
+    }
+
+    /** 时刻由帧序号和帧率决定，presentationTimeUs 不写入 */
+    @Override
+    public void writeFrame(int[] argb, long presentationTimeUs) throws IOException {
+        zip.putNextEntry(new ZipEntry(String.format(Locale.ROOT, "%05d.png", frameCount)));
+        try (PngStreamEncoder encoder = new PngStreamEncoder(zip, width, height, false, Deflater.BEST_SPEED)) {
+            for (int y = 0; y < height; y++) {
+                encoder.writeRow(argb, y * width);
+            }
+            encoder.finish();
+        }
+        zip.closeEntry();
+        frameCount++;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        zip.finish();
+        zip.flush();
+    }
+
+    @Override
+    public void close() {
+        // ZipOutputStream 持有的压缩器随 close 释放，下层输出流不会被关闭
+        try {
+            zip.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /** 已写入的帧数 */
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 关闭 ZIP 时不关闭调用方的输出流
+     */
+    private static class NonClosingStream extends OutputStream {
+        private final OutputStream out;
+
+        NonClosingStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            out.write(data, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
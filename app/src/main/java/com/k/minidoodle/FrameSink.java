@@ -0,0 +1,25 @@
+package com.k.minidoodle;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 接收延时视频的逐帧画面
+ * 尺寸在创建时确定，每帧为逐行排列的 ARGB 像素。硬件编码见 {@link VideoFrameSink}，
+ * 不支持视频编码时改用 {@link FrameSequenceWriter} 输出图片序列。
+ */
+interface FrameSink extends Closeable {
+
+    /**
+     * @param argb 非预乘的 ARGB 像素，行跨度为帧宽度；返回后调用方可以改写
+     * @param presentationTimeUs 这一帧在视频中出现的时刻（微秒），逐帧递增
+     */
+    void writeFrame(int[] argb, long presentationTimeUs) throws IOException;
+
+    /** 写完全部帧，之后只能调用 close */
+    void finish() throws IOException;
+
+    /** 释放资源；没有调用 finish 时输出不完整 */
+    @Override
+    void close();
+}
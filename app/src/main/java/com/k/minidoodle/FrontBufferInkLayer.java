@@ -0,0 +1,186 @@
+package com.k.minidoodle;
+
+import android.graphics.BlendMode;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.os.Build;
+import android.view.SurfaceView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.graphics.lowlatency.CanvasFrontBufferedRenderer;
+
+import java.util.Collection;
+
+/**
+ * 低延迟湿墨层
+ * 正在书写的笔画直接画到叠在 PaintView 之上的 SurfaceView 的前缓冲区，
+ * 绕过 View 的绘制流程和 SurfaceFlinger 的多级缓冲，手指移动到屏幕出现墨迹只差一次扫描。
+ * 每次只追加自上次以来新增的原始采样线段，抬起后由 PaintView 画进已完成图层，再清空本层。
+ * 本层只画等宽折线，PaintView 只用它绘制钢笔笔画；墨水笔、喷枪等变宽笔刷仍按笔刷渲染在画布上。
+ * 每批线段连成一条路径绘制；半透明的颜色在本层按不透明绘制，否则批与批相接处的圆头重叠会变深，
+ * 实际的透明度由抬起后画进已完成图层的笔画体现。
+ * 送往渲染线程的线段取自一组循环复用的缓冲，书写时不分配对象。
+ * 前缓冲渲染需要 API 29 以上，调用前先检查 {@link #isSupported()}。
+ */
+@RequiresApi(Build.VERSION_CODES.Q)
+class FrontBufferInkLayer {
+
+    // 循环复用的线段数；渲染线程通常每帧画完全部线段，落后这么多时才另行分配
+    private static final int SEGMENT_POOL_SIZE = 32;
+
+    /**
+     * 一次追加的线段：文档坐标的折线和绘制时的视口变换。
+     * 主线程填好后交给渲染线程，画完之前主线程不再改动
+     */
+    private static final class InkSegment {
+        // 依次相连的点 x0, y0, x1, y1, ...，只有一个点时画圆点
+        float[] points = new float[64];
+        int pointCount;
+        int color;
+        float width;
+        float scale, translateX, translateY;
+        // 这批采样中最早的触摸时间（System.nanoTime 时基），0 表示不记录延迟
+        long touchNanos;
+        // 已交给渲染线程、尚未画完
+        volatile boolean pending;
+    }
+
+    private final CanvasFrontBufferedRenderer<InkSegment> renderer;
+    // 只在渲染线程上使用
+    private final Paint paint = new Paint();
+    private final Path path = new Path();
+    // 复用的线段，只在主线程上读写；多缓冲层持有的旧引用只在清空时丢弃，内容被改写也无妨
+    private final InkSegment[] segments = new InkSegment[SEGMENT_POOL_SIZE];
+    private int nextSegment;
+    private final DrawingMetrics metrics = DrawingMetrics.getInstance();
+
+    // 当前笔画的属性，只在主线程上读写
+    private int color;
+    private float width;
+    private float scale, translateX, translateY;
+
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+    }
+
+    /**
+     * @param surfaceView 覆盖在画布上方、与画布大小相同的 SurfaceView，本类把它设为透明并置于顶层
+     */
+    FrontBufferInkLayer(SurfaceView surfaceView) {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new InkSegment();
+        }
+        surfaceView.setZOrderOnTop(true);
+        surfaceView.getHolder().setFormat(PixelFormat.TRANSLUCENT);
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        renderer = new CanvasFrontBufferedRenderer<>(surfaceView, new InkCallback());
+    }
+
+    /**
+     * 开始一条新笔画，记下颜色、线宽和此刻的视口变换
+     */
+    void beginStroke(int color, float width, Viewport viewport) {
+        this.color = color;
+        this.width = width;
+        this.scale = viewport.getScale();
+        this.translateX = viewport.getTranslateX();
+        this.translateY = viewport.getTranslateY();
+    }
+
+    /**
+     * 把 samples 中 [from, to) 的点连成折线追加到前缓冲区；from 大于 0 时从第 from - 1 个点连起，保证线段连续
+     * @param touchNanos 这批采样中最早的触摸时间（System.nanoTime 时基），画到前缓冲区后记为触摸到绘制的延迟；
+     *                   0 表示不记录
+     */
+    void drawSamples(TouchSampleBuffer samples, int from, int to, long touchNanos) {
+        int start = from > 0 ? from - 1 : 0;
+        if (start >= to) {
+            return;
+        }
+        InkSegment segment = obtainSegment();
+        int count = (to - start) * 2;
+        if (segment.points.length < count) {
+            segment.points = new float[Math.max(count, segment.points.length * 2)];
+        }
+        for (int i = start; i < to; i++) {
+            segment.points[(i - start) * 2] = samples.getX(i);
+            segment.points[(i - start) * 2 + 1] = samples.getY(i);
+        }
+        segment.pointCount = to - start;
+        segment.color = color;
+        segment.width = width;
+        segment.scale = scale;
+        segment.translateX = translateX;
+        segment.translateY = translateY;
+        segment.touchNanos = touchNanos;
+        segment.pending = true;
+        renderer.renderFrontBufferedLayer(segment);
+    }
+
+    /**
+     * 清空前缓冲区和多缓冲区的内容，笔画已经画进已完成图层或被取消时调用
+     */
+    void clear() {
+        renderer.clear();
+    }
+
+    /**
+     * 释放渲染线程和缓冲区，之后不能再使用
+     */
+    void release() {
+        renderer.release(true);
+    }
+
+    // 取下一个复用的线段；渲染线程还没画完它时换一个新的放进池中，旧的画完后丢弃
+    private InkSegment obtainSegment() {
+        InkSegment segment = segments[nextSegment];
+        if (segment.pending) {
+            segment = new InkSegment();
+            segments[nextSegment] = segment;
+        }
+        nextSegment = (nextSegment + 1) % segments.length;
+        return segment;
+    }
+
+    private class InkCallback implements CanvasFrontBufferedRenderer.Callback<InkSegment> {
+        @Override
+        public void onDrawFrontBufferedLayer(@NonNull Canvas canvas, int bufferWidth, int bufferHeight,
+                                             InkSegment segment) {
+            float[] points = segment.points;
+            canvas.save();
+            canvas.translate(segment.translateX, segment.translateY);
+            canvas.scale(segment.scale, segment.scale);
+            paint.setColor(segment.color | 0xFF000000);
+            paint.setStrokeWidth(segment.width);
+            if (segment.pointCount == 1) {
+                canvas.drawPoint(points[0], points[1], paint);
+            } else {
+                path.rewind();
+                path.moveTo(points[0], points[1]);
+                for (int i = 1; i < segment.pointCount; i++) {
+                    path.lineTo(points[i * 2], points[i * 2 + 1]);
+                }
+                canvas.drawPath(path, paint);
+            }
+            canvas.restore();
+            if (segment.touchNanos != 0) {
+                metrics.touchToDrawLatency.recordSince(segment.touchNanos);
+            }
+            segment.pending = false;
+        }
+
+        @Override
+        public void onDrawMultiBufferedLayer(@NonNull Canvas canvas, int bufferWidth, int bufferHeight,
+                                             @NonNull Collection<? extends InkSegment> segments) {
+            // 完成的笔画由 PaintView 绘制，多缓冲层始终保持透明
+            canvas.drawColor(Color.TRANSPARENT, BlendMode.CLEAR);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.k.minidoodle;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单生产者单消费者的无锁输入队列
+ * 主线程写入触摸采样和编辑操作，渲染线程批量读取。每条记录由操作码、坐标、时间和一个整型参数组成，
+ * 按结构数组存放在预分配的环形缓冲区里，入队和出队都不分配对象、不加锁。
+ * 生产者填好记录后才推进 tail，消费者读完一批后才推进 head，两个下标各自只由一方写入；
+ * 推进用 lazySet（release 语义），读取对方下标用 get（acquire 语义），保证看到的记录内容完整。
+ * 记录分两种：可丢弃的（如 MOVE 采样，见 {@link #offer}）只能用到容量减去预留的部分，队列拥堵时直接丢弃；
+ * 不可丢弃的（按下、抬起、编辑和设置，见 {@link #put}）可以用满环形缓冲区，满了就转入加锁的溢出区。
+ * 溢出区不为空时新记录都追加到溢出区，消费者读完环形缓冲区再读溢出区，整体仍按入队顺序交出。
+ */
+class InputQueue {
+
+    /**
+     * 出队回调，在消费者线程上依次收到每条记录
+     */
+    interface Sink {
+        void onInput(int op, float x, float y, long time, int arg);
+    }
+
+    private final int mask;
+    // 可丢弃的记录不能占用的容量，留给不可丢弃的记录
+    private final int reserve;
+    private final int[] ops;
+    private final float[] xs;
+    private final float[] ys;
+    private final long[] times;
+    private final int[] args;
+
+    // 下一个要读取的位置，只由消费者写入
+    private final AtomicLong head = new AtomicLong();
+    // 下一个要写入的位置，只由生产者写入
+    private final AtomicLong tail = new AtomicLong();
+    // 生产者缓存的 head，只在看起来已满时才重新读取，减少跨核缓存行往返
+    private long cachedHead;
+
+    // 环形缓冲区满时不可丢弃的记录，按入队顺序排列，只在 overflowLock 内访问；
+    // overflowCount 与其中的记录数相同，只在锁内修改，两个线程都在锁外读取它判断溢出区是否为空
+    private final Object overflowLock = new Object();
+    private Overflow overflow = new Overflow();
+    private volatile int overflowCount;
+
+    // 溢出区的记录，同样按结构数组存放，只在溢出时分配
+    private static final class Overflow {
+        int[] ops = new int[16];
+        float[] xs = new float[16];
+        float[] ys = new float[16];
+        long[] times = new long[16];
+        int[] args = new int[16];
+        int count;
+
+        void add(int op, float x, float y, long time, int arg) {
+            if (count == ops.length) {
+                int grown = count * 2;
+                ops = Arrays.copyOf(ops, grown);
+                xs = Arrays.copyOf(xs, grown);
+                ys = Arrays.copyOf(ys, grown);
+                times = Arrays.copyOf(times, grown);
+                args = Arrays.copyOf(args, grown);
+            }
+            ops[count] = op;
+            xs[count] = x;
+            ys[count] = y;
+            times[count] = time;
+            args[count] = arg;
+            count++;
+        }
+    }
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂；可丢弃的记录最多用到四分之三
+     */
+    InputQueue(int capacity) {
+        this(capacity, -1);
+    }
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     * @param reserve 可丢弃的记录不能占用的容量，小于 0 时取容量的四分之一
+     */
+    InputQueue(int capacity, int reserve) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        ops = new int[size];
+        xs = new float[size];
+        ys = new float[size];
+        times = new long[size];
+        args = new int[size];
+        this.reserve = reserve < 0 ? size / 4 : Math.min(reserve, size);
+    }
+
+    /**
+     * 在生产者线程上追加一条可丢弃的记录
+     * @return 队列拥堵（环形缓冲区只剩预留的容量，或溢出区不为空）时返回 false，记录被丢弃
+     */
+    boolean offer(int op, float x, float y, long time, int arg) {
+        return overflowCount == 0 && write(op, x, y, time, arg, reserve);
+    }
+
+    /**
+     * 在生产者线程上追加一条不可丢弃的记录，环形缓冲区已满时放入溢出区，总会被消费者取到
+     */
+    void put(int op, float x, float y, long time, int arg) {
+        if (overflowCount == 0 && write(op, x, y, time, arg, 0)) {
+            return;
+        }
+        synchronized (overflowLock) {
+            overflow.add(op, x, y, time, arg);
+            overflowCount = overflow.count;
+        }
+    }
+
+    // 写入环形缓冲区，至少要留出 keep 个空位；空位不够时返回 false
+    private boolean write(int op, float x, float y, long time, int arg, int keep) {
+        long t = tail.get();
+        long limit = mask - keep;
+        if (t - cachedHead > limit) {
+            cachedHead = head.get();
+            if (t - cachedHead > limit) {
+                return false;
+            }
+        }
+        int i = (int) t & mask;
+        ops[i] = op;
+        xs[i] = x;
+        ys[i] = y;
+        times[i] = time;
+        args[i] = arg;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * 在消费者线程上取出当前已入队的全部记录，按入队顺序交给 sink
+     * @return 取出的记录数
+     */
+    int drain(Sink sink) {
+        int drained = drainRing(sink);
+        if (overflowCount == 0) {
+            return drained;
+        }
+        // 溢出区不为空时生产者不再写入环形缓冲区，再读一次即可取完排在溢出区之前的记录
+        drained += drainRing(sink);
+        Overflow taken;
+        synchronized (overflowLock) {
+            taken = overflow;
+            overflow = new Overflow();
+            overflowCount = 0;
+        }
+        // 在锁外交出，生产者不会因为消费者处理记录而等待；此后写入环形缓冲区的记录都排在这些之后
+        for (int i = 0; i < taken.count; i++) {
+            sink.onInput(taken.ops[i], taken.xs[i], taken.ys[i], taken.times[i], taken.args[i]);
+        }
+        return drained + taken.count;
+    }
+
+    private int drainRing(Sink sink) {
+        long h = head.get();
+        long t = tail.get();
+        for (long p = h; p < t; p++) {
+            int i = (int) p & mask;
+            sink.onInput(ops[i], xs[i], ys[i], times[i], args[i]);
+        }
+        if (t != h) {
+            head.lazySet(t);
+        }
+        return (int) (t - h);
+    }
+
+    /** 尚未取出的记录数（含溢出区），任一线程都可调用，结果只是瞬时值 */
+    int size() {
+        return (int) (tail.get() - head.get()) + overflowCount;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,74 @@
+package com.k.minidoodle;
+
+import java.util.Arrays;
+
+/**
+ * 可增长的 int 数组，避免 List&lt;Integer&gt; 的装箱开销
+ */
+public class IntList {
+
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(8);
+    }
+
+    public IntList(int initialCapacity) {
+        values = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return values[index];
+    }
+
+    public void set(int index, int value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        values[index] = value;
+    }
+
+    /**
+     * 删除最后一个等于 value 的元素，后面的元素前移
+     * @return 是否找到
+     */
+    public boolean remove(int value) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (values[i] == value) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 升序排序 */
+    public void sort() {
+        Arrays.sort(values, 0, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** 清空内容，保留容量 */
+    public void clear() {
+        size = 0;
+    }
+}
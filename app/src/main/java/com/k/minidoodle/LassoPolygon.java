@@ -0,0 +1,174 @@
+package com.k.minidoodle;
+
+import java.util.Arrays;
+
+/**
+ * 套索多边形：手指画出的轨迹首尾相连围成的区域，按奇偶规则判断点是否在内部。
+ * 边按 y 分到若干等高的条带里，判断一个点只需检查它所在条带的边，
+ * 几百个顶点的套索每次判断也只看几条边；选择笔画时每个点都要判断一次，这是主要开销。
+ * 可以反复 {@link #set}，数组只在变大时重新分配。
+ */
+public final class LassoPolygon {
+
+    // 平均每条带的边数
+    private static final int EDGES_PER_BAND = 2;
+    private static final int MAX_BANDS = 1024;
+
+    private float[] xs = new float[64];
+    private float[] ys = new float[64];
+    private int count;
+    private float left, top, right, bottom;
+    private int bandCount;
+    private float bandHeight;
+    // 第 b 条带的边为 bandEdges[bandStarts[b], bandStarts[b + 1])，边 i 连接顶点 i 和 i + 1
+    private int[] bandStarts = new int[2];
+    private int[] bandEdges = new int[64];
+
+    /**
+     * 用 points 的全部点作为顶点，末点与首点之间自动闭合
+     */
+    public void set(TouchSampleBuffer points) {
+        int n = points.size();
+        if (xs.length < n) {
+            xs = new float[n];
+            ys = new float[n];
+        }
+        count = n;
+        left = Float.POSITIVE_INFINITY;
+        top = Float.POSITIVE_INFINITY;
+        right = Float.NEGATIVE_INFINITY;
+        bottom = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            float x = points.getX(i);
+            float y = points.getY(i);
+            xs[i] = x;
+            ys[i] = y;
+            left = Math.min(left, x);
+            top = Math.min(top, y);
+            right = Math.max(right, x);
+            bottom = Math.max(bottom, y);
+        }
+        buildBands();
+    }
+
+    /** 顶点不足 3 个，不围成区域 */
+    public boolean isEmpty() {
+        return count < 3 || bottom <= top;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public float getLeft() {
+        return left;
+    }
+
+    public float getTop() {
+        return top;
+    }
+
+    public float getRight() {
+        return right;
+    }
+
+    public float getBottom() {
+        return bottom;
+    }
+
+    /**
+     * 点是否在多边形内部（奇偶规则，自交时被绕两次的区域算外部）
+     */
+    public boolean contains(float x, float y) {
+        if (isEmpty() || x < left || x > right || y < top || y >= bottom) {
+            return false;
+        }
+        int band = Math.min(bandCount - 1, (int) ((y - top) / bandHeight));
+        boolean inside = false;
+        for (int k = bandStarts[band]; k < bandStarts[band + 1]; k++) {
+            int i = bandEdges[k];
+            int j = i + 1 == count ? 0 : i + 1;
+            float yi = ys[i];
+            float yj = ys[j];
+            // 半开区间 [min, max) 保证经过顶点的水平射线只计一次
+            if ((yi > y) != (yj > y)
+                    && x < xs[i] + (xs[j] - xs[i]) * (y - yi) / (yj - yi)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * 笔画是否被圈住：至少一半的点在多边形内部。包围盒不相交时不逐点判断，
+     * 够数或已不可能够数时提前结束
+     */
+    public boolean covers(StrokeStore store, int stroke) {
+        if (isEmpty() || store.isErase(stroke) || store.getRight(stroke) < left || store.getLeft(stroke) > right
+                || store.getBottom(stroke) < top || store.getTop(stroke) > bottom) {
+            return false;
+        }
+        int start = store.getPointStart(stroke);
+        int n = store.getPointCount(stroke);
+        int needed = (n + 1) / 2;
+        int inside = 0;
+        for (int i = 0; i < n; i++) {
+            if (contains(store.getX(start + i), store.getY(start + i)) && ++inside >= needed) {
+                return true;
+            }
+            if (inside + n - 1 - i < needed) {
+                return false;
+            }
+        }
+        return n > 0 && inside >= needed;
+    }
+
+    // 按边的 y 范围做一次计数排序：先数每条带的边数，再按前缀和填入
+    private void buildBands() {
+        if (isEmpty()) {
+            bandCount = 0;
+            return;
+        }
+        bandCount = Math.max(1, Math.min(MAX_BANDS, count / EDGES_PER_BAND));
+        bandHeight = (bottom - top) / bandCount;
+        if (bandStarts.length < bandCount + 1) {
+            bandStarts = new int[bandCount + 1];
+        }
+        Arrays.fill(bandStarts, 0, bandCount + 1, 0);
+        for (int i = 0; i < count; i++) {
+            int last = lastBand(i);
+            for (int b = firstBand(i); b <= last; b++) {
+                bandStarts[b + 1]++;
+            }
+        }
+        for (int b = 0; b < bandCount; b++) {
+            bandStarts[b + 1] += bandStarts[b];
+        }
+        if (bandEdges.length < bandStarts[bandCount]) {
+            bandEdges = new int[bandStarts[bandCount]];
+        }
+        // 以 bandStarts[b] 作为填写位置，填完后整体后移一格还原
+        for (int i = 0; i < count; i++) {
+            int last = lastBand(i);
+            for (int b = firstBand(i); b <= last; b++) {
+                bandEdges[bandStarts[b]++] = i;
+            }
+        }
+        System.arraycopy(bandStarts, 0, bandStarts, 1, bandCount);
+        bandStarts[0] = 0;
+    }
+
+    private int firstBand(int edge) {
+        int next = edge + 1 == count ? 0 : edge + 1;
+        return band(Math.min(ys[edge], ys[next]));
+    }
+
+    private int lastBand(int edge) {
+        int next = edge + 1 == count ? 0 : edge + 1;
+        return band(Math.max(ys[edge], ys[next]));
+    }
+
+    private int band(float y) {
+        return Math.max(0, Math.min(bandCount - 1, (int) ((y - top) / bandHeight)));
+    }
+}
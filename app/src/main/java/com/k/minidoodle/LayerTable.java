@@ -0,0 +1,135 @@
+package com.k.minidoodle;
+
+/**
+ * 文档图层表
+ * 按从下到上的顺序保存每个图层的可见性、不透明度和混合模式，笔画通过图层编号归属到图层
+ * （见 {@link StrokeStore#getLayer}）。图层只能追加，编号一经使用不再改变。
+ * 不依赖 Android，混合模式到 Paint 的映射见 {@link StrokePainter#configureLayerPaint}。
+ */
+final class LayerTable {
+
+    /** 图层数上限，每个图层都有自己的光栅缓存 */
+    static final int MAX_LAYERS = 8;
+
+    static final int BLEND_NORMAL = 0;
+    static final int BLEND_MULTIPLY = 1;
+    static final int BLEND_SCREEN = 2;
+    static final int BLEND_OVERLAY = 3;
+    static final int BLEND_DARKEN = 4;
+    static final int BLEND_LIGHTEN = 5;
+    static final int BLEND_ADD = 6;
+    static final int BLEND_MODE_COUNT = 7;
+
+    private final boolean[] visible = new boolean[MAX_LAYERS];
+    // 0 到 255
+    private final int[] alphas = new int[MAX_LAYERS];
+    private final int[] blendModes = new int[MAX_LAYERS];
+    private int count;
+
+    /** 只有一个默认图层 */
+    LayerTable() {
+        add();
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * 在最上方追加一个可见、不透明、正常混合的图层
+     * @return 新图层的编号，已达上限时返回 -1
+     */
+    int add() {
+        if (count == MAX_LAYERS) {
+            return -1;
+        }
+        visible[count] = true;
+        alphas[count] = 255;
+        blendModes[count] = BLEND_NORMAL;
+        return count++;
+    }
+
+    /**
+     * 追加默认图层直到至少有 size 个（不超过上限）
+     */
+    void ensureSize(int size) {
+        while (count < Math.min(size, MAX_LAYERS)) {
+            add();
+        }
+    }
+
+    boolean isVisible(int layer) {
+        return visible[layer];
+    }
+
+    void setVisible(int layer, boolean visible) {
+        checkIndex(layer);
+        this.visible[layer] = visible;
+    }
+
+    int getAlpha(int layer) {
+        return alphas[layer];
+    }
+
+    void setAlpha(int layer, int alpha) {
+        checkIndex(layer);
+        alphas[layer] = Math.max(0, Math.min(255, alpha));
+    }
+
+    int getBlendMode(int layer) {
+        return blendModes[layer];
+    }
+
+    /** 未知的混合模式（较新版本写入的文档）按正常混合处理 */
+    void setBlendMode(int layer, int mode) {
+        checkIndex(layer);
+        blendModes[layer] = mode >= 0 && mode < BLEND_MODE_COUNT ? mode : BLEND_NORMAL;
+    }
+
+    /**
+     * 图层可见、不透明且正常混合，可以直接画在下方内容上，不需要单独合成
+     */
+    boolean isPlain(int layer) {
+        return visible[layer] && alphas[layer] == 255 && blendModes[layer] == BLEND_NORMAL;
+    }
+
+    /**
+     * 整个文档只有一个普通图层，绘制时不需要图层合成
+     */
+    boolean isFlat() {
+        return count == 1 && isPlain(0);
+    }
+
+    /** 用 other 的内容替换本表 */
+    void set(LayerTable other) {
+        System.arraycopy(other.visible, 0, visible, 0, MAX_LAYERS);
+        System.arraycopy(other.alphas, 0, alphas, 0, MAX_LAYERS);
+        System.arraycopy(other.blendModes, 0, blendModes, 0, MAX_LAYERS);
+        count = other.count;
+    }
+
+    LayerTable copy() {
+        LayerTable copy = new LayerTable();
+        copy.set(this);
+        return copy;
+    }
+
+    boolean contentEquals(LayerTable other) {
+        if (count != other.count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (visible[i] != other.visible[i] || alphas[i] != other.alphas[i]
+                    || blendModes[i] != other.blendModes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkIndex(int layer) {
+        if (layer < 0 || layer >= count) {
+            throw new IndexOutOfBoundsException("layer " + layer + ", size " + count);
+        }
+    }
+}
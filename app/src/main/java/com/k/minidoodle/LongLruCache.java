@@ -0,0 +1,236 @@
+package com.k.minidoodle;
+
+import java.util.Arrays;
+
+/**
+ * 以 long 为键、按权重限制总量的 LRU 缓存
+ * 键直接存放在开放寻址哈希表中，命中和插入都不装箱、不分配对象；
+ * 条目按最近使用顺序串成双向链表，总权重超过上限时从最久未用的一端淘汰。
+ * 淘汰、替换或清空的值通过 {@link #onRemoved} 交给子类释放。不是线程安全的。
+ */
+class LongLruCache<V> {
+
+    private static final int EMPTY = -1;
+
+    private final long maxWeight;
+    private long totalWeight;
+
+    // 哈希表槽位存放条目编号，EMPTY 为空；线性探测
+    private int[] table;
+    private int mask;
+
+    // 按条目编号索引的数组
+    private long[] keys;
+    private Object[] values;
+    private int[] weights;
+    // 最近使用链表：head 最久未用，tail 最近使用；空闲条目通过 next 串成空闲链表
+    private int[] prev;
+    private int[] next;
+    private int head = EMPTY;
+    private int tail = EMPTY;
+    private int free = EMPTY;
+    private int allocated;
+    private int size;
+
+    LongLruCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+        table = new int[16];
+        Arrays.fill(table, EMPTY);
+        mask = table.length - 1;
+        keys = new long[8];
+        values = new Object[8];
+        weights = new int[8];
+        prev = new int[8];
+        next = new int[8];
+    }
+
+    /**
+     * 取出 key 对应的值并标记为最近使用，不存在时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int entry = find(key);
+        if (entry == EMPTY) {
+            return null;
+        }
+        unlink(entry);
+        linkLast(entry);
+        return (V) values[entry];
+    }
+
+    /**
+     * 放入一个值，已有的同键值被替换；随后淘汰最久未用的条目直到总权重不超过上限
+     */
+    void put(long key, V value, int weight) {
+        int entry = find(key);
+        if (entry != EMPTY) {
+            Object old = values[entry];
+            totalWeight += weight - weights[entry];
+            values[entry] = value;
+            weights[entry] = weight;
+            unlink(entry);
+            linkLast(entry);
+            if (old != value) {
+                removed(key, old);
+            }
+        } else {
+            entry = allocate();
+            keys[entry] = key;
+            values[entry] = value;
+            weights[entry] = weight;
+            totalWeight += weight;
+            size++;
+            if (size * 2 > table.length) {
+                rehash(table.length * 2);
+            }
+            linkLast(entry);
+            insertSlot(entry);
+        }
+        trimToWeight(maxWeight);
+    }
+
+    /**
+     * 淘汰最久未用的条目，直到总权重不超过 weight
+     */
+    void trimToWeight(long weight) {
+        while (totalWeight > weight && head != EMPTY) {
+            evict(head);
+        }
+    }
+
+    /** 清空缓存，所有值都交给 {@link #onRemoved} */
+    void clear() {
+        trimToWeight(-1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long weight() {
+        return totalWeight;
+    }
+
+    long maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * 值被淘汰、替换或清空时调用，默认什么也不做
+     */
+    protected void onRemoved(long key, V value) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private void removed(long key, Object value) {
+        onRemoved(key, (V) value);
+    }
+
+    private void evict(int entry) {
+        long key = keys[entry];
+        Object value = values[entry];
+        removeSlot(entry);
+        unlink(entry);
+        totalWeight -= weights[entry];
+        values[entry] = null;
+        next[entry] = free;
+        free = entry;
+        size--;
+        removed(key, value);
+    }
+
+    private int find(long key) {
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == EMPTY) {
+                return EMPTY;
+            }
+            if (keys[entry] == key) {
+                return entry;
+            }
+        }
+    }
+
+    private void insertSlot(int entry) {
+        int slot = hash(keys[entry]) & mask;
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry;
+    }
+
+    // 线性探测的删除：把后面同一簇中可以前移的条目逐个前移，不留墓碑
+    private void removeSlot(int entry) {
+        int slot = hash(keys[entry]) & mask;
+        while (table[slot] != entry) {
+            slot = (slot + 1) & mask;
+        }
+        int hole = slot;
+        for (int i = (hole + 1) & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+            int home = hash(keys[table[i]]) & mask;
+            // home 不在 (hole, i] 区间内时，条目可以移到 hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+        for (int entry = head; entry != EMPTY; entry = next[entry]) {
+            insertSlot(entry);
+        }
+    }
+
+    private int allocate() {
+        if (free != EMPTY) {
+            int entry = free;
+            free = next[entry];
+            return entry;
+        }
+        if (allocated == keys.length) {
+            int capacity = allocated + (allocated >> 1);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        return allocated++;
+    }
+
+    private void linkLast(int entry) {
+        prev[entry] = tail;
+        next[entry] = EMPTY;
+        if (tail != EMPTY) {
+            next[tail] = entry;
+        } else {
+            head = entry;
+        }
+        tail = entry;
+    }
+
+    private void unlink(int entry) {
+        int p = prev[entry];
+        int n = next[entry];
+        if (p != EMPTY) {
+            next[p] = n;
+        } else {
+            head = n;
+        }
+        if (n != EMPTY) {
+            prev[n] = p;
+        } else {
+            tail = p;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
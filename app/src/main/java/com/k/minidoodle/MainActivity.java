@@ -1,42 +1,91 @@
 package com.k.minidoodle;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.ViewModelProvider;
 
 import android.Manifest;
 import android.app.Dialog;
-import android.content.ContentValues;
+import android.content.DialogInterface;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Environment;
-import android.provider.MediaStore;
-import android.text.Editable;
-import android.text.TextWatcher;
+import android.util.Log;
+import android.view.SurfaceView;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.Window;
 import android.widget.Button;
-import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.SeekBar;
 import android.widget.Toast;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
 
-    private PaintView paintView;
+    private static final String TAG = "MiniDoodle";
+    // 画布，布局中可以是 PaintView 或使用渲染线程的 SurfacePaintView
+    private DrawingSurface paintView;
+    private Button saveBtn;
+    // 跨越配置变化的画布状态和自动保存
+    private DrawingViewModel drawingState;
+    // 低延迟湿墨层，系统不支持时为 null
+    private FrontBufferInkLayer inkLayer;
     private int currentColor = Color.BLACK;
+    // 取色对话框，第一次打开时创建
+    private ColorPickerDialog colorPicker;
+    private Brush currentBrush = Brush.PEN;
+    private int eraserMode = StrokeEraser.MODE_OFF;
+    // 抬笔后是否把直线、折线、椭圆和矩形换成规整的形状
+    private boolean shapeRecognition;
+    // 套索模式：触摸改为选择和移动已完成的笔画
+    private boolean lassoMode;
+    private Button layerBtn;
+    // 新笔画所在的图层
+    private int currentLayer;
+    // 保存时使用的导出方式，EXPORT_PRESETS 的下标
+    private int exportPreset;
+    // 按混合模式编号排列的名称，见 LayerTable
+    private static final String[] BLEND_NAMES = {"正常", "正片叠底", "滤色", "叠加", "变暗", "变亮", "相加"};
+    // 按笔刷编号排列的按钮文字
+    private static final String[] BRUSH_NAMES = {"钢笔", "墨水笔", "喷枪"};
+    // 按橡皮模式排列的按钮文字，见 StrokeEraser
+    private static final String[] ERASER_NAMES = {"橡皮", "擦整笔", "擦局部"};
+    // 长按保存按钮可选的导出方式
+    private static final String[] EXPORT_NAMES = {"PNG 整个画布", "PNG 裁剪到笔画", "WebP 无损", "WebP 有损",
+            "JPEG", "WebP 缩略图", "SVG 矢量", "PDF 矢量", "延时视频 MP4"};
+    private static final ExportOptions[] EXPORT_PRESETS = {
+            ExportOptions.DEFAULT,
+            new ExportOptions(ExportOptions.FORMAT_PNG, 100, 0, true),
+            new ExportOptions(ExportOptions.FORMAT_WEBP_LOSSLESS, 100, 0, true),
+            new ExportOptions(ExportOptions.FORMAT_WEBP_LOSSY, 90, 0, true),
+            new ExportOptions(ExportOptions.FORMAT_JPEG, 90, 0, true),
+            new ExportOptions(ExportOptions.FORMAT_WEBP_LOSSY, 80, 512, true),
+            new ExportOptions(ExportOptions.FORMAT_SVG, 100, 0, true),
+            new ExportOptions(ExportOptions.FORMAT_PDF, 100, 0, true),
+            new ExportOptions(ExportOptions.FORMAT_TIMELAPSE, 100, 720, true),
+    };
     private static final int PERMISSION_REQUEST_CODE = 100;
+    // saved state 中的工具设置和视口，笔画本身由自动保存日志恢复
+    private static final String KEY_COLOR = "color";
+    private static final String KEY_BRUSH = "brush";
+    private static final String KEY_ERASER = "eraser";
+    private static final String KEY_SHAPES = "shapes";
+    private static final String KEY_LASSO = "lasso";
+    private static final String KEY_LAYER = "layer";
+    private static final String KEY_VIEWPORT = "viewport";
+    private static final String KEY_EXPORT = "export";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,9 +93,19 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         paintView = findViewById(R.id.paintView);
+        // 旋转或调整窗口大小后，新的画布直接接管原来的笔画和缓存
+        drawingState = new ViewModelProvider(this).get(DrawingViewModel.class);
+        boolean recreated = drawingState.markAttached();
+        paintView.attachState(drawingState);
+        if (savedInstanceState != null) {
+            restoreToolState(savedInstanceState, !recreated);
+        }
+        setupInkLayer();
+        startAutosave();
 
         // 设置颜色选择按钮
         Button colorBtn = findViewById(R.id.colorBtn);
+        updateColorButton(colorBtn);
         colorBtn.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -54,6 +113,64 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        // 设置笔刷按钮，依次切换预设笔刷
+        final Button brushBtn = findViewById(R.id.brushBtn);
+        brushBtn.setText(BRUSH_NAMES[currentBrush.id]);
+        brushBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                currentBrush = Brush.get((currentBrush.id + 1) % Brush.count());
+                paintView.setBrush(currentBrush);
+                brushBtn.setText(BRUSH_NAMES[currentBrush.id]);
+            }
+        });
+
+        // 设置橡皮按钮，依次切换关闭、整笔擦除和局部擦除
+        final Button eraserBtn = findViewById(R.id.eraserBtn);
+        eraserBtn.setText(ERASER_NAMES[eraserMode]);
+        eraserBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                eraserMode = (eraserMode + 1) % ERASER_NAMES.length;
+                paintView.setEraserMode(eraserMode);
+                eraserBtn.setText(ERASER_NAMES[eraserMode]);
+            }
+        });
+
+        // 设置形状识别按钮，在手绘和规整形状之间切换
+        final Button shapeBtn = findViewById(R.id.shapeBtn);
+        shapeBtn.setText(shapeRecognition ? "形状" : "手绘");
+        shapeBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                shapeRecognition = !shapeRecognition;
+                paintView.setShapeRecognition(shapeRecognition);
+                shapeBtn.setText(shapeRecognition ? "形状" : "手绘");
+            }
+        });
+
+        // 设置套索按钮，在画笔和套索选择之间切换
+        final Button lassoBtn = findViewById(R.id.lassoBtn);
+        lassoBtn.setText(lassoMode ? "套索" : "画笔");
+        lassoBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                lassoMode = !lassoMode;
+                paintView.setLassoMode(lassoMode);
+                lassoBtn.setText(lassoMode ? "套索" : "画笔");
+            }
+        });
+
+        // 设置图层按钮
+        layerBtn = findViewById(R.id.layerBtn);
+        layerBtn.setText("图层 " + (currentLayer + 1));
+        layerBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showLayerDialog();
+            }
+        });
+
         // 设置撤销按钮
         Button undoBtn = findViewById(R.id.undoBtn);
         undoBtn.setOnClickListener(new View.OnClickListener() {
@@ -63,6 +180,15 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        // 设置重做按钮
+        Button redoBtn = findViewById(R.id.redoBtn);
+        redoBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                paintView.redo();
+            }
+        });
+
         // 设置清除按钮
         Button clearBtn = findViewById(R.id.clearBtn);
         clearBtn.setOnClickListener(new View.OnClickListener() {
@@ -72,8 +198,17 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        // 设置回放按钮
+        Button replayBtn = findViewById(R.id.replayBtn);
+        replayBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showReplayDialog();
+            }
+        });
+
         // 设置保存按钮
-        Button saveBtn = findViewById(R.id.saveBtn);
+        saveBtn = findViewById(R.id.saveBtn);
         saveBtn.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -84,281 +219,391 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
         });
+        // 长按选择导出格式
+        saveBtn.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                showExportDialog();
+                return true;
+            }
+        });
+        // 导出在 DrawingViewModel 中进行，旋转后由新的按钮接着显示进度
+        drawingState.setExportCallback(new DrawingExporter.Callback() {
+            @Override
+            public void onProgress(int percent) {
+                saveBtn.setEnabled(false);
+                saveBtn.setText("保存中 " + percent + "%");
+            }
+
+            @Override
+            public void onComplete(String location) {
+                resetSaveButton();
+                ExportOptions options = drawingState.getExportOptions();
+                String message = options.format == ExportOptions.FORMAT_PDF ? "PDF 已保存到 Documents/MiniDoodle"
+                        : options.isTimelapse() ? "延时视频已保存" : "图片已保存到相册";
+                Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                resetSaveButton();
+                Toast.makeText(MainActivity.this, "保存失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
-    private void showColorPickerDialog() {
+    private void showExportDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle("导出格式")
+                .setSingleChoiceItems(EXPORT_NAMES, exportPreset, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        exportPreset = which;
+                        dialog.dismiss();
+                    }
+                })
+                .show();
+    }
+
+    // 全屏回放当前画面的绘制过程，快照与导出相同，回放期间继续绘制不影响回放
+    private void showReplayDialog() {
+        if (paintView.getWidth() == 0 || paintView.getHeight() == 0) {
+            return;
+        }
         final Dialog dialog = new Dialog(MainActivity.this);
         dialog.requestWindowFeature(Window.FEATURE_NO_TITLE);
-        dialog.setContentView(R.layout.dialog_color_picker);
-        dialog.setCancelable(true);
-
-        // 获取视图引用
-        final View colorPreviewInDialog = dialog.findViewById(R.id.colorPreviewInDialog);
-        final SeekBar redSeekBar = dialog.findViewById(R.id.redSeekBar);
-        final SeekBar greenSeekBar = dialog.findViewById(R.id.greenSeekBar);
-        final SeekBar blueSeekBar = dialog.findViewById(R.id.blueSeekBar);
-        final EditText redEditText = dialog.findViewById(R.id.redEditText);
-        final EditText greenEditText = dialog.findViewById(R.id.greenEditText);
-        final EditText blueEditText = dialog.findViewById(R.id.blueEditText);
-        final EditText hexEditText = dialog.findViewById(R.id.hexEditText);
-        final LinearLayout presetColorsLayout = dialog.findViewById(R.id.presetColorsLayout);
-
-        Button selectBtn = dialog.findViewById(R.id.selectColorBtn);
-        Button cancelBtn = dialog.findViewById(R.id.cancelBtn);
-
-        // 设置预设颜色
-        int[] presetColors = {
-                Color.BLACK, Color.WHITE, Color.RED, Color.GREEN, Color.BLUE,
-                Color.YELLOW, Color.CYAN, Color.MAGENTA, Color.GRAY,
-                Color.rgb(255, 165, 0), // 橙色
-                Color.rgb(128, 0, 128), // 紫色
-                Color.rgb(165, 42, 42), // 棕色
-                Color.rgb(255, 192, 203) // 粉色
-        };
-
-        // 动态添加预设颜色按钮
-        for (final int presetColor : presetColors) {
-            final View colorView = new View(this);
-            int sizePx = (int) (40 * getResources().getDisplayMetrics().density); // 40dp
-            LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(sizePx, sizePx);
-            params.setMargins(10, 10, 10, 10);
-            colorView.setLayoutParams(params);
-            colorView.setBackgroundColor(presetColor);
-
-            // 添加点击事件
-            colorView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    updateColorControls(presetColor, redSeekBar, greenSeekBar, blueSeekBar,
-                            redEditText, greenEditText, blueEditText, hexEditText, colorPreviewInDialog);
-                }
-            });
-
-            presetColorsLayout.addView(colorView);
+        dialog.setContentView(R.layout.dialog_replay);
+        Window window = dialog.getWindow();
+        if (window != null) {
+            window.setLayout(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
         }
 
-        // 初始化为当前颜色
-        updateColorControls(currentColor, redSeekBar, greenSeekBar, blueSeekBar,
-                redEditText, greenEditText, blueEditText, hexEditText, colorPreviewInDialog);
+        final ReplayView replayView = dialog.findViewById(R.id.replayView);
+        replayView.start(paintView.createExportSnapshot());
 
-        // 设置SeekBar监听器
-        SeekBar.OnSeekBarChangeListener seekBarChangeListener = new SeekBar.OnSeekBarChangeListener() {
+        final Button speedBtn = dialog.findViewById(R.id.replaySpeedBtn);
+        speedBtn.setOnClickListener(new View.OnClickListener() {
             @Override
-            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                if (fromUser) {
-                    int red = redSeekBar.getProgress();
-                    int green = greenSeekBar.getProgress();
-                    int blue = blueSeekBar.getProgress();
-
-                    // 更新EditText
-                    if (seekBar == redSeekBar) {
-                        redEditText.setText(String.valueOf(red));
-                    } else if (seekBar == greenSeekBar) {
-                        greenEditText.setText(String.valueOf(green));
-                    } else if (seekBar == blueSeekBar) {
-                        blueEditText.setText(String.valueOf(blue));
+            public void onClick(View v) {
+                float[] speeds = ReplayView.SPEEDS;
+                int next = 0;
+                for (int i = 0; i < speeds.length; i++) {
+                    if (speeds[i] == replayView.getSpeed()) {
+                        next = (i + 1) % speeds.length;
                     }
-
-                    // 更新十六进制
-                    String hex = String.format("%02X%02X%02X", red, green, blue);
-                    hexEditText.setText(hex);
-
-                    // 更新颜色预览
-                    int color = Color.rgb(red, green, blue);
-                    colorPreviewInDialog.setBackgroundColor(color);
                 }
+                replayView.setSpeed(speeds[next]);
+                speedBtn.setText((int) speeds[next] + "×");
             }
+        });
 
+        Button restartBtn = dialog.findViewById(R.id.replayRestartBtn);
+        restartBtn.setOnClickListener(new View.OnClickListener() {
             @Override
-            public void onStartTrackingTouch(SeekBar seekBar) {}
+            public void onClick(View v) {
+                replayView.restart();
+            }
+        });
 
+        Button closeBtn = dialog.findViewById(R.id.closeReplayBtn);
+        closeBtn.setOnClickListener(new View.OnClickListener() {
             @Override
-            public void onStopTrackingTouch(SeekBar seekBar) {}
-        };
+            public void onClick(View v) {
+                dialog.dismiss();
+            }
+        });
 
-        redSeekBar.setOnSeekBarChangeListener(seekBarChangeListener);
-        greenSeekBar.setOnSeekBarChangeListener(seekBarChangeListener);
-        blueSeekBar.setOnSeekBarChangeListener(seekBarChangeListener);
+        dialog.show();
+    }
 
-        // 设置EditText监听器 - RGB
-        TextWatcher rgbTextWatcher = new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+    // 图层面板：每次修改都立即作用到画布，图层表的拷贝在对话框内保持最新
+    private void showLayerDialog() {
+        final Dialog dialog = new Dialog(MainActivity.this);
+        dialog.requestWindowFeature(Window.FEATURE_NO_TITLE);
+        dialog.setContentView(R.layout.dialog_layers);
 
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+        final LinearLayout layerList = dialog.findViewById(R.id.layerList);
+        final LayerTable layers = paintView.copyLayers();
+        fillLayerList(layerList, layers);
 
+        Button addLayerBtn = dialog.findViewById(R.id.addLayerBtn);
+        addLayerBtn.setOnClickListener(new View.OnClickListener() {
             @Override
-            public void afterTextChanged(Editable s) {
-                try {
-                    int red = getValidColorValue(redEditText.getText().toString());
-                    int green = getValidColorValue(greenEditText.getText().toString());
-                    int blue = getValidColorValue(blueEditText.getText().toString());
-
-                    // 更新SeekBar（避免无限循环）
-                    redSeekBar.setProgress(red);
-                    greenSeekBar.setProgress(green);
-                    blueSeekBar.setProgress(blue);
-
-                    // 更新十六进制
-                    String hex = String.format("%02X%02X%02X", red, green, blue);
-                    hexEditText.setText(hex);
-
-                    // 更新颜色预览
-                    int color = Color.rgb(red, green, blue);
-                    colorPreviewInDialog.setBackgroundColor(color);
-                } catch (NumberFormatException e) {
-                    // 处理无效输入
+            public void onClick(View v) {
+                int layer = layers.add();
+                if (layer < 0) {
+                    Toast.makeText(MainActivity.this, "最多 " + LayerTable.MAX_LAYERS + " 个图层",
+                            Toast.LENGTH_SHORT).show();
+                    return;
                 }
+                paintView.setLayers(layers);
+                selectLayer(layer);
+                fillLayerList(layerList, layers);
             }
-        };
-
-        redEditText.addTextChangedListener(rgbTextWatcher);
-        greenEditText.addTextChangedListener(rgbTextWatcher);
-        blueEditText.addTextChangedListener(rgbTextWatcher);
-
-        // 设置EditText监听器 - 十六进制（简化版）
-        hexEditText.addTextChangedListener(new TextWatcher() {
-            private boolean isUpdating = false;
+        });
 
+        Button closeBtn = dialog.findViewById(R.id.closeLayersBtn);
+        closeBtn.setOnClickListener(new View.OnClickListener() {
             @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-                // 不需要实现
+            public void onClick(View v) {
+                dialog.dismiss();
             }
+        });
 
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {
-                // 不需要实现
-            }
+        dialog.show();
+    }
 
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (isUpdating) return;
-
-                isUpdating = true;
-
-                try {
-                    String hexInput = s.toString();
-
-                    // 直接使用用户输入，只在预览颜色时临时补全
-                    if (hexInput.length() > 0) {
-                        // 临时创建一个6位的十六进制值用于解析
-                        StringBuilder tempHex = new StringBuilder(hexInput);
-                        while (tempHex.length() < 6) {
-                            tempHex.append("0");
-                        }
-
-                        // 更新颜色预览
-                        int color = Color.parseColor("#" + tempHex.toString());
-                        colorPreviewInDialog.setBackgroundColor(color);
-
-                        // 只在用户输入完整的6位十六进制时更新RGB值
-                        if (hexInput.length() == 6) {
-                            int red = Color.red(color);
-                            int green = Color.green(color);
-                            int blue = Color.blue(color);
-
-                            redSeekBar.setProgress(red);
-                            greenSeekBar.setProgress(green);
-                            blueSeekBar.setProgress(blue);
-
-                            redEditText.setText(String.valueOf(red));
-                            greenEditText.setText(String.valueOf(green));
-                            blueEditText.setText(String.valueOf(blue));
-                        }
+    // 按从上到下的顺序为每个图层建立一行
+    private void fillLayerList(final LinearLayout layerList, final LayerTable layers) {
+        layerList.removeAllViews();
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            final int layer = i;
+            LinearLayout row = new LinearLayout(this);
+            row.setOrientation(LinearLayout.HORIZONTAL);
+
+            Button selectBtn = new Button(this);
+            selectBtn.setText((layer == currentLayer ? "● " : "") + "图层 " + (layer + 1));
+            selectBtn.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    selectLayer(layer);
+                    fillLayerList(layerList, layers);
+                }
+            });
+            row.addView(selectBtn);
+
+            final Button visibleBtn = new Button(this);
+            visibleBtn.setText(layers.isVisible(layer) ? "显示" : "隐藏");
+            visibleBtn.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    layers.setVisible(layer, !layers.isVisible(layer));
+                    paintView.setLayers(layers);
+                    visibleBtn.setText(layers.isVisible(layer) ? "显示" : "隐藏");
+                }
+            });
+            row.addView(visibleBtn);
+
+            SeekBar alphaSeekBar = new SeekBar(this);
+            alphaSeekBar.setMax(255);
+            alphaSeekBar.setProgress(layers.getAlpha(layer));
+            alphaSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+                @Override
+                public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                    if (fromUser) {
+                        // 只重新合成，不重画笔画
+                        layers.setAlpha(layer, progress);
+                        paintView.setLayers(layers);
                     }
-                } catch (Exception e) {
-                    // 无效的十六进制值，不做特殊处理
-                    // 让用户继续输入
                 }
 
-                isUpdating = false;
+                @Override
+                public void onStartTrackingTouch(SeekBar seekBar) {}
+
+                @Override
+                public void onStopTrackingTouch(SeekBar seekBar) {}
+            });
+            row.addView(alphaSeekBar, new LinearLayout.LayoutParams(0,
+                    LinearLayout.LayoutParams.WRAP_CONTENT, 1f));
+
+            final Button blendBtn = new Button(this);
+            blendBtn.setText(BLEND_NAMES[layers.getBlendMode(layer)]);
+            blendBtn.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    int mode = (layers.getBlendMode(layer) + 1) % LayerTable.BLEND_MODE_COUNT;
+                    layers.setBlendMode(layer, mode);
+                    paintView.setLayers(layers);
+                    blendBtn.setText(BLEND_NAMES[mode]);
+                }
+            });
+            row.addView(blendBtn);
+
+            layerList.addView(row);
+        }
+    }
+
+    private void selectLayer(int layer) {
+        currentLayer = layer;
+        paintView.setCurrentLayer(layer);
+        layerBtn.setText("图层 " + (layer + 1));
+    }
+
+    // 对话框在第一次打开时创建，之后复用
+    private void showColorPickerDialog() {
+        if (colorPicker == null) {
+            colorPicker = new ColorPickerDialog(this);
+        }
+        colorPicker.show(currentColor, new ColorPickerDialog.Callback() {
+            @Override
+            public void onColorSelected(int color) {
+                currentColor = color;
+                paintView.setPathColor(currentColor);
+                updateColorButton((Button) findViewById(R.id.colorBtn));
             }
         });
+    }
 
-        // 设置确定按钮
-        selectBtn.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                int red = redSeekBar.getProgress();
-                int green = greenSeekBar.getProgress();
-                int blue = blueSeekBar.getProgress();
+    // 更新颜色按钮的背景色，以显示当前选择的颜色
+    private void updateColorButton(Button colorBtn) {
+        colorBtn.setBackgroundColor(currentColor);
 
-                currentColor = Color.rgb(red, green, blue);
-                paintView.setPathColor(currentColor);
+        // 如果颜色较深，则使用白色文本
+        if (Color.red(currentColor) + Color.green(currentColor) + Color.blue(currentColor) < 384) { // 384 = 3*128
+            colorBtn.setTextColor(Color.WHITE);
+        } else {
+            colorBtn.setTextColor(Color.BLACK);
+        }
+    }
 
-                // 更新颜色按钮的背景色，以显示当前选择的颜色
-                Button colorBtn = findViewById(R.id.colorBtn);
-                colorBtn.setBackgroundColor(currentColor);
+    // 恢复工具设置；进程被杀后重建时画布状态是新的，视口也从 saved state 恢复
+    private void restoreToolState(Bundle savedInstanceState, boolean restoreViewport) {
+        currentColor = savedInstanceState.getInt(KEY_COLOR, currentColor);
+        currentBrush = Brush.get(savedInstanceState.getInt(KEY_BRUSH, currentBrush.id));
+        eraserMode = savedInstanceState.getInt(KEY_ERASER, eraserMode);
+        shapeRecognition = savedInstanceState.getBoolean(KEY_SHAPES, shapeRecognition);
+        lassoMode = savedInstanceState.getBoolean(KEY_LASSO, lassoMode);
+        currentLayer = savedInstanceState.getInt(KEY_LAYER, currentLayer);
+        exportPreset = savedInstanceState.getInt(KEY_EXPORT, exportPreset);
+        paintView.setPathColor(currentColor);
+        paintView.setBrush(currentBrush);
+        paintView.setEraserMode(eraserMode);
+        paintView.setShapeRecognition(shapeRecognition);
+        paintView.setLassoMode(lassoMode);
+        // 图层表还没有从日志载入时，等载入完成再选择图层
+        if (currentLayer < paintView.copyLayers().size()) {
+            paintView.setCurrentLayer(currentLayer);
+        }
+        float[] viewport = savedInstanceState.getFloatArray(KEY_VIEWPORT);
+        if (restoreViewport && viewport != null && viewport.length == 3) {
+            drawingState.getViewport().set(viewport[0], viewport[1], viewport[2]);
+        }
+    }
 
-                // 如果颜色较深，则使用白色文本
-                if (red + green + blue < 384) { // 384 = 3*128
-                    colorBtn.setTextColor(Color.WHITE);
-                } else {
-                    colorBtn.setTextColor(Color.BLACK);
-                }
+    // saved state 只保存几个数值，笔画留在 DrawingViewModel 和自动保存日志中
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(KEY_COLOR, currentColor);
+        outState.putInt(KEY_BRUSH, currentBrush.id);
+        outState.putInt(KEY_ERASER, eraserMode);
+        outState.putBoolean(KEY_SHAPES, shapeRecognition);
+        outState.putBoolean(KEY_LASSO, lassoMode);
+        outState.putInt(KEY_LAYER, currentLayer);
+        outState.putInt(KEY_EXPORT, exportPreset);
+        Viewport viewport = drawingState.getViewport();
+        outState.putFloatArray(KEY_VIEWPORT, new float[]{
+                viewport.getScale(), viewport.getTranslateX(), viewport.getTranslateY()});
+    }
 
-                dialog.dismiss();
+    // 先让画布把可重建的缓存交回位图池，再由池按级别回收
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        paintView.trimMemory(level);
+        BitmapPool.getInstance().trimMemory(level);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // 退到后台时把性能指标输出到 logcat
+        StringWriter report = new StringWriter();
+        DrawingMetrics.getInstance().dump(new PrintWriter(report));
+        BitmapPool.getInstance().dump(new PrintWriter(report));
+        Log.i(TAG, "metrics\n" + report);
+    }
+
+    /**
+     * adb shell dumpsys activity com.k.minidoodle/.MainActivity [--save]
+     * 输出性能指标，带 --save 时同时写入应用私有目录下的 metrics.txt
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        DrawingMetrics metrics = DrawingMetrics.getInstance();
+        metrics.dump(writer);
+        BitmapPool.getInstance().dump(writer);
+        if (args != null && Arrays.asList(args).contains("--save")) {
+            File file = new File(getFilesDir(), "metrics.txt");
+            try {
+                metrics.dump(file);
+                writer.println("saved to " + file);
+            } catch (IOException e) {
+                writer.println("save failed: " + e);
             }
-        });
+        }
+    }
 
-        // 设置取消按钮
-        cancelBtn.setOnClickListener(new View.OnClickListener() {
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // 进行中的导出由 DrawingViewModel 继续完成，结果交给重建后的 Activity
+        drawingState.setExportCallback(null);
+        if (colorPicker != null) {
+            colorPicker.dismiss();
+        }
+        // 画布状态和自动保存由 DrawingViewModel 持有，Activity 真正结束时才关闭
+        drawingState.setLoadCallback(null);
+        paintView.setDocumentListener(null);
+        if (inkLayer != null) {
+            ((PaintView) paintView).setInkLayer(null);
+            inkLayer.release();
+        }
+    }
+
+    // API 29 以上用前缓冲区绘制 PaintView 上正在书写的笔画，更早的系统保持普通绘制
+    private void setupInkLayer() {
+        if (!FrontBufferInkLayer.isSupported() || !(paintView instanceof PaintView)) {
+            return;
+        }
+        SurfaceView overlay = findViewById(R.id.lowLatencyOverlay);
+        overlay.setVisibility(View.VISIBLE);
+        inkLayer = new FrontBufferInkLayer(overlay);
+        ((PaintView) paintView).setInkLayer(inkLayer);
+    }
+
+    // 恢复上次自动保存的绘图，之后每完成一笔都追加保存；配置变化后重建时日志已经载入，只需重新连接
+    private void startAutosave() {
+        drawingState.loadAutosave(new File(getFilesDir(), "autosave.mdoc"));
+        if (drawingState.isAutosaveStarted()) {
+            paintView.setDocumentListener(drawingState.getAutosaver());
+            return;
+        }
+        drawingState.setLoadCallback(new DocumentAutosaver.LoadCallback() {
             @Override
-            public void onClick(View v) {
-                dialog.dismiss();
+            public void onLoaded(StrokeStore document) {
+                // 载入期间已经画下的笔画接在恢复的内容之后
+                StrokeStore drawn = paintView.copyVisibleStrokes();
+                for (int i = 0; i < drawn.size(); i++) {
+                    document.append(drawn, i);
+                }
+                paintView.loadDocument(document);
+                selectLayer(Math.min(currentLayer, document.getLayers().size() - 1));
+                drawingState.startAutosave(document);
+                paintView.setDocumentListener(drawingState.getAutosaver());
             }
         });
-
-        dialog.show();
     }
 
-    // 保存绘图
+    // 保存绘图：主线程只拷贝笔画，光栅化、编码和写入在后台进行
     private void saveDrawing() {
-        Bitmap bitmap = Bitmap.createBitmap(paintView.getWidth(), paintView.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-        paintView.draw(canvas);
+        if (paintView.getWidth() == 0 || paintView.getHeight() == 0) {
+            return;
+        }
+        ExportSnapshot snapshot = paintView.createExportSnapshot();
 
         // 生成文件名
         SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault());
-        String fileName = "MiniDoodle_" + sdf.format(new Date()) + ".png";
+        String fileName = "MiniDoodle_" + sdf.format(new Date());
 
-        // 保存图片
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            // Android 10及以上使用MediaStore
-            ContentValues values = new ContentValues();
-            values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);
-            values.put(MediaStore.Images.Media.MIME_TYPE, "image/png");
-            values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/MiniDoodle");
-
-            Uri uri = getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
-            if (uri != null) {
-                try (OutputStream os = getContentResolver().openOutputStream(uri)) {
-                    bitmap.compress(Bitmap.CompressFormat.PNG, 100, os);
-                    Toast.makeText(MainActivity.this, "图片已保存到相册", Toast.LENGTH_SHORT).show();
-                } catch (Exception e) {
-                    Toast.makeText(MainActivity.this, "保存失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            }
-        } else {
-            // Android 9及以下使用传统文件存储
-            File picturesDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES);
-            File miniDoodleDir = new File(picturesDir, "MiniDoodle");
-            if (!miniDoodleDir.exists()) {
-                miniDoodleDir.mkdirs();
-            }
-
-            File file = new File(miniDoodleDir, fileName);
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                bitmap.compress(Bitmap.CompressFormat.PNG, 100, fos);
-                Toast.makeText(MainActivity.this, "图片已保存到相册", Toast.LENGTH_SHORT).show();
+        saveBtn.setEnabled(false);
+        drawingState.export(this, snapshot, EXPORT_PRESETS[exportPreset], fileName);
+    }
 
-                // 通知图库更新
-                MediaStore.Images.Media.insertImage(getContentResolver(), file.getAbsolutePath(), fileName, null);
-            } catch (Exception e) {
-                Toast.makeText(MainActivity.this, "保存失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        }
+    private void resetSaveButton() {
+        saveBtn.setEnabled(true);
+        saveBtn.setText("保存");
     }
 
     // 检查存储权限
@@ -395,42 +640,4 @@ public class MainActivity extends AppCompatActivity {
             }
         }
     }
-
-    // 辅助方法：更新所有颜色控件
-    private void updateColorControls(int color, SeekBar redSeekBar, SeekBar greenSeekBar,
-                                     SeekBar blueSeekBar, EditText redEditText, EditText greenEditText,
-                                     EditText blueEditText, EditText hexEditText, View colorPreview) {
-        int red = Color.red(color);
-        int green = Color.green(color);
-        int blue = Color.blue(color);
-
-        // 更新SeekBar
-        redSeekBar.setProgress(red);
-        greenSeekBar.setProgress(green);
-        blueSeekBar.setProgress(blue);
-
-        // 更新EditText
-        redEditText.setText(String.valueOf(red));
-        greenEditText.setText(String.valueOf(green));
-        blueEditText.setText(String.valueOf(blue));
-
-        // 更新十六进制
-        String hex = String.format("%02X%02X%02X", red, green, blue);
-        hexEditText.setText(hex);
-
-        // 更新颜色预览
-        colorPreview.setBackgroundColor(color);
-    }
-
-    // 辅助方法：获取有效的颜色值（0-255）
-    private int getValidColorValue(String input) {
-        try {
-            int value = Integer.parseInt(input);
-            if (value < 0) return 0;
-            if (value > 255) return 255;
-            return value;
-        } catch (NumberFormatException e) {
-            return 0;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package com.k.minidoodle;
+
+/**
+ * 单个文档的内存上限
+ * 占用超过上限时按从便宜到昂贵的顺序逐级回收（先丢可以随时重建的缓存，再丢重建较慢的），
+ * 每级回收后重新计量，回到上限以内就停下，级数用完仍超出时也停下，不会丢弃笔画数据。
+ * 这里只决定何时回收、回收到第几级，具体的回收动作由 {@link Target} 实现。不是线程安全的。
+ */
+class MemoryCap {
+
+    /** 不限制 */
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * 受限制的对象
+     */
+    interface Target {
+        /** 当前占用的字节数 */
+        long getByteCount();
+
+        /**
+         * 执行第 stage 级回收（从 0 开始），尽量回到 limit 字节以内
+         * @return 这一级是否存在；超出最后一级时返回 false
+         */
+        boolean trim(int stage, long limit);
+    }
+
+    private long limit;
+
+    MemoryCap(long limit) {
+        setLimit(limit);
+    }
+
+    void setLimit(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit " + limit);
+        }
+        this.limit = limit;
+    }
+
+    long getLimit() {
+        return limit;
+    }
+
+    /**
+     * 占用超过上限时逐级回收，直到回到上限以内或级数用完
+     * @return 执行了的级数，未超出时为 0
+     */
+    int enforce(Target target) {
+        return enforce(target, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 同 {@link #enforce(Target)}，但最多执行前 stages 级，用于只允许廉价回收的场合
+     */
+    int enforce(Target target, int stages) {
+        int stage = 0;
+        while (stage < stages && target.getByteCount() > limit && target.trim(stage, limit)) {
+            stage++;
+        }
+        return stage;
+    }
+}
@@ -5,34 +5,114 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 
 import androidx.annotation.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
+public class PaintView extends View implements DrawingSurface, ShapeRecognitionWorker.Callback {
 
-public class PaintView extends View {
+    /**
+     * 文档变化监听，用于自动保存；回调在主线程执行
+     */
+    public interface DocumentListener {
+        /**
+         * 新增（或重做）了一条记录：笔画，或者橡皮产生的擦除记录（见 {@link StrokeStore#addErase}）
+         * @param stroke 只包含这一条记录的拷贝，可以交给其他线程
+         */
+        void onStrokeAdded(StrokeStore stroke);
+
+        /** 可见记录减少为前 count 条（撤销或清空） */
+        void onStrokesTruncated(int count);
+
+        /**
+         * 图层属性变化（含新增图层）
+         * @param layers 图层表的拷贝，可以交给其他线程
+         */
+        void onLayersChanged(LayerTable layers);
+    }
 
     private static final float STROKE_WIDTH = 12f;
+    private static final int TOUCH_NONE = 0;
+    private static final int TOUCH_DRAW = 1;
+    private static final int TOUCH_GESTURE = 2;
+    private static final int TOUCH_ERASE = 3;
+    // 套索模式下的单指操作：画套索或拖动选区
+    private static final int TOUCH_SELECT = 4;
+    // 套索模式下有选区时的双指操作：移动、缩放、旋转选区
+    private static final int TOUCH_TRANSFORM = 5;
     private Paint paint;
     private Path currentPath;
+    // 流水线尚未处理完的最新一段，画在 currentPath 之后
+    private Path tailPath;
     private int currentColor;
+    private Brush brush = Brush.PEN;
+    private float strokeWidth = STROKE_WIDTH;
+    // 新笔画所在的图层
+    private int currentLayer;
+    // 非钢笔笔刷的进行中笔画：每帧由预览点和笔刷权重重建，复用同一份存储
+    private final WetStroke wetStroke = new WetStroke();
+    // 橡皮模式，见 StrokeEraser
+    private int eraserMode = StrokeEraser.MODE_OFF;
+    // 本批待擦除的轨迹（文档坐标），第 0 个点为上一批的最后一点，轨迹不会断开
+    private final TouchSampleBuffer eraserPath = new TouchSampleBuffer(64);
+    // 本次擦除手势已经产生过记录，之后的批次与它一起撤销
+    private boolean erasedInGesture;
+    private Paint eraserPaint;
+    // 套索模式：触摸改为选择和变换已完成的笔画
+    private boolean lassoMode;
+
+    // 已完成的笔画及其撤销历史和分块光栅缓存：每条笔画抬起时只绘制一次，onDraw 只需贴图。
+    // 接管 DrawingViewModel 之后换成其中的实例，View 重建时不丢失也不需要重新光栅化
+    private StrokeLayer committedLayer = new StrokeLayer();
+    private DocumentListener documentListener;
+    private final SelectionTool selectionTool = new SelectionTool(committedLayer);
+
+    // 采集当前笔画的所有触摸采样点（含历史点）
+    private final StrokeCapture capture = new StrokeCapture();
+    // 复用的脏区域和 onDraw 裁剪区域
+    private final Rect dirtyRect = new Rect();
+    private final Rect clipBounds = new Rect();
+
+    // 文档坐标到视图坐标的变换，与 committedLayer 一样由 DrawingViewModel 保存
+    private Viewport viewport = new Viewport();
+    private int touchMode = TOUCH_NONE;
 
-    // 存储路径和它们的颜色，用于撤销功能
-    private List<PathWithColor> paths = new ArrayList<>();
+    private final DrawingMetrics metrics = DrawingMetrics.getInstance();
+    // 尚未画到屏幕上的最早触摸采样时间（System.nanoTime 时基），0 表示没有
+    private long pendingTouchNanos;
+    // 双指手势上一次的中心点、两指间距和两指连线的角度（弧度）
+    private float lastFocusX, lastFocusY, lastSpan, lastAngle;
 
-    private static class PathWithColor {
-        Path path;
-        int color;
+    // 抬笔后在后台识别形状，关闭时或离开窗口后为 null
+    @Nullable
+    private ShapeRecognitionWorker shapeWorker;
+    private boolean shapeRecognition;
+    // 每次编辑加一；识别结果到达时序号已变，说明笔画可能已被撤销或覆盖，结果作废
+    private int editGeneration;
 
-        PathWithColor(Path path, int color) {
-            this.path = path;
-            this.color = color;
+    // 低延迟湿墨层，为 null 时当前笔画和已完成笔画一样由 onDraw 绘制
+    @Nullable
+    private FrontBufferInkLayer inkLayer;
+    // 当前笔画由湿墨层绘制；湿墨层只画等宽的原始采样折线，变宽笔刷的笔画仍由 onDraw 按笔刷渲染
+    private boolean inkStroke;
+    // 已送到湿墨层的原始采样点数
+    private int inkSampleCount;
+    // 抬起后等已完成图层显示出这一笔，再清空湿墨层
+    private boolean inkClearPending;
+    private final Runnable clearInkLayer = new Runnable() {
+        @Override
+        public void run() {
+            if (inkLayer != null && touchMode != TOUCH_DRAW) {
+                inkLayer.clear();
+            }
         }
-    }
+    };
 
     public PaintView(Context context) {
         super(context);
@@ -54,69 +134,634 @@ public class PaintView extends View {
         paint.setAntiAlias(true);
         paint.setStyle(Paint.Style.STROKE);
         paint.setStrokeWidth(STROKE_WIDTH);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
         currentColor = Color.BLACK;
         paint.setColor(currentColor);
 
         currentPath = new Path();
+        tailPath = new Path();
+
+        eraserPaint = new Paint();
+        eraserPaint.setAntiAlias(true);
+        eraserPaint.setStyle(Paint.Style.STROKE);
+        eraserPaint.setColor(Color.GRAY);
     }
 
+    /**
+     * 直接使用 state 中的笔画图层和视口：旋转后只需把已有的分块缓存贴到屏幕上
+     */
+    @Override
+    public void attachState(DrawingViewModel state) {
+        releaseSelection();
+        committedLayer = state.getStrokeLayer();
+        selectionTool.setLayer(committedLayer);
+        viewport = state.getViewport();
+        editGeneration++;
+        currentLayer = Math.min(currentLayer, committedLayer.copyLayers().size() - 1);
+        invalidate();
+        recordHistoryMetrics();
+    }
+
+    @Override
     public void setPathColor(int color) {
         this.currentColor = color;
         paint.setColor(color);
     }
 
+    @Override
+    public void setBrush(Brush brush) {
+        this.brush = brush;
+    }
+
+    @Override
+    public void setStrokeWidth(float width) {
+        this.strokeWidth = width;
+        paint.setStrokeWidth(width);
+    }
+
+    @Override
+    public LayerTable copyLayers() {
+        return committedLayer.copyLayers();
+    }
+
+    @Override
+    public void setLayers(LayerTable layers) {
+        if (committedLayer.setLayers(layers)) {
+            invalidate();
+            recordHistoryMetrics();
+            if (documentListener != null) {
+                documentListener.onLayersChanged(committedLayer.copyLayers());
+            }
+        }
+    }
+
+    @Override
+    public void setCurrentLayer(int layer) {
+        if (layer < 0 || layer >= committedLayer.copyLayers().size()) {
+            throw new IndexOutOfBoundsException("layer " + layer);
+        }
+        currentLayer = layer;
+    }
+
+    @Override
+    public void setEraserMode(int mode) {
+        eraserMode = mode;
+    }
+
+    @Override
+    public void setLassoMode(boolean enabled) {
+        if (!enabled) {
+            releaseSelection();
+        }
+        lassoMode = enabled;
+    }
+
+    @Override
+    public void trimMemory(int level) {
+        committedLayer.trimMemory(level);
+        recordHistoryMetrics();
+    }
+
+    @Override
+    public void setShapeRecognition(boolean enabled) {
+        shapeRecognition = enabled;
+        if (!enabled && shapeWorker != null) {
+            shapeWorker.shutdown();
+            shapeWorker = null;
+        }
+    }
+
+    /**
+     * 识别结果回到主线程：笔画仍是最后一次编辑时替换为规整的形状，撤销时整条消失
+     */
+    @Override
+    public void onShapeRecognized(int stroke, int generation, TouchSampleBuffer shape) {
+        if (generation != editGeneration || committedLayer.replaceLast(stroke, shape) < 0) {
+            return;
+        }
+        editGeneration++;
+        invalidate();
+        recordHistoryMetrics();
+        if (documentListener != null) {
+            documentListener.onStrokesTruncated(stroke);
+            notifyStrokeAdded(stroke);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // 拖到一半的选区停在当前位置提交，交给重建后的画布的状态里不留下未通知的记录
+        releaseSelection();
+        // 状态可能已交给重建后的画布，之后到达的识别结果一律作废
+        editGeneration++;
+        if (shapeWorker != null) {
+            shapeWorker.shutdown();
+            shapeWorker = null;
+        }
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
+        long start = System.nanoTime();
         super.onDraw(canvas);
 
-        // 绘制所有存储的路径及其各自的颜色
-        for (PathWithColor pathWithColor : paths) {
-            paint.setColor(pathWithColor.color);
-            canvas.drawPath(pathWithColor.path, paint);
+        float scale = viewport.getScale();
+        canvas.save();
+        canvas.translate(viewport.getTranslateX(), viewport.getTranslateY());
+        canvas.scale(scale, scale);
+        // 变换后的裁剪区域即需要重绘的文档范围
+        if (canvas.getClipBounds(clipBounds)) {
+            committedLayer.draw(canvas, clipBounds, viewport);
+        }
+        if (lassoMode) {
+            selectionTool.draw(canvas);
         }
 
-        // 用当前颜色绘制当前路径
-        paint.setColor(currentColor);
-        canvas.drawPath(currentPath, paint);
+        // 用当前颜色绘制当前路径；启用湿墨层时由湿墨层绘制
+        if (!inkStroke && touchMode == TOUCH_DRAW && brush != Brush.PEN) {
+            // 变宽笔刷按与提交时相同的方式渲染，抬起前后外观一致
+            wetStroke.update(capture.getStroke(), capture.getSamples(), currentColor, strokeWidth, brush);
+            wetStroke.draw(canvas, committedLayer.getPainter());
+        } else if (touchMode == TOUCH_ERASE && eraserPath.size() > 0) {
+            // 橡皮的位置和大小
+            float radius = StrokeEraser.DEFAULT_RADIUS / scale;
+            eraserPaint.setStrokeWidth(1 / scale);
+            canvas.drawCircle(eraserPath.getX(0), eraserPath.getY(0), radius, eraserPaint);
+        } else if (!inkStroke) {
+            paint.setColor(currentColor);
+            canvas.drawPath(currentPath, paint);
+            canvas.drawPath(tailPath, paint);
+        }
+        canvas.restore();
+
+        if (inkClearPending) {
+            // 本帧提交后下一个 vsync 再清空，避免抬起瞬间笔画闪烁
+            inkClearPending = false;
+            postOnAnimation(clearInkLayer);
+        }
+
+        metrics.recordFrame(start, pendingTouchNanos);
+        pendingTouchNanos = 0;
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        float x = event.getX();
-        float y = event.getY();
+        long start = System.nanoTime();
+        if (pendingTouchNanos == 0) {
+            // 事件时间与 System.nanoTime 在 Android 上同为 CLOCK_MONOTONIC；取本批最早的采样
+            long eventTime = event.getHistorySize() > 0
+                    ? event.getHistoricalEventTime(0) : event.getEventTime();
+            pendingTouchNanos = eventTime * 1_000_000L;
+        }
+        boolean handled = handleTouchEvent(event);
+        metrics.touchTime.recordSince(start);
+        return handled;
+    }
 
-        switch (event.getAction()) {
+    private boolean handleTouchEvent(MotionEvent event) {
+        if (lassoMode) {
+            return handleSelectionTouch(event);
+        }
+        switch (event.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
-                currentPath = new Path();
-                currentPath.moveTo(x, y);
+                if (eraserMode != StrokeEraser.MODE_OFF) {
+                    touchMode = TOUCH_ERASE;
+                    eraserPath.clear();
+                    erasedInGesture = false;
+                    break;
+                }
+                touchMode = TOUCH_DRAW;
+                capture.reset();
+                currentPath.rewind();
+                wetStroke.reset();
+                if (inkLayer != null) {
+                    // 上一笔已经画进已完成图层，尚未清空的湿墨可以直接丢弃
+                    removeCallbacks(clearInkLayer);
+                    inkLayer.clear();
+                }
+                inkStroke = inkLayer != null && brush == Brush.PEN;
+                if (inkStroke) {
+                    inkLayer.beginStroke(currentColor, strokeWidth, viewport);
+                    inkSampleCount = 0;
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                        // 采样点一到就分发，不等下一个 vsync 合并成批
+                        requestUnbufferedDispatch(event);
+                    }
+                }
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                // 第二根手指按下：放弃正在画的这一笔，转为平移缩放
+                if (touchMode == TOUCH_DRAW) {
+                    cancelStroke();
+                }
+                touchMode = TOUCH_GESTURE;
+                updateGestureAnchor(event, -1);
+                return true;
+            case MotionEvent.ACTION_POINTER_UP:
+                if (touchMode == TOUCH_GESTURE) {
+                    if (event.getPointerCount() > 2) {
+                        updateGestureAnchor(event, event.getActionIndex());
+                    } else {
+                        // 剩下的一根手指不再作画，直到全部抬起
+                        touchMode = TOUCH_NONE;
+                    }
+                }
                 return true;
             case MotionEvent.ACTION_MOVE:
-                currentPath.lineTo(x, y);
+                if (touchMode == TOUCH_GESTURE) {
+                    applyGesture(event);
+                    return true;
+                }
                 break;
             case MotionEvent.ACTION_UP:
-                currentPath.lineTo(x, y);
-                // 存储完成的路径及其颜色
-                paths.add(new PathWithColor(new Path(currentPath), currentColor));
-                currentPath.reset();
                 break;
+            case MotionEvent.ACTION_CANCEL:
+                if (touchMode == TOUCH_DRAW) {
+                    cancelStroke();
+                }
+                touchMode = TOUCH_NONE;
+                return true;
             default:
                 return false;
         }
+        if (touchMode == TOUCH_ERASE) {
+            eraseAlong(event);
+            if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+                touchMode = TOUCH_NONE;
+                invalidate();
+            }
+            return true;
+        }
+        if (touchMode != TOUCH_DRAW) {
+            if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+                touchMode = TOUCH_NONE;
+            }
+            return true;
+        }
 
-        invalidate();
+        // 一次性读取本事件合并的全部采样点，换算成文档坐标，经抽稀平滑后追加到当前路径
+        capture.ingest(event, viewport, currentPath, tailPath);
+        if (inkStroke) {
+            // 原始采样点直接送往前缓冲区，不等流水线处理，也不触发 View 重绘；
+            // 脏区域继续累计，抬起时一次性重绘整条笔画
+            // 触摸到绘制的延迟由湿墨层画到前缓冲区时记录，不再等到抬起后的那一帧
+            TouchSampleBuffer samples = capture.getSamples();
+            inkLayer.drawSamples(samples, inkSampleCount, samples.size(), pendingTouchNanos);
+            inkSampleCount = samples.size();
+            pendingTouchNanos = 0;
+            if (event.getActionMasked() != MotionEvent.ACTION_UP) {
+                return true;
+            }
+        }
+
+        if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+            touchMode = TOUCH_NONE;
+            capture.finish(currentPath, tailPath);
+            // 把处理后的点存为紧凑笔画，并一次性光栅化到缓存
+            // 笔刷权重由原始采样点的压力和速度按时间戳插值得到
+            BrushDynamics.apply(capture.getSamples(), capture.getStroke(), brush);
+            int stroke = committedLayer.add(capture.getStroke(), currentColor, strokeWidth, brush,
+                    currentLayer);
+            currentPath.rewind();
+            editGeneration++;
+            notifyStrokeAdded(stroke);
+            recordHistoryMetrics();
+            if (shapeRecognition) {
+                recognizeShape(stroke);
+            }
+            inkClearPending = inkStroke;
+        }
+
+        // 只重绘发生变化的区域
+        capture.computeDirtyBounds(StrokePainter.inkPadding(strokeWidth), dirtyRect);
+        mapToView(dirtyRect);
+        invalidate(dirtyRect);
         return true;
     }
 
+    @Override
     public void clear() {
-        paths.clear();
-        currentPath.reset();
+        releaseSelection();
+        committedLayer.clear();
+        editGeneration++;
+        currentPath.rewind();
+        tailPath.rewind();
         invalidate();
+        recordHistoryMetrics();
+        if (documentListener != null) {
+            documentListener.onStrokesTruncated(0);
+        }
     }
 
+    @Override
     public void undo() {
-        if (paths.size() > 0) {
-            paths.remove(paths.size() - 1);
+        releaseSelection();
+        if (committedLayer.undo()) {
+            editGeneration++;
+            invalidate();
+            recordHistoryMetrics();
+            if (documentListener != null) {
+                documentListener.onStrokesTruncated(committedLayer.size());
+            }
+        }
+    }
+
+    @Override
+    public void redo() {
+        releaseSelection();
+        int before = committedLayer.size();
+        if (committedLayer.redo()) {
+            editGeneration++;
+            invalidate();
+            recordHistoryMetrics();
+            // 一次擦除可能重做多条记录
+            for (int i = before; i < committedLayer.size(); i++) {
+                notifyStrokeAdded(i);
+            }
+        }
+    }
+
+    /**
+     * 恢复到 1:1 并回到文档原点
+     */
+    public void resetViewport() {
+        viewport.reset();
+        invalidate();
+    }
+
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * 设置低延迟湿墨层，正在书写的笔画改由它绘制；传入 null 恢复普通绘制
+     */
+    void setInkLayer(@Nullable FrontBufferInkLayer layer) {
+        if (inkLayer != null) {
+            removeCallbacks(clearInkLayer);
+            inkLayer.clear();
+        }
+        inkLayer = layer;
+        inkStroke = false;
+        inkClearPending = false;
+        if (touchMode == TOUCH_DRAW) {
+            cancelStroke();
+            touchMode = TOUCH_NONE;
+        }
+    }
+
+    @Override
+    public void setDocumentListener(@Nullable DocumentListener listener) {
+        this.documentListener = listener;
+    }
+
+    /**
+     * 用载入的文档替换当前内容，撤销历史随之清空
+     */
+    @Override
+    public void loadDocument(StrokeStore document) {
+        releaseSelection();
+        committedLayer.load(document);
+        editGeneration++;
+        currentLayer = Math.min(currentLayer, document.getLayers().size() - 1);
+        invalidate();
+        recordHistoryMetrics();
+    }
+
+    /**
+     * 查找 (x, y) 处最上层的可见笔画，只检查空间索引中附近的笔画
+     * @param tolerance 在笔画墨迹之外额外允许的距离
+     * @return 笔画下标，没有命中时返回 -1
+     */
+    public int findStrokeAt(float x, float y, float tolerance) {
+        return committedLayer.findStrokeAt(x, y, tolerance);
+    }
+
+    /**
+     * 拷贝当前可见的笔画，拷贝可以交给其他线程
+     */
+    @Override
+    public StrokeStore copyVisibleStrokes() {
+        return committedLayer.copyVisible();
+    }
+
+    /**
+     * 在主线程上拷贝当前可见的笔画，供后台导出使用；只复制坐标数组，开销很小
+     */
+    @Override
+    public ExportSnapshot createExportSnapshot() {
+        Drawable background = getBackground();
+        int backgroundColor = background instanceof ColorDrawable
+                ? ((ColorDrawable) background).getColor() : Color.WHITE;
+        return new ExportSnapshot(copyVisibleStrokes(), getWidth(), getHeight(), backgroundColor);
+    }
+
+    /**
+     * 笔画数据当前占用的内存字节数
+     */
+    public long getStrokeMemoryBytes() {
+        return committedLayer.getStrokes().estimatedBytes();
+    }
+
+    private void recordHistoryMetrics() {
+        metrics.recordHistory(committedLayer.size(), committedLayer.getByteCount());
+    }
+
+    // 沿本事件的全部采样点擦除，候选笔画由已完成图层从空间索引中查找
+    private void eraseAlong(MotionEvent event) {
+        for (int h = 0; h < event.getHistorySize(); h++) {
+            eraserPath.add(viewport.toDocumentX(event.getHistoricalX(h)),
+                    viewport.toDocumentY(event.getHistoricalY(h)), event.getHistoricalEventTime(h));
+        }
+        eraserPath.add(viewport.toDocumentX(event.getX()), viewport.toDocumentY(event.getY()),
+                event.getEventTime());
+        int before = committedLayer.size();
+        int added = committedLayer.erase(eraserPath, 0, eraserPath.size(),
+                StrokeEraser.DEFAULT_RADIUS / viewport.getScale(), eraserMode, currentLayer, erasedInGesture);
+        if (added > 0) {
+            erasedInGesture = true;
+            // 同一手势的后续批次改写了上一批的记录，先截掉旧的
+            int start = committedLayer.size() - added;
+            if (start < before && documentListener != null) {
+                documentListener.onStrokesTruncated(start);
+            }
+            notifyRecordsAdded(added);
+        }
+        // 只保留最后一点作为下一批的起点
+        int last = eraserPath.size() - 1;
+        float x = eraserPath.getX(last);
+        float y = eraserPath.getY(last);
+        long time = eraserPath.getTime(last);
+        eraserPath.clear();
+        eraserPath.add(x, y, time);
+        invalidate();
+    }
+
+    // 套索模式的触摸：单指画套索或拖动选区；双指在有选区时变换选区，否则照常平移缩放
+    private boolean handleSelectionTouch(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                touchMode = TOUCH_SELECT;
+                selectionTool.down(viewport.toDocumentX(event.getX()), viewport.toDocumentY(event.getY()),
+                        event.getEventTime(), SelectionTool.HIT_SLOP / viewport.getScale());
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                // 第二根手指按下：放弃画了一半的套索
+                selectionTool.cancelTouch();
+                touchMode = selectionTool.hasSelection() ? TOUCH_TRANSFORM : TOUCH_GESTURE;
+                updateGestureAnchor(event, -1);
+                break;
+            case MotionEvent.ACTION_POINTER_UP:
+                if (touchMode == TOUCH_TRANSFORM || touchMode == TOUCH_GESTURE) {
+                    if (event.getPointerCount() > 2) {
+                        updateGestureAnchor(event, event.getActionIndex());
+                        return true;
+                    }
+                    // 剩下的一根手指不再操作，直到全部抬起
+                    notifyRecordsAdded(selectionTool.commit());
+                    touchMode = TOUCH_NONE;
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (touchMode == TOUCH_SELECT) {
+                    for (int h = 0; h < event.getHistorySize(); h++) {
+                        selectionTool.move(viewport.toDocumentX(event.getHistoricalX(h)),
+                                viewport.toDocumentY(event.getHistoricalY(h)), event.getHistoricalEventTime(h));
+                    }
+                    selectionTool.move(viewport.toDocumentX(event.getX()), viewport.toDocumentY(event.getY()),
+                            event.getEventTime());
+                } else if (touchMode == TOUCH_TRANSFORM) {
+                    applySelectionGesture(event);
+                } else if (touchMode == TOUCH_GESTURE) {
+                    applyGesture(event);
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                if (touchMode == TOUCH_SELECT) {
+                    notifyRecordsAdded(selectionTool.up(viewport.toDocumentX(event.getX()),
+                            viewport.toDocumentY(event.getY()), event.getEventTime(), currentLayer));
+                }
+                touchMode = TOUCH_NONE;
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                // 已经移动的选区停在当前位置
+                selectionTool.cancelTouch();
+                notifyRecordsAdded(selectionTool.commit());
+                touchMode = TOUCH_NONE;
+                break;
+            default:
+                return false;
+        }
+        // 选区变换时整个画面都可能变化，直接整体重绘：未选中的内容只是贴缓存
+        invalidate();
+        return true;
+    }
+
+    // 提交选区变换并取消选择
+    private void releaseSelection() {
+        if (selectionTool.hasSelection()) {
+            notifyRecordsAdded(selectionTool.release());
             invalidate();
         }
     }
-}
\ No newline at end of file
+
+    // 一次编辑追加了 added 条记录（擦除或选区变换），逐条通知
+    private void notifyRecordsAdded(int added) {
+        if (added <= 0) {
+            return;
+        }
+        editGeneration++;
+        for (int i = committedLayer.size() - added; i < committedLayer.size(); i++) {
+            notifyStrokeAdded(i);
+        }
+        recordHistoryMetrics();
+    }
+
+    // 把刚提交的笔画拷贝一份交给后台识别，主线程不等待
+    private void recognizeShape(int stroke) {
+        if (shapeWorker == null) {
+            shapeWorker = new ShapeRecognitionWorker();
+        }
+        shapeWorker.recognize(committedLayer.getStrokes().copy(stroke, stroke + 1), stroke, editGeneration, this);
+    }
+
+    private void cancelStroke() {
+        capture.reset();
+        currentPath.rewind();
+        tailPath.rewind();
+        if (inkLayer != null) {
+            inkLayer.clear();
+        }
+        invalidate();
+    }
+
+    // 以除 skipIndex 外的前两根手指作为手势基准
+    private void updateGestureAnchor(MotionEvent event, int skipIndex) {
+        int first = skipIndex == 0 ? 1 : 0;
+        int second = first + 1 == skipIndex ? first + 2 : first + 1;
+        if (second >= event.getPointerCount()) {
+            return;
+        }
+        lastFocusX = (event.getX(first) + event.getX(second)) / 2;
+        lastFocusY = (event.getY(first) + event.getY(second)) / 2;
+        lastSpan = (float) Math.hypot(event.getX(first) - event.getX(second),
+                event.getY(first) - event.getY(second));
+        lastAngle = (float) Math.atan2(event.getY(second) - event.getY(first),
+                event.getX(second) - event.getX(first));
+    }
+
+    // 中心点的位移用于平移，两指间距的变化用于以中心点为基准缩放
+    private void applyGesture(MotionEvent event) {
+        if (event.getPointerCount() < 2) {
+            return;
+        }
+        float focusX = (event.getX(0) + event.getX(1)) / 2;
+        float focusY = (event.getY(0) + event.getY(1)) / 2;
+        float span = (float) Math.hypot(event.getX(0) - event.getX(1), event.getY(0) - event.getY(1));
+        viewport.panBy(focusX - lastFocusX, focusY - lastFocusY);
+        if (lastSpan > 0 && span > 0) {
+            viewport.zoomBy(span / lastSpan, focusX, focusY);
+        }
+        lastFocusX = focusX;
+        lastFocusY = focusY;
+        lastSpan = span;
+        invalidate();
+    }
+
+    // 与 applyGesture 相同地取中心点位移和间距变化，另取两指连线的转角，作用在选区而不是视口上
+    private void applySelectionGesture(MotionEvent event) {
+        if (event.getPointerCount() < 2) {
+            return;
+        }
+        float focusX = (event.getX(0) + event.getX(1)) / 2;
+        float focusY = (event.getY(0) + event.getY(1)) / 2;
+        float span = (float) Math.hypot(event.getX(0) - event.getX(1), event.getY(0) - event.getY(1));
+        float angle = (float) Math.atan2(event.getY(1) - event.getY(0), event.getX(1) - event.getX(0));
+        float scale = viewport.getScale();
+        selectionTool.transformBy((focusX - lastFocusX) / scale, (focusY - lastFocusY) / scale,
+                lastSpan > 0 && span > 0 ? span / lastSpan : 1,
+                (float) Math.toDegrees(angle - lastAngle),
+                viewport.toDocumentX(focusX), viewport.toDocumentY(focusY));
+        lastFocusX = focusX;
+        lastFocusY = focusY;
+        lastSpan = span;
+        lastAngle = angle;
+    }
+
+    // 把文档坐标的矩形换算成包含它的视图坐标矩形
+    private void mapToView(Rect rect) {
+        if (rect.isEmpty()) {
+            return;
+        }
+        rect.set((int) Math.floor(viewport.toViewX(rect.left)), (int) Math.floor(viewport.toViewY(rect.top)),
+                (int) Math.ceil(viewport.toViewX(rect.right)), (int) Math.ceil(viewport.toViewY(rect.bottom)));
+    }
+
+    private void notifyStrokeAdded(int stroke) {
+        if (documentListener != null) {
+            documentListener.onStrokeAdded(committedLayer.getStrokes().copy(stroke, stroke + 1));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.k.minidoodle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 逐行写入的 PNG 编码器
+ * 调用方从上到下一行行交来像素，压缩后的数据随时以 IDAT 块写出。内存占用只有几行像素和压缩缓冲区，
+ * 与图像高度无关，导出超大画布时可以按条光栅化、按条编码，不需要整幅位图。
+ * 每行在 None、Sub、Up 三种滤波中选差值绝对值之和最小的一种（libpng 的常用启发式），
+ * 大片纯色的画布压缩率很高。不依赖 Android，不是线程安全的。
+ */
+final class PngStreamEncoder implements Closeable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // 每个 IDAT 块的最大数据量
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final int bytesPerPixel;
+    private final CRC32 crc = new CRC32();
+    private final byte[] chunkHeader = new byte[8];
+    private final Deflater deflater;
+    private final DeflaterOutputStream compressed;
+    // 当前行和上一行的原始字节；三种滤波的结果，第 0 个字节为滤波类型
+    private byte[] row;
+    private byte[] previousRow;
+    private final byte[] none;
+    private final byte[] sub;
+    private final byte[] up;
+    private int rowsWritten;
+    private boolean finished;
+
+    /**
+     * 写入文件头和 IHDR
+     * @param alpha 是否保留透明度；为 false 时写为 RGB，每像素少一个字节
+     * @param level 压缩级别，见 {@link Deflater}
+     */
+    PngStreamEncoder(OutputStream out, int width, int height, boolean alpha, int level) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size " + width + "x" + height);
+        }
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        bytesPerPixel = alpha ? 4 : 3;
+        int rowBytes = width * bytesPerPixel;
+        row = new byte[rowBytes];
+        previousRow = new byte[rowBytes];
+        none = new byte[rowBytes + 1];
+        sub = new byte[rowBytes + 1];
+        up = new byte[rowBytes + 1];
+        none[0] = FILTER_NONE;
+        sub[0] = FILTER_SUB;
+        up[0] = FILTER_UP;
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;                      // 每通道 8 位
+        header[9] = (byte) (alpha ? 6 : 2); // 6 = RGBA，2 = RGB
+        // 压缩方法、滤波方法、不隔行均为 0
+        writeChunk("IHDR", header, 0, header.length);
+
+        deflater = new Deflater(level);
+        compressed = new DeflaterOutputStream(new IdatStream(), deflater, CHUNK_SIZE);
+    }
+
+    /**
+     * 写入下一行像素
+     * @param argb 非预乘的 ARGB 像素（即 Bitmap.getPixels 的结果），从 offset 开始取 width 个
+     */
+    void writeRow(int[] argb, int offset) throws IOException {
+        if (rowsWritten >= height) {
+            throw new IllegalStateException("all " + height + " rows written");
+        }
+        int n = 0;
+        for (int x = 0; x < width; x++) {
+            int color = argb[offset + x];
+            row[n++] = (byte) (color >> 16);
+            row[n++] = (byte) (color >> 8);
+            row[n++] = (byte) color;
+            if (bytesPerPixel == 4) {
+                row[n++] = (byte) (color >>> 24);
+            }
+        }
+        compressed.write(chooseFilter());
+        byte[] swap = previousRow;
+        previousRow = row;
+        row = swap;
+        rowsWritten++;
+    }
+
+    /**
+     * 写完全部数据和 IEND，不关闭输出流
+     * @throws IllegalStateException 行数不足
+     */
+    void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IllegalStateException(rowsWritten + " of " + height + " rows written");
+        }
+        if (finished) {
+            return;
+        }
+        compressed.finish();
+        compressed.flush();
+        writeChunk("IEND", none, 0, 0);
+        finished = true;
+    }
+
+    /** 释放压缩器，不关闭输出流 */
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    // 对当前行做三种滤波，返回差值绝对值之和最小的结果；第一行的上一行视为全 0
+    private byte[] chooseFilter() {
+        int length = row.length;
+        long noneSum = 0;
+        long subSum = 0;
+        long upSum = 0;
+        for (int i = 0; i < length; i++) {
+            byte raw = row[i];
+            byte left = i >= bytesPerPixel ? row[i - bytesPerPixel] : 0;
+            byte above = rowsWritten > 0 ? previousRow[i] : 0;
+            byte s = (byte) (raw - left);
+            byte u = (byte) (raw - above);
+            none[i + 1] = raw;
+            sub[i + 1] = s;
+            up[i + 1] = u;
+            noneSum += Math.abs(raw);
+            subSum += Math.abs(s);
+            upSum += Math.abs(u);
+        }
+        if (upSum <= subSum && upSum <= noneSum) {
+            return up;
+        }
+        return subSum <= noneSum ? sub : none;
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] header = chunkHeader;
+        putInt(header, 0, length);
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte) type.charAt(i);
+        }
+        out.write(header);
+        out.write(data, offset, length);
+        crc.reset();
+        crc.update(header, 4, 4);
+        crc.update(data, offset, length);
+        putInt(header, 0, (int) crc.getValue());
+        out.write(header, 0, 4);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 压缩后的数据攒满一块就写成一个 IDAT 块；flush 时写出剩余部分
+     */
+    private class IdatStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int size;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) {
+                flush();
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (size == buffer.length) {
+                    flush();
+                }
+                int n = Math.min(length, buffer.length - size);
+                System.arraycopy(data, offset, buffer, size, n);
+                size += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (size > 0) {
+                writeChunk("IDAT", buffer, 0, size);
+                size = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.k.minidoodle;
+
+/**
+ * 基于距离和角度的抽稀
+ * 与上一个保留点距离过近的点、或几乎共线的中间点都会被丢弃，首尾两点总是保留。
+ * 只需要 1 个点的前瞻。
+ */
+public class RadialDecimator implements StrokeStage {
+
+    private final float minDistanceSq;
+    private final float minTurnCos;
+
+    // 上一个输出的点
+    private boolean hasLast;
+    private float lastX;
+    private float lastY;
+    // 最新的未输出点，等待下一个点决定是否保留
+    private boolean hasPending;
+    private float pendingX;
+    private float pendingY;
+    private long pendingTime;
+
+    /**
+     * @param minDistance 相邻保留点的最小距离（像素）
+     * @param maxAngleDegrees 转角小于此值时视为共线
+     */
+    public RadialDecimator(float minDistance, float maxAngleDegrees) {
+        this.minDistanceSq = minDistance * minDistance;
+        this.minTurnCos = (float) Math.cos(Math.toRadians(maxAngleDegrees));
+    }
+
+    @Override
+    public void reset() {
+        hasLast = false;
+        hasPending = false;
+    }
+
+    @Override
+    public void add(float x, float y, long time, TouchSampleBuffer out) {
+        if (!hasLast) {
+            emit(x, y, time, out);
+            return;
+        }
+        if (hasPending && isCorner(x, y)) {
+            emit(pendingX, pendingY, pendingTime, out);
+        }
+        hasPending = true;
+        pendingX = x;
+        pendingY = y;
+        pendingTime = time;
+    }
+
+    @Override
+    public void finish(TouchSampleBuffer out) {
+        if (hasPending) {
+            emit(pendingX, pendingY, pendingTime, out);
+        }
+    }
+
+    // 暂存点离上一个保留点足够远，且在该点处的转角足够大时才需要保留
+    private boolean isCorner(float x, float y) {
+        float ax = pendingX - lastX;
+        float ay = pendingY - lastY;
+        float lenA = ax * ax + ay * ay;
+        if (lenA < minDistanceSq) {
+            return false;
+        }
+        float bx = x - pendingX;
+        float by = y - pendingY;
+        float lenB = bx * bx + by * by;
+        if (lenB == 0) {
+            return false;
+        }
+        float dot = ax * bx + ay * by;
+        // cos(转角) = dot / (|a||b|)，比较平方避免开方；dot 为负说明转角超过 90 度
+        return dot < 0 || dot * dot < minTurnCos * minTurnCos * lenA * lenB;
+    }
+
+    private void emit(float x, float y, long time, TouchSampleBuffer out) {
+        out.add(x, y, time);
+        hasLast = true;
+        lastX = x;
+        lastY = y;
+        hasPending = false;
+    }
+}
@@ -0,0 +1,124 @@
+package com.k.minidoodle;
+
+/**
+ * 增量式 Ramer–Douglas–Peucker 抽稀
+ * 输入点先积累在固定大小的窗口中，窗口满时对窗口内的点运行 RDP 并输出保留的点，
+ * 窗口最后一点作为下一个窗口的起点。绘制过程中延迟最多一个窗口，
+ * 所有工作数组在构造时分配，运行中不产生垃圾。
+ */
+public class RdpDecimator implements StrokeStage {
+
+    private final float toleranceSq;
+    private final int windowSize;
+
+    // 当前窗口中的点，第 0 个点已经输出
+    private final TouchSampleBuffer window;
+    private final boolean[] keep;
+    // 递归展开用的区间栈，每个区间占两个元素
+    private final int[] stack;
+    private boolean started;
+
+    /**
+     * @param tolerance 允许的最大偏离距离（像素）
+     * @param windowSize 每次运行 RDP 的点数，至少为 3
+     */
+    public RdpDecimator(float tolerance, int windowSize) {
+        if (windowSize < 3) {
+            throw new IllegalArgumentException("windowSize must be at least 3");
+        }
+        this.toleranceSq = tolerance * tolerance;
+        this.windowSize = windowSize;
+        this.window = new TouchSampleBuffer(windowSize);
+        this.keep = new boolean[windowSize];
+        this.stack = new int[windowSize * 2];
+    }
+
+    @Override
+    public void reset() {
+        window.clear();
+        started = false;
+    }
+
+    @Override
+    public void add(float x, float y, long time, TouchSampleBuffer out) {
+        if (!started) {
+            started = true;
+            out.add(x, y, time);
+            window.add(x, y, time);
+            return;
+        }
+        window.add(x, y, time);
+        if (window.size() == windowSize) {
+            flushWindow(out);
+        }
+    }
+
+    @Override
+    public void finish(TouchSampleBuffer out) {
+        if (window.size() > 1) {
+            flushWindow(out);
+        }
+    }
+
+    // 对窗口运行 RDP，输出第 1 个之后被保留的点，并以最后一点开始新窗口
+    private void flushWindow(TouchSampleBuffer out) {
+        int n = window.size();
+        simplify(n);
+        for (int i = 1; i < n; i++) {
+            if (keep[i]) {
+                out.add(window.getX(i), window.getY(i), window.getTime(i));
+            }
+        }
+        float x = window.getX(n - 1);
+        float y = window.getY(n - 1);
+        long time = window.getTime(n - 1);
+        window.clear();
+        window.add(x, y, time);
+    }
+
+    private void simplify(int n) {
+        for (int i = 0; i < n; i++) {
+            keep[i] = false;
+        }
+        keep[0] = true;
+        keep[n - 1] = true;
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            float maxDistSq = 0;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                float d = segmentDistanceSq(i, first, last);
+                if (d > maxDistSq) {
+                    maxDistSq = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && maxDistSq > toleranceSq) {
+                keep[index] = true;
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+    }
+
+    // 点 p 到线段 (a, b) 距离的平方
+    private float segmentDistanceSq(int p, int a, int b) {
+        float ax = window.getX(a);
+        float ay = window.getY(a);
+        float dx = window.getX(b) - ax;
+        float dy = window.getY(b) - ay;
+        float px = window.getX(p) - ax;
+        float py = window.getY(p) - ay;
+        float lenSq = dx * dx + dy * dy;
+        float t = lenSq == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lenSq));
+        float ex = px - t * dx;
+        float ey = py - t * dy;
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,491 @@
+package com.k.minidoodle;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 专用渲染线程
+ * 独占一个 Surface，从 {@link InputQueue} 读取主线程写入的触摸采样和编辑操作，
+ * 在本线程的 Choreographer 回调里一次性处理一帧内积累的输入并合成画面。
+ * 笔画流水线、撤销历史和分块缓存全部在本线程上，主线程只负责入队，主线程卡顿不会影响书写。
+ * 文档变化通过 {@link PaintView.DocumentListener} 回调到主线程。
+ */
+class RenderThread implements Choreographer.FrameCallback, InputQueue.Sink {
+
+    // DOWN/MOVE/UP 的 arg 为 Float.floatToIntBits(压力)
+    static final int OP_DOWN = 1;
+    static final int OP_MOVE = 2;
+    static final int OP_UP = 3;
+    static final int OP_CANCEL = 4;
+    // arg 为新颜色
+    static final int OP_COLOR = 5;
+    static final int OP_UNDO = 6;
+    static final int OP_REDO = 7;
+    static final int OP_CLEAR = 8;
+    // 载入 setPendingDocument 交来的文档
+    static final int OP_LOAD = 9;
+    // arg 为笔刷编号
+    static final int OP_BRUSH = 10;
+    // x 为新的名义线宽
+    static final int OP_WIDTH = 11;
+    // 应用 setPendingLayers 交来的图层表
+    static final int OP_LAYERS = 12;
+    // arg 为之后笔画所在的图层
+    static final int OP_LAYER = 13;
+    // arg 为橡皮模式，见 StrokeEraser
+    static final int OP_ERASER = 14;
+    // arg 为 onTrimMemory 的级别，释放可以重建的缓存
+    static final int OP_TRIM = 15;
+    // arg 为 1 时开启形状识别，0 时关闭
+    static final int OP_SHAPES = 16;
+    // arg 为 1 时进入套索模式，0 时退出并取消选择；本视图没有双指手势，选区只能拖动
+    static final int OP_LASSO = 17;
+
+    private final InputQueue queue;
+    private final int backgroundColor;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final PaintView.DocumentListener listener;
+    // 已向 Choreographer 请求下一帧、尚未执行
+    private final AtomicBoolean frameRequested = new AtomicBoolean();
+    private final AtomicReference<StrokeStore> pendingDocument = new AtomicReference<>();
+    private final AtomicReference<LayerTable> pendingLayers = new AtomicReference<>();
+
+    // 以下字段只在渲染线程上访问
+    private Choreographer choreographer;
+    private SurfaceHolder surface;
+    private int surfaceWidth, surfaceHeight;
+    private final StrokeLayer layer = new StrokeLayer();
+    private final StrokeCapture capture = new StrokeCapture();
+    private final Path currentPath = new Path();
+    private final Path tailPath = new Path();
+    private final Paint paint = new Paint();
+    // 渲染线程不做平移缩放，视口始终为 1:1
+    private final Viewport viewport = new Viewport();
+    private final Rect clipBounds = new Rect();
+    private int color;
+    private float strokeWidth;
+    private Brush brush = Brush.PEN;
+    private int currentLayer;
+    // 非钢笔笔刷的进行中笔画，合成时由预览点和笔刷权重重建
+    private final WetStroke wetStroke = new WetStroke();
+    private boolean drawing;
+    private int eraserMode = StrokeEraser.MODE_OFF;
+    // 形状识别直接在本线程上进行：抬笔时识别，提交的就是规整后的形状，不需要先提交手绘再替换
+    private boolean shapeRecognition;
+    private final ShapeRecognizer shapeRecognizer = new ShapeRecognizer();
+    private final TouchSampleBuffer shapePoints = new TouchSampleBuffer();
+    // 正在擦除：本帧积累的橡皮轨迹，第 0 个点为上一帧的最后一点
+    private boolean erasing;
+    private final TouchSampleBuffer eraserPath = new TouchSampleBuffer(64);
+    // 本次擦除手势已经产生过记录，之后的批次与它一起撤销
+    private boolean erasedInGesture;
+    // 橡皮轨迹有新的采样点尚未擦除
+    private boolean eraserMoved;
+    private final Paint eraserPaint = new Paint();
+    // 套索模式下 DOWN/MOVE/UP 交给选择工具；selecting 为手指按下期间
+    private boolean lassoMode;
+    private boolean selecting;
+    private final SelectionTool selectionTool = new SelectionTool(layer);
+    // 有未显示的变化
+    private boolean dirty;
+    // 本帧处理的最早触摸采样时间（System.nanoTime 时基），0 表示没有
+    private long pendingTouchNanos;
+    private final DrawingMetrics metrics = DrawingMetrics.getInstance();
+
+    private final Runnable scheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            choreographer.postFrameCallback(RenderThread.this);
+        }
+    };
+
+    /**
+     * @param listener 文档变化回调，在主线程执行
+     */
+    RenderThread(InputQueue queue, float strokeWidth, int color, int backgroundColor,
+                 PaintView.DocumentListener listener) {
+        this.queue = queue;
+        this.strokeWidth = strokeWidth;
+        this.color = color;
+        this.backgroundColor = backgroundColor;
+        this.listener = listener;
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(strokeWidth);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        eraserPaint.setAntiAlias(true);
+        eraserPaint.setStyle(Paint.Style.STROKE);
+        eraserPaint.setColor(Color.GRAY);
+        thread = new HandlerThread("MiniDoodle-render", android.os.Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Choreographer 绑定到调用线程的 Looper，必须在渲染线程上获取
+                choreographer = Choreographer.getInstance();
+            }
+        });
+    }
+
+    /**
+     * 请求在下一个 vsync 处理输入并合成，任一线程都可调用，重复请求会合并
+     */
+    void requestFrame() {
+        if (frameRequested.compareAndSet(false, true)) {
+            handler.post(scheduleFrame);
+        }
+    }
+
+    /**
+     * 交给渲染线程一份文档，随后入队的 {@link #OP_LOAD} 会用它替换当前内容
+     */
+    void setPendingDocument(StrokeStore document) {
+        pendingDocument.set(document);
+    }
+
+    /**
+     * 交给渲染线程一份图层表，随后入队的 {@link #OP_LAYERS} 会应用它；连续交来的只应用最后一份
+     */
+    void setPendingLayers(LayerTable layers) {
+        pendingLayers.set(layers);
+    }
+
+    /**
+     * Surface 创建或尺寸变化，在主线程调用
+     */
+    void setSurface(final SurfaceHolder holder, final int width, final int height) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                surface = holder;
+                surfaceWidth = width;
+                surfaceHeight = height;
+                dirty = true;
+            }
+        });
+        requestFrame();
+    }
+
+    /**
+     * Surface 即将销毁，在主线程调用；等渲染线程停止使用它之后才返回
+     */
+    void releaseSurface() {
+        final CountDownLatch released = new CountDownLatch(1);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                surface = null;
+                released.countDown();
+            }
+        });
+        try {
+            released.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 处理完已入队的操作后结束线程
+     */
+    void quit() {
+        thread.quitSafely();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameRequested.set(false);
+        queue.drain(this);
+        if (drawing) {
+            capture.process(currentPath, tailPath);
+        }
+        if (erasing && eraserMoved) {
+            // 一帧内的橡皮采样合成一批擦除，每帧只查询一次空间索引
+            flushErase();
+        }
+        if (dirty && surface != null) {
+            compose();
+        }
+    }
+
+    @Override
+    public void onInput(int op, float x, float y, long time, int arg) {
+        switch (op) {
+            case OP_DOWN:
+                if (lassoMode) {
+                    selecting = true;
+                    selectionTool.down(x, y, time, SelectionTool.HIT_SLOP);
+                    markTouch(time);
+                    break;
+                }
+                if (eraserMode != StrokeEraser.MODE_OFF) {
+                    erasing = true;
+                    erasedInGesture = false;
+                    eraserPath.clear();
+                    eraserPath.add(x, y, time);
+                    eraserMoved = true;
+                    markTouch(time);
+                    break;
+                }
+                drawing = true;
+                capture.reset();
+                currentPath.rewind();
+                tailPath.rewind();
+                wetStroke.reset();
+                capture.add(x, y, time, Float.intBitsToFloat(arg));
+                markTouch(time);
+                break;
+            case OP_MOVE:
+                if (selecting) {
+                    selectionTool.move(x, y, time);
+                    markTouch(time);
+                } else if (erasing) {
+                    eraserPath.add(x, y, time);
+                    eraserMoved = true;
+                    markTouch(time);
+                } else if (drawing) {
+                    capture.add(x, y, time, Float.intBitsToFloat(arg));
+                    markTouch(time);
+                }
+                break;
+            case OP_UP:
+                if (selecting) {
+                    selecting = false;
+                    notifyRecordsAdded(selectionTool.up(x, y, time, currentLayer));
+                    markTouch(time);
+                } else if (erasing) {
+                    eraserPath.add(x, y, time);
+                    markTouch(time);
+                    flushErase();
+                    erasing = false;
+                } else if (drawing) {
+                    capture.add(x, y, time, Float.intBitsToFloat(arg));
+                    markTouch(time);
+                    finishStroke();
+                }
+                break;
+            case OP_CANCEL:
+                if (selecting) {
+                    // 已经拖动的选区停在当前位置
+                    selecting = false;
+                    selectionTool.cancelTouch();
+                    notifyRecordsAdded(selectionTool.commit());
+                }
+                drawing = false;
+                erasing = false;
+                capture.reset();
+                currentPath.rewind();
+                tailPath.rewind();
+                break;
+            case OP_COLOR:
+                color = arg;
+                break;
+            case OP_BRUSH:
+                brush = Brush.get(arg);
+                break;
+            case OP_WIDTH:
+                strokeWidth = x;
+                paint.setStrokeWidth(x);
+                break;
+            case OP_LAYERS:
+                LayerTable layers = pendingLayers.getAndSet(null);
+                if (layers != null) {
+                    layer.setLayers(layers);
+                }
+                break;
+            case OP_LAYER:
+                currentLayer = arg;
+                break;
+            case OP_ERASER:
+                eraserMode = arg;
+                break;
+            case OP_LASSO:
+                lassoMode = arg != 0;
+                if (!lassoMode) {
+                    releaseSelection();
+                }
+                break;
+            case OP_SHAPES:
+                shapeRecognition = arg != 0;
+                return;
+            case OP_TRIM:
+                // 画面不变，缓存在下次合成时按需重建
+                layer.trimMemory(arg);
+                return;
+            case OP_UNDO:
+                releaseSelection();
+                if (layer.undo()) {
+                    notifyTruncated(layer.size());
+                }
+                break;
+            case OP_REDO:
+                releaseSelection();
+                int before = layer.size();
+                if (layer.redo()) {
+                    for (int i = before; i < layer.size(); i++) {
+                        notifyAdded(i);
+                    }
+                }
+                break;
+            case OP_CLEAR:
+                releaseSelection();
+                layer.clear();
+                notifyTruncated(0);
+                break;
+            case OP_LOAD:
+                StrokeStore document = pendingDocument.getAndSet(null);
+                if (document != null) {
+                    releaseSelection();
+                    layer.load(document);
+                    currentLayer = Math.min(currentLayer, document.getLayers().size() - 1);
+                    // 让主线程的镜像丢弃载入之前已发出、但晚于载入才送达的新增笔画
+                    notifyTruncated(layer.size());
+                }
+                break;
+            default:
+                return;
+        }
+        dirty = true;
+    }
+
+    private void finishStroke() {
+        drawing = false;
+        capture.process(currentPath, tailPath);
+        capture.finish(currentPath, tailPath);
+        BrushDynamics.apply(capture.getSamples(), capture.getStroke(), brush);
+        TouchSampleBuffer points = capture.getStroke();
+        if (shapeRecognition) {
+            long start = System.nanoTime();
+            if (shapeRecognizer.recognize(points) != ShapeRecognizer.SHAPE_FREEHAND) {
+                shapeRecognizer.writeShape(shapePoints);
+                points = shapePoints;
+            }
+            metrics.shapeTime.recordSince(start);
+        }
+        int stroke = layer.add(points, color, strokeWidth, brush, currentLayer);
+        currentPath.rewind();
+        notifyAdded(stroke);
+        metrics.recordHistory(layer.size(), layer.getByteCount());
+    }
+
+    private void flushErase() {
+        int before = layer.size();
+        int added = layer.erase(eraserPath, 0, eraserPath.size(), StrokeEraser.DEFAULT_RADIUS,
+                eraserMode, currentLayer, erasedInGesture);
+        if (added > 0) {
+            erasedInGesture = true;
+            // 同一手势的后续批次改写了上一批的记录，先截掉旧的
+            int start = layer.size() - added;
+            if (start < before) {
+                notifyTruncated(start);
+            }
+            notifyRecordsAdded(added);
+        }
+        // 只保留最后一点作为下一批的起点
+        int last = eraserPath.size() - 1;
+        float x = eraserPath.getX(last);
+        float y = eraserPath.getY(last);
+        long time = eraserPath.getTime(last);
+        eraserPath.clear();
+        eraserPath.add(x, y, time);
+        eraserMoved = false;
+        dirty = true;
+    }
+
+    // 事件时间与 System.nanoTime 同为 CLOCK_MONOTONIC，单位毫秒
+    private void markTouch(long time) {
+        if (pendingTouchNanos == 0) {
+            pendingTouchNanos = time * 1_000_000L;
+        }
+    }
+
+    private void compose() {
+        long start = System.nanoTime();
+        // 硬件加速的 Canvas 由 RenderThread 自己的 GPU 上下文提交，不经过主线程
+        Canvas canvas = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                ? surface.getSurface().lockHardwareCanvas() : surface.lockCanvas();
+        if (canvas == null) {
+            return;
+        }
+        try {
+            canvas.drawColor(backgroundColor);
+            clipBounds.set(0, 0, surfaceWidth, surfaceHeight);
+            layer.draw(canvas, clipBounds, viewport);
+            if (lassoMode) {
+                selectionTool.draw(canvas);
+            }
+            if (drawing && brush != Brush.PEN) {
+                wetStroke.update(capture.getStroke(), capture.getSamples(), color, strokeWidth, brush);
+                wetStroke.draw(canvas, layer.getPainter());
+            } else if (erasing) {
+                canvas.drawCircle(eraserPath.getX(eraserPath.size() - 1), eraserPath.getY(eraserPath.size() - 1),
+                        StrokeEraser.DEFAULT_RADIUS, eraserPaint);
+            } else {
+                paint.setColor(color);
+                canvas.drawPath(currentPath, paint);
+                canvas.drawPath(tailPath, paint);
+            }
+        } finally {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                surface.getSurface().unlockCanvasAndPost(canvas);
+            } else {
+                surface.unlockCanvasAndPost(canvas);
+            }
+        }
+        dirty = false;
+        metrics.recordFrame(start, pendingTouchNanos);
+        pendingTouchNanos = 0;
+    }
+
+    // 提交选区变换并取消选择，在撤销、清空、载入之前调用
+    private void releaseSelection() {
+        notifyRecordsAdded(selectionTool.release());
+    }
+
+    // 一次编辑追加了 added 条记录（擦除或选区变换），逐条通知
+    private void notifyRecordsAdded(int added) {
+        if (added <= 0) {
+            return;
+        }
+        for (int i = layer.size() - added; i < layer.size(); i++) {
+            notifyAdded(i);
+        }
+        metrics.recordHistory(layer.size(), layer.getByteCount());
+    }
+
+    private void notifyAdded(int stroke) {
+        final StrokeStore copy = layer.getStrokes().copy(stroke, stroke + 1);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onStrokeAdded(copy);
+            }
+        });
+    }
+
+    private void notifyTruncated(final int count) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onStrokesTruncated(count);
+            }
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.k.minidoodle;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * 回放用的持久缓冲区
+ * 每个图层一块透明位图（从 {@link BitmapPool} 取用，第一次有笔画落在该图层时才分配），
+ * {@link StrokeReplay} 每帧新出现的点只画到所在图层的位图上，之前画过的内容不再重画。
+ * 输出一帧时按与屏幕相同的方式把各图层叠到背景上，开销只与图层数和画面大小有关。
+ * 隐藏图层上的笔画不绘制。只在一个线程上使用。
+ */
+final class ReplayCanvas implements StrokeReplay.Renderer {
+
+    private final LayerTable layers;
+    private final int width;
+    private final int height;
+    private final float left;
+    private final float top;
+    private final float scale;
+    private final Bitmap[] buffers;
+    private final Canvas[] canvases;
+    private final StrokePainter painter = new StrokePainter();
+    private final Paint layerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * @param layers 回放期间不能修改
+     * @param left 画面左上角的文档坐标
+     * @param scale 文档坐标到画面像素的缩放比例
+     */
+    ReplayCanvas(LayerTable layers, int width, int height, float left, float top, float scale) {
+        this.layers = layers;
+        this.width = width;
+        this.height = height;
+        this.left = left;
+        this.top = top;
+        this.scale = scale;
+        buffers = new Bitmap[Math.max(layers.size(), 1)];
+        canvases = new Canvas[buffers.length];
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void drawPoints(StrokeStore store, int stroke, int from, int to) {
+        int layer = layers.isFlat() ? 0 : store.getLayer(stroke);
+        if (!layers.isFlat() && !layers.isVisible(layer)) {
+            return;
+        }
+        painter.drawPoints(getCanvas(layer), store, stroke, from, to);
+    }
+
+    /**
+     * 把当前画面画到 canvas 的 (0, 0) 处：先铺背景色，再逐层叠加
+     */
+    void draw(Canvas canvas, int backgroundColor) {
+        canvas.drawColor(backgroundColor);
+        if (layers.isFlat()) {
+            if (buffers[0] != null) {
+                canvas.drawBitmap(buffers[0], 0, 0, null);
+            }
+            return;
+        }
+        // 与导出一致：图层先在透明底上合成，再整体叠到背景上
+        int outer = canvas.saveLayer(0, 0, width, height, null);
+        for (int layer = 0; layer < buffers.length; layer++) {
+            if (buffers[layer] == null || !layers.isVisible(layer)) {
+                continue;
+            }
+            StrokePainter.configureLayerPaint(layerPaint, layers, layer);
+            canvas.drawBitmap(buffers[layer], 0, 0, layerPaint);
+        }
+        canvas.restoreToCount(outer);
+    }
+
+    /**
+     * 清空画面，与 {@link StrokeReplay#reset} 一起调用
+     */
+    void clear() {
+        for (Bitmap buffer : buffers) {
+            if (buffer != null) {
+                buffer.eraseColor(Color.TRANSPARENT);
+            }
+        }
+    }
+
+    /**
+     * 把位图还给缓冲池，之后不能再使用
+     */
+    void release() {
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != null) {
+                BitmapPool.getInstance().release(buffers[i]);
+                buffers[i] = null;
+                canvases[i] = null;
+            }
+        }
+    }
+
+    private Canvas getCanvas(int layer) {
+        if (canvases[layer] == null) {
+            Bitmap buffer = BitmapPool.getInstance().obtain(width, height, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(buffer);
+            canvas.scale(scale, scale);
+            canvas.translate(-left, -top);
+            buffers[layer] = buffer;
+            canvases[layer] = canvas;
+        }
+        return canvases[layer];
+    }
+}
@@ -0,0 +1,129 @@
+package com.k.minidoodle;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 在屏幕上回放绘制过程
+ * 画面按比例缩放到视图内居中显示。每一帧按经过的时间和回放速度推进 {@link StrokeReplay}，
+ * 新出现的点画到 {@link ReplayCanvas} 的持久缓冲区上，视图只把缓冲区合成出来，
+ * 回放很长的文档时每帧开销也不会增长。回放结束后停止请求重绘。
+ */
+public class ReplayView extends View {
+
+    /** 可选的回放速度 */
+    static final float[] SPEEDS = {1f, 2f, 4f, 8f, 16f};
+
+    @Nullable
+    private ExportSnapshot snapshot;
+    @Nullable
+    private StrokeReplay replay;
+    @Nullable
+    private ReplayCanvas buffer;
+    private float speed = SPEEDS[0];
+    // 回放时刻 = basePosition + (现在 - baseTime) × speed；改变速度时重新取基准
+    private long basePosition;
+    private long baseTime;
+
+    public ReplayView(Context context) {
+        super(context);
+    }
+
+    public ReplayView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    /**
+     * 从头回放快照中的笔画
+     */
+    void start(ExportSnapshot snapshot) {
+        this.snapshot = snapshot;
+        replay = new StrokeReplay(snapshot.strokes);
+        releaseBuffer();
+        restart();
+    }
+
+    /**
+     * 回到开头重新回放
+     */
+    void restart() {
+        if (replay == null) {
+            return;
+        }
+        replay.reset();
+        if (buffer != null) {
+            buffer.clear();
+        }
+        basePosition = 0;
+        baseTime = SystemClock.uptimeMillis();
+        postInvalidateOnAnimation();
+    }
+
+    float getSpeed() {
+        return speed;
+    }
+
+    void setSpeed(float speed) {
+        basePosition = currentPosition();
+        baseTime = SystemClock.uptimeMillis();
+        this.speed = speed;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // 缓冲区与视图同尺寸，尺寸变化后从头重画
+        releaseBuffer();
+        restart();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (replay == null || snapshot == null || getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        if (buffer == null) {
+            buffer = createBuffer(snapshot);
+        }
+        replay.advanceTo(Math.min(currentPosition(), replay.getDuration()), buffer);
+        buffer.draw(canvas, snapshot.backgroundColor);
+        if (!replay.isFinished()) {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseBuffer();
+    }
+
+    private long currentPosition() {
+        long position = basePosition + (long) ((SystemClock.uptimeMillis() - baseTime) * speed);
+        // 缓冲区重建后回放已回到开头，不会小于已画到的时刻
+        return replay == null ? position : Math.max(position, replay.getPosition());
+    }
+
+    // 整个画布等比缩放到视图内居中
+    private ReplayCanvas createBuffer(ExportSnapshot snapshot) {
+        int width = getWidth();
+        int height = getHeight();
+        float scale = Math.min((float) width / Math.max(snapshot.width, 1), (float) height / Math.max(snapshot.height, 1));
+        float left = (snapshot.width - width / scale) / 2;
+        float top = (snapshot.height - height / scale) / 2;
+        return new ReplayCanvas(snapshot.strokes.getLayers(), width, height, left, top, scale);
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+}
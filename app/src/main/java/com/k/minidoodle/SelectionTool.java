@@ -0,0 +1,217 @@
+package com.k.minidoodle;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/**
+ * 套索选择和选区变换，在文档坐标下处理触摸，由 PaintView 和 {@link RenderThread} 共用。
+ * 在选区外按下时画套索，抬起时选出图层上被圈住的笔画（见 {@link StrokeLayer#select}）；
+ * 在选区内按下拖动移动选区，PaintView 的双指手势还可以缩放和旋转（见 {@link #transformBy}）。
+ * 第一次移动时开始变换：选中的笔画先从图层缓存中擦掉，未选中的内容只重画这一次，
+ * 之后每帧贴缓存、再按矩阵画选区；抬起时提交为一次可撤销的编辑，选区仍然选中，可以接着变换。
+ * 不是线程安全的，只能在 StrokeLayer 所在的线程上使用
+ */
+class SelectionTool {
+
+    /** 选区外框外扩多少视图像素仍算按在选区内 */
+    static final float HIT_SLOP = 24f;
+    // 一次变换的累计缩放范围，避免选区缩成一点或无限放大
+    private static final float MIN_SCALE = 0.05f;
+    private static final float MAX_SCALE = 20f;
+    private static final int OUTLINE_COLOR = 0xFF2196F3;
+
+    private StrokeLayer layer;
+    // 正在画的套索轨迹
+    private final TouchSampleBuffer lasso = new TouchSampleBuffer(128);
+    private final LassoPolygon polygon = new LassoPolygon();
+    // 选中的笔画，按绘制顺序
+    private final IntList selection = new IntList();
+    // 选中笔画变换前的墨迹范围
+    private final RectF bounds = new RectF();
+    // 本次变换的累计矩阵，提交后复位
+    private final Matrix matrix = new Matrix();
+    private final Matrix inverse = new Matrix();
+    private final float[] point = new float[2];
+    private final float[] corners = new float[8];
+    private final Path outline = new Path();
+    private final Paint outlinePaint = new Paint();
+    private boolean lassoing;
+    private boolean dragging;
+    // 已开始变换（StrokeLayer#beginTransform），尚未提交
+    private boolean transforming;
+    private float lastX, lastY;
+
+    SelectionTool(StrokeLayer layer) {
+        this.layer = layer;
+        outlinePaint.setAntiAlias(true);
+        outlinePaint.setStyle(Paint.Style.STROKE);
+        // 宽度 0 为细线，不随缩放变粗
+        outlinePaint.setStrokeWidth(0);
+        outlinePaint.setColor(OUTLINE_COLOR);
+    }
+
+    /**
+     * 换用另一个图层；旧图层上进行中的变换应当先用 {@link #release} 提交
+     */
+    void setLayer(StrokeLayer layer) {
+        release();
+        this.layer = layer;
+    }
+
+    boolean hasSelection() {
+        return !selection.isEmpty();
+    }
+
+    /**
+     * 单指按下：在选区内开始拖动，否则取消选择并开始画套索
+     * @param slop 选区外框外扩的距离（文档坐标）
+     */
+    void down(float x, float y, long time, float slop) {
+        lastX = x;
+        lastY = y;
+        if (hitsSelection(x, y, slop)) {
+            dragging = true;
+            return;
+        }
+        // 抬起时已提交，这里不会有进行中的变换
+        selection.clear();
+        lassoing = true;
+        lasso.clear();
+        lasso.add(x, y, time);
+    }
+
+    void move(float x, float y, long time) {
+        if (lassoing) {
+            lasso.add(x, y, time);
+        } else if (dragging) {
+            transformBy(x - lastX, y - lastY, 1, 0, x, y);
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    /**
+     * 单指抬起：结束套索时在 layerIndex 图层上选出笔画，结束拖动时提交变换
+     * @return 提交新增的记录数
+     */
+    int up(float x, float y, long time, int layerIndex) {
+        if (lassoing) {
+            lasso.add(x, y, time);
+            lassoing = false;
+            polygon.set(lasso);
+            lasso.clear();
+            if (layer.select(polygon, layerIndex, selection) > 0) {
+                layer.getInkBounds(selection, bounds);
+            }
+            return 0;
+        }
+        move(x, y, time);
+        dragging = false;
+        return commit();
+    }
+
+    /**
+     * 不再跟踪当前手指：丢弃画了一半的套索，拖动停在当前位置；进行中的变换由调用方提交
+     */
+    void cancelTouch() {
+        lassoing = false;
+        dragging = false;
+        lasso.clear();
+    }
+
+    /**
+     * 在当前变换之后平移 (dx, dy)，再以 (px, py) 为中心缩放 scale 倍、旋转 degrees 度，均为文档坐标；
+     * 第一次变换时从图层缓存中取出选区
+     */
+    void transformBy(float dx, float dy, float scale, float degrees, float px, float py) {
+        if (selection.isEmpty()) {
+            return;
+        }
+        if (!transforming) {
+            layer.beginTransform(selection);
+            transforming = true;
+        }
+        float current = matrix.mapRadius(1f);
+        scale = Math.max(MIN_SCALE / current, Math.min(MAX_SCALE / current, scale));
+        matrix.postTranslate(dx, dy);
+        matrix.postScale(scale, scale, px, py);
+        matrix.postRotate(degrees, px, py);
+    }
+
+    /**
+     * 提交进行中的变换，选区改为变换后的笔画
+     * @return 新增的记录数，没有进行中的变换时为 0
+     */
+    int commit() {
+        if (!transforming) {
+            return 0;
+        }
+        transforming = false;
+        int added = layer.endTransform(selection, matrix);
+        matrix.reset();
+        layer.getInkBounds(selection, bounds);
+        return added;
+    }
+
+    /**
+     * 提交进行中的变换并取消选择，在撤销、清空、载入等编辑之前调用
+     * @return 新增的记录数
+     */
+    int release() {
+        cancelTouch();
+        int added = commit();
+        selection.clear();
+        return added;
+    }
+
+    /**
+     * 绘制套索轨迹、正在变换的选区和选区外框，canvas 已变换到文档坐标
+     */
+    void draw(Canvas canvas) {
+        if (lassoing && lasso.size() > 1) {
+            outline.rewind();
+            outline.moveTo(lasso.getX(0), lasso.getY(0));
+            for (int i = 1; i < lasso.size(); i++) {
+                outline.lineTo(lasso.getX(i), lasso.getY(i));
+            }
+            outline.close();
+            canvas.drawPath(outline, outlinePaint);
+        }
+        if (selection.isEmpty()) {
+            return;
+        }
+        layer.drawSelection(canvas, selection, matrix);
+        corners[0] = bounds.left;
+        corners[1] = bounds.top;
+        corners[2] = bounds.right;
+        corners[3] = bounds.top;
+        corners[4] = bounds.right;
+        corners[5] = bounds.bottom;
+        corners[6] = bounds.left;
+        corners[7] = bounds.bottom;
+        matrix.mapPoints(corners);
+        outline.rewind();
+        outline.moveTo(corners[0], corners[1]);
+        for (int i = 2; i < corners.length; i += 2) {
+            outline.lineTo(corners[i], corners[i + 1]);
+        }
+        outline.close();
+        canvas.drawPath(outline, outlinePaint);
+    }
+
+    // 把 (x, y) 反变换回选区原来的位置，再与外扩后的外框比较
+    private boolean hitsSelection(float x, float y, float slop) {
+        if (selection.isEmpty() || !matrix.invert(inverse)) {
+            return false;
+        }
+        point[0] = x;
+        point[1] = y;
+        inverse.mapPoints(point);
+        float pad = slop / matrix.mapRadius(1f);
+        return point[0] >= bounds.left - pad && point[0] <= bounds.right + pad
+                && point[1] >= bounds.top - pad && point[1] <= bounds.bottom + pad;
+    }
+}
@@ -0,0 +1,70 @@
+package com.k.minidoodle;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 在后台线程上识别刚完成的笔画（见 {@link ShapeRecognizer}），识别出形状时把规整后的点交回主线程。
+ * 主线程抬笔时只提交一份单笔画拷贝，笔画照常先以手绘的样子提交，识别结果到达后再由调用方替换。
+ */
+class ShapeRecognitionWorker {
+
+    /**
+     * 识别结果回调，在主线程调用；自由曲线不回调
+     */
+    interface Callback {
+        /**
+         * @param stroke 提交时的笔画下标
+         * @param generation 提交时调用方给出的编辑序号，用于判断笔画是否已被后来的编辑改变
+         * @param shape 规整后的点，压力通道为笔刷权重
+         */
+        void onShapeRecognized(int stroke, int generation, TouchSampleBuffer shape);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "MiniDoodle-shapes");
+        }
+    });
+    // 只在后台线程上使用
+    private final ShapeRecognizer recognizer = new ShapeRecognizer();
+    private final DrawingMetrics metrics = DrawingMetrics.getInstance();
+
+    /**
+     * @param copy 只包含这一条笔画的拷贝，之后不能再修改
+     */
+    void recognize(final StrokeStore copy, final int stroke, final int generation, final Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                if (recognizer.recognize(copy, 0) == ShapeRecognizer.SHAPE_FREEHAND) {
+                    metrics.shapeTime.recordSince(start);
+                    return;
+                }
+                final TouchSampleBuffer points = new TouchSampleBuffer();
+                recognizer.writeShape(points);
+                metrics.shapeTime.recordSince(start);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onShapeRecognized(stroke, generation, points);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 不再接受新的笔画；已提交的识别仍会完成，调用方应当自行忽略之后到达的结果
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,711 @@
+package com.k.minidoodle;
+
+import java.util.Arrays;
+
+/**
+ * 笔画形状识别
+ * 把一条刚完成的手绘笔画归为直线、折线、椭圆、矩形或自由曲线，并给出规整后的参数：
+ * 直线和折线为顶点，矩形和椭圆为中心、半轴和旋转角。只看中心线的几何，容差随笔画尺寸缩放，
+ * 太小的笔画（例如手写文字）不识别。依次尝试：不闭合的试直线、折线，闭合的试椭圆、矩形和多边形，都不符合即为自由曲线。
+ * 规整后的形状由 {@link #writeShape} 写成几个点，仍是普通笔画，绘制、擦除、导出和存档不需要区分；
+ * 椭圆按弦高误差细分成多边形。工作数组复用，不依赖 Android，可以在后台线程使用，但一个实例同一时间只能由一个线程使用。
+ */
+public final class ShapeRecognizer {
+
+    public static final int SHAPE_FREEHAND = 0;
+    public static final int SHAPE_LINE = 1;
+    /** 不闭合或闭合的折线，闭合时最后一个顶点与第一个重合 */
+    public static final int SHAPE_POLYLINE = 2;
+    public static final int SHAPE_ELLIPSE = 3;
+    public static final int SHAPE_RECTANGLE = 4;
+
+    /** 包围盒对角线短于它（文档像素）的笔画不识别 */
+    public static final float MIN_SIZE = 24f;
+    // 容差的下限（像素），小图形上的抖动不随尺寸缩小
+    private static final float MIN_TOLERANCE = 2.5f;
+    // 直线：各点偏离首尾连线不超过连线长度的这个比例，总长不超过连线的这个倍数
+    private static final float LINE_TOLERANCE = 0.04f;
+    private static final float LINE_MAX_STRETCH = 1.15f;
+    // 首尾距离不超过总长的这个比例视为闭合
+    private static final float CLOSE_GAP = 0.15f;
+    // 闭合笔画在最后这部分长度内找回到起点的位置，之后的部分视为收尾时画过头
+    private static final float CLOSE_SEARCH = 0.25f;
+    // 取顶点时 RDP 的容差，占包围盒对角线的比例
+    private static final float VERTEX_TOLERANCE = 0.035f;
+    // 每条边上的点偏离该边不超过边长的这个比例
+    private static final float EDGE_TOLERANCE = 0.1f;
+    // 每条边上的点向同一侧的平均偏离不超过边长的这个比例：抖动两侧抵消，用几段折线近似的圆弧则偏向同一侧
+    private static final float EDGE_BOW = 0.035f;
+    // 转角小于它的顶点并入相邻的边
+    private static final double MIN_CORNER = Math.toRadians(30);
+    private static final int MAX_VERTICES = 8;
+    // 矩形四个转角与直角的最大偏差
+    private static final double RIGHT_ANGLE_TOLERANCE = Math.toRadians(25);
+    // 椭圆：归一化半径误差的平均值和最大值上限
+    private static final float ELLIPSE_MEAN_ERROR = 0.06f;
+    private static final float ELLIPSE_MAX_ERROR = 0.2f;
+    // 椭圆至少绕中心转过的角度
+    private static final double ELLIPSE_MIN_SWEEP = Math.toRadians(300);
+    // 短轴与长轴之比的下限，更扁的闭合笔画多半是来回画的线
+    private static final float MIN_ELLIPSE_RATIO = 0.12f;
+    // 短轴与长轴之比超过它时规整为圆
+    private static final float CIRCLE_RATIO = 0.9f;
+    // 直线、矩形和椭圆的方向离水平或竖直不超过这个角度时摆正
+    private static final double SNAP_ANGLE = Math.toRadians(5);
+    // 椭圆细分的弦高误差（像素）和段数范围
+    private static final float ELLIPSE_FLATNESS = 0.2f;
+    private static final int MIN_ELLIPSE_SEGMENTS = 16;
+    private static final int MAX_ELLIPSE_SEGMENTS = 96;
+
+    // 输入笔画的中心线和每个点处的累计长度
+    private float[] xs = new float[256];
+    private float[] ys = new float[256];
+    private float[] lengths = new float[256];
+    private int count;
+    private float weight;
+    private long startTime;
+    private long duration;
+    // writeShape 生成未分配时间的点
+    private final TouchSampleBuffer outline = new TouchSampleBuffer(MAX_ELLIPSE_SEGMENTS + 1);
+    // RDP 工作数组
+    private boolean[] keep = new boolean[256];
+    private int[] stack = new int[512];
+    // 顶点在输入点中的下标
+    private final IntList corners = new IntList();
+
+    // 识别结果
+    private int shape;
+    private boolean closed;
+    private float[] vertexX = new float[MAX_VERTICES + 1];
+    private float[] vertexY = new float[MAX_VERTICES + 1];
+    private int vertexCount;
+    private float centerX, centerY, radiusX, radiusY;
+    private double angle;
+    // 椭圆：第一个点的参数角和绕行方向（1 或 -1）
+    private double startParam;
+    private int direction;
+
+    /**
+     * 识别 store 中的一条笔画，擦除记录总是 {@link #SHAPE_FREEHAND}
+     * @return 形状类型
+     */
+    public int recognize(StrokeStore store, int stroke) {
+        count = 0;
+        if (store.isErase(stroke)) {
+            return reset();
+        }
+        int start = store.getPointStart(stroke);
+        int n = store.getPointCount(stroke);
+        ensureCapacity(n);
+        float weightSum = 0;
+        for (int i = 0; i < n; i++) {
+            xs[i] = store.getX(start + i);
+            ys[i] = store.getY(start + i);
+            weightSum += store.getWeight(start + i);
+        }
+        count = n;
+        weight = n > 0 ? weightSum / n : 1f;
+        startTime = store.getStartTime(stroke);
+        duration = n > 0 ? store.getTimeOffset(start + n - 1) : 0;
+        return classify();
+    }
+
+    /**
+     * 识别采样缓冲区中的一条笔画，压力通道为笔刷权重，时间为绝对采样时间
+     * @return 形状类型
+     */
+    public int recognize(TouchSampleBuffer points) {
+        int n = points.size();
+        ensureCapacity(n);
+        float weightSum = 0;
+        for (int i = 0; i < n; i++) {
+            xs[i] = points.getX(i);
+            ys[i] = points.getY(i);
+            weightSum += points.getPressure(i);
+        }
+        count = n;
+        weight = n > 0 ? weightSum / n : 1f;
+        startTime = n > 0 ? points.getTime(0) : StrokeStore.NO_TIME;
+        duration = n > 0 && startTime != StrokeStore.NO_TIME ? Math.max(0, points.getTime(n - 1) - startTime) : 0;
+        return classify();
+    }
+
+    /** 最近一次识别的形状类型 */
+    public int getShape() {
+        return shape;
+    }
+
+    /** 直线、折线和矩形是否闭合；矩形和闭合折线为 true */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 直线、折线的顶点数，矩形为 4 个角；闭合折线的最后一个顶点与第一个重合。椭圆和自由曲线为 0
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public float getVertexX(int i) {
+        return vertexX[i];
+    }
+
+    public float getVertexY(int i) {
+        return vertexY[i];
+    }
+
+    /** 矩形或椭圆的中心 */
+    public float getCenterX() {
+        return centerX;
+    }
+
+    public float getCenterY() {
+        return centerY;
+    }
+
+    /** 矩形的半宽或椭圆沿旋转后横轴的半轴 */
+    public float getRadiusX() {
+        return radiusX;
+    }
+
+    /** 矩形的半高或椭圆沿旋转后纵轴的半轴 */
+    public float getRadiusY() {
+        return radiusY;
+    }
+
+    /** 矩形或椭圆的旋转角（弧度），直线和折线为 0 */
+    public double getAngle() {
+        return angle;
+    }
+
+    /**
+     * 把识别出的形状写成点：直线、折线和矩形为顶点，椭圆按弦高误差细分。
+     * 压力通道为原笔画的平均权重；原笔画有采样时间时按长度比例分配原来的时长，否则为 {@link StrokeStore#NO_TIME}
+     * @return 写入的点数，自由曲线不写入，返回 0
+     */
+    public int writeShape(TouchSampleBuffer out) {
+        out.clear();
+        outline.clear();
+        if (shape == SHAPE_FREEHAND) {
+            return 0;
+        }
+        if (shape == SHAPE_ELLIPSE) {
+            float rmax = Math.max(radiusX, radiusY);
+            int segments = rmax <= ELLIPSE_FLATNESS ? MIN_ELLIPSE_SEGMENTS
+                    : (int) Math.ceil(Math.PI / Math.acos(1 - ELLIPSE_FLATNESS / rmax));
+            segments = Math.max(MIN_ELLIPSE_SEGMENTS, Math.min(MAX_ELLIPSE_SEGMENTS, segments));
+            double cos = Math.cos(angle);
+            double sin = Math.sin(angle);
+            for (int k = 0; k <= segments; k++) {
+                // 最后一点与第一点重合，路径闭合
+                double t = startParam + direction * 2 * Math.PI * (k % segments) / segments;
+                double u = radiusX * Math.cos(t);
+                double v = radiusY * Math.sin(t);
+                outline.add((float) (centerX + u * cos - v * sin), (float) (centerY + u * sin + v * cos), 0);
+            }
+        } else {
+            for (int i = 0; i < vertexCount; i++) {
+                outline.add(vertexX[i], vertexY[i], 0);
+            }
+            if (shape == SHAPE_RECTANGLE) {
+                outline.add(vertexX[0], vertexY[0], 0);
+            }
+        }
+        int n = outline.size();
+        double total = 0;
+        for (int i = 1; i < n; i++) {
+            total += segmentLength(i);
+        }
+        // 有采样时间时按长度比例分配原笔画的时长
+        double length = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                length += segmentLength(i);
+            }
+            long time = startTime == StrokeStore.NO_TIME ? StrokeStore.NO_TIME
+                    : startTime + (total > 0 ? Math.round(duration * length / total) : 0);
+            out.add(outline.getX(i), outline.getY(i), time, weight);
+        }
+        return n;
+    }
+
+    private double segmentLength(int i) {
+        return Math.hypot(outline.getX(i) - outline.getX(i - 1), outline.getY(i) - outline.getY(i - 1));
+    }
+
+    private int classify() {
+        reset();
+        int n = count;
+        if (n < 3) {
+            return shape;
+        }
+        float left = xs[0];
+        float top = ys[0];
+        float right = xs[0];
+        float bottom = ys[0];
+        lengths[0] = 0;
+        for (int i = 1; i < n; i++) {
+            left = Math.min(left, xs[i]);
+            top = Math.min(top, ys[i]);
+            right = Math.max(right, xs[i]);
+            bottom = Math.max(bottom, ys[i]);
+            lengths[i] = lengths[i - 1] + (float) Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+        }
+        float size = (float) Math.hypot(right - left, bottom - top);
+        if (size < MIN_SIZE) {
+            return shape;
+        }
+        float total = lengths[n - 1];
+        float gap = (float) Math.hypot(xs[n - 1] - xs[0], ys[n - 1] - ys[0]);
+        if (gap <= CLOSE_GAP * total) {
+            trimClosing();
+            if (!fitEllipse()) {
+                fitPolygon(true, size);
+            }
+        } else if (!fitLine()) {
+            fitPolygon(false, size);
+        }
+        return shape;
+    }
+
+    private int reset() {
+        shape = SHAPE_FREEHAND;
+        closed = false;
+        vertexCount = 0;
+        centerX = centerY = radiusX = radiusY = 0;
+        angle = 0;
+        return shape;
+    }
+
+    // 闭合笔画截到最后一次回到起点附近的位置，去掉收尾时画过头的一段
+    private void trimClosing() {
+        int n = count;
+        float from = lengths[n - 1] * (1 - CLOSE_SEARCH);
+        int best = n - 1;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int i = n - 1; i > 0 && lengths[i] >= from; i--) {
+            float d = (float) Math.hypot(xs[i] - xs[0], ys[i] - ys[0]);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        count = Math.max(best + 1, 3);
+    }
+
+    private boolean fitLine() {
+        int last = count - 1;
+        float chord = (float) Math.hypot(xs[last] - xs[0], ys[last] - ys[0]);
+        if (chord == 0 || lengths[last] > chord * LINE_MAX_STRETCH) {
+            return false;
+        }
+        float tolerance = Math.max(MIN_TOLERANCE, LINE_TOLERANCE * chord);
+        if (maxDeviation(0, last, 0, last) > tolerance) {
+            return false;
+        }
+        float x0 = xs[0];
+        float y0 = ys[0];
+        float x1 = xs[last];
+        float y1 = ys[last];
+        double direction = Math.atan2(y1 - y0, x1 - x0);
+        double snapped = snap(direction);
+        if (snapped != direction) {
+            // 绕中点转正，长度不变
+            float mx = (x0 + x1) / 2;
+            float my = (y0 + y1) / 2;
+            float hx = (float) (Math.cos(snapped) * chord / 2);
+            float hy = (float) (Math.sin(snapped) * chord / 2);
+            x0 = mx - hx;
+            y0 = my - hy;
+            x1 = mx + hx;
+            y1 = my + hy;
+        }
+        shape = SHAPE_LINE;
+        vertexX[0] = x0;
+        vertexY[0] = y0;
+        vertexX[1] = x1;
+        vertexY[1] = y1;
+        vertexCount = 2;
+        return true;
+    }
+
+    /**
+     * 用 RDP 取顶点，去掉转角太小的顶点后检查每条边是否够直；闭合时四个直角的为矩形，其余为闭合折线
+     */
+    private boolean fitPolygon(boolean closedStroke, float size) {
+        int last = count - 1;
+        simplify(last, Math.max(MIN_TOLERANCE, VERTEX_TOLERANCE * size));
+        corners.clear();
+        for (int i = 0; i <= last; i++) {
+            if (keep[i]) {
+                corners.add(i);
+            }
+        }
+        if (closedStroke) {
+            // 终点与起点是同一个顶点
+            corners.remove(corners.get(corners.size() - 1));
+        }
+        pruneCorners(closedStroke);
+        int k = corners.size();
+        if (k < 3 || k > MAX_VERTICES) {
+            return false;
+        }
+        int edges = closedStroke ? k : k - 1;
+        for (int e = 0; e < edges; e++) {
+            int a = corners.get(e);
+            int b = e + 1 < k ? corners.get(e + 1) : last;
+            int target = e + 1 < k ? b : corners.get(0);
+            float length = (float) Math.hypot(xs[target] - xs[a], ys[target] - ys[a]);
+            if (!edgeFits(a, b, a, target, length)
+                    // 起点的顶点被去掉时，闭合的最后一条边还包括从起点到第一个顶点的部分
+                    || (e + 1 == k && target > 0 && !edgeFits(0, target, a, target, length))) {
+                return false;
+            }
+        }
+        if (closedStroke && k == 4 && fitRectangle()) {
+            return true;
+        }
+        shape = SHAPE_POLYLINE;
+        closed = closedStroke;
+        for (int i = 0; i < k; i++) {
+            vertexX[i] = xs[corners.get(i)];
+            vertexY[i] = ys[corners.get(i)];
+        }
+        vertexCount = k;
+        if (closedStroke) {
+            vertexX[k] = vertexX[0];
+            vertexY[k] = vertexY[0];
+            vertexCount++;
+        }
+        return true;
+    }
+
+    // 反复去掉转角最小的顶点，直到所有顶点的转角都不小于 MIN_CORNER；不闭合时首尾顶点保留
+    private void pruneCorners(boolean closedStroke) {
+        while (corners.size() > (closedStroke ? 3 : 2)) {
+            int k = corners.size();
+            int weakest = -1;
+            double weakestTurn = MIN_CORNER;
+            for (int i = closedStroke ? 0 : 1; i < (closedStroke ? k : k - 1); i++) {
+                double turn = Math.abs(turnAt(i, closedStroke));
+                if (turn < weakestTurn) {
+                    weakestTurn = turn;
+                    weakest = i;
+                }
+            }
+            if (weakest < 0) {
+                return;
+            }
+            corners.remove(corners.get(weakest));
+        }
+    }
+
+    // 第 i 个顶点处的有向转角（弧度）
+    private double turnAt(int i, boolean closedStroke) {
+        int k = corners.size();
+        int a = corners.get((i - 1 + k) % k);
+        int b = corners.get(i);
+        int c = corners.get((i + 1) % k);
+        double ax = xs[b] - xs[a];
+        double ay = ys[b] - ys[a];
+        double bx = xs[c] - xs[b];
+        double by = ys[c] - ys[b];
+        return Math.atan2(ax * by - ay * bx, ax * bx + ay * by);
+    }
+
+    /**
+     * 四个顶点转向相同、都接近直角时拟合矩形：方向取四条边方向的平均（按 90° 周期），
+     * 每条边的位置取边上各点在法向上的平均，对个别画歪的点不敏感
+     */
+    private boolean fitRectangle() {
+        int sign = 0;
+        for (int i = 0; i < 4; i++) {
+            double turn = turnAt(i, true);
+            if (Math.abs(Math.abs(turn) - Math.PI / 2) > RIGHT_ANGLE_TOLERANCE) {
+                return false;
+            }
+            int s = turn > 0 ? 1 : -1;
+            if (sign != 0 && s != sign) {
+                return false;
+            }
+            sign = s;
+        }
+        int last = count - 1;
+        double sumCos = 0;
+        double sumSin = 0;
+        for (int e = 0; e < 4; e++) {
+            int a = corners.get(e);
+            int b = e < 3 ? corners.get(e + 1) : corners.get(0);
+            double dx = xs[b] - xs[a];
+            double dy = ys[b] - ys[a];
+            double theta = 4 * Math.atan2(dy, dx);
+            double length = Math.hypot(dx, dy);
+            sumCos += Math.cos(theta) * length;
+            sumSin += Math.sin(theta) * length;
+        }
+        double theta = snap(Math.atan2(sumSin, sumCos) / 4);
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        // 每条边在法向上的平均位置：沿 u 方向的边给出 v，沿 v 方向的边给出 u
+        float[] u = new float[2];
+        float[] v = new float[2];
+        int uCount = 0;
+        int vCount = 0;
+        for (int e = 0; e < 4; e++) {
+            int a = corners.get(e);
+            int b = e < 3 ? corners.get(e + 1) : last;
+            double dx = xs[e < 3 ? b : corners.get(0)] - xs[a];
+            double dy = ys[e < 3 ? b : corners.get(0)] - ys[a];
+            boolean alongU = Math.abs(dx * cos + dy * sin) > Math.abs(-dx * sin + dy * cos);
+            double sum = 0;
+            int points = 0;
+            // 去掉靠近两端的四分之一，转角处画圆了也不影响
+            int from = a + (b - a) / 4;
+            int to = b - (b - a) / 4;
+            for (int i = from; i <= to; i++) {
+                sum += alongU ? -xs[i] * sin + ys[i] * cos : xs[i] * cos + ys[i] * sin;
+                points++;
+            }
+            float mean = (float) (sum / points);
+            if (alongU) {
+                if (vCount == 2) {
+                    return false;
+                }
+                v[vCount++] = mean;
+            } else {
+                if (uCount == 2) {
+                    return false;
+                }
+                u[uCount++] = mean;
+            }
+        }
+        float cu = (u[0] + u[1]) / 2;
+        float cv = (v[0] + v[1]) / 2;
+        shape = SHAPE_RECTANGLE;
+        closed = true;
+        angle = theta;
+        radiusX = Math.abs(u[1] - u[0]) / 2;
+        radiusY = Math.abs(v[1] - v[0]) / 2;
+        centerX = (float) (cu * cos - cv * sin);
+        centerY = (float) (cu * sin + cv * cos);
+        // 从离起点最近的角开始，沿原来的方向绕行
+        int first = 0;
+        float best = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < 4; i++) {
+            cornerOf(i, cos, sin);
+            float d = (float) Math.hypot(vertexX[0] - xs[0], vertexY[0] - ys[0]);
+            if (d < best) {
+                best = d;
+                first = i;
+            }
+        }
+        // 角按 u、v 坐标系中的逆时针顺序编号，屏幕坐标 y 向下时 sign > 0 为顺时针
+        float[] cx = new float[4];
+        float[] cy = new float[4];
+        for (int i = 0; i < 4; i++) {
+            int corner = (first + (sign > 0 ? i : 4 - i)) % 4;
+            cornerOf(corner, cos, sin);
+            cx[i] = vertexX[0];
+            cy[i] = vertexY[0];
+        }
+        System.arraycopy(cx, 0, vertexX, 0, 4);
+        System.arraycopy(cy, 0, vertexY, 0, 4);
+        vertexCount = 4;
+        return true;
+    }
+
+    // 矩形的第 i 个角写到 vertexX[0], vertexY[0]：依次为 (-rx,-ry), (rx,-ry), (rx,ry), (-rx,ry)
+    private void cornerOf(int i, double cos, double sin) {
+        double u = (i == 1 || i == 2) ? radiusX : -radiusX;
+        double v = i >= 2 ? radiusY : -radiusY;
+        vertexX[0] = (float) (centerX + u * cos - v * sin);
+        vertexY[0] = (float) (centerY + u * sin + v * cos);
+    }
+
+    /**
+     * 按长度加权的二阶矩求主轴方向，中心和半轴取主轴方向上的范围，
+     * 再检查各点的归一化半径误差和绕中心转过的角度
+     */
+    private boolean fitEllipse() {
+        int n = count;
+        double total = 0;
+        double mx = 0;
+        double my = 0;
+        for (int i = 1; i < n; i++) {
+            double length = lengths[i] - lengths[i - 1];
+            mx += (xs[i] + xs[i - 1]) / 2.0 * length;
+            my += (ys[i] + ys[i - 1]) / 2.0 * length;
+            total += length;
+        }
+        if (total == 0) {
+            return false;
+        }
+        mx /= total;
+        my /= total;
+        double sxx = 0;
+        double syy = 0;
+        double sxy = 0;
+        for (int i = 1; i < n; i++) {
+            double length = lengths[i] - lengths[i - 1];
+            double dx = (xs[i] + xs[i - 1]) / 2.0 - mx;
+            double dy = (ys[i] + ys[i - 1]) / 2.0 - my;
+            sxx += dx * dx * length;
+            syy += dy * dy * length;
+            sxy += dx * dy * length;
+        }
+        double theta = 0.5 * Math.atan2(2 * sxy, sxx - syy);
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        double minU = Double.POSITIVE_INFINITY;
+        double maxU = Double.NEGATIVE_INFINITY;
+        double minV = Double.POSITIVE_INFINITY;
+        double maxV = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            double u = xs[i] * cos + ys[i] * sin;
+            double v = -xs[i] * sin + ys[i] * cos;
+            minU = Math.min(minU, u);
+            maxU = Math.max(maxU, u);
+            minV = Math.min(minV, v);
+            maxV = Math.max(maxV, v);
+        }
+        double cu = (minU + maxU) / 2;
+        double cv = (minV + maxV) / 2;
+        double ru = (maxU - minU) / 2;
+        double rv = (maxV - minV) / 2;
+        if (Math.min(ru, rv) < MIN_ELLIPSE_RATIO * Math.max(ru, rv)) {
+            return false;
+        }
+        double errorSum = 0;
+        double sweep = 0;
+        double previous = 0;
+        for (int i = 0; i < n; i++) {
+            double u = (xs[i] * cos + ys[i] * sin - cu) / ru;
+            double v = (-xs[i] * sin + ys[i] * cos - cv) / rv;
+            double error = Math.abs(Math.hypot(u, v) - 1);
+            if (error > ELLIPSE_MAX_ERROR) {
+                return false;
+            }
+            errorSum += error;
+            double param = Math.atan2(v, u);
+            if (i > 0) {
+                double delta = param - previous;
+                if (delta > Math.PI) {
+                    delta -= 2 * Math.PI;
+                } else if (delta < -Math.PI) {
+                    delta += 2 * Math.PI;
+                }
+                sweep += delta;
+            }
+            previous = param;
+        }
+        if (errorSum / n > ELLIPSE_MEAN_ERROR || Math.abs(sweep) < ELLIPSE_MIN_SWEEP) {
+            return false;
+        }
+        shape = SHAPE_ELLIPSE;
+        centerX = (float) (cu * cos - cv * sin);
+        centerY = (float) (cu * sin + cv * cos);
+        direction = sweep > 0 ? 1 : -1;
+        if (Math.min(ru, rv) >= CIRCLE_RATIO * Math.max(ru, rv)) {
+            radiusX = radiusY = (float) ((ru + rv) / 2);
+            angle = 0;
+        } else {
+            radiusX = (float) ru;
+            radiusY = (float) rv;
+            angle = snap(theta);
+        }
+        // 从原笔画起点所在的位置开始
+        double dx = xs[0] - centerX;
+        double dy = ys[0] - centerY;
+        double u = dx * Math.cos(angle) + dy * Math.sin(angle);
+        double v = -dx * Math.sin(angle) + dy * Math.cos(angle);
+        startParam = Math.atan2(v / radiusY, u / radiusX);
+        return true;
+    }
+
+    // 方向离水平或竖直不超过 SNAP_ANGLE 时摆正
+    private static double snap(double theta) {
+        double quarter = Math.PI / 2;
+        double nearest = Math.round(theta / quarter) * quarter;
+        return Math.abs(theta - nearest) <= SNAP_ANGLE ? nearest : theta;
+    }
+
+    // 点 [from, to] 是否都贴近线段 (a, target)，且没有整体偏向一侧
+    private boolean edgeFits(int from, int to, int a, int target, float length) {
+        if (maxDeviation(from, to, a, target) > Math.max(MIN_TOLERANCE, EDGE_TOLERANCE * length)) {
+            return false;
+        }
+        if (length == 0 || to - from < 2) {
+            return true;
+        }
+        float dx = (xs[target] - xs[a]) / length;
+        float dy = (ys[target] - ys[a]) / length;
+        double bow = 0;
+        for (int i = from; i <= to; i++) {
+            bow += (xs[i] - xs[a]) * dy - (ys[i] - ys[a]) * dx;
+        }
+        return Math.abs(bow / (to - from + 1)) <= EDGE_BOW * length;
+    }
+
+    // 点 [from, to] 到线段 (a, target) 的最大距离
+    private float maxDeviation(int from, int to, int a, int target) {
+        float max = 0;
+        for (int i = from; i <= to; i++) {
+            max = Math.max(max, segmentDistance(i, a, target));
+        }
+        return max;
+    }
+
+    private float segmentDistance(int p, int a, int b) {
+        float ax = xs[a];
+        float ay = ys[a];
+        float dx = xs[b] - ax;
+        float dy = ys[b] - ay;
+        float px = xs[p] - ax;
+        float py = ys[p] - ay;
+        float lengthSq = dx * dx + dy * dy;
+        float t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSq));
+        return (float) Math.hypot(px - t * dx, py - t * dy);
+    }
+
+    // 对 [0, last] 运行 RDP，结果在 keep 中；首尾重合时第一次分割取离起点最远的点
+    private void simplify(int last, float tolerance) {
+        Arrays.fill(keep, 0, last + 1, false);
+        keep[0] = true;
+        keep[last] = true;
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = last;
+        while (top > 0) {
+            int b = stack[--top];
+            int a = stack[--top];
+            float max = 0;
+            int index = -1;
+            for (int i = a + 1; i < b; i++) {
+                float d = segmentDistance(i, a, b);
+                if (d > max) {
+                    max = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && max > tolerance) {
+                keep[index] = true;
+                stack[top++] = a;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = b;
+            }
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (xs.length < n) {
+            int capacity = Math.max(n, xs.length * 2);
+            xs = new float[capacity];
+            ys = new float[capacity];
+            lengths = new float[capacity];
+            keep = new boolean[capacity];
+            stack = new int[capacity * 2];
+        }
+    }
+}
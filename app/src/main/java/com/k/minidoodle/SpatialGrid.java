@@ -0,0 +1,184 @@
+package com.k.minidoodle;
+
+import java.util.Arrays;
+
+/**
+ * 按包围盒索引笔画的均匀网格
+ * 平面划分为固定大小的格子，每条笔画登记在其包围盒覆盖的所有格子中，
+ * 区域查询只访问与查询矩形相交的格子，开销与区域内的笔画数有关，而与笔画总数无关。
+ * 格子保存在以格子坐标为键的开放寻址哈希表中，画布没有边界，坐标可以为负。
+ */
+public class SpatialGrid {
+
+    private final float cellSize;
+
+    // 开放寻址哈希表：keys 为打包的格子坐标，cells[i] == null 表示空槽
+    private long[] keys = new long[64];
+    private IntList[] cells = new IntList[64];
+    private int cellCount;
+
+    // 查询去重用的标记：marks[id] == stamp 表示本次查询已收录
+    private int[] marks = new int[64];
+    private int stamp;
+
+    /**
+     * @param cellSize 格子边长（文档坐标）
+     */
+    public SpatialGrid(float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize must be positive");
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * 登记编号为 id、包围盒为 [left, right] x [top, bottom] 的条目
+     */
+    public void insert(int id, float left, float top, float right, float bottom) {
+        if (id >= marks.length) {
+            marks = Arrays.copyOf(marks, Math.max(id + 1, marks.length * 2));
+        }
+        int x1 = cell(right);
+        int y1 = cell(bottom);
+        for (int y = cell(top); y <= y1; y++) {
+            for (int x = cell(left); x <= x1; x++) {
+                findOrCreate(x, y).add(id);
+            }
+        }
+    }
+
+    /**
+     * 删除条目，包围盒须与登记时一致
+     */
+    public void remove(int id, float left, float top, float right, float bottom) {
+        int x1 = cell(right);
+        int y1 = cell(bottom);
+        for (int y = cell(top); y <= y1; y++) {
+            for (int x = cell(left); x <= x1; x++) {
+                int slot = find(x, y);
+                if (cells[slot] != null) {
+                    cells[slot].remove(id);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(cells, null);
+        cellCount = 0;
+    }
+
+    /**
+     * 查询包围盒可能与矩形相交的条目（按格子粒度，调用方需自行精确判断），
+     * 结果去重并按编号升序写入 out，即绘制顺序
+     * @return 结果数
+     */
+    public int query(float left, float top, float right, float bottom, IntList out) {
+        out.clear();
+        if (++stamp == 0) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+        int x0 = cell(left);
+        int y0 = cell(top);
+        int x1 = cell(right);
+        int y1 = cell(bottom);
+        long area = ((long) x1 - x0 + 1) * ((long) y1 - y0 + 1);
+        if (area <= cellCount) {
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    IntList ids = cells[find(x, y)];
+                    if (ids != null) {
+                        collect(ids, out);
+                    }
+                }
+            }
+        } else {
+            // 查询范围比已占用的格子还多（例如缩小查看整幅画），直接遍历已占用的格子
+            for (int slot = 0; slot < cells.length; slot++) {
+                if (cells[slot] == null) {
+                    continue;
+                }
+                int x = (int) (keys[slot] >> 32);
+                int y = (int) keys[slot];
+                if (x >= x0 && x <= x1 && y >= y0 && y <= y1) {
+                    collect(cells[slot], out);
+                }
+            }
+        }
+        out.sort();
+        return out.size();
+    }
+
+    /** 已分配的格子数 */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    private void collect(IntList ids, IntList out) {
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            if (marks[id] != stamp) {
+                marks[id] = stamp;
+                out.add(id);
+            }
+        }
+    }
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private IntList findOrCreate(int x, int y) {
+        int slot = find(x, y);
+        if (cells[slot] == null) {
+            if ((cellCount + 1) * 2 > cells.length) {
+                grow();
+                slot = find(x, y);
+            }
+            keys[slot] = key(x, y);
+            cells[slot] = new IntList(4);
+            cellCount++;
+        }
+        return cells[slot];
+    }
+
+    // 返回格子所在的槽位，不存在时返回应插入的空槽
+    private int find(int x, int y) {
+        long key = key(x, y);
+        int mask = cells.length - 1;
+        int slot = hash(key) & mask;
+        while (cells[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        IntList[] oldCells = cells;
+        keys = new long[oldKeys.length * 2];
+        cells = new IntList[oldCells.length * 2];
+        int mask = cells.length - 1;
+        for (int i = 0; i < oldCells.length; i++) {
+            if (oldCells[i] == null) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]) & mask;
+            while (cells[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            cells[slot] = oldCells[i];
+        }
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
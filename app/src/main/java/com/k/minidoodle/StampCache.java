@@ -0,0 +1,108 @@
+package com.k.minidoodle;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RadialGradient;
+import android.graphics.Shader;
+
+/**
+ * 预先光栅化的笔尖印章缓存
+ * 印章按直径、颜色和硬度生成一次径向渐变位图，之后盖章只是一次位图绘制，
+ * 开销与笔尖的渐变复杂度无关。键打包为 long，按字节数限制总量。
+ * 直径按档位取整以提高命中率，绘制时再缩放到精确大小。淘汰的位图交回 {@link BitmapPool}。
+ */
+class StampCache {
+
+    // 最大印章直径，更大的笔尖由缓存位图放大绘制
+    static final int MAX_DIAMETER = 256;
+    // 默认内存上限：约 16 个最大印章
+    private static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+    // 硬度量化为 16 档
+    private static final int HARDNESS_LEVELS = 16;
+
+    private final LongLruCache<Bitmap> cache;
+    private final Paint gradientPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Canvas stampCanvas = new Canvas();
+    private int hits;
+    private int misses;
+
+    StampCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    StampCache(long maxBytes) {
+        cache = new LongLruCache<Bitmap>(maxBytes) {
+            @Override
+            protected void onRemoved(long key, Bitmap value) {
+                BitmapPool.getInstance().release(value);
+            }
+        };
+    }
+
+    /**
+     * 取直径不小于 diameter 的印章，带 color 的颜色和不透明度，边缘按 hardness 羽化
+     */
+    Bitmap get(float diameter, int color, float hardness) {
+        int size = bucket(diameter);
+        int hardnessLevel = Math.round(Math.max(0f, Math.min(1f, hardness)) * (HARDNESS_LEVELS - 1));
+        long key = ((long) size << 40) | ((long) hardnessLevel << 32) | (color & 0xFFFFFFFFL);
+        Bitmap stamp = cache.get(key);
+        if (stamp != null) {
+            hits++;
+            return stamp;
+        }
+        misses++;
+        stamp = render(size, color, (float) hardnessLevel / (HARDNESS_LEVELS - 1));
+        cache.put(key, stamp, stamp.getByteCount());
+        return stamp;
+    }
+
+    /** 回收所有印章 */
+    void clear() {
+        cache.clear();
+    }
+
+    long getByteCount() {
+        return cache.weight();
+    }
+
+    int getHitCount() {
+        return hits;
+    }
+
+    int getMissCount() {
+        return misses;
+    }
+
+    // 8 像素以下按 1 像素取整，更大的按 1/8 倍程取整，档位数与直径的对数成正比
+    static int bucket(float diameter) {
+        int d = Math.max(1, Math.min(MAX_DIAMETER, (int) Math.ceil(diameter)));
+        if (d <= 8) {
+            return d;
+        }
+        int step = Integer.highestOneBit(d) >> 3;
+        return Math.min(MAX_DIAMETER, (d + step - 1) / step * step);
+    }
+
+    private Bitmap render(int size, int color, float hardness) {
+        Bitmap stamp = BitmapPool.getInstance().obtain(size, size, Bitmap.Config.ARGB_8888);
+        float radius = size / 2f;
+        int transparent = color & 0x00FFFFFF;
+        if (hardness >= 1f) {
+            gradientPaint.setShader(null);
+            gradientPaint.setColor(color);
+        } else {
+            // 半径 hardness 以内为实心，之外线性淡出到透明
+            gradientPaint.setShader(new RadialGradient(radius, radius, radius,
+                    new int[]{color, color, transparent}, new float[]{0f, hardness, 1f},
+                    Shader.TileMode.CLAMP));
+            gradientPaint.setColor(Color.BLACK);
+        }
+        stampCanvas.setBitmap(stamp);
+        stampCanvas.drawCircle(radius, radius, radius, gradientPaint);
+        stampCanvas.setBitmap(null);
+        return stamp;
+    }
+}
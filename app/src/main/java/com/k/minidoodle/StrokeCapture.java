@@ -0,0 +1,214 @@
+package com.k.minidoodle;
+
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.view.MotionEvent;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 笔画采集层
+ * 把 MotionEvent 中批量合并的历史采样点连同当前点一起写入 {@link TouchSampleBuffer}，
+ * 交给 {@link StrokePipeline} 抽稀和平滑，并按批次把处理后的新点追加到 Path，整个过程不分配对象。
+ * 流水线暂存、尚未输出的原始点画在单独的尾部 Path 上，线条始终跟随手指。
+ * 传入视口时，采样点和 Path 都使用文档坐标，脏区域同样是文档坐标。
+ */
+class StrokeCapture {
+
+    private final TouchSampleBuffer samples = new TouchSampleBuffer();
+    private final StrokePipeline pipeline;
+
+    // 上一次构建的尾部包围盒，以及自上次 computeDirtyBounds 以来累计的脏区域
+    private float tailLeft, tailTop, tailRight, tailBottom;
+    private boolean hasTail;
+    private float dirtyLeft, dirtyTop, dirtyRight, dirtyBottom;
+    private boolean hasDirty;
+
+    StrokeCapture() {
+        this(StrokePipeline.createDefault());
+    }
+
+    StrokeCapture(StrokePipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * 开始新的一笔，清空上一笔的采样点
+     */
+    void reset() {
+        samples.clear();
+        pipeline.reset();
+        hasTail = false;
+        hasDirty = false;
+    }
+
+    /**
+     * 读取事件中的全部采样点（先历史点，后当前点），经流水线处理后
+     * 把新输出的点追加到 path，并重建 tail
+     */
+    void ingest(MotionEvent event, Path path, Path tail) {
+        ingest(event, null, path, tail);
+    }
+
+    /**
+     * 同 {@link #ingest(MotionEvent, Path, Path)}，采样点先经 viewport 换算成文档坐标
+     */
+    void ingest(MotionEvent event, @Nullable Viewport viewport, Path path, Path tail) {
+        int historySize = event.getHistorySize();
+        samples.ensureCapacity(samples.size() + historySize + 1);
+        for (int h = 0; h < historySize; h++) {
+            addSample(viewport, event.getHistoricalX(h), event.getHistoricalY(h),
+                    event.getHistoricalEventTime(h), event.getHistoricalPressure(h));
+        }
+        addSample(viewport, event.getX(), event.getY(), event.getEventTime(), event.getPressure());
+        process(path, tail);
+    }
+
+    /**
+     * 追加一个已换算成文档坐标的采样点，攒够一批后调用 {@link #process}；
+     * 供不直接接收 MotionEvent 的一方（如渲染线程）使用
+     */
+    void add(float x, float y, long time) {
+        samples.add(x, y, time);
+    }
+
+    /**
+     * 同 {@link #add(float, float, long)}，附带压力
+     */
+    void add(float x, float y, long time, float pressure) {
+        samples.add(x, y, time, clampPressure(pressure));
+    }
+
+    /**
+     * 把已追加的采样点交给流水线，新输出的点追加到 path，并重建 tail
+     */
+    void process(Path path, Path tail) {
+        int from = pipeline.output() == null ? 0 : pipeline.output().size();
+        pipeline.feed(samples);
+        appendOutput(path, from);
+        buildTail(tail);
+    }
+
+    /**
+     * 笔画结束：输出流水线暂存的点，尾部清空
+     */
+    void finish(Path path, Path tail) {
+        int from = pipeline.output() == null ? 0 : pipeline.output().size();
+        pipeline.finish(samples);
+        appendOutput(path, from);
+        tail.rewind();
+        if (hasTail) {
+            addDirty(tailLeft, tailTop);
+            addDirty(tailRight, tailBottom);
+            hasTail = false;
+        }
+    }
+
+    /**
+     * 输出自上次调用以来发生变化的区域（新增线段、新旧尾部），按 pad 外扩，然后重新累计
+     */
+    void computeDirtyBounds(float pad, Rect out) {
+        if (!hasDirty) {
+            out.setEmpty();
+            return;
+        }
+        out.set((int) Math.floor(dirtyLeft - pad), (int) Math.floor(dirtyTop - pad),
+                (int) Math.ceil(dirtyRight + pad), (int) Math.ceil(dirtyBottom + pad));
+        hasDirty = false;
+    }
+
+    /** 处理后的笔画点，笔画结束后即为要存储的几何 */
+    TouchSampleBuffer getStroke() {
+        return pipeline.output();
+    }
+
+    /** 原始采样点 */
+    TouchSampleBuffer getSamples() {
+        return samples;
+    }
+
+    private void addSample(@Nullable Viewport viewport, float x, float y, long time, float pressure) {
+        if (viewport != null) {
+            x = viewport.toDocumentX(x);
+            y = viewport.toDocumentY(y);
+        }
+        samples.add(x, y, time, clampPressure(pressure));
+    }
+
+    // 部分设备报告的压力会超过 1，手指触摸通常固定为 1
+    private static float clampPressure(float pressure) {
+        return Math.max(0f, Math.min(1f, pressure));
+    }
+
+    // 把流水线从 from 开始新输出的点追加到 path，第 0 个点作为起点
+    private void appendOutput(Path path, int from) {
+        TouchSampleBuffer output = pipeline.output();
+        int size = output.size();
+        if (from > 0 && from < size) {
+            addDirty(output.getX(from - 1), output.getY(from - 1));
+        }
+        for (int i = from; i < size; i++) {
+            float x = output.getX(i);
+            float y = output.getY(i);
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+            addDirty(x, y);
+        }
+    }
+
+    // 尾部从最后一个输出点连到所有晚于它的原始采样点
+    private void buildTail(Path tail) {
+        if (hasTail) {
+            addDirty(tailLeft, tailTop);
+            addDirty(tailRight, tailBottom);
+        }
+        tail.rewind();
+        hasTail = false;
+        TouchSampleBuffer output = pipeline.output();
+        int outputSize = output.size();
+        if (outputSize == 0) {
+            return;
+        }
+        long settledTime = output.getTime(outputSize - 1);
+        int start = samples.size();
+        while (start > 0 && samples.getTime(start - 1) > settledTime) {
+            start--;
+        }
+        if (start == samples.size()) {
+            return;
+        }
+        float x = output.getX(outputSize - 1);
+        float y = output.getY(outputSize - 1);
+        tail.moveTo(x, y);
+        tailLeft = tailRight = x;
+        tailTop = tailBottom = y;
+        for (int i = start; i < samples.size(); i++) {
+            x = samples.getX(i);
+            y = samples.getY(i);
+            tail.lineTo(x, y);
+            tailLeft = Math.min(tailLeft, x);
+            tailTop = Math.min(tailTop, y);
+            tailRight = Math.max(tailRight, x);
+            tailBottom = Math.max(tailBottom, y);
+        }
+        hasTail = true;
+        addDirty(tailLeft, tailTop);
+        addDirty(tailRight, tailBottom);
+    }
+
+    private void addDirty(float x, float y) {
+        if (!hasDirty) {
+            dirtyLeft = dirtyRight = x;
+            dirtyTop = dirtyBottom = y;
+            hasDirty = true;
+            return;
+        }
+        dirtyLeft = Math.min(dirtyLeft, x);
+        dirtyTop = Math.min(dirtyTop, y);
+        dirtyRight = Math.max(dirtyRight, x);
+        dirtyBottom = Math.max(dirtyBottom, y);
+    }
+}
@@ -0,0 +1,216 @@
+package com.k.minidoodle;
+
+/**
+ * 橡皮擦的几何计算
+ * 橡皮轨迹是一条折线，覆盖范围为到折线距离不超过半径的区域；笔画的墨迹按中心线加半个线宽计算。
+ * 整笔模式只判断是否相交，局部模式把笔画在覆盖范围之外的部分切成若干段：
+ * 只细分靠近橡皮的线段来寻找切点，其余线段原样保留，切出的段不比原笔画多出无用的点。
+ * 不依赖 Android，不分配对象，结果写入调用方提供的缓冲区。
+ */
+final class StrokeEraser {
+
+    static final int MODE_OFF = 0;
+    /** 删除碰到的整条笔画 */
+    static final int MODE_STROKE = 1;
+    /** 只擦掉覆盖的部分，剩下的部分成为新的笔画 */
+    static final int MODE_PIXEL = 2;
+
+    /** 橡皮半径（屏幕像素），缩放时换算成文档坐标，屏幕上的大小不变 */
+    static final float DEFAULT_RADIUS = 16f;
+
+    // 细分靠近橡皮的线段时，采样间隔为覆盖距离的这个比例
+    private static final float SUBDIVISION = 0.25f;
+    // 细分间隔下限（文档像素），避免很细的橡皮把长线段切成过多的小段
+    private static final float MIN_STEP = 0.5f;
+
+    private StrokeEraser() {
+    }
+
+    /**
+     * 笔画的墨迹是否碰到橡皮轨迹 path[from, to) 的覆盖范围
+     */
+    static boolean touches(StrokeStore store, int stroke, TouchSampleBuffer path, int from, int to,
+                           float radius) {
+        float reach = radius + store.getWidth(stroke) / 2;
+        int start = store.getPointStart(stroke);
+        int end = start + store.getPointCount(stroke);
+        if (start == end || from >= to) {
+            return false;
+        }
+        if (end - start == 1) {
+            return distanceToPath(path, from, to, store.getX(start), store.getY(start)) <= reach;
+        }
+        for (int i = start + 1; i < end; i++) {
+            if (segmentDistanceToPath(path, from, to, store.getX(i - 1), store.getY(i - 1),
+                    store.getX(i), store.getY(i)) <= reach) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把笔画在橡皮覆盖范围之外的部分按原顺序切成若干段，追加到 pieces
+     * （压力通道为笔刷权重，时间通道为相对原笔画第一个点的毫秒数），
+     * 每段结束位置（不含）依次追加到 pieceEnds；没有碰到橡皮时不写入任何内容
+     * @return 是否碰到了橡皮；碰到但没有剩余部分时 pieceEnds 不增加
+     */
+    static boolean split(StrokeStore store, int stroke, TouchSampleBuffer path, int from, int to,
+                         float radius, TouchSampleBuffer pieces, IntList pieceEnds) {
+        float reach = radius + store.getWidth(stroke) / 2;
+        int start = store.getPointStart(stroke);
+        int end = start + store.getPointCount(stroke);
+        if (start == end || from >= to) {
+            return false;
+        }
+        // 橡皮覆盖范围的包围盒，完全在外面的线段不需要细分
+        float left = Float.POSITIVE_INFINITY;
+        float top = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY;
+        float bottom = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            left = Math.min(left, path.getX(i));
+            top = Math.min(top, path.getY(i));
+            right = Math.max(right, path.getX(i));
+            bottom = Math.max(bottom, path.getY(i));
+        }
+        left -= reach;
+        top -= reach;
+        right += reach;
+        bottom += reach;
+
+        int rollback = pieces.size();
+        boolean touched = false;
+        float ax = store.getX(start);
+        float ay = store.getY(start);
+        float aw = store.getWeight(start);
+        int at = store.getTimeOffset(start);
+        boolean inside = distanceToPath(path, from, to, ax, ay) <= reach;
+        if (inside) {
+            touched = true;
+        } else {
+            pieces.add(ax, ay, at, aw);
+        }
+        for (int i = start + 1; i < end; i++) {
+            float bx = store.getX(i);
+            float by = store.getY(i);
+            float bw = store.getWeight(i);
+            int bt = store.getTimeOffset(i);
+            if (Math.max(ax, bx) < left || Math.min(ax, bx) > right
+                    || Math.max(ay, by) < top || Math.min(ay, by) > bottom) {
+                // 整条线段都在覆盖范围之外，原样保留
+                pieces.add(bx, by, bt, bw);
+            } else {
+                float length = (float) Math.hypot(bx - ax, by - ay);
+                int steps = Math.max(1, (int) Math.ceil(length / Math.max(reach * SUBDIVISION, MIN_STEP)));
+                for (int k = 1; k <= steps; k++) {
+                    float t = (float) k / steps;
+                    float x = ax + (bx - ax) * t;
+                    float y = ay + (by - ay) * t;
+                    boolean covered = distanceToPath(path, from, to, x, y) <= reach;
+                    if (covered && !inside) {
+                        // 进入橡皮：当前段到上一个采样为止，线段内部的采样此前没有写入
+                        if (k > 1) {
+                            float pt = (float) (k - 1) / steps;
+                            pieces.add(ax + (bx - ax) * pt, ay + (by - ay) * pt, at + (long) ((bt - at) * pt),
+                                    aw + (bw - aw) * pt);
+                        }
+                        pieceEnds.add(pieces.size());
+                        touched = true;
+                    } else if (!covered && (inside || k == steps)) {
+                        // 离开橡皮时从这里开始新的一段；仍在外面时线段内部的采样共线，只写终点
+                        pieces.add(x, y, at + (long) ((bt - at) * t), aw + (bw - aw) * t);
+                    }
+                    inside = covered;
+                }
+            }
+            ax = bx;
+            ay = by;
+            aw = bw;
+            at = bt;
+        }
+        if (!touched) {
+            // 没有碰到：撤回按原样写入的点
+            pieces.truncate(rollback);
+            return false;
+        }
+        if (!inside) {
+            pieceEnds.add(pieces.size());
+        }
+        return true;
+    }
+
+    /**
+     * 点到橡皮轨迹 path[from, to) 的最短距离；只有一个点时为到该点的距离
+     */
+    static float distanceToPath(TouchSampleBuffer path, int from, int to, float x, float y) {
+        float best = Float.POSITIVE_INFINITY;
+        float ax = path.getX(from);
+        float ay = path.getY(from);
+        if (to - from == 1) {
+            return (float) Math.hypot(x - ax, y - ay);
+        }
+        for (int i = from + 1; i < to; i++) {
+            float bx = path.getX(i);
+            float by = path.getY(i);
+            best = Math.min(best, pointToSegmentSq(x, y, ax, ay, bx, by));
+            ax = bx;
+            ay = by;
+        }
+        return (float) Math.sqrt(best);
+    }
+
+    // 线段 (ax, ay)-(bx, by) 到橡皮轨迹的最短距离
+    private static float segmentDistanceToPath(TouchSampleBuffer path, int from, int to,
+                                               float ax, float ay, float bx, float by) {
+        float best = Float.POSITIVE_INFINITY;
+        float cx = path.getX(from);
+        float cy = path.getY(from);
+        if (to - from == 1) {
+            return (float) Math.sqrt(pointToSegmentSq(cx, cy, ax, ay, bx, by));
+        }
+        for (int i = from + 1; i < to; i++) {
+            float dx = path.getX(i);
+            float dy = path.getY(i);
+            best = Math.min(best, segmentToSegmentSq(ax, ay, bx, by, cx, cy, dx, dy));
+            cx = dx;
+            cy = dy;
+        }
+        return (float) Math.sqrt(best);
+    }
+
+    private static float segmentToSegmentSq(float ax, float ay, float bx, float by,
+                                            float cx, float cy, float dx, float dy) {
+        if (segmentsIntersect(ax, ay, bx, by, cx, cy, dx, dy)) {
+            return 0;
+        }
+        // 不相交时，最短距离在某条线段的端点上取得
+        return Math.min(Math.min(pointToSegmentSq(ax, ay, cx, cy, dx, dy), pointToSegmentSq(bx, by, cx, cy, dx, dy)),
+                Math.min(pointToSegmentSq(cx, cy, ax, ay, bx, by), pointToSegmentSq(dx, dy, ax, ay, bx, by)));
+    }
+
+    private static boolean segmentsIntersect(float ax, float ay, float bx, float by,
+                                             float cx, float cy, float dx, float dy) {
+        float d1 = cross(cx, cy, dx, dy, ax, ay);
+        float d2 = cross(cx, cy, dx, dy, bx, by);
+        float d3 = cross(ax, ay, bx, by, cx, cy);
+        float d4 = cross(ax, ay, bx, by, dx, dy);
+        return ((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0));
+    }
+
+    // (b - a) × (p - a)
+    private static float cross(float ax, float ay, float bx, float by, float px, float py) {
+        return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    private static float pointToSegmentSq(float x, float y, float ax, float ay, float bx, float by) {
+        float dx = bx - ax;
+        float dy = by - ay;
+        float lenSq = dx * dx + dy * dy;
+        float t = lenSq == 0 ? 0 : ((x - ax) * dx + (y - ay) * dy) / lenSq;
+        t = Math.max(0, Math.min(1, t));
+        float ex = x - ax - t * dx;
+        float ey = y - ay - t * dy;
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,47 @@
+package com.k.minidoodle;
+
+/**
+ * 变宽笔画轮廓用到的几何计算，屏幕绘制（{@link StrokePainter}）和矢量导出（{@link StrokeVectorizer}）共用，
+ * 两者得到相同的轮廓。不依赖 Android。
+ */
+final class StrokeGeometry {
+
+    // 转角余弦小于此值时在拐点补一个圆，避免轮廓在急转处出现缺口
+    private static final float SHARP_TURN_COS = 0.5f;
+
+    private StrokeGeometry() {
+    }
+
+    /**
+     * 第 i 个点处单位切线的 x 分量，取前后两点的方向；[start, end) 为笔画的点区间
+     */
+    static float tangentX(StrokeStore store, int i, int start, int end) {
+        float dx = store.getX(Math.min(i + 1, end - 1)) - store.getX(Math.max(i - 1, start));
+        float dy = store.getY(Math.min(i + 1, end - 1)) - store.getY(Math.max(i - 1, start));
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        return length == 0 ? 1 : dx / length;
+    }
+
+    /**
+     * 第 i 个点处单位切线的 y 分量
+     */
+    static float tangentY(StrokeStore store, int i, int start, int end) {
+        float dx = store.getX(Math.min(i + 1, end - 1)) - store.getX(Math.max(i - 1, start));
+        float dy = store.getY(Math.min(i + 1, end - 1)) - store.getY(Math.max(i - 1, start));
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        return length == 0 ? 0 : dy / length;
+    }
+
+    /**
+     * 第 i 个点（不是端点）处是否为急转，轮廓需要在此补圆
+     */
+    static boolean isSharpTurn(StrokeStore store, int i) {
+        float ax = store.getX(i) - store.getX(i - 1);
+        float ay = store.getY(i) - store.getY(i - 1);
+        float bx = store.getX(i + 1) - store.getX(i);
+        float by = store.getY(i + 1) - store.getY(i);
+        float dot = ax * bx + ay * by;
+        float lenSq = (ax * ax + ay * ay) * (bx * bx + by * by);
+        return dot < 0 || dot * dot < SHARP_TURN_COS * SHARP_TURN_COS * lenSq;
+    }
+}
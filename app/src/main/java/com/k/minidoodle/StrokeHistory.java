@@ -0,0 +1,308 @@
+package com.k.minidoodle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 带检查点的撤销/重做引擎
+ * 每隔 N 条记录保存一次光栅快照，撤销时只需恢复最近的快照并重放其后的记录，
+ * 快照占用的内存受预算限制，超出时淘汰最旧的快照。
+ * 能够局部撤销的光栅（见 {@link Renderer#revert}）不需要快照。
+ * 本类不关心记录和光栅的具体类型，绘制、快照等操作都委托给 {@link Renderer}。
+ *
+ * @param <S> 快照类型
+ */
+public class StrokeHistory<S> {
+
+    /**
+     * 光栅操作回调，由持有笔画和光栅的一方实现
+     */
+    public interface Renderer<S> {
+        /** 清空光栅内容 */
+        void clearRaster();
+
+        /** 把第 index 条记录重新绘制到当前光栅上 */
+        void replay(int index);
+
+        /**
+         * 就地撤销第 index 条（当前最后一条可见）记录对光栅的影响，例如只重绘它覆盖的区域
+         * @return 重绘的记录数；不支持时返回 -1，改为从检查点恢复
+         */
+        int revert(int index);
+
+        /** 丢弃 [from, to) 区间的记录，新记录覆盖重做分支时调用 */
+        void discard(int from, int to);
+
+        /** 拷贝当前光栅作为快照，无法拷贝时返回 null */
+        S capture();
+
+        /** 用快照内容覆盖当前光栅，快照本身保持不变 */
+        void restore(S snapshot);
+
+        /** 快照占用的字节数 */
+        long sizeOf(S snapshot);
+
+        /** 释放不再使用的快照 */
+        void release(S snapshot);
+    }
+
+    // 快照及其对应的记录位置：光栅中恰好包含 [0, index) 的记录
+    private static class Checkpoint<S> {
+        final int index;
+        final S snapshot;
+        final long bytes;
+
+        Checkpoint(int index, S snapshot, long bytes) {
+            this.index = index;
+            this.snapshot = snapshot;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Renderer<S> renderer;
+    private final int checkpointInterval;
+    private long memoryBudget;
+
+    // 按 index 升序排列的检查点
+    private final List<Checkpoint<S>> checkpoints = new ArrayList<>();
+    private long snapshotBytes;
+
+    // 当前可见的记录数，[cursor, total) 为可重做的记录
+    private int cursor;
+    private int total;
+
+    // 最近一次撤销/重建时重放的记录数
+    private int lastReplayCount;
+
+    /**
+     * @param renderer 光栅操作回调
+     * @param checkpointInterval 每隔多少条记录保存一次快照
+     * @param memoryBudget 快照总字节数上限
+     */
+    public StrokeHistory(Renderer<S> renderer, int checkpointInterval, long memoryBudget) {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("checkpointInterval must be positive");
+        }
+        this.renderer = renderer;
+        this.checkpointInterval = checkpointInterval;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * 在新记录写入存储之前调用：丢弃重做分支，必要时为当前光栅建立检查点。
+     * 调用方随后应把新记录追加到存储末尾并绘制到光栅上。
+     *
+     * @return 新记录的序号
+     */
+    public int commit() {
+        if (cursor < total) {
+            renderer.discard(cursor, total);
+            dropCheckpointsAfter(cursor);
+        }
+        if (cursor > 0 && cursor % checkpointInterval == 0 && !hasCheckpointAt(cursor)) {
+            addCheckpoint(cursor);
+        }
+        int index = cursor;
+        cursor++;
+        total = cursor;
+        return index;
+    }
+
+    /**
+     * 撤销最后一条可见记录
+     * @return 是否有记录被撤销
+     */
+    public boolean undo() {
+        if (cursor == 0) {
+            return false;
+        }
+        cursor--;
+        int replayed = renderer.revert(cursor);
+        if (replayed >= 0) {
+            lastReplayCount = replayed;
+        } else {
+            restoreTo(cursor);
+        }
+        return true;
+    }
+
+    /**
+     * 重做下一条记录，直接在当前光栅上绘制，无需回放
+     * @return 是否有记录被重做
+     */
+    public boolean redo() {
+        if (cursor == total) {
+            return false;
+        }
+        renderer.replay(cursor);
+        cursor++;
+        lastReplayCount = 1;
+        return true;
+    }
+
+    /**
+     * 清空所有记录、快照和光栅
+     */
+    public void clear() {
+        if (total > 0) {
+            renderer.discard(0, total);
+        }
+        releaseCheckpoints();
+        cursor = 0;
+        total = 0;
+        lastReplayCount = 0;
+        renderer.clearRaster();
+    }
+
+    /**
+     * 丢弃 size 之后的全部记录（包括可见的），不撤销它们对光栅的影响，也不重放；
+     * 用于调用方马上改写末尾的记录，并自行让光栅与改写后的记录一致。
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > cursor) {
+            throw new IndexOutOfBoundsException("size " + size + ", visible " + cursor);
+        }
+        if (size < total) {
+            renderer.discard(size, total);
+            dropCheckpointsAfter(size);
+        }
+        cursor = size;
+        total = size;
+    }
+
+    /**
+     * 光栅尺寸变化等原因导致快照失效时调用：丢弃全部快照，
+     * 从头重放当前可见的记录，并沿途重新建立检查点。
+     */
+    public void rebuild() {
+        releaseCheckpoints();
+        renderer.clearRaster();
+        for (int i = 0; i < cursor; i++) {
+            if (i > 0 && i % checkpointInterval == 0) {
+                addCheckpoint(i);
+            }
+            renderer.replay(i);
+        }
+        lastReplayCount = cursor;
+    }
+
+    /**
+     * 直接采用外部载入的 count 条记录（例如打开文档后），原有记录应已通过 {@link #clear} 清空。
+     * 载入的记录全部可见，没有重做分支，光栅从头重建。
+     */
+    public void load(int count) {
+        releaseCheckpoints();
+        cursor = count;
+        total = count;
+        rebuild();
+    }
+
+    public boolean canUndo() {
+        return cursor > 0;
+    }
+
+    public boolean canRedo() {
+        return cursor < total;
+    }
+
+    /** 当前可见的记录数 */
+    public int size() {
+        return cursor;
+    }
+
+    /** 包含可重做部分在内的记录总数 */
+    public int totalSize() {
+        return total;
+    }
+
+    public int getLastReplayCount() {
+        return lastReplayCount;
+    }
+
+    public int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
+    public long getSnapshotBytes() {
+        return snapshotBytes;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * 调整快照内存预算，超出部分立即淘汰
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        evictOverBudget();
+    }
+
+    // 恢复到不晚于 target 的最近检查点，然后重放到 target
+    private void restoreTo(int target) {
+        int start = 0;
+        Checkpoint<S> base = null;
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            Checkpoint<S> checkpoint = checkpoints.get(i);
+            if (checkpoint.index <= target) {
+                base = checkpoint;
+                break;
+            }
+        }
+        if (base != null) {
+            renderer.restore(base.snapshot);
+            start = base.index;
+        } else {
+            renderer.clearRaster();
+        }
+        for (int i = start; i < target; i++) {
+            renderer.replay(i);
+        }
+        lastReplayCount = target - start;
+    }
+
+    private boolean hasCheckpointAt(int index) {
+        return !checkpoints.isEmpty() && checkpoints.get(checkpoints.size() - 1).index == index;
+    }
+
+    private void addCheckpoint(int index) {
+        S snapshot = renderer.capture();
+        if (snapshot == null) {
+            return;
+        }
+        long bytes = renderer.sizeOf(snapshot);
+        checkpoints.add(new Checkpoint<>(index, snapshot, bytes));
+        snapshotBytes += bytes;
+        evictOverBudget();
+    }
+
+    // 淘汰最旧的快照直到满足预算；最近的快照对撤销最有价值
+    private void evictOverBudget() {
+        while (snapshotBytes > memoryBudget && !checkpoints.isEmpty()) {
+            Checkpoint<S> oldest = checkpoints.remove(0);
+            snapshotBytes -= oldest.bytes;
+            renderer.release(oldest.snapshot);
+        }
+    }
+
+    private void dropCheckpointsAfter(int index) {
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            Checkpoint<S> checkpoint = checkpoints.get(i);
+            if (checkpoint.index <= index) {
+                break;
+            }
+            checkpoints.remove(i);
+            snapshotBytes -= checkpoint.bytes;
+            renderer.release(checkpoint.snapshot);
+        }
+    }
+
+    private void releaseCheckpoints() {
+        for (Checkpoint<S> checkpoint : checkpoints) {
+            renderer.release(checkpoint.snapshot);
+        }
+        checkpoints.clear();
+        snapshotBytes = 0;
+    }
+}
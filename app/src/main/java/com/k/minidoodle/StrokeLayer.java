@@ -0,0 +1,1007 @@
+package com.k.minidoodle;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+
+import java.util.Arrays;
+
+/**
+ * 已完成笔画图层
+ * 持有笔画存储、撤销历史、空间索引和分块光栅缓存，并保持四者一致：
+ * 新笔画提交时一次性光栅化到分块缓存，撤销时只重绘被撤销笔画覆盖的块，不保存快照。
+ * 文档的每个图层（见 {@link LayerTable}）有自己的分块缓存，笔画只画进所属图层；
+ * 有多个图层时，各图层的块按不透明度和混合模式合成到一份合成缓存上，编辑只重新合成变化的区域，
+ * 显示时仍然只贴一份块，每帧开销与图层数无关。撤销历史按时间顺序跨图层记录。
+ * 橡皮擦除同样是追加记录（见 {@link StrokeStore#addErase}）：候选笔画从空间索引中取，
+ * 擦除后只重画被擦笔画覆盖的块；一次擦除产生的多条记录一起撤销和重做。
+ * 局部擦除手势的每一批改写上一批的记录而不是再追加（见 {@link #erase}），手势越长记录也不会越多。
+ * 移动、缩放、旋转选中的笔画也是如此：擦掉原笔画，追加变换后的拷贝（见 {@link #beginTransform}）。
+ * 内存紧张时光栅缓存可以整体释放（见 {@link #trimMemory}），下次绘制或编辑前从笔画重建。
+ * 文档占用超过上限时（见 {@link MemoryCap}）逐级回收：先淘汰远离可见区域的块，释放降采样块足以回到上限以内时再释放它们；
+ * 被淘汰的块用到时从空间索引找出笔画重画，笔画数据本身不回收。
+ * 不是线程安全的，只能在创建它的线程上使用（PaintView 在主线程，{@link RenderThread} 在渲染线程）。
+ */
+class StrokeLayer {
+
+    // 放大显示时，可见笔画不超过这个数量就直接按矢量绘制
+    private static final int VECTOR_STROKE_LIMIT = 500;
+    // 每隔多少条笔画保存一次光栅快照
+    private static final int HISTORY_CHECKPOINT_INTERVAL = 32;
+    // 分块缓存按区域撤销，不需要光栅快照
+    private static final long HISTORY_MEMORY_BUDGET = 0;
+    // 每个文档的内存上限占堆上限的比例（分母）
+    private static final int MEMORY_LIMIT_DIVISOR = 4;
+
+    // 存储笔画的坐标、颜色和线宽，末尾可能包含可重做的笔画
+    private final StrokeStore strokes = new StrokeStore();
+    // 撤销/重做历史，strokes 中前 history.size() 条为可见笔画
+    private final StrokeHistory<Void> history;
+    // 按包围盒索引 strokes 中的全部笔画（含可重做部分），格子与缓存块对齐
+    private final SpatialGrid strokeIndex = new SpatialGrid(TiledCanvas.TILE_SIZE);
+    private final IntList queryResult = new IntList();
+    // 光栅化已完成笔画用的绘制器
+    private final StrokePainter strokePainter = new StrokePainter();
+
+    // 每个图层的分块光栅缓存，按需创建：每条笔画只绘制一次，显示时只需贴图
+    private final TiledCanvas[] layerTiles = new TiledCanvas[LayerTable.MAX_LAYERS];
+    // 各图层叠加时的画笔，隐藏的图层为 null
+    private final Paint[] layerPaints = new Paint[LayerTable.MAX_LAYERS];
+    // 多个图层的合成结果；只有一个普通图层时不使用，直接贴该图层的块
+    private final TiledCanvas composite = new TiledCanvas();
+    private boolean compositing;
+    // 自上次合成以来图层缓存变化的区域（文档坐标）
+    private float dirtyLeft, dirtyTop, dirtyRight, dirtyBottom;
+    private boolean hasDirty;
+    private final RegionRenderer regionRenderer = new RegionRenderer();
+    private final RectF layerBounds = new RectF();
+    // 按绘制顺序排序 queryResult 时复用的键
+    private long[] orderKeys = new long[64];
+    // 擦除时复用：被擦到的笔画，局部擦除切出的各段及其所属的原笔画
+    private final IntList erased = new IntList();
+    private final TouchSampleBuffer pieces = new TouchSampleBuffer();
+    private final IntList pieceEnds = new IntList();
+    private final IntList pieceOwners = new IntList();
+    // 各段时间相对所属原笔画第一个点的偏移（毫秒），从本手势此前切出的碎片再切时不为 0
+    private final IntList pieceOffsets = new IntList();
+    // 这一批擦到的本手势碎片及其墨迹范围的并集
+    private final IntList erasedPieces = new IntList();
+    private float piecesLeft, piecesTop, piecesRight, piecesBottom;
+    private boolean hasErasedPieces;
+    // 正在进行的局部擦除手势：擦除记录的下标（其后紧跟各碎片）及各碎片所属的原笔画，没有时为 -1
+    private int gestureRecord = -1;
+    private final IntList gestureOwners = new IntList();
+    // 光栅缓存已因内存紧张释放，使用前须从笔画重建
+    private boolean rasterDropped;
+    // 正在变换的选区：开始时追加的擦除记录下标，没有变换时为 -1
+    private int transformRecord = -1;
+    // 选中笔画的录制结果，以 (selectionLeft, selectionTop) 为原点
+    private final Picture selectionPicture = new Picture();
+    private float selectionLeft, selectionTop;
+    private final float[] matrixValues = new float[9];
+    // 文档的内存上限和超限时的回收动作
+    private final MemoryCap memoryCap = new MemoryCap(Runtime.getRuntime().maxMemory() / MEMORY_LIMIT_DIVISOR);
+    private final MemoryTarget memoryTarget = new MemoryTarget();
+    // 最近一次绘制的裁剪区域（文档坐标），其中的块不会被淘汰
+    private final Rect visibleClip = new Rect();
+    // 恢复被淘汰的块时只画前 restoreLimit 条记录；把新笔画画进块之前设为该笔画，免得恢复时已经画了一次
+    private int restoreLimit = Integer.MAX_VALUE;
+    private final RegionRenderer restoreRenderer = new RegionRenderer();
+
+    StrokeLayer() {
+        history = new StrokeHistory<>(new LayerRenderer(),
+                HISTORY_CHECKPOINT_INTERVAL, HISTORY_MEMORY_BUDGET);
+        composite.setRestorer(new CompositeRestorer());
+        updateLayerPaints();
+    }
+
+    /**
+     * 把处理后的点存为一条新笔画并光栅化，丢弃重做分支
+     * @return 新笔画的下标
+     */
+    int add(TouchSampleBuffer points, int color, float width) {
+        return add(points, color, width, Brush.PEN, 0);
+    }
+
+    /**
+     * 同 {@link #add(TouchSampleBuffer, int, float)}，点的压力通道为笔刷权重，笔画归入 layer 图层
+     */
+    int add(TouchSampleBuffer points, int color, float width, Brush brush, int layer) {
+        if (layer < 0 || layer >= strokes.getLayers().size()) {
+            throw new IndexOutOfBoundsException("layer " + layer);
+        }
+        ensureRaster();
+        history.commit();
+        int stroke = strokes.add(points, color, width, brush);
+        strokes.setLayer(stroke, layer);
+        indexStroke(stroke);
+        drawToLayer(stroke);
+        flushComposite();
+        memoryCap.enforce(memoryTarget);
+        return stroke;
+    }
+
+    /**
+     * 用 points 替换最后一条笔画（例如识别出的规整形状），颜色、线宽、笔刷和图层不变。
+     * 原笔画直接丢弃而不是留作擦除记录，撤销时新笔画整条消失，与撤销原笔画相同
+     * @return 新笔画的下标；stroke 已不是最后一条可见笔画（之后有了新的编辑或被撤销）时不替换，返回 -1
+     */
+    int replaceLast(int stroke, TouchSampleBuffer points) {
+        if (stroke != history.size() - 1 || stroke != strokes.size() - 1 || strokes.isErase(stroke)) {
+            return -1;
+        }
+        int color = strokes.getColor(stroke);
+        float width = strokes.getWidth(stroke);
+        Brush brush = Brush.get(strokes.getBrush(stroke));
+        int layer = strokes.getLayer(stroke);
+        ensureRaster();
+        // 撤销只重画原笔画覆盖的块，随后的 commit 丢弃它
+        history.undo();
+        history.commit();
+        int replaced = strokes.add(points, color, width, brush);
+        strokes.setLayer(replaced, layer);
+        indexStroke(replaced);
+        drawToLayer(replaced);
+        flushComposite();
+        memoryCap.enforce(memoryTarget);
+        return replaced;
+    }
+
+    /**
+     * 用橡皮擦除 layer 图层上被轨迹 path[from, to) 覆盖的可见笔画，丢弃重做分支
+     * 同一次局部擦除手势的后续批次不再追加一组记录：上一批写入的擦除记录和碎片仍在末尾时，
+     * 把它们改写为一条擦除记录（列出本手势擦到的全部原笔画）和各原笔画剩余的碎片，
+     * 整个手势的记录数和点数不随批次增加
+     * @param mode {@link StrokeEraser#MODE_STROKE} 删除碰到的整条笔画，
+     *             {@link StrokeEraser#MODE_PIXEL} 只擦掉覆盖的部分，其余部分切成新笔画
+     * @param joinPrevious 与上一次编辑一起撤销，用于同一次擦除手势的后续批次
+     * @return 本次写入的记录数（擦除记录和切出的笔画），即末尾的 [size() - 返回值, size())，
+     *         没有擦到笔画时为 0；改写上一批的记录时包括改写的部分，写入前的 size() 可能大于起点
+     */
+    int erase(TouchSampleBuffer path, int from, int to, float radius, int mode, int layer,
+              boolean joinPrevious) {
+        if (from >= to || mode == StrokeEraser.MODE_OFF || !strokes.getLayers().isVisible(layer)) {
+            return 0;
+        }
+        float left = Float.POSITIVE_INFINITY;
+        float top = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY;
+        float bottom = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            left = Math.min(left, path.getX(i));
+            top = Math.min(top, path.getY(i));
+            right = Math.max(right, path.getX(i));
+            bottom = Math.max(bottom, path.getY(i));
+        }
+        boolean rewrite = joinPrevious && mode == StrokeEraser.MODE_PIXEL && isGestureTail();
+        if (!rewrite) {
+            gestureRecord = -1;
+        }
+        // 索引的是墨迹范围，按橡皮半径扩大查询即可找到全部候选
+        int visible = history.size();
+        strokeIndex.query(left - radius, top - radius, right + radius, bottom + radius, queryResult);
+        erased.clear();
+        erasedPieces.clear();
+        hasErasedPieces = false;
+        pieces.clear();
+        pieceEnds.clear();
+        pieceOwners.clear();
+        pieceOffsets.clear();
+        for (int i = 0; i < queryResult.size(); i++) {
+            int stroke = queryResult.get(i);
+            if (stroke >= visible) {
+                break;
+            }
+            if (!strokes.isLive(stroke, visible) || strokes.getLayer(stroke) != layer) {
+                continue;
+            }
+            int piecesBefore = pieceEnds.size();
+            boolean hit = mode == StrokeEraser.MODE_PIXEL
+                    ? StrokeEraser.split(strokes, stroke, path, from, to, radius, pieces, pieceEnds)
+                    : StrokeEraser.touches(strokes, stroke, path, from, to, radius);
+            if (!hit) {
+                continue;
+            }
+            int owner = stroke;
+            if (rewrite && stroke > gestureRecord) {
+                // 本手势此前切出的碎片：改写时换成再切后的各段，碎片本身不进擦除记录
+                owner = gestureOwners.get(stroke - gestureRecord - 1);
+                erasedPieces.add(stroke);
+            } else {
+                erased.add(stroke);
+            }
+            int offset = timeOffset(stroke, owner);
+            for (int p = piecesBefore; p < pieceEnds.size(); p++) {
+                pieceOwners.add(owner);
+                pieceOffsets.add(offset);
+            }
+        }
+        if (erased.isEmpty() && erasedPieces.isEmpty()) {
+            return 0;
+        }
+        ensureRaster();
+        int newlyErased = erased.size();
+        int first;
+        if (rewrite) {
+            first = rewriteGesture(layer);
+        } else {
+            first = history.commit();
+            indexStroke(strokes.addErase(erased, joinPrevious));
+        }
+        int pieceStart = 0;
+        for (int p = 0; p < pieceEnds.size(); p++) {
+            int owner = pieceOwners.get(p);
+            history.commit();
+            int piece = strokes.beginStroke(strokes.getColor(owner), strokes.getWidth(owner),
+                    strokes.getBrush(owner));
+            // 碎片沿用原笔画的采样时间，回放时出现在原来的时刻
+            long startTime = strokes.getStartTime(owner);
+            long offset = pieceOffsets.get(p);
+            for (int i = pieceStart; i < pieceEnds.get(p); i++) {
+                strokes.addPoint(pieces.getX(i), pieces.getY(i), pieces.getPressure(i),
+                        startTime == StrokeStore.NO_TIME
+                                ? StrokeStore.NO_TIME : startTime + offset + pieces.getTime(i));
+            }
+            strokes.endStroke();
+            strokes.setLayer(piece, layer);
+            strokes.setOrder(piece, strokes.getOrder(owner));
+            strokes.setJoined(piece, true);
+            indexStroke(piece);
+            pieceStart = pieceEnds.get(p);
+        }
+        if (mode == StrokeEraser.MODE_PIXEL) {
+            gestureRecord = first;
+            gestureOwners.clear();
+            for (int p = 0; p < pieceOwners.size(); p++) {
+                gestureOwners.add(pieceOwners.get(p));
+            }
+        }
+        // 切出的笔画都在原笔画（或再切的碎片）范围内，重画这一批擦到的笔画覆盖的块即可
+        int limit = history.size();
+        for (int i = 0; i < newlyErased; i++) {
+            redrawRegion(erased.get(i), limit);
+        }
+        if (hasErasedPieces) {
+            redrawArea(layer, piecesLeft, piecesTop, piecesRight, piecesBottom, limit);
+        }
+        flushComposite();
+        memoryCap.enforce(memoryTarget);
+        return limit - first;
+    }
+
+    // 上一次擦除是局部擦除手势的一批，它写入的擦除记录和碎片仍是末尾的全部可见记录
+    private boolean isGestureTail() {
+        return gestureRecord >= 0 && !history.canRedo() && history.size() == strokes.size()
+                && strokes.size() == gestureRecord + 1 + gestureOwners.size()
+                && strokes.isErase(gestureRecord);
+    }
+
+    /**
+     * 改写本手势的记录：未被这一批擦到的碎片拷贝到 pieces 末尾，原擦除记录列出的笔画并入 erased，
+     * 然后丢弃原来的记录，写入新的擦除记录；erasedPieces 的墨迹范围记在 piecesLeft 等字段中，供之后重画
+     * @return 新擦除记录的下标，与原来的相同
+     */
+    private int rewriteGesture(int layer) {
+        hasErasedPieces = !erasedPieces.isEmpty();
+        piecesLeft = Float.POSITIVE_INFINITY;
+        piecesTop = Float.POSITIVE_INFINITY;
+        piecesRight = Float.NEGATIVE_INFINITY;
+        piecesBottom = Float.NEGATIVE_INFINITY;
+        int next = 0;
+        for (int p = 0; p < gestureOwners.size(); p++) {
+            int piece = gestureRecord + 1 + p;
+            if (next < erasedPieces.size() && erasedPieces.get(next) == piece) {
+                float pad = StrokePainter.inkPadding(strokes.getWidth(piece));
+                piecesLeft = Math.min(piecesLeft, strokes.getLeft(piece) - pad);
+                piecesTop = Math.min(piecesTop, strokes.getTop(piece) - pad);
+                piecesRight = Math.max(piecesRight, strokes.getRight(piece) + pad);
+                piecesBottom = Math.max(piecesBottom, strokes.getBottom(piece) + pad);
+                next++;
+                continue;
+            }
+            int start = strokes.getPointStart(piece);
+            int end = start + strokes.getPointCount(piece);
+            for (int i = start; i < end; i++) {
+                pieces.add(strokes.getX(i), strokes.getY(i), strokes.getTimeOffset(i), strokes.getWeight(i));
+            }
+            pieceEnds.add(pieces.size());
+            int owner = gestureOwners.get(p);
+            pieceOwners.add(owner);
+            pieceOffsets.add(timeOffset(piece, owner));
+        }
+        for (int i = 0; i < strokes.getErasureCount(gestureRecord); i++) {
+            erased.add(strokes.getErasedStroke(gestureRecord, i));
+        }
+        boolean joined = strokes.isJoined(gestureRecord);
+        // 被丢弃的记录已经画在块上：原笔画仍被擦除，留下的碎片原样写回，只有再切的碎片需要重画
+        history.truncate(gestureRecord);
+        int record = history.commit();
+        indexStroke(strokes.addErase(erased, joined));
+        return record;
+    }
+
+    // 碎片 piece 的时间相对原笔画 owner 第一个点的偏移（毫秒）
+    private int timeOffset(int piece, int owner) {
+        long start = strokes.getStartTime(piece);
+        long ownerStart = strokes.getStartTime(owner);
+        if (piece == owner || start == StrokeStore.NO_TIME || ownerStart == StrokeStore.NO_TIME) {
+            return 0;
+        }
+        return (int) (start - ownerStart);
+    }
+
+    /**
+     * 选出 layer 图层上被套索圈住的可见笔画，按绘制顺序写入 out：候选从空间索引中取，
+     * 至少一半的点在套索内才算选中（见 {@link LassoPolygon#covers}）
+     * @return 选中的笔画数
+     */
+    int select(LassoPolygon lasso, int layer, IntList out) {
+        out.clear();
+        if (lasso.isEmpty() || !strokes.getLayers().isVisible(layer)) {
+            return 0;
+        }
+        int visible = history.size();
+        strokeIndex.query(lasso.getLeft(), lasso.getTop(), lasso.getRight(), lasso.getBottom(), queryResult);
+        for (int i = 0; i < queryResult.size(); i++) {
+            int stroke = queryResult.get(i);
+            if (stroke >= visible) {
+                break;
+            }
+            if (strokes.isLive(stroke, visible) && strokes.getLayer(stroke) == layer
+                    && lasso.covers(strokes, stroke)) {
+                out.add(stroke);
+            }
+        }
+        sortByOrder(out);
+        return out.size();
+    }
+
+    /**
+     * 笔画墨迹范围（含线宽）的并集，文档坐标
+     */
+    void getInkBounds(IntList selection, RectF out) {
+        out.setEmpty();
+        for (int i = 0; i < selection.size(); i++) {
+            int stroke = selection.get(i);
+            float pad = strokes.getWidth(stroke) / 2;
+            out.union(strokes.getLeft(stroke) - pad, strokes.getTop(stroke) - pad,
+                    strokes.getRight(stroke) + pad, strokes.getBottom(stroke) + pad);
+        }
+    }
+
+    /**
+     * 开始变换 selection 中的笔画（同一图层上的可见笔画，按绘制顺序）：先追加一条擦除记录，
+     * 只重画一次它们覆盖的块，拖动期间各图层缓存中只剩未选中的内容；
+     * 选中的笔画录成一份 Picture，每帧由 {@link #drawSelection} 按变换矩阵贴上，不再逐条重建路径。
+     * 之后必须调用 {@link #endTransform}，期间不能有其他编辑
+     */
+    void beginTransform(IntList selection) {
+        if (transformRecord >= 0) {
+            throw new IllegalStateException("transform in progress");
+        }
+        ensureRaster();
+        transformRecord = history.commit();
+        indexStroke(strokes.addErase(selection, false));
+        int limit = history.size();
+        for (int i = 0; i < selection.size(); i++) {
+            redrawRegion(selection.get(i), limit);
+        }
+        flushComposite();
+
+        getInkBounds(selection, layerBounds);
+        selectionLeft = (float) Math.floor(layerBounds.left);
+        selectionTop = (float) Math.floor(layerBounds.top);
+        Canvas recording = selectionPicture.beginRecording(
+                Math.max(1, (int) Math.ceil(layerBounds.right - selectionLeft)),
+                Math.max(1, (int) Math.ceil(layerBounds.bottom - selectionTop)));
+        recording.translate(-selectionLeft, -selectionTop);
+        for (int i = 0; i < selection.size(); i++) {
+            strokePainter.draw(recording, strokes, selection.get(i));
+        }
+        selectionPicture.endRecording();
+    }
+
+    /**
+     * 按 matrix 绘制正在变换的笔画，canvas 已按视口变换到文档坐标
+     */
+    void drawSelection(Canvas canvas, IntList selection, Matrix matrix) {
+        if (transformRecord < 0 || selection.isEmpty()) {
+            return;
+        }
+        int layer = strokes.getLayer(selection.get(0));
+        if (layerPaints[layer] == null) {
+            return;
+        }
+        int saved = canvas.save();
+        canvas.concat(matrix);
+        if (!strokes.getLayers().isPlain(layer)) {
+            // 图层的不透明度和混合模式作用在整个选区上，与合成缓存中的效果相近
+            getInkBounds(selection, layerBounds);
+            canvas.saveLayer(layerBounds, layerPaints[layer]);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M || !canvas.isHardwareAccelerated()) {
+            canvas.translate(selectionLeft, selectionTop);
+            canvas.drawPicture(selectionPicture);
+        } else {
+            // 硬件加速的 Canvas 在 M 之前不支持 drawPicture，逐条按矢量绘制
+            for (int i = 0; i < selection.size(); i++) {
+                strokePainter.draw(canvas, strokes, selection.get(i));
+            }
+        }
+        canvas.restoreToCount(saved);
+    }
+
+    /**
+     * 结束变换：为每条选中的笔画追加按 matrix 变换后的拷贝（见 {@link StrokeStore#appendTransformed}），
+     * 与开始时的擦除记录一起撤销和重做。拷贝沿用原笔画的绘制顺序，不会盖住原来在它上面的笔画；
+     * selection 改为拷贝的下标，可以接着再次变换
+     * @return 新增的记录数（擦除记录和拷贝）
+     */
+    int endTransform(IntList selection, Matrix matrix) {
+        if (transformRecord < 0) {
+            throw new IllegalStateException("no transform in progress");
+        }
+        matrix.getValues(matrixValues);
+        for (int i = 0; i < selection.size(); i++) {
+            int owner = selection.get(i);
+            history.commit();
+            int copy = strokes.appendTransformed(owner, matrixValues);
+            strokes.setOrder(copy, strokes.getOrder(owner));
+            strokes.setJoined(copy, true);
+            indexStroke(copy);
+            selection.set(i, copy);
+        }
+        // 拷贝可能落在较晚的笔画下面，按绘制顺序重画它们覆盖的块
+        int limit = history.size();
+        for (int i = 0; i < selection.size(); i++) {
+            redrawRegion(selection.get(i), limit);
+        }
+        flushComposite();
+        memoryCap.enforce(memoryTarget);
+        int added = limit - transformRecord;
+        transformRecord = -1;
+        return added;
+    }
+
+    /**
+     * 撤销最后一次编辑，一次擦除产生的多条记录一起撤销
+     */
+    boolean undo() {
+        ensureRaster();
+        boolean changed = history.undo();
+        while (changed && history.size() > 0 && strokes.isJoined(history.size())) {
+            history.undo();
+        }
+        flushComposite();
+        return changed;
+    }
+
+    boolean redo() {
+        ensureRaster();
+        boolean changed = history.redo();
+        while (changed && history.canRedo() && strokes.isJoined(history.size())) {
+            history.redo();
+        }
+        flushComposite();
+        memoryCap.enforce(memoryTarget);
+        return changed;
+    }
+
+    void clear() {
+        history.clear();
+        transformRecord = -1;
+        gestureRecord = -1;
+        rasterDropped = false;
+        flushComposite();
+    }
+
+    /**
+     * 用载入的文档替换当前内容（含图层表），撤销历史随之清空
+     */
+    void load(StrokeStore document) {
+        history.clear();
+        transformRecord = -1;
+        gestureRecord = -1;
+        strokes.getLayers().set(document.getLayers());
+        for (int i = 0; i < document.size(); i++) {
+            indexStroke(strokes.append(document, i));
+        }
+        updateLayerPaints();
+        history.load(document.size());
+        rasterDropped = false;
+        composeAll();
+        memoryCap.enforce(memoryTarget);
+    }
+
+    /** 图层表的拷贝 */
+    LayerTable copyLayers() {
+        return strokes.getLayers().copy();
+    }
+
+    /**
+     * 更新图层属性（可以追加图层）：只重新合成，各图层的缓存不变
+     * @return 属性是否有变化
+     */
+    boolean setLayers(LayerTable layers) {
+        if (layers.size() < strokes.getLayers().size()) {
+            throw new IllegalArgumentException("layers can only be added");
+        }
+        if (strokes.getLayers().contentEquals(layers)) {
+            return false;
+        }
+        strokes.getLayers().set(layers);
+        updateLayerPaints();
+        if (!rasterDropped) {
+            composeAll();
+        }
+        return true;
+    }
+
+    /** 可见笔画数 */
+    int size() {
+        return history.size();
+    }
+
+    /** 全部笔画（含可重做部分），只读 */
+    StrokeStore getStrokes() {
+        return strokes;
+    }
+
+    /** 绘制器，进行中的笔画用同一套笔刷渲染和印章缓存 */
+    StrokePainter getPainter() {
+        return strokePainter;
+    }
+
+    /**
+     * 拷贝当前可见的笔画（不含擦除记录和被擦掉的笔画，按绘制顺序排列），拷贝可以交给其他线程
+     */
+    StrokeStore copyVisible() {
+        return strokes.copyLive(history.size());
+    }
+
+    /**
+     * 查找 (x, y) 处最上层的可见笔画，只检查空间索引中附近的笔画
+     * @param tolerance 在笔画墨迹之外额外允许的距离
+     * @return 笔画下标，没有命中时返回 -1
+     */
+    int findStrokeAt(float x, float y, float tolerance) {
+        int visible = history.size();
+        strokeIndex.query(x - tolerance, y - tolerance, x + tolerance, y + tolerance, queryResult);
+        sortByOrder(queryResult);
+        for (int i = queryResult.size() - 1; i >= 0; i--) {
+            int stroke = queryResult.get(i);
+            if (strokes.isLive(stroke, visible) && strokes.getLayers().isVisible(strokes.getLayer(stroke))
+                    && strokes.distanceTo(stroke, x, y) <= strokes.getWidth(stroke) / 2 + tolerance) {
+                return stroke;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 绘制可见笔画，canvas 已按视口变换到文档坐标
+     * @param clip 文档坐标的裁剪区域
+     */
+    void draw(Canvas canvas, Rect clip, Viewport viewport) {
+        ensureRaster();
+        visibleClip.set(clip);
+        if (viewport.getScale() > 1 && strokeIndex.query(clip.left, clip.top,
+                clip.right, clip.bottom, queryResult) <= VECTOR_STROKE_LIMIT) {
+            // 放大且可见笔画不多时直接按矢量绘制，边缘保持清晰
+            sortByOrder(queryResult);
+            if (!compositing) {
+                drawVectorLayer(canvas, 0);
+                return;
+            }
+            // 与合成缓存一致：图层先在透明底上逐层合成，再整体叠到下方内容上
+            layerBounds.set(clip);
+            int outer = canvas.saveLayer(layerBounds, null);
+            LayerTable layers = strokes.getLayers();
+            for (int layer = 0; layer < layers.size(); layer++) {
+                if (layerPaints[layer] == null) {
+                    continue;
+                }
+                if (layers.isPlain(layer)) {
+                    drawVectorLayer(canvas, layer);
+                } else {
+                    canvas.saveLayer(layerBounds, layerPaints[layer]);
+                    drawVectorLayer(canvas, layer);
+                    canvas.restore();
+                }
+            }
+            canvas.restoreToCount(outer);
+        } else {
+            // 已完成的笔画直接从缓存贴图，开销与笔画数量无关；
+            // 只贴与裁剪区域相交的块，缩小时改用降采样的块
+            TiledCanvas tiles = compositing ? composite : layerTiles[0];
+            if (tiles != null) {
+                long before = getByteCount();
+                tiles.draw(canvas, clip, viewport.getDetailLevel(TiledCanvas.MAX_LEVEL));
+                if (getByteCount() > before) {
+                    // 移到了淘汰过的区域，恢复的块可能使占用再次超限；只淘汰块，
+                    // 释放降采样块会让下一帧重新合成，再次超限，每帧反复
+                    memoryCap.enforce(memoryTarget, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * 响应 {@link ComponentCallbacks2#onTrimMemory}：降采样块和笔刷印章随时可以重建，总是释放；
+     * 界面已不可见或内存严重不足时连各图层的光栅缓存也释放，笔画和撤销历史保留
+     */
+    void trimMemory(int level) {
+        for (TiledCanvas tiles : layerTiles) {
+            if (tiles != null) {
+                tiles.trimLod();
+            }
+        }
+        composite.trimLod();
+        strokePainter.getStampCache().clear();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            releaseRaster();
+            rasterDropped = true;
+        }
+    }
+
+    /**
+     * 笔画数据和光栅缓存（各图层和合成结果）占用的字节数
+     */
+    long getByteCount() {
+        long bytes = strokes.estimatedBytes() + composite.getByteCount();
+        for (TiledCanvas tiles : layerTiles) {
+            if (tiles != null) {
+                bytes += tiles.getByteCount();
+            }
+        }
+        return bytes;
+    }
+
+    // 绘制 queryResult 中属于 layer 的可见笔画
+    private void drawVectorLayer(Canvas canvas, int layer) {
+        int visible = history.size();
+        for (int i = 0; i < queryResult.size(); i++) {
+            int stroke = queryResult.get(i);
+            if (strokes.isLive(stroke, visible) && strokes.getLayer(stroke) == layer) {
+                strokePainter.draw(canvas, strokes, stroke);
+            }
+        }
+    }
+
+    // 按绘制顺序重排 list；没有擦除切出的笔画时下标顺序就是绘制顺序，不需要排序
+    private void sortByOrder(IntList list) {
+        int n = list.size();
+        boolean reordered = false;
+        for (int i = 0; i < n && !reordered; i++) {
+            reordered = strokes.getOrder(list.get(i)) != list.get(i);
+        }
+        if (!reordered) {
+            return;
+        }
+        if (orderKeys.length < n) {
+            orderKeys = new long[Math.max(n, orderKeys.length * 2)];
+        }
+        for (int i = 0; i < n; i++) {
+            int stroke = list.get(i);
+            orderKeys[i] = ((long) strokes.getOrder(stroke) << 32) | stroke;
+        }
+        Arrays.sort(orderKeys, 0, n);
+        for (int i = 0; i < n; i++) {
+            list.set(i, (int) orderKeys[i]);
+        }
+    }
+
+    // 在 stroke 所属图层上重画它覆盖的块，只画前 limit 条记录中可见的笔画
+    private int redrawRegion(int stroke, int limit) {
+        float pad = StrokePainter.inkPadding(strokes.getWidth(stroke));
+        return redrawArea(strokes.getLayer(stroke), strokes.getLeft(stroke) - pad, strokes.getTop(stroke) - pad,
+                strokes.getRight(stroke) + pad, strokes.getBottom(stroke) + pad, limit);
+    }
+
+    // 在 layer 图层上重画与区域（文档坐标）相交的块，只画前 limit 条记录中可见的笔画
+    private int redrawArea(int layer, float left, float top, float right, float bottom, int limit) {
+        TiledCanvas tiles = layerTiles[layer];
+        if (tiles == null) {
+            return 0;
+        }
+        regionRenderer.limit = limit;
+        regionRenderer.layer = layer;
+        regionRenderer.replayed = 0;
+        markDirty(left, top, right, bottom);
+        tiles.redraw(left, top, right, bottom, regionRenderer);
+        return regionRenderer.replayed;
+    }
+
+    // 重画擦除记录擦掉的全部笔画覆盖的块
+    private int redrawErased(int record, int limit) {
+        int replayed = 0;
+        for (int i = 0; i < strokes.getErasureCount(record); i++) {
+            replayed += redrawRegion(strokes.getErasedStroke(record, i), limit);
+        }
+        return replayed;
+    }
+
+    // 释放各图层和合成结果的全部块
+    private void releaseRaster() {
+        for (TiledCanvas tiles : layerTiles) {
+            if (tiles != null) {
+                tiles.clear();
+            }
+        }
+        composite.clear();
+        hasDirty = false;
+    }
+
+    // 光栅缓存被释放过时，重放可见记录重建各图层的块并重新合成
+    private void ensureRaster() {
+        if (rasterDropped) {
+            rasterDropped = false;
+            history.rebuild();
+            composeAll();
+        }
+    }
+
+    private TiledCanvas tilesFor(int layer) {
+        if (layerTiles[layer] == null) {
+            layerTiles[layer] = new TiledCanvas();
+            layerTiles[layer].setRestorer(new LayerRestorer(layer));
+        }
+        return layerTiles[layer];
+    }
+
+    // 把笔画画进所属图层的缓存，并记下需要重新合成的区域
+    private void drawToLayer(int stroke) {
+        restoreLimit = stroke;
+        strokePainter.draw(tilesFor(strokes.getLayer(stroke)), strokes, stroke);
+        restoreLimit = Integer.MAX_VALUE;
+        markDirty(stroke);
+    }
+
+    private void markDirty(int stroke) {
+        float pad = StrokePainter.inkPadding(strokes.getWidth(stroke));
+        markDirty(strokes.getLeft(stroke) - pad, strokes.getTop(stroke) - pad,
+                strokes.getRight(stroke) + pad, strokes.getBottom(stroke) + pad);
+    }
+
+    private void markDirty(float left, float top, float right, float bottom) {
+        if (!hasDirty) {
+            dirtyLeft = left;
+            dirtyTop = top;
+            dirtyRight = right;
+            dirtyBottom = bottom;
+            hasDirty = true;
+            return;
+        }
+        dirtyLeft = Math.min(dirtyLeft, left);
+        dirtyTop = Math.min(dirtyTop, top);
+        dirtyRight = Math.max(dirtyRight, right);
+        dirtyBottom = Math.max(dirtyBottom, bottom);
+    }
+
+    // 把变化的区域重新合成；每次编辑操作结束时调用一次，批量重放的笔画只合成一次
+    private void flushComposite() {
+        if (hasDirty && compositing) {
+            composite.compose(dirtyLeft, dirtyTop, dirtyRight, dirtyBottom, layerTiles, layerPaints);
+        }
+        hasDirty = false;
+    }
+
+    private void composeAll() {
+        hasDirty = false;
+        if (compositing) {
+            composite.composeAll(layerTiles, layerPaints);
+        } else {
+            composite.clear();
+        }
+    }
+
+    private void updateLayerPaints() {
+        LayerTable layers = strokes.getLayers();
+        compositing = !layers.isFlat();
+        for (int layer = 0; layer < LayerTable.MAX_LAYERS; layer++) {
+            if (layer >= layers.size() || !layers.isVisible(layer)) {
+                layerPaints[layer] = null;
+                continue;
+            }
+            if (layerPaints[layer] == null) {
+                layerPaints[layer] = new Paint(Paint.FILTER_BITMAP_FLAG);
+            }
+            StrokePainter.configureLayerPaint(layerPaints[layer], layers, layer);
+        }
+    }
+
+    // 索引的是含线宽的墨迹范围，块查询不会漏掉只有边缘落入的笔画
+    private void indexStroke(int stroke) {
+        float pad = StrokePainter.inkPadding(strokes.getWidth(stroke));
+        strokeIndex.insert(stroke, strokes.getLeft(stroke) - pad, strokes.getTop(stroke) - pad,
+                strokes.getRight(stroke) + pad, strokes.getBottom(stroke) + pad);
+    }
+
+    private void unindexStroke(int stroke) {
+        float pad = StrokePainter.inkPadding(strokes.getWidth(stroke));
+        strokeIndex.remove(stroke, strokes.getLeft(stroke) - pad, strokes.getTop(stroke) - pad,
+                strokes.getRight(stroke) + pad, strokes.getBottom(stroke) + pad);
+    }
+
+    /**
+     * 撤销历史对分块缓存的操作：撤销时只重绘被撤销笔画覆盖的块，不保存快照
+     */
+    private class LayerRenderer implements StrokeHistory.Renderer<Void> {
+        @Override
+        public void clearRaster() {
+            releaseRaster();
+        }
+
+        @Override
+        public void replay(int index) {
+            if (strokes.isErase(index)) {
+                redrawErased(index, index + 1);
+            } else if (strokes.getOrder(index) != index) {
+                // 切出的笔画插在原笔画的位置上，不能直接叠在最上面
+                redrawRegion(index, index + 1);
+            } else {
+                drawToLayer(index);
+            }
+        }
+
+        @Override
+        public int revert(int index) {
+            // 只重画受影响图层的块，其他图层的缓存不受影响
+            if (strokes.isErase(index)) {
+                return redrawErased(index, index);
+            }
+            return redrawRegion(index, index);
+        }
+
+        @Override
+        public void discard(int from, int to) {
+            // 被丢弃的总是末尾的重做分支
+            if (from == 0) {
+                strokeIndex.clear();
+            } else {
+                for (int i = from; i < to; i++) {
+                    unindexStroke(i);
+                }
+            }
+            strokes.truncate(from);
+        }
+
+        @Override
+        public Void capture() {
+            return null;
+        }
+
+        @Override
+        public void restore(Void snapshot) {
+        }
+
+        @Override
+        public long sizeOf(Void snapshot) {
+            return 0;
+        }
+
+        @Override
+        public void release(Void snapshot) {
+        }
+    }
+
+    /**
+     * 重画一个图层块：通过空间索引找出与块相交、属于 layer、在前 limit 条记录中可见的笔画，按绘制顺序绘制
+     */
+    private class RegionRenderer implements TiledCanvas.TileRenderer {
+        int limit;
+        int layer;
+        int replayed;
+
+        @Override
+        public boolean renderTile(Canvas canvas, int left, int top, int right, int bottom) {
+            strokeIndex.query(left, top, right, bottom, queryResult);
+            sortByOrder(queryResult);
+            boolean drawn = false;
+            for (int i = 0; i < queryResult.size(); i++) {
+                int stroke = queryResult.get(i);
+                if (!strokes.isLive(stroke, limit) || strokes.getLayer(stroke) != layer) {
+                    continue;
+                }
+                float pad = StrokePainter.inkPadding(strokes.getWidth(stroke));
+                if (strokes.getRight(stroke) + pad < left || strokes.getLeft(stroke) - pad > right
+                        || strokes.getBottom(stroke) + pad < top || strokes.getTop(stroke) - pad > bottom) {
+                    continue;
+                }
+                strokePainter.draw(canvas, strokes, stroke);
+                replayed++;
+                drawn = true;
+            }
+            return drawn;
+        }
+    }
+
+    /**
+     * 恢复图层中被淘汰的块：重画前 restoreLimit 条记录中属于该图层的可见笔画
+     */
+    private class LayerRestorer implements TiledCanvas.TileRenderer {
+        private final int layer;
+
+        LayerRestorer(int layer) {
+            this.layer = layer;
+        }
+
+        @Override
+        public boolean renderTile(Canvas canvas, int left, int top, int right, int bottom) {
+            restoreRenderer.layer = layer;
+            restoreRenderer.limit = Math.min(restoreLimit, history.size());
+            return restoreRenderer.renderTile(canvas, left, top, right, bottom);
+        }
+    }
+
+    /**
+     * 恢复合成缓存中被淘汰的块：按当前的图层画笔叠加各图层的对应块，它们被淘汰的也一并恢复
+     */
+    private class CompositeRestorer implements TiledCanvas.TileRenderer {
+        @Override
+        public boolean renderTile(Canvas canvas, int left, int top, int right, int bottom) {
+            boolean drawn = false;
+            for (int layer = 0; layer < layerTiles.length; layer++) {
+                if (layerTiles[layer] != null && layerPaints[layer] != null) {
+                    drawn |= layerTiles[layer].drawTile(canvas, left, top, layerPaints[layer]);
+                }
+            }
+            return drawn;
+        }
+    }
+
+    /**
+     * 超出内存上限时的逐级回收：0 淘汰远离可见区域的块，先淘汰各图层的缓存，再淘汰合成缓存；
+     * 1 释放降采样块，下次缩小显示时重建。剩下的超出部分是任何一级都释放不了的笔画数据和可见的块时
+     * 不执行第 1 级：释放了也回不到上限以内，只会让每次提交后的下一帧重建全部降采样块。
+     * 笔刷印章不计入占用，由 StampCache 自己的上限和 {@link #trimMemory} 管理
+     */
+    private class MemoryTarget implements MemoryCap.Target {
+        @Override
+        public long getByteCount() {
+            return StrokeLayer.this.getByteCount();
+        }
+
+        @Override
+        public boolean trim(int stage, long limit) {
+            switch (stage) {
+                case 0:
+                    long excess = getByteCount() - limit;
+                    for (int layer = 0; layer < layerTiles.length && excess > 0; layer++) {
+                        if (layerTiles[layer] != null) {
+                            excess -= layerTiles[layer].evict(excess, visibleClip);
+                        }
+                    }
+                    if (excess > 0) {
+                        composite.evict(excess, visibleClip);
+                    }
+                    return true;
+                case 1:
+                    long lodBytes = composite.getLodByteCount();
+                    for (TiledCanvas tiles : layerTiles) {
+                        if (tiles != null) {
+                            lodBytes += tiles.getLodByteCount();
+                        }
+                    }
+                    if (lodBytes == 0 || getByteCount() - limit > lodBytes) {
+                        return false;
+                    }
+                    for (TiledCanvas tiles : layerTiles) {
+                        if (tiles != null) {
+                            tiles.trimLod();
+                        }
+                    }
+                    composite.trimLod();
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+}
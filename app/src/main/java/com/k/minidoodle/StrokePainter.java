@@ -0,0 +1,379 @@
+package com.k.minidoodle;
+
+import android.graphics.Bitmap;
+import android.graphics.BlendMode;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.RectF;
+import android.os.Build;
+
+/**
+ * 把 {@link StrokeStore} 中的笔画绘制到 Canvas
+ * Path 在绘制时才从坐标数组生成，并复用同一个 Path 对象，不为每条笔画保留原生 Path。
+ * 按笔画的 {@link Brush} 选择绘制方式：固定线宽的 Path、按每点线宽细分的轮廓，或沿笔画盖印章。
+ */
+class StrokePainter {
+
+    private final Paint paint;
+    private final Paint fillPaint;
+    private final Paint stampPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Path scratchPath = new Path();
+    private final RectF stampRect = new RectF();
+    private final StampCache stamps = new StampCache();
+    private final StampTileRenderer stampTileRenderer = new StampTileRenderer();
+    // drawPoints 上一次画到的笔画和剩余的印章间距，同一笔画接着画时印章间距保持均匀
+    private StrokeStore continuedStore;
+    private int continuedStroke = -1;
+    private int continuedEnd;
+    private float continuedCarry;
+
+    StrokePainter() {
+        paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        fillPaint = new Paint();
+        fillPaint.setAntiAlias(true);
+        fillPaint.setStyle(Paint.Style.FILL);
+    }
+
+    /**
+     * 绘制一条笔画
+     */
+    void draw(Canvas canvas, StrokeStore store, int stroke) {
+        Brush brush = Brush.get(store.getBrush(stroke));
+        switch (brush.renderMode) {
+            case Brush.RENDER_OUTLINE:
+                buildOutline(store, stroke, brush, scratchPath);
+                fillPaint.setColor(store.getColor(stroke));
+                canvas.drawPath(scratchPath, fillPaint);
+                break;
+            case Brush.RENDER_STAMP:
+                drawStamps(canvas, store, stroke, brush, null);
+                break;
+            default:
+                buildPath(store, stroke, scratchPath);
+                paint.setColor(store.getColor(stroke));
+                paint.setStrokeWidth(store.getWidth(stroke));
+                canvas.drawPath(scratchPath, paint);
+                break;
+        }
+    }
+
+    /**
+     * 只绘制笔画中全局下标在 [from, to) 的点新增的部分：从 from 的前一个点（如有）连到 to - 1，
+     * 与之前画出的部分首尾相接。回放时每帧只画新出现的点，整条笔画的总开销与一次画完相当。
+     * 分段绘制的接缝处会多画一次圆头，半透明的笔画在接缝处略深；印章笔刷按上次剩余的间距接着盖。
+     */
+    void drawPoints(Canvas canvas, StrokeStore store, int stroke, int from, int to) {
+        int start = store.getPointStart(stroke);
+        int first = Math.max(from - 1, start);
+        if (to <= from || to <= first) {
+            return;
+        }
+        Brush brush = Brush.get(store.getBrush(stroke));
+        switch (brush.renderMode) {
+            case Brush.RENDER_OUTLINE:
+                buildOutline(store, stroke, brush, first, to, scratchPath);
+                fillPaint.setColor(store.getColor(stroke));
+                canvas.drawPath(scratchPath, fillPaint);
+                break;
+            case Brush.RENDER_STAMP:
+                boolean continued = store == continuedStore && stroke == continuedStroke && first == continuedEnd - 1;
+                continuedCarry = drawStamps(canvas, store, stroke, brush, null, first, to,
+                        from == start, continued ? continuedCarry : 0);
+                continuedStore = store;
+                continuedStroke = stroke;
+                continuedEnd = to;
+                break;
+            default:
+                buildPath(store, first, to, scratchPath);
+                paint.setColor(store.getColor(stroke));
+                paint.setStrokeWidth(store.getWidth(stroke));
+                canvas.drawPath(scratchPath, paint);
+                break;
+        }
+    }
+
+    /**
+     * 把一条笔画绘制到分块画布上，只涉及其包围盒（含线宽）覆盖的块
+     */
+    void draw(TiledCanvas tiles, StrokeStore store, int stroke) {
+        Brush brush = Brush.get(store.getBrush(stroke));
+        float pad = inkPadding(store.getWidth(stroke));
+        float left = store.getLeft(stroke) - pad;
+        float top = store.getTop(stroke) - pad;
+        float right = store.getRight(stroke) + pad;
+        float bottom = store.getBottom(stroke) + pad;
+        switch (brush.renderMode) {
+            case Brush.RENDER_OUTLINE:
+                buildOutline(store, stroke, brush, scratchPath);
+                fillPaint.setColor(store.getColor(stroke));
+                tiles.drawPath(scratchPath, fillPaint, left, top, right, bottom);
+                break;
+            case Brush.RENDER_STAMP:
+                // 每个块只盖落在块内的印章
+                stampTileRenderer.store = store;
+                stampTileRenderer.stroke = stroke;
+                stampTileRenderer.brush = brush;
+                tiles.drawWith(left, top, right, bottom, stampTileRenderer);
+                stampTileRenderer.store = null;
+                break;
+            default:
+                buildPath(store, stroke, scratchPath);
+                paint.setColor(store.getColor(stroke));
+                paint.setStrokeWidth(store.getWidth(stroke));
+                tiles.drawPath(scratchPath, paint, left, top, right, bottom);
+                break;
+        }
+    }
+
+    /**
+     * 笔画墨迹超出中心线包围盒的距离：圆角端点和连接不会超出半个线宽，再多留 1 像素给抗锯齿边缘。
+     * 笔刷的实际线宽不超过名义线宽，同样适用。
+     */
+    static float inkPadding(float width) {
+        return width / 2 + 1;
+    }
+
+    /**
+     * 按顺序绘制 [from, to) 区间内的笔画
+     */
+    void drawRange(Canvas canvas, StrokeStore store, int from, int to) {
+        for (int i = from; i < to; i++) {
+            draw(canvas, store, i);
+        }
+    }
+
+    /**
+     * 按顺序绘制 [from, to) 区间内属于 layer 图层的笔画
+     */
+    void drawRange(Canvas canvas, StrokeStore store, int from, int to, int layer) {
+        for (int i = from; i < to; i++) {
+            if (store.getLayer(i) == layer) {
+                draw(canvas, store, i);
+            }
+        }
+    }
+
+    /**
+     * 设置把图层叠加到下方内容时使用的画笔：不透明度和混合模式
+     */
+    static void configureLayerPaint(Paint paint, LayerTable layers, int layer) {
+        paint.setAlpha(layers.getAlpha(layer));
+        int mode = layers.getBlendMode(layer);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            paint.setBlendMode(toBlendMode(mode));
+        } else {
+            paint.setXfermode(mode == LayerTable.BLEND_NORMAL ? null : new PorterDuffXfermode(toPorterDuff(mode)));
+        }
+    }
+
+    private static BlendMode toBlendMode(int mode) {
+        switch (mode) {
+            case LayerTable.BLEND_MULTIPLY:
+                return BlendMode.MULTIPLY;
+            case LayerTable.BLEND_SCREEN:
+                return BlendMode.SCREEN;
+            case LayerTable.BLEND_OVERLAY:
+                return BlendMode.OVERLAY;
+            case LayerTable.BLEND_DARKEN:
+                return BlendMode.DARKEN;
+            case LayerTable.BLEND_LIGHTEN:
+                return BlendMode.LIGHTEN;
+            case LayerTable.BLEND_ADD:
+                return BlendMode.PLUS;
+            default:
+                return BlendMode.SRC_OVER;
+        }
+    }
+
+    // PorterDuff 的 MULTIPLY 在透明的目标上结果也是透明，Android 10 以下用 DARKEN 近似
+    private static PorterDuff.Mode toPorterDuff(int mode) {
+        switch (mode) {
+            case LayerTable.BLEND_MULTIPLY:
+            case LayerTable.BLEND_DARKEN:
+                return PorterDuff.Mode.DARKEN;
+            case LayerTable.BLEND_SCREEN:
+                return PorterDuff.Mode.SCREEN;
+            case LayerTable.BLEND_OVERLAY:
+                return PorterDuff.Mode.OVERLAY;
+            case LayerTable.BLEND_LIGHTEN:
+                return PorterDuff.Mode.LIGHTEN;
+            case LayerTable.BLEND_ADD:
+                return PorterDuff.Mode.ADD;
+            default:
+                return PorterDuff.Mode.SRC_OVER;
+        }
+    }
+
+    /** 印章缓存，供统计和内存回收使用 */
+    StampCache getStampCache() {
+        return stamps;
+    }
+
+    /**
+     * 用笔画的坐标重建 Path，out 原有内容会被清除
+     */
+    static void buildPath(StrokeStore store, int stroke, Path out) {
+        int start = store.getPointStart(stroke);
+        buildPath(store, start, start + store.getPointCount(stroke), out);
+    }
+
+    // 用全局下标在 [start, end) 的点重建 Path
+    private static void buildPath(StrokeStore store, int start, int end, Path out) {
+        out.rewind();
+        if (start == end) {
+            return;
+        }
+        out.moveTo(store.getX(start), store.getY(start));
+        for (int i = start + 1; i < end; i++) {
+            out.lineTo(store.getX(i), store.getY(i));
+        }
+    }
+
+    /**
+     * 把变宽笔画细分为填充用的轮廓：沿每点法线向两侧偏移半个线宽，左侧正向、右侧反向连成闭合多边形，
+     * 两端和急转处补圆（见 {@link StrokeGeometry}）。out 原有内容会被清除
+     */
+    static void buildOutline(StrokeStore store, int stroke, Brush brush, Path out) {
+        int start = store.getPointStart(stroke);
+        buildOutline(store, stroke, brush, start, start + store.getPointCount(stroke), out);
+    }
+
+    // 只细分全局下标在 [start, end) 的点；切线仍按整条笔画计算，分段画出的轮廓与一次画出的一致
+    private static void buildOutline(StrokeStore store, int stroke, Brush brush, int start, int end, Path out) {
+        out.rewind();
+        if (start == end) {
+            return;
+        }
+        int strokeStart = store.getPointStart(stroke);
+        int strokeEnd = strokeStart + store.getPointCount(stroke);
+        float width = store.getWidth(stroke);
+        if (end - start == 1) {
+            out.addCircle(store.getX(start), store.getY(start),
+                    brush.widthAt(width, store.getWeight(start)) / 2, Path.Direction.CW);
+            return;
+        }
+        // 左侧
+        for (int i = start; i < end; i++) {
+            float half = brush.widthAt(width, store.getWeight(i)) / 2;
+            float nx = -StrokeGeometry.tangentY(store, i, strokeStart, strokeEnd);
+            float ny = StrokeGeometry.tangentX(store, i, strokeStart, strokeEnd);
+            float x = store.getX(i) + nx * half;
+            float y = store.getY(i) + ny * half;
+            if (i == start) {
+                out.moveTo(x, y);
+            } else {
+                out.lineTo(x, y);
+            }
+        }
+        // 右侧反向
+        for (int i = end - 1; i >= start; i--) {
+            float half = brush.widthAt(width, store.getWeight(i)) / 2;
+            float nx = -StrokeGeometry.tangentY(store, i, strokeStart, strokeEnd);
+            float ny = StrokeGeometry.tangentX(store, i, strokeStart, strokeEnd);
+            out.lineTo(store.getX(i) - nx * half, store.getY(i) - ny * half);
+        }
+        out.close();
+        // 圆头，以及急转处的圆角
+        for (int i = start; i < end; i++) {
+            if (i == start || i == end - 1 || StrokeGeometry.isSharpTurn(store, i)) {
+                out.addCircle(store.getX(i), store.getY(i),
+                        brush.widthAt(width, store.getWeight(i)) / 2, Path.Direction.CW);
+            }
+        }
+    }
+
+    /**
+     * 沿笔画按间距盖印章，大小和浓淡随每点权重变化。
+     * @param clip 只盖与之相交的印章，为 null 时全部绘制
+     */
+    private void drawStamps(Canvas canvas, StrokeStore store, int stroke, Brush brush, RectF clip) {
+        int start = store.getPointStart(stroke);
+        drawStamps(canvas, store, stroke, brush, clip, start, start + store.getPointCount(stroke), true, 0);
+    }
+
+    /**
+     * 沿全局下标在 [start, end) 的点盖印章
+     * @param stampFirst 是否在 start 处盖第一个印章
+     * @param carried 距上一个印章的剩余距离
+     * @return 画完后剩余的距离，接着画同一笔画时传回
+     */
+    private float drawStamps(Canvas canvas, StrokeStore store, int stroke, Brush brush, RectF clip,
+                             int start, int end, boolean stampFirst, float carried) {
+        if (start == end) {
+            return carried;
+        }
+        float width = store.getWidth(stroke);
+        int color = store.getColor(stroke);
+        int opaque = color | 0xFF000000;
+        int alpha = Color.alpha(color);
+        if (stampFirst) {
+            stamp(canvas, store.getX(start), store.getY(start), store.getWeight(start),
+                    width, opaque, alpha, brush, clip);
+        }
+        // 距上一个印章的剩余距离，跨线段累计，保证间距均匀
+        for (int i = start + 1; i < end; i++) {
+            float x0 = store.getX(i - 1);
+            float y0 = store.getY(i - 1);
+            float dx = store.getX(i) - x0;
+            float dy = store.getY(i) - y0;
+            float length = (float) Math.sqrt(dx * dx + dy * dy);
+            if (length == 0) {
+                continue;
+            }
+            float w0 = store.getWeight(i - 1);
+            float w1 = store.getWeight(i);
+            float d = carried;
+            while (true) {
+                float t = d / length;
+                float weight = w0 + (w1 - w0) * Math.min(t, 1f);
+                float step = Math.max(1f, brush.spacing * brush.widthAt(width, weight));
+                if (d + step > length) {
+                    carried = d - length;
+                    break;
+                }
+                d += step;
+                t = d / length;
+                weight = w0 + (w1 - w0) * t;
+                stamp(canvas, x0 + dx * t, y0 + dy * t, weight, width, opaque, alpha, brush, clip);
+            }
+        }
+        return carried;
+    }
+
+    private void stamp(Canvas canvas, float x, float y, float weight, float width, int color,
+                       int alpha, Brush brush, RectF clip) {
+        float radius = brush.widthAt(width, weight) / 2;
+        stampRect.set(x - radius, y - radius, x + radius, y + radius);
+        if (clip != null && !RectF.intersects(clip, stampRect)) {
+            return;
+        }
+        Bitmap bitmap = stamps.get(radius * 2, color, brush.hardness);
+        stampPaint.setAlpha(Math.round(alpha * brush.opacityAt(weight)));
+        canvas.drawBitmap(bitmap, null, stampRect, stampPaint);
+    }
+
+    /**
+     * 把印章笔画画到一个块上，只盖与块相交的印章
+     */
+    private class StampTileRenderer implements TiledCanvas.TileRenderer {
+        final RectF tileRect = new RectF();
+        StrokeStore store;
+        int stroke;
+        Brush brush;
+
+        @Override
+        public boolean renderTile(Canvas canvas, int left, int top, int right, int bottom) {
+            tileRect.set(left, top, right, bottom);
+            drawStamps(canvas, store, stroke, brush, tileRect);
+            return true;
+        }
+    }
+}
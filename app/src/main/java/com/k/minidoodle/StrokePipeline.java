@@ -0,0 +1,97 @@
+package com.k.minidoodle;
+
+/**
+ * 笔画处理流水线，位于触摸采集与笔画存储之间
+ * 原始采样点依次经过各个 {@link StrokeStage}（抽稀、平滑等），每个阶段的输出写入各自的缓冲区，
+ * 下一阶段只读取其中新增的部分，因此可以在绘制过程中逐批增量处理。
+ */
+public class StrokePipeline {
+
+    private final StrokeStage[] stages;
+    // buffers[i] 为第 i 个阶段的输出
+    private final TouchSampleBuffer[] buffers;
+    // read[i] 为第 i 个阶段已从其输入读取的点数
+    private final int[] read;
+    // 没有任何阶段时直接输出原始采样点
+    private TouchSampleBuffer passThrough;
+    private int inputCount;
+
+    public StrokePipeline(StrokeStage... stages) {
+        this.stages = stages.clone();
+        this.buffers = new TouchSampleBuffer[stages.length];
+        this.read = new int[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            buffers[i] = new TouchSampleBuffer();
+        }
+    }
+
+    /**
+     * 默认流水线：去掉过近和共线的点，RDP 抽稀，再用 Catmull-Rom 平滑
+     */
+    public static StrokePipeline createDefault() {
+        return new StrokePipeline(
+                new RadialDecimator(1.5f, 4f),
+                new RdpDecimator(0.5f, 24),
+                new CatmullRomSmoother(6f, 8));
+    }
+
+    /**
+     * 开始新的一笔
+     */
+    public void reset() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i].reset();
+            buffers[i].clear();
+            read[i] = 0;
+        }
+        passThrough = null;
+        inputCount = 0;
+    }
+
+    /**
+     * 处理 raw 中尚未读取的采样点
+     * @param raw 当前笔画的原始采样点，只会在末尾追加
+     */
+    public void feed(TouchSampleBuffer raw) {
+        run(raw, false);
+    }
+
+    /**
+     * 处理剩余采样点并输出所有阶段暂存的点，笔画结束时调用
+     */
+    public void finish(TouchSampleBuffer raw) {
+        run(raw, true);
+    }
+
+    /** 处理后的点 */
+    public TouchSampleBuffer output() {
+        if (stages.length == 0) {
+            return passThrough;
+        }
+        return buffers[stages.length - 1];
+    }
+
+    /** 当前笔画已输入的原始采样点数 */
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    private void run(TouchSampleBuffer raw, boolean finish) {
+        passThrough = raw;
+        inputCount = raw.size();
+        TouchSampleBuffer in = raw;
+        for (int i = 0; i < stages.length; i++) {
+            StrokeStage stage = stages[i];
+            TouchSampleBuffer out = buffers[i];
+            int size = in.size();
+            for (int j = read[i]; j < size; j++) {
+                stage.add(in.getX(j), in.getY(j), in.getTime(j), out);
+            }
+            read[i] = size;
+            if (finish) {
+                stage.finish(out);
+            }
+            in = out;
+        }
+    }
+}
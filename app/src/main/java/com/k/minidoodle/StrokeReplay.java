@@ -0,0 +1,192 @@
+package com.k.minidoodle;
+
+/**
+ * 笔画回放的时间线
+ * 把快照中的笔画（{@link StrokeStore#copyLive} 的结果，按绘制顺序排列）依次排在一条时间线上：
+ * 有采样时间的笔画按录制时的节奏书写，没有时间的笔画（旧文档）按长度和固定速度估计；
+ * 笔画之间的停顿取录制时的间隔，但不超过上限，长时间的思考和离开不会让回放停住。
+ * 回放只向前推进：每次 {@link #advanceTo} 只把上次之后新出现的点交给 {@link Renderer}，
+ * 由它画到持久的缓冲区上，整个回放的开销与点数成正比，与帧数无关。
+ * 不依赖 Android，不是线程安全的。
+ */
+final class StrokeReplay {
+
+    /**
+     * 接收每帧新出现的点
+     */
+    interface Renderer {
+        /**
+         * 笔画 stroke 中全局下标在 [from, to) 的点新出现，需要与之前画出的部分相接
+         * （见 {@link StrokePainter#drawPoints}）
+         */
+        void drawPoints(StrokeStore store, int stroke, int from, int to);
+    }
+
+    /** 笔画之间停顿的默认上限（毫秒） */
+    static final int DEFAULT_MAX_PAUSE = 500;
+    /** 估计没有采样时间的笔画时使用的默认书写速度（文档像素/毫秒） */
+    static final float DEFAULT_DRAW_SPEED = 1f;
+    // 相邻两条笔画有一条没有采样时间时，两者之间的停顿
+    private static final int UNTIMED_PAUSE = 100;
+
+    private final StrokeStore strokes;
+    private final float drawSpeed;
+    // 每条笔画第一个点在时间线上的时刻（毫秒）
+    private final long[] strokeStarts;
+    private final long duration;
+
+    // 下一条要画的笔画，和它下一个要画的点（全局下标）
+    private int stroke;
+    private int point;
+    // 没有采样时间的笔画：已画部分的长度
+    private float distance;
+    private long position;
+
+    /**
+     * @param strokes 要回放的笔画，回放期间不能修改；擦除记录和没有点的笔画被跳过
+     * @param maxPause 笔画之间停顿的上限（毫秒）
+     * @param drawSpeed 没有采样时间的笔画的书写速度（文档像素/毫秒）
+     */
+    StrokeReplay(StrokeStore strokes, int maxPause, float drawSpeed) {
+        if (maxPause < 0 || !(drawSpeed > 0)) {
+            throw new IllegalArgumentException("maxPause " + maxPause + ", drawSpeed " + drawSpeed);
+        }
+        this.strokes = strokes;
+        this.drawSpeed = drawSpeed;
+        int count = strokes.size();
+        strokeStarts = new long[count];
+        long time = 0;
+        // 上一条笔画录制时的结束时刻，没有时间信息时为 NO_TIME
+        long recordedEnd = StrokeStore.NO_TIME;
+        boolean first = true;
+        for (int i = 0; i < count; i++) {
+            strokeStarts[i] = time;
+            if (strokes.isErase(i) || strokes.getPointCount(i) == 0) {
+                continue;
+            }
+            if (!first) {
+                long pause = UNTIMED_PAUSE;
+                if (recordedEnd != StrokeStore.NO_TIME && strokes.hasTime(i)) {
+                    // 重启应用后时钟从头计时，间隔可能为负
+                    pause = strokes.getStartTime(i) - recordedEnd;
+                }
+                time += Math.max(0, Math.min(maxPause, pause));
+                strokeStarts[i] = time;
+            }
+            first = false;
+            long strokeDuration = getStrokeDuration(i);
+            time += strokeDuration;
+            recordedEnd = strokes.hasTime(i) ? strokes.getStartTime(i) + strokeDuration : StrokeStore.NO_TIME;
+        }
+        duration = time;
+        reset();
+    }
+
+    StrokeReplay(StrokeStore strokes) {
+        this(strokes, DEFAULT_MAX_PAUSE, DEFAULT_DRAW_SPEED);
+    }
+
+    /** 回放总时长（毫秒），最后一个点出现的时刻 */
+    long getDuration() {
+        return duration;
+    }
+
+    /** 当前回放到的时刻 */
+    long getPosition() {
+        return position;
+    }
+
+    /** 是否已画完全部笔画 */
+    boolean isFinished() {
+        return stroke == strokes.size();
+    }
+
+    /** 第 i 条笔画在时间线上开始的时刻 */
+    long getStrokeStart(int i) {
+        return strokeStarts[i];
+    }
+
+    /**
+     * 回到开头，调用方应同时清空缓冲区
+     */
+    void reset() {
+        stroke = 0;
+        point = strokes.size() > 0 ? strokes.getPointStart(0) : 0;
+        distance = 0;
+        position = 0;
+        skipEmpty();
+    }
+
+    /**
+     * 推进到时刻 time，把这段时间内新出现的点按顺序交给 renderer
+     * @param time 不小于当前时刻；要倒回时先 {@link #reset}
+     * @return 新画出的点数
+     */
+    int advanceTo(long time, Renderer renderer) {
+        if (time < position) {
+            throw new IllegalArgumentException("cannot rewind from " + position + " to " + time);
+        }
+        position = time;
+        int drawn = 0;
+        int count = strokes.size();
+        while (stroke < count && strokeStarts[stroke] <= time) {
+            int start = strokes.getPointStart(stroke);
+            int end = start + strokes.getPointCount(stroke);
+            boolean timed = strokes.hasTime(stroke);
+            int from = point;
+            while (point < end) {
+                float length = timed || point == start ? 0 : segmentLength(point);
+                long pointTime = strokeStarts[stroke]
+                        + (timed ? strokes.getTimeOffset(point) : (long) ((distance + length) / drawSpeed));
+                if (pointTime > time) {
+                    break;
+                }
+                distance += length;
+                point++;
+            }
+            if (point > from) {
+                renderer.drawPoints(strokes, stroke, from, point);
+                drawn += point - from;
+            }
+            if (point < end) {
+                break;
+            }
+            stroke++;
+            distance = 0;
+            point = stroke < count ? strokes.getPointStart(stroke) : 0;
+            skipEmpty();
+        }
+        return drawn;
+    }
+
+    // 录制时从第一个点到最后一个点的时长，没有采样时间时按长度估计
+    private long getStrokeDuration(int i) {
+        int start = strokes.getPointStart(i);
+        int end = start + strokes.getPointCount(i);
+        if (strokes.hasTime(i)) {
+            return strokes.getTimeOffset(end - 1);
+        }
+        // 与 advanceTo 按相同顺序累加，最后一个点恰好在笔画结束时出现
+        float length = 0;
+        for (int p = start + 1; p < end; p++) {
+            length += segmentLength(p);
+        }
+        return (long) (length / drawSpeed);
+    }
+
+    // 第 p - 1 个点到第 p 个点的距离
+    private float segmentLength(int p) {
+        float dx = strokes.getX(p) - strokes.getX(p - 1);
+        float dy = strokes.getY(p) - strokes.getY(p - 1);
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // 跳过擦除记录和没有点的笔画
+    private void skipEmpty() {
+        int count = strokes.size();
+        while (stroke < count && (strokes.isErase(stroke) || strokes.getPointCount(stroke) == 0)) {
+            stroke++;
+            point = stroke < count ? strokes.getPointStart(stroke) : 0;
+        }
+    }
+}
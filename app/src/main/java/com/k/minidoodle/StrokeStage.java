@@ -0,0 +1,21 @@
+package com.k.minidoodle;
+
+/**
+ * 笔画处理流水线中的一个阶段
+ * 逐点接收输入并把结果追加到输出缓冲区，可以暂存若干点用于前瞻，
+ * 已经输出的点不会再被修改。实现不应在 add 中分配对象。
+ */
+public interface StrokeStage {
+
+    /** 开始新的一笔前调用，清除内部状态 */
+    void reset();
+
+    /**
+     * 接收一个输入点
+     * @param out 输出缓冲区，可以追加零个或多个点
+     */
+    void add(float x, float y, long time, TouchSampleBuffer out);
+
+    /** 笔画结束时调用，输出所有暂存的点 */
+    void finish(TouchSampleBuffer out);
+}
@@ -0,0 +1,729 @@
+package com.k.minidoodle;
+
+import java.util.Arrays;
+
+/**
+ * 紧凑的笔画存储
+ * 所有笔画的坐标依次打包在同一个 float 数组中（x0, y0, x1, y1, ...），
+ * 每条笔画的起点、点数、颜色、线宽、笔刷、图层和包围盒分别存放在按笔画下标索引的数组里（结构数组布局）。
+ * 每个点另有一个量化为 1 字节的笔刷权重（见 {@link Brush}）。图层的属性保存在随文档一起拷贝的 {@link LayerTable} 中。
+ * 从触摸采样生成的笔画还记录采样时间：每条笔画一个起始时间，每个点一个相对起始时间的毫秒数，供回放使用。
+ * 除笔画外还可以存放擦除记录（见 {@link #addErase}）：它本身不绘制，只让列出的笔画不再可见，
+ * 撤销擦除只需截掉这条记录。擦除切出的碎片追加在末尾，但沿用原笔画的绘制顺序（见 {@link #getOrder}）。
+ * 不依赖 Android，占用内存可以精确统计，Path 只在绘制时按需生成。
+ */
+public class StrokeStore {
+
+    private static final int DEFAULT_STROKE_CAPACITY = 64;
+    private static final int DEFAULT_POINT_CAPACITY = 4096;
+
+    // 记录标志：擦除记录
+    private static final int FLAG_ERASE = 1;
+    // 记录标志：与前一条记录属于同一次编辑，一起撤销和重做
+    private static final int FLAG_JOINED = 2;
+    // 没有被擦除的笔画的 erasedBy
+    private static final int NOT_ERASED = Integer.MAX_VALUE;
+
+    /** 没有时间信息的笔画的起始时间，也表示追加的点没有采样时间 */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    // 打包的坐标，第 i 个点位于 points[2i], points[2i + 1]
+    private float[] points;
+    // 第 i 个点的笔刷权重，0 到 255 对应 0 到 1
+    private byte[] weights;
+    // 第 i 个点相对所在笔画第一个点的毫秒数，笔画内不递减
+    private int[] times;
+    private int pointCount;
+
+    // 按笔画下标索引的属性
+    private int[] pointStarts;
+    private int[] pointCounts;
+    private int[] colors;
+    private float[] widths;
+    private int[] brushes;
+    // 所属图层编号，对应 layerTable 中的图层
+    private int[] layers;
+    // 第一个点的采样时间（毫秒，与触摸事件同一时钟），没有时间信息时为 NO_TIME
+    private long[] startTimes;
+    // 包围盒，每条笔画 4 个值：left, top, right, bottom
+    private float[] bounds;
+    private byte[] flags;
+    // 绘制顺序 = 下标 - orderOffset，普通笔画为 0
+    private int[] orderOffsets;
+    // 擦掉该笔画的擦除记录下标，没有被擦除时为 NOT_ERASED；由擦除记录推导，不单独保存
+    private int[] erasedBy;
+    // 擦除记录列出的笔画，每项为记录下标与笔画下标之差，按记录依次打包
+    private int[] erasures;
+    private int erasureCount;
+    private int[] erasureStarts;
+    private int[] erasureCounts;
+    private int count;
+    private final LayerTable layerTable = new LayerTable();
+
+    // 正在写入的笔画：beginStroke 之后 endStroke 之前为 true
+    private boolean building;
+
+    public StrokeStore() {
+        this(DEFAULT_STROKE_CAPACITY, DEFAULT_POINT_CAPACITY);
+    }
+
+    public StrokeStore(int strokeCapacity, int pointCapacity) {
+        int strokes = Math.max(strokeCapacity, 1);
+        points = new float[Math.max(pointCapacity, 1) * 2];
+        weights = new byte[Math.max(pointCapacity, 1)];
+        times = new int[Math.max(pointCapacity, 1)];
+        pointStarts = new int[strokes];
+        pointCounts = new int[strokes];
+        colors = new int[strokes];
+        widths = new float[strokes];
+        brushes = new int[strokes];
+        layers = new int[strokes];
+        startTimes = new long[strokes];
+        bounds = new float[strokes * 4];
+        flags = new byte[strokes];
+        orderOffsets = new int[strokes];
+        erasedBy = new int[strokes];
+        erasures = new int[16];
+        erasureStarts = new int[strokes];
+        erasureCounts = new int[strokes];
+    }
+
+    /**
+     * 开始写入一条新笔画，随后用 {@link #addPoint} 追加坐标，最后调用 {@link #endStroke}
+     * @return 新笔画的下标
+     */
+    public int beginStroke(int color, float width) {
+        return beginStroke(color, width, Brush.PEN.id);
+    }
+
+    /**
+     * 同 {@link #beginStroke(int, float)}，指定笔刷编号
+     */
+    public int beginStroke(int color, float width, int brush) {
+        if (building) {
+            throw new IllegalStateException("previous stroke not ended");
+        }
+        if (count == colors.length) {
+            growStrokes(count + 1);
+        }
+        building = true;
+        pointStarts[count] = pointCount;
+        pointCounts[count] = 0;
+        colors[count] = color;
+        widths[count] = width;
+        brushes[count] = brush;
+        layers[count] = 0;
+        startTimes[count] = NO_TIME;
+        flags[count] = 0;
+        orderOffsets[count] = 0;
+        erasedBy[count] = NOT_ERASED;
+        erasureStarts[count] = erasureCount;
+        erasureCounts[count] = 0;
+        int b = count * 4;
+        bounds[b] = Float.POSITIVE_INFINITY;
+        bounds[b + 1] = Float.POSITIVE_INFINITY;
+        bounds[b + 2] = Float.NEGATIVE_INFINITY;
+        bounds[b + 3] = Float.NEGATIVE_INFINITY;
+        return count;
+    }
+
+    /**
+     * 向正在写入的笔画追加一个点
+     */
+    public void addPoint(float x, float y) {
+        addPoint(x, y, 1f);
+    }
+
+    /**
+     * 向正在写入的笔画追加一个点
+     * @param weight 笔刷权重，0 到 1
+     */
+    public void addPoint(float x, float y, float weight) {
+        addPoint(x, y, weight, NO_TIME);
+    }
+
+    /**
+     * 向正在写入的笔画追加一个点
+     * @param weight 笔刷权重，0 到 1
+     * @param time 采样时间（毫秒），NO_TIME 表示没有；笔画的时间信息由第一个点决定，
+     *             之后早于前一个点或没有时间的点沿用前一个点的时间
+     */
+    public void addPoint(float x, float y, float weight, long time) {
+        if (!building) {
+            throw new IllegalStateException("no stroke in progress");
+        }
+        if (pointCount * 2 == points.length) {
+            growPoints(pointCount + 1);
+        }
+        points[pointCount * 2] = x;
+        points[pointCount * 2 + 1] = y;
+        weights[pointCount] = (byte) Math.round(Math.max(0f, Math.min(1f, weight)) * 255);
+        if (pointCounts[count] == 0) {
+            startTimes[count] = time;
+            times[pointCount] = 0;
+        } else {
+            int previous = times[pointCount - 1];
+            long start = startTimes[count];
+            times[pointCount] = time == NO_TIME || start == NO_TIME
+                    ? previous : (int) Math.max(previous, Math.min(Integer.MAX_VALUE, time - start));
+        }
+        pointCount++;
+        pointCounts[count]++;
+        int b = count * 4;
+        bounds[b] = Math.min(bounds[b], x);
+        bounds[b + 1] = Math.min(bounds[b + 1], y);
+        bounds[b + 2] = Math.max(bounds[b + 2], x);
+        bounds[b + 3] = Math.max(bounds[b + 3], y);
+    }
+
+    /**
+     * 结束当前笔画
+     * @return 该笔画的下标
+     */
+    public int endStroke() {
+        if (!building) {
+            throw new IllegalStateException("no stroke in progress");
+        }
+        building = false;
+        return count++;
+    }
+
+    /**
+     * 重新打开最后一条笔画，接着用 {@link #addPoint} 追加坐标，再调用 {@link #endStroke}；
+     * 已有的点、包围盒和时间信息不变。用于逐帧增长的预览笔画，不必每帧从头重建
+     */
+    public void reopenLast() {
+        if (building) {
+            throw new IllegalStateException("stroke in progress");
+        }
+        if (count == 0 || (flags[count - 1] & FLAG_ERASE) != 0) {
+            throw new IllegalStateException("no stroke to reopen");
+        }
+        building = true;
+        count--;
+    }
+
+    /**
+     * 把采样缓冲区中的全部点（连同采样时间）作为一条完整笔画存入
+     * @return 新笔画的下标
+     */
+    public int add(TouchSampleBuffer samples, int color, float width) {
+        beginStroke(color, width);
+        int n = samples.size();
+        ensurePointCapacity(pointCount + n);
+        for (int i = 0; i < n; i++) {
+            addPoint(samples.getX(i), samples.getY(i), 1f, samples.getTime(i));
+        }
+        return endStroke();
+    }
+
+    /**
+     * 同 {@link #add(TouchSampleBuffer, int, float)}，采样点的压力通道作为笔刷权重
+     */
+    public int add(TouchSampleBuffer samples, int color, float width, Brush brush) {
+        beginStroke(color, width, brush.id);
+        int n = samples.size();
+        ensurePointCapacity(pointCount + n);
+        for (int i = 0; i < n; i++) {
+            addPoint(samples.getX(i), samples.getY(i), samples.getPressure(i), samples.getTime(i));
+        }
+        return endStroke();
+    }
+
+    /**
+     * 追加一条擦除记录，strokes 中的笔画从这条记录起不再可见；
+     * 包围盒为被擦笔画墨迹范围的并集，撤销时据此重绘
+     * @param joined 是否与前一条记录一起撤销
+     * @return 擦除记录的下标
+     */
+    public int addErase(IntList strokes, boolean joined) {
+        int n = strokes.size();
+        for (int i = 0; i < n; i++) {
+            int stroke = strokes.get(i);
+            if (stroke < 0 || stroke >= count || (flags[stroke] & FLAG_ERASE) != 0) {
+                throw new IllegalArgumentException("cannot erase record " + stroke);
+            }
+        }
+        int record = beginStroke(0, 0f);
+        if (erasureCount + n > erasures.length) {
+            erasures = Arrays.copyOf(erasures, Math.max(erasureCount + n, erasures.length * 3 / 2));
+        }
+        int b = record * 4;
+        for (int i = 0; i < n; i++) {
+            int stroke = strokes.get(i);
+            erasures[erasureCount++] = record - stroke;
+            // 已被更早的记录擦掉时以更早的为准
+            erasedBy[stroke] = Math.min(erasedBy[stroke], record);
+            float half = widths[stroke] / 2;
+            bounds[b] = Math.min(bounds[b], getLeft(stroke) - half);
+            bounds[b + 1] = Math.min(bounds[b + 1], getTop(stroke) - half);
+            bounds[b + 2] = Math.max(bounds[b + 2], getRight(stroke) + half);
+            bounds[b + 3] = Math.max(bounds[b + 3], getBottom(stroke) + half);
+        }
+        if (n == 0) {
+            Arrays.fill(bounds, b, b + 4, 0f);
+        }
+        erasureCounts[record] = n;
+        flags[record] = (byte) (FLAG_ERASE | (joined ? FLAG_JOINED : 0));
+        return endStroke();
+    }
+
+    /**
+     * 只保留前 newCount 条笔画，之后的笔画及其坐标全部丢弃
+     */
+    public void truncate(int newCount) {
+        if (building) {
+            throw new IllegalStateException("stroke in progress");
+        }
+        if (newCount < 0 || newCount > count) {
+            throw new IndexOutOfBoundsException("count " + newCount + ", size " + count);
+        }
+        if (newCount < count) {
+            // 被丢弃的擦除记录擦掉的笔画恢复可见
+            for (int record = newCount; record < count; record++) {
+                for (int i = 0; i < erasureCounts[record]; i++) {
+                    int stroke = getErasedStroke(record, i);
+                    if (stroke >= 0 && stroke < newCount && erasedBy[stroke] == record) {
+                        erasedBy[stroke] = NOT_ERASED;
+                    }
+                }
+            }
+            pointCount = pointStarts[newCount];
+            erasureCount = erasureStarts[newCount];
+            count = newCount;
+        }
+    }
+
+    public void clear() {
+        truncate(0);
+    }
+
+    /** 已完成的笔画数量 */
+    public int size() {
+        return count;
+    }
+
+    /** 所有笔画的点数之和 */
+    public int totalPointCount() {
+        return pointCount;
+    }
+
+    public int getColor(int stroke) {
+        return colors[stroke];
+    }
+
+    public float getWidth(int stroke) {
+        return widths[stroke];
+    }
+
+    /** 笔刷编号，见 {@link Brush#get} */
+    public int getBrush(int stroke) {
+        return brushes[stroke];
+    }
+
+    /** 所属图层编号 */
+    public int getLayer(int stroke) {
+        return layers[stroke];
+    }
+
+    /**
+     * 把笔画归入图层，图层表不足时追加默认图层
+     */
+    public void setLayer(int stroke, int layer) {
+        if (layer < 0 || layer >= LayerTable.MAX_LAYERS) {
+            throw new IndexOutOfBoundsException("layer " + layer);
+        }
+        layers[stroke] = layer;
+        layerTable.ensureSize(layer + 1);
+    }
+
+    /** 文档的图层表，可以直接修改 */
+    LayerTable getLayers() {
+        return layerTable;
+    }
+
+    /** 笔画是否记录了采样时间 */
+    public boolean hasTime(int stroke) {
+        return startTimes[stroke] != NO_TIME;
+    }
+
+    /** 笔画第一个点的采样时间（毫秒），没有时间信息时为 NO_TIME */
+    public long getStartTime(int stroke) {
+        return startTimes[stroke];
+    }
+
+    /**
+     * 设置已完成笔画的起始时间，供读取文档时补上时间信息；NO_TIME 清除笔画的时间信息
+     */
+    public void setStartTime(int stroke, long time) {
+        startTimes[stroke] = time;
+    }
+
+    /** 全局点序列中第 point 个点相对所在笔画第一个点的毫秒数，没有时间信息的笔画为 0 */
+    public int getTimeOffset(int point) {
+        return times[point];
+    }
+
+    /**
+     * @param offset 不小于 0，调用方保证同一笔画内不递减
+     */
+    public void setTimeOffset(int point, int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset " + offset);
+        }
+        times[point] = offset;
+    }
+
+    /** 是否为擦除记录，擦除记录没有点，不绘制 */
+    public boolean isErase(int record) {
+        return (flags[record] & FLAG_ERASE) != 0;
+    }
+
+    /** 是否与前一条记录属于同一次编辑，需要一起撤销和重做 */
+    public boolean isJoined(int record) {
+        return (flags[record] & FLAG_JOINED) != 0;
+    }
+
+    public void setJoined(int record, boolean joined) {
+        flags[record] = (byte) (joined ? flags[record] | FLAG_JOINED : flags[record] & ~FLAG_JOINED);
+    }
+
+    /**
+     * 绘制顺序：按它从小到大绘制，相同时按下标。普通笔画就是自己的下标，
+     * 擦除切出的碎片沿用原笔画的顺序，不会盖住原笔画之后画的内容
+     */
+    public int getOrder(int stroke) {
+        return stroke - orderOffsets[stroke];
+    }
+
+    /**
+     * @param order 不大于 stroke
+     */
+    public void setOrder(int stroke, int order) {
+        if (order > stroke) {
+            throw new IllegalArgumentException("order " + order + " after stroke " + stroke);
+        }
+        orderOffsets[stroke] = stroke - order;
+    }
+
+    /** 擦除记录列出的笔画数 */
+    public int getErasureCount(int record) {
+        return erasureCounts[record];
+    }
+
+    /**
+     * 擦除记录列出的第 i 条笔画的下标；从中间开始的拷贝里可能为负，表示拷贝之前的笔画
+     */
+    public int getErasedStroke(int record, int i) {
+        return record - erasures[erasureStarts[record] + i];
+    }
+
+    /**
+     * 在只应用前 count 条记录时，stroke 是否为可见的笔画（不是擦除记录，也没有被其中的擦除记录擦掉）
+     */
+    public boolean isLive(int stroke, int count) {
+        return stroke < count && (flags[stroke] & FLAG_ERASE) == 0 && erasedBy[stroke] >= count;
+    }
+
+    /** 笔画第一个点在全局点序列中的下标 */
+    public int getPointStart(int stroke) {
+        return pointStarts[stroke];
+    }
+
+    public int getPointCount(int stroke) {
+        return pointCounts[stroke];
+    }
+
+    /** 全局点序列中第 point 个点的横坐标 */
+    public float getX(int point) {
+        return points[point * 2];
+    }
+
+    /** 全局点序列中第 point 个点的纵坐标 */
+    public float getY(int point) {
+        return points[point * 2 + 1];
+    }
+
+    /** 全局点序列中第 point 个点的笔刷权重，0 到 1 */
+    public float getWeight(int point) {
+        return (weights[point] & 0xFF) / 255f;
+    }
+
+    public float getLeft(int stroke) {
+        return bounds[stroke * 4];
+    }
+
+    public float getTop(int stroke) {
+        return bounds[stroke * 4 + 1];
+    }
+
+    public float getRight(int stroke) {
+        return bounds[stroke * 4 + 2];
+    }
+
+    public float getBottom(int stroke) {
+        return bounds[stroke * 4 + 3];
+    }
+
+    /**
+     * 点 (x, y) 到笔画中心线（折线）的最短距离，不含线宽
+     */
+    public float distanceTo(int stroke, float x, float y) {
+        int start = pointStarts[stroke];
+        int end = start + pointCounts[stroke];
+        if (start == end) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float ax = points[start * 2];
+        float ay = points[start * 2 + 1];
+        float best = (x - ax) * (x - ax) + (y - ay) * (y - ay);
+        for (int i = start + 1; i < end; i++) {
+            float bx = points[i * 2];
+            float by = points[i * 2 + 1];
+            float dx = bx - ax;
+            float dy = by - ay;
+            float lenSq = dx * dx + dy * dy;
+            float t = lenSq == 0 ? 0 : ((x - ax) * dx + (y - ay) * dy) / lenSq;
+            t = Math.max(0, Math.min(1, t));
+            float ex = x - ax - t * dx;
+            float ey = y - ay - t * dy;
+            best = Math.min(best, ex * ex + ey * ey);
+            ax = bx;
+            ay = by;
+        }
+        return (float) Math.sqrt(best);
+    }
+
+    /**
+     * 当前已分配数组占用的字节数（不含对象头）
+     */
+    public long estimatedBytes() {
+        return (long) points.length * 4
+                + weights.length
+                + (long) times.length * 4
+                + (long) pointStarts.length * 4
+                + (long) pointCounts.length * 4
+                + (long) colors.length * 4
+                + (long) widths.length * 4
+                + (long) brushes.length * 4
+                + (long) layers.length * 4
+                + (long) startTimes.length * 8
+                + (long) bounds.length * 4
+                + flags.length
+                + (long) orderOffsets.length * 4
+                + (long) erasedBy.length * 4
+                + (long) erasures.length * 4
+                + (long) erasureStarts.length * 4
+                + (long) erasureCounts.length * 4;
+    }
+
+    /**
+     * 把数组收缩到实际大小，释放多余容量
+     */
+    public void trimToSize() {
+        points = Arrays.copyOf(points, Math.max(pointCount, 1) * 2);
+        weights = Arrays.copyOf(weights, Math.max(pointCount, 1));
+        times = Arrays.copyOf(times, Math.max(pointCount, 1));
+        erasures = Arrays.copyOf(erasures, Math.max(erasureCount, 1));
+        resizeStrokes(Math.max(building ? count + 1 : count, 1));
+    }
+
+    /**
+     * 深拷贝，只复制实际使用的部分，可安全地交给其他线程读取
+     */
+    public StrokeStore copy() {
+        return copy(count);
+    }
+
+    /**
+     * 只深拷贝前 strokeCount 条笔画
+     */
+    public StrokeStore copy(int strokeCount) {
+        return copy(0, strokeCount);
+    }
+
+    /**
+     * 拷贝前 count 条记录中可见的笔画，按绘制顺序排列，不含擦除记录和被擦掉的笔画，
+     * 拷贝中每条笔画都是普通笔画。供导出等只关心最终画面的一方使用
+     */
+    public StrokeStore copyLive(int count) {
+        if (building) {
+            throw new IllegalStateException("stroke in progress");
+        }
+        if (count < 0 || count > this.count) {
+            throw new IndexOutOfBoundsException("count " + count + ", size " + this.count);
+        }
+        // 高 32 位为绘制顺序，低 32 位为下标，排序后即绘制顺序
+        long[] keys = new long[count];
+        int live = 0;
+        int points = 0;
+        boolean reordered = false;
+        for (int i = 0; i < count; i++) {
+            if (isLive(i, count)) {
+                keys[live++] = ((long) getOrder(i) << 32) | i;
+                points += pointCounts[i];
+                reordered |= orderOffsets[i] != 0;
+            }
+        }
+        if (reordered) {
+            Arrays.sort(keys, 0, live);
+        }
+        StrokeStore copy = new StrokeStore(live, points);
+        copy.layerTable.set(layerTable);
+        for (int i = 0; i < live; i++) {
+            copy.append(this, (int) keys[i]);
+            copy.orderOffsets[i] = 0;
+            copy.flags[i] = 0;
+        }
+        return copy;
+    }
+
+    /**
+     * 深拷贝 [from, to) 区间内的笔画，拷贝中的下标从 0 开始；图层表整体拷贝。
+     * 擦除记录和绘制顺序按相对下标保存，拷贝中的含义不变
+     */
+    public StrokeStore copy(int from, int to) {
+        if (building) {
+            throw new IllegalStateException("stroke in progress");
+        }
+        if (from < 0 || to > count || from > to) {
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "), size " + count);
+        }
+        int strokeCount = to - from;
+        int firstPoint = from == count ? pointCount : pointStarts[from];
+        int lastPoint = to == count ? pointCount : pointStarts[to];
+        int points = lastPoint - firstPoint;
+        StrokeStore copy = new StrokeStore(strokeCount, points);
+        System.arraycopy(this.points, firstPoint * 2, copy.points, 0, points * 2);
+        System.arraycopy(weights, firstPoint, copy.weights, 0, points);
+        System.arraycopy(times, firstPoint, copy.times, 0, points);
+        for (int i = 0; i < strokeCount; i++) {
+            copy.pointStarts[i] = pointStarts[from + i] - firstPoint;
+        }
+        System.arraycopy(pointCounts, from, copy.pointCounts, 0, strokeCount);
+        System.arraycopy(colors, from, copy.colors, 0, strokeCount);
+        System.arraycopy(widths, from, copy.widths, 0, strokeCount);
+        System.arraycopy(brushes, from, copy.brushes, 0, strokeCount);
+        System.arraycopy(layers, from, copy.layers, 0, strokeCount);
+        System.arraycopy(startTimes, from, copy.startTimes, 0, strokeCount);
+        System.arraycopy(bounds, from * 4, copy.bounds, 0, strokeCount * 4);
+        System.arraycopy(flags, from, copy.flags, 0, strokeCount);
+        System.arraycopy(orderOffsets, from, copy.orderOffsets, 0, strokeCount);
+        for (int i = 0; i < strokeCount; i++) {
+            int eraser = erasedBy[from + i];
+            copy.erasedBy[i] = eraser < to ? eraser - from : NOT_ERASED;
+        }
+        int firstErasure = from == count ? erasureCount : erasureStarts[from];
+        int lastErasure = to == count ? erasureCount : erasureStarts[to];
+        copy.erasures = Arrays.copyOfRange(erasures, firstErasure, Math.max(lastErasure, firstErasure + 1));
+        for (int i = 0; i < strokeCount; i++) {
+            copy.erasureStarts[i] = erasureStarts[from + i] - firstErasure;
+        }
+        System.arraycopy(erasureCounts, from, copy.erasureCounts, 0, strokeCount);
+        copy.erasureCount = lastErasure - firstErasure;
+        copy.pointCount = points;
+        copy.count = strokeCount;
+        copy.layerTable.set(layerTable);
+        return copy;
+    }
+
+    /**
+     * 把另一个存储中的一条笔画追加到末尾
+     * @return 新笔画的下标
+     */
+    public int append(StrokeStore source, int stroke) {
+        if (source.isErase(stroke)) {
+            // 按相对位置找到本存储中对应的笔画，超出范围的忽略
+            IntList erased = new IntList(source.getErasureCount(stroke));
+            for (int i = 0; i < source.getErasureCount(stroke); i++) {
+                int target = count - (stroke - source.getErasedStroke(stroke, i));
+                if (target >= 0 && !isErase(target)) {
+                    erased.add(target);
+                }
+            }
+            return addErase(erased, source.isJoined(stroke));
+        }
+        beginStroke(source.getColor(stroke), source.getWidth(stroke), source.getBrush(stroke));
+        int start = source.getPointStart(stroke);
+        int n = source.getPointCount(stroke);
+        ensurePointCapacity(pointCount + n);
+        long startTime = source.getStartTime(stroke);
+        for (int i = start; i < start + n; i++) {
+            addPoint(source.getX(i), source.getY(i), source.getWeight(i),
+                    startTime == NO_TIME ? NO_TIME : startTime + source.getTimeOffset(i));
+        }
+        int index = endStroke();
+        setLayer(index, source.getLayer(stroke));
+        flags[index] = source.flags[stroke];
+        orderOffsets[index] = Math.min(source.orderOffsets[stroke], index);
+        return index;
+    }
+
+    /**
+     * 把本存储中的一条笔画按仿射变换复制到末尾，颜色、笔刷、图层、权重和采样时间不变，
+     * 线宽按变换的面积缩放比例的平方根缩放；绘制顺序和撤销分组由调用方设置
+     * @param matrix 按行排列的 2×3 仿射矩阵 {a, b, tx, c, d, ty}，即 x' = a·x + b·y + tx，
+     *               y' = c·x + d·y + ty（与 android.graphics.Matrix#getValues 的前 6 项相同）
+     * @return 新笔画的下标
+     */
+    public int appendTransformed(int stroke, float[] matrix) {
+        if (isErase(stroke)) {
+            throw new IllegalArgumentException("erase record " + stroke);
+        }
+        float a = matrix[0], b = matrix[1], tx = matrix[2];
+        float c = matrix[3], d = matrix[4], ty = matrix[5];
+        float scale = (float) Math.sqrt(Math.abs(a * d - b * c));
+        int start = pointStarts[stroke];
+        int n = pointCounts[stroke];
+        long startTime = startTimes[stroke];
+        int layer = getLayer(stroke);
+        beginStroke(colors[stroke], widths[stroke] * scale, brushes[stroke]);
+        // 扩容可能替换数组，先扩容再逐点读取
+        ensurePointCapacity(pointCount + n);
+        for (int i = start; i < start + n; i++) {
+            float x = points[i * 2];
+            float y = points[i * 2 + 1];
+            addPoint(a * x + b * y + tx, c * x + d * y + ty, getWeight(i),
+                    startTime == NO_TIME ? NO_TIME : startTime + times[i]);
+        }
+        int index = endStroke();
+        setLayer(index, layer);
+        return index;
+    }
+
+    private void ensurePointCapacity(int capacity) {
+        if (capacity * 2 > points.length) {
+            growPoints(capacity);
+        }
+    }
+
+    // 容量按 1.5 倍增长
+    private void growPoints(int minCapacity) {
+        int current = points.length / 2;
+        int capacity = Math.max(minCapacity, current + (current >> 1));
+        points = Arrays.copyOf(points, capacity * 2);
+        weights = Arrays.copyOf(weights, capacity);
+        times = Arrays.copyOf(times, capacity);
+    }
+
+    private void growStrokes(int minCapacity) {
+        int current = colors.length;
+        resizeStrokes(Math.max(minCapacity, current + (current >> 1)));
+    }
+
+    private void resizeStrokes(int capacity) {
+        pointStarts = Arrays.copyOf(pointStarts, capacity);
+        pointCounts = Arrays.copyOf(pointCounts, capacity);
+        colors = Arrays.copyOf(colors, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        brushes = Arrays.copyOf(brushes, capacity);
+        layers = Arrays.copyOf(layers, capacity);
+        startTimes = Arrays.copyOf(startTimes, capacity);
+        bounds = Arrays.copyOf(bounds, capacity * 4);
+        flags = Arrays.copyOf(flags, capacity);
+        orderOffsets = Arrays.copyOf(orderOffsets, capacity);
+        erasedBy = Arrays.copyOf(erasedBy, capacity);
+        erasureStarts = Arrays.copyOf(erasureStarts, capacity);
+        erasureCounts = Arrays.copyOf(erasureCounts, capacity);
+    }
+}
@@ -0,0 +1,255 @@
+package com.k.minidoodle;
+
+import java.io.IOException;
+
+/**
+ * 把笔画转换为矢量路径，交给 {@link Sink} 写成 SVG 或 PDF
+ * 坐标先变换到输出坐标系（与 {@link ExportLayout} 相同的平移和缩放），再量化为以 1/{@link #QUANTUM} 像素为单位的整数，
+ * 量化后与上一点重合的点直接跳过。连续的、颜色和线宽相同的不透明笔画合并为一条路径，
+ * 输出的路径数和样式切换远少于笔画数；只合并相邻的笔画，重叠笔画的上下关系不变。
+ * 半透明的笔画各自成一条路径，否则重叠处不再加深。
+ * 轮廓笔刷与屏幕绘制使用同一套几何计算（见 {@link StrokeGeometry}）；喷枪的柔边印章没有对应的矢量图元，
+ * 近似为按平均权重的线宽和浓淡绘制的线条。整个过程只持有当前笔画，不依赖 Android。
+ */
+final class StrokeVectorizer {
+
+    /** 量化精度：1 个输出像素分为多少个坐标单位 */
+    static final int QUANTUM = 10;
+    /** 圆头、圆角连接的线条 */
+    static final int STYLE_STROKE = 0;
+    /** 按非零环绕规则填充 */
+    static final int STYLE_FILL = 1;
+    // 一条合并路径的点数超过此值后另起一条，限制输出端单条路径的大小
+    static final int MAX_PATH_POINTS = 4096;
+
+    /**
+     * 矢量路径的输出端，坐标和线宽都是量化单位的整数
+     */
+    interface Sink {
+        /** 开始一个需要单独合成的图层，即不透明度或混合模式不是默认值的图层 */
+        void beginLayer(LayerTable layers, int layer) throws IOException;
+
+        void endLayer() throws IOException;
+
+        /**
+         * 开始一条路径
+         * @param style {@link #STYLE_STROKE} 或 {@link #STYLE_FILL}
+         * @param color ARGB，透明度即路径的不透明度
+         * @param width 线宽，填充时为 0
+         */
+        void beginPath(int style, int color, int width) throws IOException;
+
+        void moveTo(int x, int y) throws IOException;
+
+        void lineTo(int x, int y) throws IOException;
+
+        /** 闭合当前子路径 */
+        void closePath() throws IOException;
+
+        /** 添加一个顺时针的圆形子路径 */
+        void circle(int x, int y, int radius) throws IOException;
+
+        void endPath() throws IOException;
+    }
+
+    private final float left;
+    private final float top;
+    // 文档坐标到量化坐标的比例
+    private final float factor;
+    // 当前打开的路径及其样式
+    private boolean open;
+    private int openStyle;
+    private int openColor;
+    private int openWidth;
+    private int openPoints;
+    // 最后写出的量化点
+    private int lastX;
+    private int lastY;
+
+    /**
+     * @param left 输出左上角的文档坐标
+     * @param scale 文档坐标到输出像素的缩放比例
+     */
+    StrokeVectorizer(float left, float top, float scale) {
+        this.left = left;
+        this.top = top;
+        factor = scale * QUANTUM;
+    }
+
+    /**
+     * 按图层从下到上、图层内按顺序写出可见图层上的全部笔画
+     */
+    void write(StrokeStore strokes, Sink sink) throws IOException {
+        LayerTable layers = strokes.getLayers();
+        for (int layer = 0; layer < layers.size(); layer++) {
+            if (!layers.isVisible(layer)) {
+                continue;
+            }
+            boolean isolated = !layers.isPlain(layer);
+            if (isolated) {
+                sink.beginLayer(layers, layer);
+            }
+            for (int i = 0; i < strokes.size(); i++) {
+                if (strokes.getLayer(i) == layer) {
+                    writeStroke(strokes, i, sink);
+                }
+            }
+            endPath(sink);
+            if (isolated) {
+                sink.endLayer();
+            }
+        }
+    }
+
+    private void writeStroke(StrokeStore strokes, int stroke, Sink sink) throws IOException {
+        int count = strokes.getPointCount(stroke);
+        if (count == 0) {
+            return;
+        }
+        Brush brush = Brush.get(strokes.getBrush(stroke));
+        int color = strokes.getColor(stroke);
+        float width = strokes.getWidth(stroke);
+        switch (brush.renderMode) {
+            case Brush.RENDER_OUTLINE:
+                beginPath(sink, STYLE_FILL, color, 0, count * 2);
+                writeOutline(strokes, stroke, brush, sink);
+                break;
+            case Brush.RENDER_STAMP:
+                float weight = averageWeight(strokes, stroke);
+                int alpha = Math.round((color >>> 24) * brush.opacityAt(weight));
+                beginPath(sink, STYLE_STROKE, (alpha << 24) | (color & 0xFFFFFF),
+                        quantizeLength(brush.widthAt(width, weight)), count);
+                writePolyline(strokes, stroke, sink);
+                break;
+            default:
+                // 与 Canvas 一致：只有一个点的 Path 不绘制
+                if (count < 2) {
+                    return;
+                }
+                beginPath(sink, STYLE_STROKE, color, quantizeLength(width), count);
+                writePolyline(strokes, stroke, sink);
+                break;
+        }
+    }
+
+    // 样式相同且不透明时接在当前路径后面，否则结束当前路径另起一条
+    private void beginPath(Sink sink, int style, int color, int width, int points) throws IOException {
+        if (open && style == openStyle && color == openColor && width == openWidth
+                && (color >>> 24) == 0xFF && openPoints + points <= MAX_PATH_POINTS) {
+            openPoints += points;
+            return;
+        }
+        endPath(sink);
+        sink.beginPath(style, color, width);
+        open = true;
+        openStyle = style;
+        openColor = color;
+        openWidth = width;
+        openPoints = points;
+    }
+
+    private void endPath(Sink sink) throws IOException {
+        if (open) {
+            sink.endPath();
+            open = false;
+        }
+    }
+
+    // 折线；所有点量化后重合时保留一段零长度的线，圆头端点画成一个点
+    private void writePolyline(StrokeStore strokes, int stroke, Sink sink) throws IOException {
+        int start = strokes.getPointStart(stroke);
+        int end = start + strokes.getPointCount(stroke);
+        moveTo(sink, strokes.getX(start), strokes.getY(start));
+        boolean moved = false;
+        for (int i = start + 1; i < end; i++) {
+            moved |= lineTo(sink, strokes.getX(i), strokes.getY(i));
+        }
+        if (!moved) {
+            sink.lineTo(lastX, lastY);
+        }
+    }
+
+    // 与 StrokePainter.buildOutline 相同的轮廓
+    private void writeOutline(StrokeStore strokes, int stroke, Brush brush, Sink sink) throws IOException {
+        int start = strokes.getPointStart(stroke);
+        int end = start + strokes.getPointCount(stroke);
+        float width = strokes.getWidth(stroke);
+        if (end - start == 1) {
+            circle(sink, strokes.getX(start), strokes.getY(start), brush.widthAt(width, strokes.getWeight(start)) / 2);
+            return;
+        }
+        // 左侧
+        for (int i = start; i < end; i++) {
+            float half = brush.widthAt(width, strokes.getWeight(i)) / 2;
+            float nx = -StrokeGeometry.tangentY(strokes, i, start, end);
+            float ny = StrokeGeometry.tangentX(strokes, i, start, end);
+            float x = strokes.getX(i) + nx * half;
+            float y = strokes.getY(i) + ny * half;
+            if (i == start) {
+                moveTo(sink, x, y);
+            } else {
+                lineTo(sink, x, y);
+            }
+        }
+        // 右侧反向
+        for (int i = end - 1; i >= start; i--) {
+            float half = brush.widthAt(width, strokes.getWeight(i)) / 2;
+            float nx = -StrokeGeometry.tangentY(strokes, i, start, end);
+            float ny = StrokeGeometry.tangentX(strokes, i, start, end);
+            lineTo(sink, strokes.getX(i) - nx * half, strokes.getY(i) - ny * half);
+        }
+        sink.closePath();
+        // 圆头，以及急转处的圆角
+        for (int i = start; i < end; i++) {
+            if (i == start || i == end - 1 || StrokeGeometry.isSharpTurn(strokes, i)) {
+                circle(sink, strokes.getX(i), strokes.getY(i), brush.widthAt(width, strokes.getWeight(i)) / 2);
+            }
+        }
+    }
+
+    private void moveTo(Sink sink, float x, float y) throws IOException {
+        lastX = quantizeX(x);
+        lastY = quantizeY(y);
+        sink.moveTo(lastX, lastY);
+    }
+
+    // 量化后与上一点重合时跳过，返回是否写出
+    private boolean lineTo(Sink sink, float x, float y) throws IOException {
+        int qx = quantizeX(x);
+        int qy = quantizeY(y);
+        if (qx == lastX && qy == lastY) {
+            return false;
+        }
+        lastX = qx;
+        lastY = qy;
+        sink.lineTo(qx, qy);
+        return true;
+    }
+
+    private void circle(Sink sink, float x, float y, float radius) throws IOException {
+        sink.circle(quantizeX(x), quantizeY(y), quantizeLength(radius));
+    }
+
+    private int quantizeX(float x) {
+        return Math.round((x - left) * factor);
+    }
+
+    private int quantizeY(float y) {
+        return Math.round((y - top) * factor);
+    }
+
+    // 线宽和半径至少 1 个单位，细线不会消失
+    private int quantizeLength(float length) {
+        return Math.max(1, Math.round(length * factor));
+    }
+
+    private static float averageWeight(StrokeStore strokes, int stroke) {
+        int start = strokes.getPointStart(stroke);
+        int end = start + strokes.getPointCount(stroke);
+        float sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += strokes.getWeight(i);
+        }
+        return sum / (end - start);
+    }
+}
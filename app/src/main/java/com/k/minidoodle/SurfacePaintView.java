@@ -0,0 +1,285 @@
+package com.k.minidoodle;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 使用专用渲染线程的画布，与 {@link PaintView} 提供相同的绘图接口，可在布局中直接替换
+ * 主线程只把触摸采样和编辑操作写入无锁队列，笔画处理、撤销和合成都在 {@link RenderThread} 上完成，
+ * 对话框、布局或保存占用主线程时书写依然流畅。不支持平移缩放，文档以 1:1 显示。
+ * 主线程另外维护一份可见记录的镜像（随文档回调更新，含擦除记录），拷贝和导出不需要等待渲染线程。
+ */
+public class SurfacePaintView extends SurfaceView implements DrawingSurface, SurfaceHolder.Callback {
+
+    private static final float STROKE_WIDTH = 12f;
+    // 一帧内最多积累的输入记录数，远大于 240Hz 采样下一帧的点数
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int BACKGROUND_COLOR = 0xFFF8F8F8;
+
+    private final InputQueue queue = new InputQueue(QUEUE_CAPACITY);
+    private RenderThread renderThread;
+    // 主线程上的可见笔画镜像，接管 DrawingViewModel 之后换成其中的实例
+    private StrokeStore visibleStrokes = new StrokeStore();
+    private PaintView.DocumentListener documentListener;
+    // 多指触摸期间忽略输入，直到全部抬起
+    private boolean ignoringTouch;
+    // 队列满被丢弃的记录数
+    private int droppedInputs;
+
+    public SurfacePaintView(Context context) {
+        super(context);
+        init();
+    }
+
+    public SurfacePaintView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    private void init() {
+        renderThread = new RenderThread(queue, STROKE_WIDTH, Color.BLACK, BACKGROUND_COLOR,
+                new MirrorListener());
+        getHolder().addCallback(this);
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        renderThread.setSurface(holder, width, height);
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        renderThread.releaseSurface();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        renderThread.quit();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                ignoringTouch = false;
+                enqueue(RenderThread.OP_DOWN, event.getX(), event.getY(), event.getEventTime(),
+                        Float.floatToIntBits(event.getPressure()));
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (ignoringTouch) {
+                    return true;
+                }
+                for (int h = 0; h < event.getHistorySize(); h++) {
+                    enqueue(RenderThread.OP_MOVE, event.getHistoricalX(h), event.getHistoricalY(h),
+                            event.getHistoricalEventTime(h), Float.floatToIntBits(event.getHistoricalPressure(h)));
+                }
+                enqueue(RenderThread.OP_MOVE, event.getX(), event.getY(), event.getEventTime(),
+                        Float.floatToIntBits(event.getPressure()));
+                break;
+            case MotionEvent.ACTION_UP:
+                if (ignoringTouch) {
+                    return true;
+                }
+                enqueue(RenderThread.OP_UP, event.getX(), event.getY(), event.getEventTime(),
+                        Float.floatToIntBits(event.getPressure()));
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_CANCEL:
+                // 第二根手指按下或事件被拦截：放弃正在画的这一笔
+                if (!ignoringTouch) {
+                    ignoringTouch = true;
+                    enqueue(RenderThread.OP_CANCEL, 0, 0, 0, 0);
+                }
+                return true;
+            default:
+                return true;
+        }
+        renderThread.requestFrame();
+        return true;
+    }
+
+    /**
+     * 改用 state 中的记录镜像；镜像不为空时把它的拷贝交给新的渲染线程载入，
+     * 光栅化在渲染线程上进行，主线程不等待。渲染线程的撤销历史不跨越重建
+     */
+    @Override
+    public void attachState(DrawingViewModel state) {
+        visibleStrokes = state.getSurfaceRecords();
+        if (visibleStrokes.size() > 0 || !visibleStrokes.getLayers().isFlat()) {
+            renderThread.setPendingDocument(visibleStrokes.copy());
+            enqueue(RenderThread.OP_LOAD, 0, 0, 0, 0);
+            renderThread.requestFrame();
+        }
+    }
+
+    @Override
+    public void setPathColor(int color) {
+        enqueue(RenderThread.OP_COLOR, 0, 0, 0, color);
+    }
+
+    @Override
+    public void setBrush(Brush brush) {
+        enqueue(RenderThread.OP_BRUSH, 0, 0, 0, brush.id);
+    }
+
+    @Override
+    public void setStrokeWidth(float width) {
+        enqueue(RenderThread.OP_WIDTH, width, 0, 0, 0);
+    }
+
+    @Override
+    public LayerTable copyLayers() {
+        return visibleStrokes.getLayers().copy();
+    }
+
+    /**
+     * 图层属性直接在主线程更新镜像并通知外部监听，渲染线程随后重新合成
+     */
+    @Override
+    public void setLayers(LayerTable layers) {
+        LayerTable current = visibleStrokes.getLayers();
+        if (layers.size() < current.size()) {
+            throw new IllegalArgumentException("layers can only be added");
+        }
+        if (current.contentEquals(layers)) {
+            return;
+        }
+        current.set(layers);
+        renderThread.setPendingLayers(layers.copy());
+        enqueue(RenderThread.OP_LAYERS, 0, 0, 0, 0);
+        renderThread.requestFrame();
+        if (documentListener != null) {
+            documentListener.onLayersChanged(current.copy());
+        }
+    }
+
+    @Override
+    public void setCurrentLayer(int layer) {
+        if (layer < 0 || layer >= visibleStrokes.getLayers().size()) {
+            throw new IndexOutOfBoundsException("layer " + layer);
+        }
+        enqueue(RenderThread.OP_LAYER, 0, 0, 0, layer);
+    }
+
+    @Override
+    public void setEraserMode(int mode) {
+        enqueue(RenderThread.OP_ERASER, 0, 0, 0, mode);
+    }
+
+    @Override
+    public void setShapeRecognition(boolean enabled) {
+        enqueue(RenderThread.OP_SHAPES, 0, 0, 0, enabled ? 1 : 0);
+    }
+
+    @Override
+    public void setLassoMode(boolean enabled) {
+        enqueue(RenderThread.OP_LASSO, 0, 0, 0, enabled ? 1 : 0);
+        renderThread.requestFrame();
+    }
+
+    @Override
+    public void trimMemory(int level) {
+        enqueue(RenderThread.OP_TRIM, 0, 0, 0, level);
+        renderThread.requestFrame();
+    }
+
+    @Override
+    public void undo() {
+        enqueue(RenderThread.OP_UNDO, 0, 0, 0, 0);
+        renderThread.requestFrame();
+    }
+
+    @Override
+    public void redo() {
+        enqueue(RenderThread.OP_REDO, 0, 0, 0, 0);
+        renderThread.requestFrame();
+    }
+
+    @Override
+    public void clear() {
+        enqueue(RenderThread.OP_CLEAR, 0, 0, 0, 0);
+        renderThread.requestFrame();
+    }
+
+    @Override
+    public void setDocumentListener(@Nullable PaintView.DocumentListener listener) {
+        this.documentListener = listener;
+    }
+
+    @Override
+    public void loadDocument(StrokeStore document) {
+        visibleStrokes.clear();
+        visibleStrokes.getLayers().set(document.getLayers());
+        for (int i = 0; i < document.size(); i++) {
+            visibleStrokes.append(document, i);
+        }
+        // 渲染线程只读取文档，主线程之后也不再修改它
+        renderThread.setPendingDocument(document);
+        enqueue(RenderThread.OP_LOAD, 0, 0, 0, 0);
+        renderThread.requestFrame();
+    }
+
+    @Override
+    public StrokeStore copyVisibleStrokes() {
+        return visibleStrokes.copyLive(visibleStrokes.size());
+    }
+
+    @Override
+    public ExportSnapshot createExportSnapshot() {
+        return new ExportSnapshot(copyVisibleStrokes(), getWidth(), getHeight(), BACKGROUND_COLOR);
+    }
+
+    /** 因队列拥堵被丢弃的移动采样数 */
+    public int getDroppedInputCount() {
+        return droppedInputs;
+    }
+
+    // 只有移动采样在队列拥堵时可以丢弃，按下、抬起、编辑和设置总会送达渲染线程
+    private void enqueue(int op, float x, float y, long time, int arg) {
+        if (op != RenderThread.OP_MOVE) {
+            queue.put(op, x, y, time, arg);
+        } else if (!queue.offer(op, x, y, time, arg)) {
+            droppedInputs++;
+        }
+    }
+
+    /**
+     * 在主线程收到渲染线程的文档变化，先更新镜像再转发给外部监听
+     */
+    private class MirrorListener implements PaintView.DocumentListener {
+        @Override
+        public void onStrokeAdded(StrokeStore stroke) {
+            visibleStrokes.append(stroke, 0);
+            if (documentListener != null) {
+                documentListener.onStrokeAdded(stroke);
+            }
+        }
+
+        @Override
+        public void onStrokesTruncated(int count) {
+            visibleStrokes.truncate(Math.min(count, visibleStrokes.size()));
+            if (documentListener != null) {
+                documentListener.onStrokesTruncated(count);
+            }
+        }
+
+        @Override
+        public void onLayersChanged(LayerTable layers) {
+            visibleStrokes.getLayers().set(layers);
+            if (documentListener != null) {
+                documentListener.onLayersChanged(layers);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.k.minidoodle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 流式 SVG 输出，接收 {@link StrokeVectorizer} 生成的路径
+ * viewBox 以量化单位为坐标，路径数据全部是整数；起点用绝对坐标，之后的点用相对坐标，
+ * 数字之间只在必要时加分隔符。文本直接以 ASCII 写入固定大小的缓冲区，满了就写到输出流，
+ * 不生成中间字符串，内存占用与笔画数无关。不依赖 Android，不是线程安全的。
+ */
+final class SvgWriter implements StrokeVectorizer.Sink {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final byte[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
+            'a', 'b', 'c', 'd', 'e', 'f'};
+    // 按 LayerTable 的混合模式编号排列，对应 CSS 的 mix-blend-mode
+    private static final String[] BLEND_MODES = {"normal", "multiply", "screen", "overlay", "darken", "lighten",
+            "plus-lighter"};
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int size;
+    // 路径数据的当前点和当前子路径的起点
+    private int currentX;
+    private int currentY;
+    private int subpathX;
+    private int subpathY;
+    // 上一个命令是否为相对 lineTo，是则后续的点可以省略命令字母
+    private boolean inLine;
+    // 下一个数字之前是否需要分隔符
+    private boolean needSeparator;
+
+    /**
+     * 写入文件头和背景
+     * @param width 输出尺寸（像素），坐标范围为它的 {@link StrokeVectorizer#QUANTUM} 倍
+     * @param backgroundColor 完全透明时不写背景
+     */
+    SvgWriter(OutputStream out, int width, int height, int backgroundColor) throws IOException {
+        this.out = out;
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+        writeInt(width);
+        write("\" height=\"");
+        writeInt(height);
+        write("\" viewBox=\"0 0 ");
+        writeInt(width * StrokeVectorizer.QUANTUM);
+        writeByte(' ');
+        writeInt(height * StrokeVectorizer.QUANTUM);
+        write("\">\n");
+        if ((backgroundColor >>> 24) != 0) {
+            write("<rect width=\"100%\" height=\"100%\"");
+            writePaint("fill", backgroundColor);
+            write("/>\n");
+        }
+        // 笔画公共的线头和连接样式；isolation 使图层的混合模式只作用于笔画，与屏幕上的合成一致
+        write("<g stroke-linecap=\"round\" stroke-linejoin=\"round\" style=\"isolation:isolate\">\n");
+    }
+
+    @Override
+    public void beginLayer(LayerTable layers, int layer) throws IOException {
+        write("<g");
+        int alpha = layers.getAlpha(layer);
+        if (alpha != 255) {
+            write(" opacity=\"");
+            writeFraction(alpha);
+            writeByte('"');
+        }
+        int mode = layers.getBlendMode(layer);
+        if (mode != LayerTable.BLEND_NORMAL) {
+            write(" style=\"mix-blend-mode:");
+            write(BLEND_MODES[mode]);
+            writeByte('"');
+        }
+        write(">\n");
+    }
+
+    @Override
+    public void endLayer() throws IOException {
+        write("</g>\n");
+    }
+
+    @Override
+    public void beginPath(int style, int color, int width) throws IOException {
+        if (style == StrokeVectorizer.STYLE_STROKE) {
+            write("<path fill=\"none\"");
+            writePaint("stroke", color);
+            write(" stroke-width=\"");
+            writeInt(width);
+            writeByte('"');
+        } else {
+            write("<path");
+            writePaint("fill", color);
+        }
+        write(" d=\"");
+        inLine = false;
+        needSeparator = false;
+    }
+
+    @Override
+    public void moveTo(int x, int y) throws IOException {
+        writeCommand('M');
+        writeNumber(x);
+        writeNumber(y);
+        currentX = subpathX = x;
+        currentY = subpathY = y;
+    }
+
+    @Override
+    public void lineTo(int x, int y) throws IOException {
+        if (!inLine) {
+            writeCommand('l');
+            inLine = true;
+        }
+        writeNumber(x - currentX);
+        writeNumber(y - currentY);
+        currentX = x;
+        currentY = y;
+    }
+
+    @Override
+    public void closePath() throws IOException {
+        writeCommand('z');
+        currentX = subpathX;
+        currentY = subpathY;
+    }
+
+    @Override
+    public void circle(int x, int y, int radius) throws IOException {
+        // 两段半圆弧，sweep-flag 为 1 即屏幕上的顺时针
+        moveTo(x - radius, y);
+        for (int i = 0; i < 2; i++) {
+            writeCommand('a');
+            writeNumber(radius);
+            writeNumber(radius);
+            writeNumber(0);
+            writeNumber(1);
+            writeNumber(1);
+            writeNumber(i == 0 ? 2 * radius : -2 * radius);
+            writeNumber(0);
+        }
+        closePath();
+    }
+
+    @Override
+    public void endPath() throws IOException {
+        write("\"/>\n");
+    }
+
+    /**
+     * 写入结尾并把缓冲区写到输出流，不关闭输出流
+     */
+    void finish() throws IOException {
+        write("</g>\n</svg>\n");
+        flushBuffer();
+        out.flush();
+    }
+
+    // 颜色属性，不透明度不是 1 时另写 *-opacity
+    private void writePaint(String attribute, int color) throws IOException {
+        writeByte(' ');
+        write(attribute);
+        write("=\"#");
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            writeByte(HEX_DIGITS[(color >>> shift) & 0xF]);
+        }
+        writeByte('"');
+        int alpha = color >>> 24;
+        if (alpha != 255) {
+            writeByte(' ');
+            write(attribute);
+            write("-opacity=\"");
+            writeFraction(alpha);
+            writeByte('"');
+        }
+    }
+
+    // 0 到 255 写成最多三位小数的 0 到 1
+    private void writeFraction(int alpha) throws IOException {
+        int thousandths = Math.round(alpha * 1000f / 255);
+        if (thousandths >= 1000) {
+            writeByte('1');
+            return;
+        }
+        writeByte('0');
+        if (thousandths == 0) {
+            return;
+        }
+        writeByte('.');
+        int divisor = 100;
+        while (thousandths > 0) {
+            writeByte('0' + thousandths / divisor);
+            thousandths %= divisor;
+            divisor /= 10;
+        }
+    }
+
+    private void writeCommand(char command) throws IOException {
+        writeByte(command);
+        inLine = false;
+        needSeparator = false;
+    }
+
+    // 负号本身可以分隔数字
+    private void writeNumber(int value) throws IOException {
+        if (needSeparator && value >= 0) {
+            writeByte(' ');
+        }
+        writeInt(value);
+        needSeparator = true;
+    }
+
+    private void writeInt(int value) throws IOException {
+        if (BUFFER_SIZE - size < 11) {
+            flushBuffer();
+        }
+        long v = value;
+        if (v < 0) {
+            buffer[size++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long p = 10; p <= v; p *= 10) {
+            digits++;
+        }
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        size += digits;
+    }
+
+    private void write(String ascii) throws IOException {
+        for (int i = 0; i < ascii.length(); i++) {
+            writeByte(ascii.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (size == BUFFER_SIZE) {
+            flushBuffer();
+        }
+        buffer[size++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, size);
+        size = 0;
+    }
+}
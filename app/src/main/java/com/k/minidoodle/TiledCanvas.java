@@ -0,0 +1,492 @@
+package com.k.minidoodle;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.LongSparseArray;
+
+import java.util.Arrays;
+
+/**
+ * 分块光栅画布
+ * 文档平面划分为固定大小的块，块位图只在第一次有墨迹落入时才分配，空白区域不占内存。
+ * 坐标使用文档坐标，与 View 尺寸无关，尺寸变化时内容不会丢失。
+ * 绘制和局部重绘只涉及与目标区域相交的块。
+ * 缩小显示时改用逐级降采样的块（细节层级），第 L 级的一块覆盖 2^L x 2^L 个基础块，
+ * 屏幕上需要贴的块数与缩放比例无关；降采样块在内容变化后标记为过期，下次显示时再由下一级合成。
+ * 块位图从 {@link BitmapPool} 取用，释放时交回池中。
+ * 内存超限时可以淘汰远离可见区域的基础块（见 {@link #evict}），被淘汰的块记下位置，
+ * 下次显示、绘制或合成用到时由 {@link #setRestorer 恢复回调} 重画；局部重绘跳过它们，恢复时画的就是最新内容。
+ */
+class TiledCanvas {
+
+    static final int TILE_SIZE = 256;
+    // 最多降采样到 1/16
+    static final int MAX_LEVEL = 4;
+
+    /**
+     * 局部重绘回调：把与块相交的内容画到 canvas 上，canvas 已平移到文档坐标
+     */
+    interface TileRenderer {
+        /**
+         * @return 是否在块上画了内容；返回 false 的块会被释放
+         */
+        boolean renderTile(Canvas canvas, int left, int top, int right, int bottom);
+    }
+
+    // 降采样块，内容变化后置为过期
+    private static class LodTile {
+        Bitmap bitmap;
+        boolean stale = true;
+    }
+
+    // 以打包的块坐标为键
+    private final LongSparseArray<Bitmap> tiles = new LongSparseArray<>();
+    // lodTiles[L] 为第 L 级降采样块（L >= 1），只为有内容的区域建立
+    private final LongSparseArray<LodTile>[] lodTiles;
+    private int lodBitmapCount;
+    // 被淘汰、用到时须重画的基础块，值无意义
+    private final LongSparseArray<Boolean> evicted = new LongSparseArray<>();
+    private TileRenderer restorer;
+    // 淘汰时按与保留区域的距离排序复用的键：高 32 位为距离，低 32 位为 tiles 中的位置
+    private long[] evictOrder = new long[64];
+    // 复用的块 Canvas，绘制前绑定目标块
+    private final Canvas tileCanvas = new Canvas();
+    private final Canvas lodCanvas = new Canvas();
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF lodRect = new RectF();
+    private final BitmapPool pool = BitmapPool.getInstance();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TiledCanvas() {
+        lodTiles = new LongSparseArray[MAX_LEVEL + 1];
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            lodTiles[level] = new LongSparseArray<>();
+        }
+    }
+
+    /**
+     * 设置重画被淘汰块的回调，没有设置时不能调用 {@link #evict}
+     */
+    void setRestorer(TileRenderer restorer) {
+        this.restorer = restorer;
+    }
+
+    /**
+     * 在与 [left, right] x [top, bottom] 相交的块上绘制 path，缺少的块按需分配
+     */
+    void drawPath(Path path, Paint paint, float left, float top, float right, float bottom) {
+        int x1 = tileIndex(right);
+        int y1 = tileIndex(bottom);
+        for (int ty = tileIndex(top); ty <= y1; ty++) {
+            for (int tx = tileIndex(left); tx <= x1; tx++) {
+                Canvas canvas = bind(obtainTile(tx, ty), tx, ty);
+                canvas.drawPath(path, paint);
+                tileCanvas.restore();
+                markLodStale(tx, ty);
+            }
+        }
+    }
+
+    /**
+     * 在与区域相交的块上叠加 renderer 画出的内容，缺少的块按需分配。
+     * 用于无法表示为单个 Path 的内容（如印章），renderer 可以只画与块相交的部分。
+     */
+    void drawWith(float left, float top, float right, float bottom, TileRenderer renderer) {
+        int x1 = tileIndex(right);
+        int y1 = tileIndex(bottom);
+        for (int ty = tileIndex(top); ty <= y1; ty++) {
+            for (int tx = tileIndex(left); tx <= x1; tx++) {
+                Canvas canvas = bind(obtainTile(tx, ty), tx, ty);
+                renderer.renderTile(canvas, tx * TILE_SIZE, ty * TILE_SIZE,
+                        (tx + 1) * TILE_SIZE, (ty + 1) * TILE_SIZE);
+                tileCanvas.restore();
+                markLodStale(tx, ty);
+            }
+        }
+    }
+
+    /**
+     * 清除与区域相交的已分配块并交给 renderer 重画，重画后为空的块被释放。
+     * 区域内尚未分配的块原本就是空白，不会被访问；被淘汰的块留到恢复时再画。
+     */
+    void redraw(float left, float top, float right, float bottom, TileRenderer renderer) {
+        int x1 = tileIndex(right);
+        int y1 = tileIndex(bottom);
+        for (int ty = tileIndex(top); ty <= y1; ty++) {
+            for (int tx = tileIndex(left); tx <= x1; tx++) {
+                long key = key(tx, ty);
+                Bitmap tile = tiles.get(key);
+                if (tile == null) {
+                    continue;
+                }
+                tile.eraseColor(Color.TRANSPARENT);
+                Canvas canvas = bind(tile, tx, ty);
+                boolean drawn = renderer.renderTile(canvas, tx * TILE_SIZE, ty * TILE_SIZE,
+                        (tx + 1) * TILE_SIZE, (ty + 1) * TILE_SIZE);
+                tileCanvas.restore();
+                if (!drawn) {
+                    tiles.remove(key);
+                    pool.release(tile);
+                }
+                markLodStale(tx, ty);
+            }
+        }
+    }
+
+    /**
+     * 用 sources 的对应块重建与区域相交的块：按顺序把各来源的块以 paints 中对应的画笔叠加，
+     * paints 中为 null 的来源（隐藏的图层）跳过；所有来源都没有内容的块被释放
+     */
+    void compose(float left, float top, float right, float bottom, TiledCanvas[] sources, Paint[] paints) {
+        int x1 = tileIndex(right);
+        int y1 = tileIndex(bottom);
+        for (int ty = tileIndex(top); ty <= y1; ty++) {
+            for (int tx = tileIndex(left); tx <= x1; tx++) {
+                composeTile(tx, ty, sources, paints);
+            }
+        }
+    }
+
+    /**
+     * 重建全部块，见 {@link #compose}：已有的块原地重建（不再有内容的被释放），
+     * 再补上来源中有内容、本画布还没有的块
+     */
+    void composeAll(TiledCanvas[] sources, Paint[] paints) {
+        for (int i = tiles.size() - 1; i >= 0; i--) {
+            long key = tiles.keyAt(i);
+            if (anyEvicted(key, sources)) {
+                // 不为重新合成把来源中被淘汰的块全部恢复，本块也淘汰，用到时再合成
+                pool.release(tiles.valueAt(i));
+                tiles.removeAt(i);
+                evicted.put(key, Boolean.TRUE);
+                continue;
+            }
+            composeTile((int) (key >> 32), (int) key, sources, paints);
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] == null || paints[i] == null) {
+                continue;
+            }
+            LongSparseArray<Bitmap> sourceTiles = sources[i].tiles;
+            for (int j = 0; j < sourceTiles.size(); j++) {
+                long key = sourceTiles.keyAt(j);
+                if (tiles.get(key) == null) {
+                    composeTile((int) (key >> 32), (int) key, sources, paints);
+                }
+            }
+        }
+    }
+
+    /**
+     * 把与 clip（文档坐标）相交的块贴到 canvas 上
+     */
+    void draw(Canvas canvas, Rect clip) {
+        draw(canvas, clip, 0);
+    }
+
+    /**
+     * 用第 level 级的块贴出 clip（文档坐标）区域，canvas 的变换负责缩放到屏幕，
+     * 过期的降采样块在这里重新合成
+     */
+    void draw(Canvas canvas, Rect clip, int level) {
+        if (level <= 0) {
+            drawBase(canvas, clip);
+            return;
+        }
+        int size = TILE_SIZE << level;
+        int x1 = Math.floorDiv(clip.right - 1, size);
+        int y1 = Math.floorDiv(clip.bottom - 1, size);
+        for (int ty = Math.floorDiv(clip.top, size); ty <= y1; ty++) {
+            for (int tx = Math.floorDiv(clip.left, size); tx <= x1; tx++) {
+                Bitmap tile = obtainLod(level, tx, ty);
+                if (tile != null) {
+                    lodRect.set(tx * size, ty * size, (tx + 1) * size, (ty + 1) * size);
+                    canvas.drawBitmap(tile, null, lodRect, filterPaint);
+                }
+            }
+        }
+    }
+
+    private void drawBase(Canvas canvas, Rect clip) {
+        int x1 = tileIndex(clip.right - 1);
+        int y1 = tileIndex(clip.bottom - 1);
+        for (int ty = tileIndex(clip.top); ty <= y1; ty++) {
+            for (int tx = tileIndex(clip.left); tx <= x1; tx++) {
+                Bitmap tile = baseTile(tx, ty);
+                if (tile != null) {
+                    canvas.drawBitmap(tile, tx * TILE_SIZE, ty * TILE_SIZE, filterPaint);
+                }
+            }
+        }
+    }
+
+    /**
+     * 释放所有块
+     */
+    void clear() {
+        for (int i = 0; i < tiles.size(); i++) {
+            pool.release(tiles.valueAt(i));
+        }
+        tiles.clear();
+        evicted.clear();
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            LongSparseArray<LodTile> lod = lodTiles[level];
+            for (int i = 0; i < lod.size(); i++) {
+                Bitmap bitmap = lod.valueAt(i).bitmap;
+                if (bitmap != null) {
+                    pool.release(bitmap);
+                }
+            }
+            lod.clear();
+        }
+        lodBitmapCount = 0;
+    }
+
+    /**
+     * 释放全部降采样块的位图，它们可以随时由基础块重建：下次缩小显示时再合成
+     */
+    void trimLod() {
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            LongSparseArray<LodTile> lod = lodTiles[level];
+            for (int i = 0; i < lod.size(); i++) {
+                LodTile tile = lod.valueAt(i);
+                if (tile.bitmap != null) {
+                    pool.release(tile.bitmap);
+                    tile.bitmap = null;
+                }
+                tile.stale = true;
+            }
+        }
+        lodBitmapCount = 0;
+    }
+
+    /**
+     * 把左上角为 (left, top) 的基础块以 paint 画到 canvas 上，canvas 为文档坐标；被淘汰的块先恢复。
+     * 用于在另一份画布的恢复回调中合成本画布的内容
+     * @return 块是否有内容
+     */
+    boolean drawTile(Canvas canvas, int left, int top, Paint paint) {
+        Bitmap tile = baseTile(tileIndex(left), tileIndex(top));
+        if (tile == null) {
+            return false;
+        }
+        canvas.drawBitmap(tile, left, top, paint);
+        return true;
+    }
+
+    /**
+     * 淘汰不与 keep（文档坐标）相交的基础块，离 keep 最远的先淘汰，直到释放了 bytes 字节或没有可淘汰的块。
+     * 降采样块不受影响，缩小显示时仍然可用
+     * @return 释放的字节数
+     */
+    long evict(long bytes, Rect keep) {
+        if (restorer == null) {
+            throw new IllegalStateException("no restorer");
+        }
+        int n = 0;
+        int keepLeft = tileIndex(keep.left);
+        int keepTop = tileIndex(keep.top);
+        int keepRight = tileIndex(keep.right - 1);
+        int keepBottom = tileIndex(keep.bottom - 1);
+        for (int i = 0; i < tiles.size(); i++) {
+            long key = tiles.keyAt(i);
+            int tx = (int) (key >> 32);
+            int ty = (int) key;
+            // 与保留区域在两个方向上相隔的块数，取较大者
+            long distance = Math.max(Math.max(keepLeft - tx, tx - keepRight),
+                    Math.max(keepTop - ty, ty - keepBottom));
+            if (distance <= 0) {
+                continue;
+            }
+            if (n == evictOrder.length) {
+                evictOrder = Arrays.copyOf(evictOrder, n * 2);
+            }
+            evictOrder[n++] = (distance << 32) | i;
+        }
+        Arrays.sort(evictOrder, 0, n);
+        long tileBytes = TILE_SIZE * TILE_SIZE * 4L;
+        int count = (int) Math.min(n, (bytes + tileBytes - 1) / tileBytes);
+        // 最远的 count 块在末尾；改为按位置排序后从后往前移除，前面的位置不受影响
+        for (int i = n - count; i < n; i++) {
+            evictOrder[i] &= 0xFFFFFFFFL;
+        }
+        Arrays.sort(evictOrder, n - count, n);
+        for (int i = n - 1; i >= n - count; i--) {
+            int index = (int) evictOrder[i];
+            evicted.put(tiles.keyAt(index), Boolean.TRUE);
+            pool.release(tiles.valueAt(index));
+            tiles.removeAt(index);
+        }
+        return count * tileBytes;
+    }
+
+    /** 已分配的块数 */
+    int getTileCount() {
+        return tiles.size();
+    }
+
+    /** 块位图（含降采样块）占用的字节数 */
+    long getByteCount() {
+        return TILE_SIZE * TILE_SIZE * 4L * (tiles.size() + lodBitmapCount);
+    }
+
+    /** 其中降采样块占用的字节数，{@link #trimLod} 可以全部释放 */
+    long getLodByteCount() {
+        return TILE_SIZE * TILE_SIZE * 4L * lodBitmapCount;
+    }
+
+    private void composeTile(int tx, int ty, TiledCanvas[] sources, Paint[] paints) {
+        long key = key(tx, ty);
+        // 整块重建，被淘汰的块不需要先恢复
+        evicted.remove(key);
+        Bitmap tile = tiles.get(key);
+        if (tile != null) {
+            tile.eraseColor(Color.TRANSPARENT);
+            tileCanvas.setBitmap(tile);
+        }
+        boolean drawn = false;
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] == null || paints[i] == null) {
+                continue;
+            }
+            Bitmap source = sources[i].baseTile(tx, ty);
+            if (source == null) {
+                continue;
+            }
+            if (tile == null) {
+                tile = obtainTile(tx, ty);
+                tileCanvas.setBitmap(tile);
+            }
+            tileCanvas.drawBitmap(source, 0, 0, paints[i]);
+            drawn = true;
+        }
+        if (tile != null && !drawn) {
+            tiles.remove(key);
+            pool.release(tile);
+        }
+        markLodStale(tx, ty);
+    }
+
+    private boolean anyEvicted(long key, TiledCanvas[] sources) {
+        for (TiledCanvas source : sources) {
+            if (source != null && source.evicted.get(key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 基础块内容变化：各级覆盖它的降采样块过期，没有的就建立（内容可能是新增的）
+    private void markLodStale(int tx, int ty) {
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            long key = key(tx >> level, ty >> level);
+            LodTile lod = lodTiles[level].get(key);
+            if (lod == null) {
+                lod = new LodTile();
+                lodTiles[level].put(key, lod);
+            }
+            lod.stale = true;
+        }
+    }
+
+    // 取第 level 级的块，过期时先确保下一级的 4 个子块是最新的，再缩小一半合成；区域已无内容时返回 null
+    private Bitmap obtainLod(int level, int tx, int ty) {
+        long key = key(tx, ty);
+        LodTile lod = lodTiles[level].get(key);
+        if (lod == null) {
+            return null;
+        }
+        if (!lod.stale) {
+            return lod.bitmap;
+        }
+        boolean hasContent = false;
+        for (int i = 0; i < 4; i++) {
+            hasContent |= obtainChild(level - 1, tx * 2 + (i & 1), ty * 2 + (i >> 1)) != null;
+        }
+        if (!hasContent) {
+            lodTiles[level].remove(key);
+            if (lod.bitmap != null) {
+                pool.release(lod.bitmap);
+                lodBitmapCount--;
+            }
+            return null;
+        }
+        if (lod.bitmap == null) {
+            lod.bitmap = pool.obtain(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+            lodBitmapCount++;
+        } else {
+            lod.bitmap.eraseColor(Color.TRANSPARENT);
+        }
+        lodCanvas.setBitmap(lod.bitmap);
+        lodCanvas.save();
+        lodCanvas.scale(0.5f, 0.5f);
+        for (int i = 0; i < 4; i++) {
+            // 子块此时都是最新的，不会再递归合成
+            Bitmap child = obtainChild(level - 1, tx * 2 + (i & 1), ty * 2 + (i >> 1));
+            if (child != null) {
+                lodCanvas.drawBitmap(child, (i & 1) * TILE_SIZE, (i >> 1) * TILE_SIZE, filterPaint);
+            }
+        }
+        lodCanvas.restore();
+        lod.stale = false;
+        return lod.bitmap;
+    }
+
+    private Bitmap obtainChild(int level, int tx, int ty) {
+        return level == 0 ? baseTile(tx, ty) : obtainLod(level, tx, ty);
+    }
+
+    // 取基础块，被淘汰的先恢复；没有内容时返回 null
+    private Bitmap baseTile(int tx, int ty) {
+        long key = key(tx, ty);
+        Bitmap tile = tiles.get(key);
+        if (tile != null || evicted.get(key) == null) {
+            return tile;
+        }
+        evicted.remove(key);
+        tile = pool.obtain(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = bind(tile, tx, ty);
+        boolean drawn = restorer.renderTile(canvas, tx * TILE_SIZE, ty * TILE_SIZE,
+                (tx + 1) * TILE_SIZE, (ty + 1) * TILE_SIZE);
+        tileCanvas.restore();
+        if (!drawn) {
+            pool.release(tile);
+            return null;
+        }
+        tiles.put(key, tile);
+        return tile;
+    }
+
+    // 把复用的 Canvas 绑定到块上并平移到文档坐标，用完须调用 tileCanvas.restore()
+    private Canvas bind(Bitmap tile, int tx, int ty) {
+        tileCanvas.setBitmap(tile);
+        tileCanvas.save();
+        tileCanvas.translate(-tx * TILE_SIZE, -ty * TILE_SIZE);
+        return tileCanvas;
+    }
+
+    private Bitmap obtainTile(int tx, int ty) {
+        long key = key(tx, ty);
+        // 被淘汰的块先恢复原有内容，再叠加新内容
+        Bitmap tile = baseTile(tx, ty);
+        if (tile == null) {
+            // 透明底色，让 View 自身的背景透出来；图层合成依赖透明度，必须是 ARGB_8888
+            tile = pool.obtain(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+            tiles.put(key, tile);
+        }
+        return tile;
+    }
+
+    private static int tileIndex(float coordinate) {
+        return (int) Math.floor(coordinate / TILE_SIZE);
+    }
+
+    private static long key(int tx, int ty) {
+        return ((long) tx << 32) | (ty & 0xFFFFFFFFL);
+    }
+}
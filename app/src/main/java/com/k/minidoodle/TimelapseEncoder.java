@@ -0,0 +1,77 @@
+package com.k.minidoodle;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * 把快照的回放按固定帧率渲染成延时视频的帧
+ * 回放时长超过 {@link #MAX_DURATION} 时按比例加速，画完后停留 {@link #HOLD_DURATION}。
+ * 每帧只把新出现的点画到 {@link ReplayCanvas} 上，再合成一帧交给 {@link FrameSink}；
+ * 没有新内容的帧（停顿和结尾的停留）直接重复上一帧的像素，不再合成。
+ */
+final class TimelapseEncoder {
+
+    static final int FRAME_RATE = 30;
+    /** 延时视频的最长时长（毫秒），不含结尾的停留 */
+    static final long MAX_DURATION = 20_000;
+    /** 画完后停留的时长（毫秒） */
+    static final long HOLD_DURATION = 1_000;
+    // 码率按每像素每帧的比特数估计；画面大多是静止的纯色，这个值已经足够清晰
+    private static final float BITS_PER_PIXEL = 0.2f;
+
+    /**
+     * 接收渲染进度，在编码线程上调用
+     */
+    interface FrameListener {
+        void onFrame(int frame, int frameCount);
+    }
+
+    private TimelapseEncoder() {
+    }
+
+    /** 尺寸为 width × height 的视频的码率（比特/秒） */
+    static int bitRate(int width, int height) {
+        return Math.round((float) width * height * FRAME_RATE * BITS_PER_PIXEL);
+    }
+
+    /**
+     * 在调用线程上渲染全部帧并写入 sink，最后调用 sink.finish()，不关闭 sink
+     * @param layout 文档坐标到画面的变换；width、height 为实际帧尺寸，可以比 layout 略小（视频要求偶数）
+     */
+    static void encode(ExportSnapshot snapshot, ExportLayout layout, int width, int height, FrameSink sink,
+                       @Nullable FrameListener listener) throws IOException {
+        StrokeReplay replay = new StrokeReplay(snapshot.strokes);
+        long duration = replay.getDuration();
+        double speed = Math.max(1.0, (double) duration / MAX_DURATION);
+        double frameTime = 1000.0 / FRAME_RATE;
+        int playFrames = (int) Math.ceil(duration / speed / frameTime) + 1;
+        int frameCount = playFrames + (int) (HOLD_DURATION / frameTime);
+
+        ReplayCanvas buffer = new ReplayCanvas(snapshot.strokes.getLayers(), width, height,
+                layout.left, layout.top, layout.scale);
+        Bitmap frame = BitmapPool.getInstance().obtain(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(frame);
+        int[] pixels = new int[width * height];
+        try {
+            for (int i = 0; i < frameCount; i++) {
+                long time = Math.min(duration, (long) (i * frameTime * speed));
+                if (replay.advanceTo(time, buffer) > 0 || i == 0) {
+                    buffer.draw(canvas, snapshot.backgroundColor);
+                    frame.getPixels(pixels, 0, width, 0, 0, width, height);
+                }
+                sink.writeFrame(pixels, i * 1_000_000L / FRAME_RATE);
+                if (listener != null) {
+                    listener.onFrame(i + 1, frameCount);
+                }
+            }
+            sink.finish();
+        } finally {
+            buffer.release();
+            BitmapPool.getInstance().release(frame);
+        }
+    }
+}
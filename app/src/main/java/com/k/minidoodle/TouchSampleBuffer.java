@@ -0,0 +1,123 @@
+package com.k.minidoodle;
+
+import java.util.Arrays;
+
+/**
+ * 触摸采样点缓冲区
+ * 坐标、时间戳和压力分别存放在可增长的基本类型数组中，追加采样点时不创建任何对象，
+ * 容量足够时写入路径上完全没有内存分配。
+ * 压力为 0 到 1 之间的值，没有压力信息的采样点按 1 处理。
+ */
+public class TouchSampleBuffer {
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private float[] xs;
+    private float[] ys;
+    private long[] times;
+    private float[] pressures;
+    private int size;
+
+    public TouchSampleBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TouchSampleBuffer(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        xs = new float[capacity];
+        ys = new float[capacity];
+        times = new long[capacity];
+        pressures = new float[capacity];
+    }
+
+    /**
+     * 追加一个采样点
+     * @param x 横坐标
+     * @param y 纵坐标
+     * @param time 采样时间（毫秒）
+     */
+    public void add(float x, float y, long time) {
+        add(x, y, time, 1f);
+    }
+
+    /**
+     * 追加一个带压力的采样点
+     * @param pressure 压力，0 到 1
+     */
+    public void add(float x, float y, long time, float pressure) {
+        if (size == xs.length) {
+            grow(size + 1);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        times[size] = time;
+        pressures[size] = pressure;
+        size++;
+    }
+
+    /**
+     * 预先扩容，避免绘制过程中扩容
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > xs.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * 清空采样点，保留已分配的数组供下一笔复用
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * 只保留前 size 个采样点
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException("size " + size + ", current " + this.size);
+        }
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return xs.length;
+    }
+
+    public float getX(int index) {
+        return xs[index];
+    }
+
+    public float getY(int index) {
+        return ys[index];
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public float getPressure(int index) {
+        return pressures[index];
+    }
+
+    /**
+     * 改写第 index 个点的压力，例如换成笔刷动态计算出的权重
+     */
+    public void setPressure(int index, float pressure) {
+        pressures[index] = pressure;
+    }
+
+    // 容量按 1.5 倍增长
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, xs.length + (xs.length >> 1));
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        times = Arrays.copyOf(times, capacity);
+        pressures = Arrays.copyOf(pressures, capacity);
+    }
+}
@@ -0,0 +1,186 @@
+package com.k.minidoodle;
+
+import android.media.Image;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 用硬件 H.264 编码器把帧编码为 MP4
+ * 帧经 {@link YuvConverter} 转换后写入编码器的输入 Image（YUV420Flexible，Android 5.0 起可用），
+ * 每帧的时刻由调用方给出，不依赖 Surface 的系统时间戳，视频节奏与回放一致。
+ * 编码输出随写随交给 MediaMuxer，内存占用与视频长度无关。MediaMuxer 在 Android 8.0 之前只能写文件，
+ * 因此输出到文件，由调用方再拷贝到媒体库。只在一个线程上使用。
+ */
+final class VideoFrameSink implements FrameSink {
+
+    private static final String MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
+    // 等待编码器缓冲区的超时（微秒）
+    private static final long TIMEOUT_US = 10_000;
+    // 结束时等待编码器吐完数据的最多次数，每次 TIMEOUT_US
+    private static final int MAX_DRAIN_TRIES = 500;
+    private static final int I_FRAME_INTERVAL = 1;
+
+    private final int width;
+    private final int height;
+    private final MediaCodec codec;
+    private final MediaMuxer muxer;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private final ByteBuffer[] planes = new ByteBuffer[3];
+    private final int[] rowStrides = new int[3];
+    private final int[] pixelStrides = new int[3];
+    private int track = -1;
+    private boolean muxerStarted;
+    private long lastPresentationTimeUs;
+
+    /**
+     * @param width 偶数
+     * @param height 偶数
+     * @param bitRate 码率（比特/秒）
+     * @throws IOException 没有可用的编码器或无法创建输出文件
+     */
+    VideoFrameSink(File output, int width, int height, int frameRate, int bitRate) throws IOException {
+        this.width = width;
+        this.height = height;
+        MediaFormat format = createFormat(width, height);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL);
+        codec = MediaCodec.createEncoderByType(MIME_TYPE);
+        try {
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            codec.start();
+            muxer = new MediaMuxer(output.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        } catch (IOException | RuntimeException e) {
+            codec.release();
+            throw e instanceof IOException ? (IOException) e : new IOException("无法启动视频编码器", e);
+        }
+    }
+
+    /**
+     * 设备是否有支持该尺寸的 H.264 编码器
+     */
+    static boolean isSupported(int width, int height) {
+        // Android 5.0 上查询用的格式不能带帧率
+        return new MediaCodecList(MediaCodecList.REGULAR_CODECS).findEncoderForFormat(createFormat(width, height))
+                != null;
+    }
+
+    private static MediaFormat createFormat(int width, int height) {
+        MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
+        return format;
+    }
+
+    @Override
+    public void writeFrame(int[] argb, long presentationTimeUs) throws IOException {
+        int index = dequeueInput();
+        Image image = codec.getInputImage(index);
+        if (image == null) {
+            throw new IOException("编码器不支持 Image 输入");
+        }
+        Image.Plane[] imagePlanes = image.getPlanes();
+        for (int i = 0; i < 3; i++) {
+            planes[i] = imagePlanes[i].getBuffer();
+            rowStrides[i] = imagePlanes[i].getRowStride();
+            pixelStrides[i] = imagePlanes[i].getPixelStride();
+        }
+        YuvConverter.convert(argb, width, height, planes, rowStrides, pixelStrides);
+        codec.queueInputBuffer(index, 0, width * height * 3 / 2, presentationTimeUs, 0);
+        lastPresentationTimeUs = presentationTimeUs;
+        drain(false);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        int index = dequeueInput();
+        codec.queueInputBuffer(index, 0, 0, lastPresentationTimeUs, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+        drain(true);
+        if (!muxerStarted) {
+            throw new IOException("编码器没有输出");
+        }
+        muxer.stop();
+        muxerStarted = false;
+    }
+
+    @Override
+    public void close() {
+        try {
+            codec.stop();
+        } catch (IllegalStateException ignored) {
+            // 编码器出错后已经不在运行状态
+        }
+        codec.release();
+        if (muxerStarted) {
+            try {
+                muxer.stop();
+            } catch (IllegalStateException ignored) {
+                // 没有写入任何数据时 stop 会失败，文件本来就不完整
+            }
+        }
+        muxer.release();
+    }
+
+    // 输入缓冲区都被占用时，先取走输出让编码器腾出空间
+    private int dequeueInput() throws IOException {
+        for (int tries = 0; tries < MAX_DRAIN_TRIES; tries++) {
+            int index = codec.dequeueInputBuffer(TIMEOUT_US);
+            if (index >= 0) {
+                return index;
+            }
+            drain(false);
+        }
+        throw new IOException("视频编码器无响应");
+    }
+
+    /**
+     * 把编码好的数据交给 muxer
+     * @param endOfStream 为 true 时一直等到结束标志，否则取完当前可用的数据就返回
+     */
+    private void drain(boolean endOfStream) throws IOException {
+        int idle = 0;
+        while (true) {
+            int index = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!endOfStream) {
+                    return;
+                }
+                if (++idle >= MAX_DRAIN_TRIES) {
+                    throw new IOException("视频编码器无响应");
+                }
+                continue;
+            }
+            if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                // 编码器给出 SPS/PPS 之后才能添加轨道
+                track = muxer.addTrack(codec.getOutputFormat());
+                muxer.start();
+                muxerStarted = true;
+                continue;
+            }
+            if (index < 0) {
+                continue;
+            }
+            idle = 0;
+            ByteBuffer data = codec.getOutputBuffer(index);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                // 编码参数已经随输出格式交给 muxer
+                info.size = 0;
+            }
+            if (info.size > 0 && data != null && muxerStarted) {
+                data.position(info.offset);
+                data.limit(info.offset + info.size);
+                muxer.writeSampleData(track, data, info);
+            }
+            codec.releaseOutputBuffer(index, false);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                return;
+            }
+        }
+    }
+}
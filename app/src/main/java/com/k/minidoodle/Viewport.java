@@ -0,0 +1,87 @@
+package com.k.minidoodle;
+
+/**
+ * 视口变换
+ * 文档坐标先缩放再平移得到视图坐标：view = doc * scale + translate。
+ * 触摸点用逆变换换算成文档坐标，笔画始终以文档坐标存储。
+ */
+public class Viewport {
+
+    public static final float MIN_SCALE = 1f / 16;
+    public static final float MAX_SCALE = 8f;
+
+    private float scale = 1f;
+    private float translateX;
+    private float translateY;
+
+    public float getScale() {
+        return scale;
+    }
+
+    public float getTranslateX() {
+        return translateX;
+    }
+
+    public float getTranslateY() {
+        return translateY;
+    }
+
+    public float toDocumentX(float viewX) {
+        return (viewX - translateX) / scale;
+    }
+
+    public float toDocumentY(float viewY) {
+        return (viewY - translateY) / scale;
+    }
+
+    public float toViewX(float documentX) {
+        return documentX * scale + translateX;
+    }
+
+    public float toViewY(float documentY) {
+        return documentY * scale + translateY;
+    }
+
+    /**
+     * 平移视图，参数为视图坐标下的位移
+     */
+    public void panBy(float dx, float dy) {
+        translateX += dx;
+        translateY += dy;
+    }
+
+    /**
+     * 以视图坐标 (focusX, focusY) 为中心缩放，该点下的文档内容保持不动；
+     * 缩放比例限制在 [MIN_SCALE, MAX_SCALE]
+     */
+    public void zoomBy(float factor, float focusX, float focusY) {
+        float newScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        float applied = newScale / scale;
+        translateX = focusX - (focusX - translateX) * applied;
+        translateY = focusY - (focusY - translateY) * applied;
+        scale = newScale;
+    }
+
+    public void set(float scale, float translateX, float translateY) {
+        this.scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+        this.translateX = translateX;
+        this.translateY = translateY;
+    }
+
+    public void reset() {
+        set(1f, 0, 0);
+    }
+
+    /**
+     * 缩小显示时应使用的细节层级：每缩小一半加一级，最多 maxLevel 级
+     */
+    public int getDetailLevel(int maxLevel) {
+        int level = 0;
+        float s = scale;
+        while (s <= 0.5f && level < maxLevel) {
+            s *= 2;
+            level++;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,101 @@
+package com.k.minidoodle;
+
+import android.graphics.Canvas;
+
+/**
+ * 变宽笔刷进行中笔画的预览
+ * 与钢笔的 currentPath 加 tailPath 相同，分成两段：流水线已输出的点不会再变，
+ * 算好权重后只追加一次；之后的原始采样点还会被平滑器移动，每帧只重建这一小段。
+ * 每帧的开销与新增点数和尾段长度有关，与笔画总长度无关（绘制本身除外）。
+ */
+final class WetStroke {
+
+    // 第 0 条为已输出的点，第 1 条为尾段：最后一个已输出点接上更晚的原始采样点
+    private final StrokeStore store = new StrokeStore(2, 256);
+    private final TouchSampleBuffer scratch = new TouchSampleBuffer();
+    private final BrushDynamics.Cursor settledCursor = new BrushDynamics.Cursor();
+    private final BrushDynamics.Cursor tailCursor = new BrushDynamics.Cursor();
+
+    // 已经写入第 0 条笔画的输出点数
+    private int settled;
+    private int color;
+    private float width;
+    private Brush brush;
+
+    /**
+     * 开始新的笔画，丢弃上一笔的预览
+     */
+    void reset() {
+        store.clear();
+        settled = 0;
+        settledCursor.reset();
+        brush = null;
+    }
+
+    /**
+     * 按流水线最新的输出和原始采样点更新预览
+     * @param output 流水线输出，可以为 null；只会在末尾追加
+     * @param raw 当前笔画的原始采样点
+     */
+    void update(TouchSampleBuffer output, TouchSampleBuffer raw, int color, float width, Brush brush) {
+        int outputSize = output == null ? 0 : output.size();
+        if (brush != this.brush || color != this.color || width != this.width || outputSize < settled) {
+            // 笔画中途换了颜色或笔刷，或者输出被重置，从头重建
+            reset();
+            this.color = color;
+            this.width = width;
+            this.brush = brush;
+        }
+        store.truncate(Math.min(store.size(), settled > 0 ? 1 : 0));
+        if (outputSize > settled) {
+            scratch.clear();
+            for (int i = settled; i < outputSize; i++) {
+                scratch.add(output.getX(i), output.getY(i), output.getTime(i));
+            }
+            BrushDynamics.apply(raw, scratch, brush, settledCursor);
+            if (settled == 0) {
+                store.beginStroke(color, width, brush.id);
+            } else {
+                store.reopenLast();
+            }
+            for (int i = 0; i < scratch.size(); i++) {
+                store.addPoint(scratch.getX(i), scratch.getY(i), scratch.getPressure(i), scratch.getTime(i));
+            }
+            store.endStroke();
+            settled = outputSize;
+        }
+
+        // 尾段从最后一个已输出点开始，与第 0 条首尾相接
+        scratch.clear();
+        long settledTime = Long.MIN_VALUE;
+        if (settled > 0) {
+            settledTime = output.getTime(settled - 1);
+            scratch.add(output.getX(settled - 1), output.getY(settled - 1), settledTime);
+        }
+        int first = raw.size();
+        while (first > 0 && raw.getTime(first - 1) > settledTime) {
+            first--;
+        }
+        for (int i = first; i < raw.size(); i++) {
+            scratch.add(raw.getX(i), raw.getY(i), raw.getTime(i));
+        }
+        if (scratch.size() > (settled > 0 ? 1 : 0)) {
+            tailCursor.set(settledCursor);
+            BrushDynamics.apply(raw, scratch, brush, tailCursor);
+            store.add(scratch, color, width, brush);
+        }
+    }
+
+    /**
+     * 预览由几条笔画组成
+     */
+    StrokeStore getStrokes() {
+        return store;
+    }
+
+    void draw(Canvas canvas, StrokePainter painter) {
+        for (int i = 0; i < store.size(); i++) {
+            painter.draw(canvas, store, i);
+        }
+    }
+}
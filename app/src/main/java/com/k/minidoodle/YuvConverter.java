@@ -0,0 +1,69 @@
+package com.k.minidoodle;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ARGB 像素转换为 YUV 4:2:0，供视频编码器输入
+ * 按 BT.601 有限范围（Y 16 到 235）转换，色度取 2×2 块的平均值。输出平面的行跨度和像素跨度由调用方给出
+ * （即 Image.Plane 的 getRowStride / getPixelStride），因此同时支持平面（I420）和半平面（NV12、NV21）排列。
+ * 透明度被忽略，调用方应先把画面合成到不透明背景上。不依赖 Android，不分配对象。
+ */
+final class YuvConverter {
+
+    private YuvConverter() {
+    }
+
+    /**
+     * @param argb 逐行排列的像素，行跨度为 width
+     * @param width 偶数
+     * @param height 偶数
+     * @param planes Y、U、V 三个平面，从各自的当前位置开始写入
+     * @param rowStrides 每个平面的行跨度（字节）
+     * @param pixelStrides 每个平面相邻像素的间隔（字节），半平面排列的 U、V 为 2
+     */
+    static void convert(int[] argb, int width, int height, ByteBuffer[] planes, int[] rowStrides,
+                        int[] pixelStrides) {
+        if ((width & 1) != 0 || (height & 1) != 0) {
+            throw new IllegalArgumentException("size " + width + "x" + height);
+        }
+        ByteBuffer yPlane = planes[0];
+        ByteBuffer uPlane = planes[1];
+        ByteBuffer vPlane = planes[2];
+        int yBase = yPlane.position();
+        int uBase = uPlane.position();
+        int vBase = vPlane.position();
+        int yRow = rowStrides[0];
+        int yPixel = pixelStrides[0];
+        for (int y = 0; y < height; y += 2) {
+            int uOffset = uBase + (y >> 1) * rowStrides[1];
+            int vOffset = vBase + (y >> 1) * rowStrides[2];
+            for (int x = 0; x < width; x += 2) {
+                int i = y * width + x;
+                int p00 = argb[i];
+                int p01 = argb[i + 1];
+                int p10 = argb[i + width];
+                int p11 = argb[i + width + 1];
+                int yOffset = yBase + y * yRow + x * yPixel;
+                yPlane.put(yOffset, luma(p00));
+                yPlane.put(yOffset + yPixel, luma(p01));
+                yPlane.put(yOffset + yRow, luma(p10));
+                yPlane.put(yOffset + yRow + yPixel, luma(p11));
+                // 2×2 块的平均颜色
+                int r = (((p00 >> 16) & 0xFF) + ((p01 >> 16) & 0xFF) + ((p10 >> 16) & 0xFF) + ((p11 >> 16) & 0xFF) + 2) >> 2;
+                int g = (((p00 >> 8) & 0xFF) + ((p01 >> 8) & 0xFF) + ((p10 >> 8) & 0xFF) + ((p11 >> 8) & 0xFF) + 2) >> 2;
+                int b = ((p00 & 0xFF) + (p01 & 0xFF) + (p10 & 0xFF) + (p11 & 0xFF) + 2) >> 2;
+                int c = x >> 1;
+                uPlane.put(uOffset + c * pixelStrides[1], (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128));
+                vPlane.put(vOffset + c * pixelStrides[2], (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128));
+            }
+        }
+    }
+
+    /** 一个像素的亮度，16 到 235 */
+    static byte luma(int color) {
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+        return (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+    }
+}
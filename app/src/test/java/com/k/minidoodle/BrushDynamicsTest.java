@@ -0,0 +1,103 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Brush 和 BrushDynamics 的本地单元测试
+ */
+public class BrushDynamicsTest {
+
+    @Test
+    public void weight_growsWithPressureAndShrinksWithSpeed() {
+        Brush ink = Brush.INK;
+
+        assertTrue(ink.weight(1f, 0f) > ink.weight(0.3f, 0f));
+        assertTrue(ink.weight(1f, 0f) > ink.weight(1f, 2f));
+        assertEquals(1f, ink.weight(1f, 0f), 0f);
+        assertEquals(0f, ink.weight(0f, 0f), 0f);
+        assertEquals(ink.weight(1f, 0f), ink.weight(5f, 0f), 0f);
+        // 钢笔忽略压力和速度
+        assertEquals(1f, Brush.PEN.weight(0.1f, 5f), 0f);
+    }
+
+    @Test
+    public void widthAndOpacity_stayWithinNominalRange() {
+        Brush airbrush = Brush.AIRBRUSH;
+
+        assertEquals(12f, airbrush.widthAt(12f, 1f), 1e-6f);
+        assertEquals(12f * airbrush.minWidthRatio, airbrush.widthAt(12f, 0f), 1e-6f);
+        assertEquals(1f, airbrush.opacityAt(1f), 1e-6f);
+        assertEquals(airbrush.minOpacity, airbrush.opacityAt(0f), 1e-6f);
+    }
+
+    @Test
+    public void get_fallsBackToPenForUnknownIds() {
+        for (int id = 0; id < Brush.count(); id++) {
+            assertEquals(id, Brush.get(id).id);
+        }
+        assertSame(Brush.PEN, Brush.get(Brush.count()));
+        assertSame(Brush.PEN, Brush.get(-1));
+    }
+
+    @Test
+    public void apply_interpolatesPressureByTimestamp() {
+        TouchSampleBuffer raw = new TouchSampleBuffer();
+        // 原地按压，速度为 0，只看压力
+        raw.add(0, 0, 0, 0.2f);
+        raw.add(0, 0, 10, 0.6f);
+        raw.add(0, 0, 20, 1.0f);
+        TouchSampleBuffer points = new TouchSampleBuffer();
+        points.add(0, 0, 0);
+        points.add(0, 0, 5);
+        points.add(0, 0, 15);
+        points.add(0, 0, 20);
+        points.add(0, 0, 30);
+
+        BrushDynamics.apply(raw, points, Brush.INK);
+
+        assertEquals(0.2f, points.getPressure(0), 1e-5f);
+        assertEquals(0.4f, points.getPressure(1), 1e-5f);
+        assertEquals(0.8f, points.getPressure(2), 1e-5f);
+        assertEquals(1.0f, points.getPressure(3), 1e-5f);
+        // 晚于最后一个原始点的输出点沿用最后的压力
+        assertEquals(1.0f, points.getPressure(4), 1e-5f);
+    }
+
+    @Test
+    public void apply_thinsFastSegments() {
+        // 同样的压力，前半段慢、后半段快
+        TouchSampleBuffer raw = new TouchSampleBuffer();
+        float x = 0;
+        for (int t = 0; t <= 200; t += 8) {
+            raw.add(x, 0, t, 1f);
+            x += t < 100 ? 1f : 20f;
+        }
+        TouchSampleBuffer points = new TouchSampleBuffer();
+        for (int i = 0; i < raw.size(); i++) {
+            points.add(raw.getX(i), raw.getY(i), raw.getTime(i));
+        }
+
+        BrushDynamics.apply(raw, points, Brush.INK);
+
+        float slow = points.getPressure(10);
+        float fast = points.getPressure(points.size() - 1);
+        assertTrue("slow=" + slow + " fast=" + fast, fast < slow * 0.5f);
+        for (int i = 0; i < points.size(); i++) {
+            assertTrue(points.getPressure(i) >= 0f && points.getPressure(i) <= 1f);
+        }
+    }
+
+    @Test
+    public void apply_withoutRawSamplesUsesFullPressure() {
+        TouchSampleBuffer points = new TouchSampleBuffer();
+        points.add(0, 0, 0);
+        points.add(1, 1, 1);
+
+        BrushDynamics.apply(new TouchSampleBuffer(), points, Brush.INK);
+
+        assertEquals(1f, points.getPressure(0), 0f);
+        assertEquals(1f, points.getPressure(1), 0f);
+    }
+}
@@ -0,0 +1,73 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColorFormat 的本地单元测试
+ */
+public class ColorFormatTest {
+
+    @Test
+    public void formatHex_matchesStringFormat() {
+        char[] out = new char[ColorFormat.MAX_HEX_LENGTH];
+        for (int rgb = 0; rgb <= 0xFFFFFF; rgb += 0x010307) {
+            int length = ColorFormat.formatHex(0xFF000000 | rgb, out);
+            assertEquals(String.format("%06X", rgb), new String(out, 0, length));
+        }
+    }
+
+    @Test
+    public void formatHex_includesAlphaWhenTranslucent() {
+        char[] out = new char[ColorFormat.MAX_HEX_LENGTH];
+
+        int length = ColorFormat.formatHex(0x8012C84D, out);
+
+        assertEquals("8012C84D", new String(out, 0, length));
+    }
+
+    @Test
+    public void parseHex_acceptsSixAndEightDigits() {
+        assertEquals(0xFF12C84DL, ColorFormat.parseHex("12c84d"));
+        assertEquals(0x8012C84DL, ColorFormat.parseHex("8012C84D"));
+        assertEquals(0x00000000L, ColorFormat.parseHex("00000000"));
+    }
+
+    @Test
+    public void parseHex_padsPartialInput() {
+        assertEquals(0xFFF00000L, ColorFormat.parseHex("F"));
+        assertEquals(0xFF12C800L, ColorFormat.parseHex("12C8"));
+    }
+
+    @Test
+    public void parseHex_rejectsInvalidInput() {
+        assertEquals(ColorFormat.INVALID, ColorFormat.parseHex(""));
+        assertEquals(ColorFormat.INVALID, ColorFormat.parseHex("12C84DG"));
+        assertEquals(ColorFormat.INVALID, ColorFormat.parseHex("12G84D"));
+        assertEquals(ColorFormat.INVALID, ColorFormat.parseHex("112233445"));
+    }
+
+    @Test
+    public void decimal_roundTripsAndClamps() {
+        char[] out = new char[ColorFormat.MAX_HEX_LENGTH];
+        for (int value = 0; value <= 359; value++) {
+            int length = ColorFormat.formatDecimal(value, out);
+            assertEquals(String.valueOf(value), new String(out, 0, length));
+            assertEquals(value, ColorFormat.parseDecimal(new String(out, 0, length), 359));
+        }
+        assertEquals(255, ColorFormat.parseDecimal("300", 255));
+        assertEquals(255, ColorFormat.parseDecimal("99999999999", 255));
+        assertEquals(0, ColorFormat.parseDecimal("", 255));
+        assertEquals(0, ColorFormat.parseDecimal("-4", 255));
+    }
+
+    @Test
+    public void contentEquals_comparesPrefix() {
+        char[] chars = {'1', '2', '8', 'x'};
+
+        assertTrue(ColorFormat.contentEquals("128", chars, 3));
+        assertFalse(ColorFormat.contentEquals("12", chars, 3));
+        assertFalse(ColorFormat.contentEquals("129", chars, 3));
+    }
+}
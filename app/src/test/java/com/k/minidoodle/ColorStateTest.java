@@ -0,0 +1,91 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColorState 的本地单元测试
+ */
+public class ColorStateTest {
+
+    @Test
+    public void setColor_derivesHsv() {
+        ColorState state = new ColorState();
+
+        state.setColor(0xFF00FF00, ColorState.SOURCE_NONE);
+
+        assertEquals(120, state.get(ColorState.CHANNEL_HUE));
+        assertEquals(100, state.get(ColorState.CHANNEL_SATURATION));
+        assertEquals(100, state.get(ColorState.CHANNEL_VALUE));
+        assertEquals(255, state.get(ColorState.CHANNEL_ALPHA));
+    }
+
+    @Test
+    public void hsvChannels_updateRgb() {
+        ColorState state = new ColorState();
+        state.set(ColorState.CHANNEL_VALUE, 100, ColorState.SOURCE_NONE);
+        state.set(ColorState.CHANNEL_SATURATION, 100, ColorState.SOURCE_NONE);
+
+        state.set(ColorState.CHANNEL_HUE, 240, ColorState.SOURCE_NONE);
+
+        assertEquals(0xFF0000FF, state.getColor());
+    }
+
+    @Test
+    public void hue_survivesPassingThroughGray() {
+        ColorState state = new ColorState();
+        state.setColor(0xFF3366CC, ColorState.SOURCE_NONE);
+        int hue = state.get(ColorState.CHANNEL_HUE);
+
+        state.set(ColorState.CHANNEL_SATURATION, 0, ColorState.SOURCE_NONE);
+        state.set(ColorState.CHANNEL_VALUE, 0, ColorState.SOURCE_NONE);
+        state.set(ColorState.CHANNEL_VALUE, 80, ColorState.SOURCE_NONE);
+        state.set(ColorState.CHANNEL_SATURATION, 75, ColorState.SOURCE_NONE);
+
+        assertEquals(hue, state.get(ColorState.CHANNEL_HUE));
+        assertEquals(0xFF3366CC, state.getColor());
+    }
+
+    @Test
+    public void rgbChannels_keepAlphaAndClamp() {
+        ColorState state = new ColorState();
+        state.set(ColorState.CHANNEL_ALPHA, 128, ColorState.SOURCE_NONE);
+
+        state.set(ColorState.CHANNEL_RED, 300, ColorState.SOURCE_NONE);
+
+        assertEquals(0x80FF0000, state.getColor());
+    }
+
+    @Test
+    public void listener_firesOnlyOnChangeWithSource() {
+        ColorState state = new ColorState();
+        final List<Integer> sources = new ArrayList<>();
+        state.setListener(new ColorState.Listener() {
+            @Override
+            public void onColorChanged(ColorState s, int source) {
+                sources.add(source);
+            }
+        });
+
+        state.set(ColorState.CHANNEL_RED, 10, 7);
+        state.set(ColorState.CHANNEL_RED, 10, 8);
+        state.setColor(state.getColor(), 9);
+
+        assertEquals(1, sources.size());
+        assertEquals(7, (int) sources.get(0));
+    }
+
+    @Test
+    public void hsvToRgb_roundTripsAllHues() {
+        ColorState state = new ColorState();
+        for (int hue = 0; hue < 360; hue++) {
+            int rgb = ColorState.hsvToRgb(hue, 1f, 1f);
+            state.setColor(0xFF000000 | rgb, ColorState.SOURCE_NONE);
+            assertEquals(hue, state.get(ColorState.CHANNEL_HUE), 1);
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.k.minidoodle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 文档格式和自动保存日志的本地单元测试
+ */
+public class DocumentFormatTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("minidoodle").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void roundTrip_preservesGeometryWithinQuantization() throws IOException {
+        StrokeStore store = randomStrokes(200, 50, new Random(3));
+        StrokeStore loaded = read(write(store));
+
+        assertEquals(store.size(), loaded.size());
+        assertEquals(store.totalPointCount(), loaded.totalPointCount());
+        for (int s = 0; s < store.size(); s++) {
+            assertEquals(store.getColor(s), loaded.getColor(s));
+            assertEquals(store.getWidth(s), loaded.getWidth(s), 0f);
+            assertEquals(store.getPointCount(s), loaded.getPointCount(s));
+        }
+        float tolerance = 0.5f / DocumentFormat.COORDINATE_SCALE;
+        for (int i = 0; i < store.totalPointCount(); i++) {
+            assertEquals(store.getX(i), loaded.getX(i), tolerance);
+            assertEquals(store.getY(i), loaded.getY(i), tolerance);
+        }
+    }
+
+    @Test
+    public void colors_areWrittenOnce() throws IOException {
+        StrokeStore store = new StrokeStore();
+        for (int i = 0; i < 1_000; i++) {
+            addLine(store, i % 2 == 0 ? 0xFF000000 : 0xFFFF0000, 0, 0, 0, 0, 1);
+        }
+        byte[] bytes = write(store);
+
+        // 两条颜色记录各 6 字节，每条单点笔画 2 字节记录头加 8 字节负载
+        assertEquals(DocumentFormat.HEADER_SIZE + 2 * 6 + 1_000 * 10, bytes.length);
+        StrokeStore loaded = read(bytes);
+        assertEquals(0xFFFF0000, loaded.getColor(999));
+    }
+
+    @Test
+    public void truncateRecord_dropsStrokes() throws IOException {
+        StrokeStore store = randomStrokes(10, 5, new Random(5));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DocumentWriter writer = new DocumentWriter(Channels.newChannel(out));
+        writer.writeDocument(store, 10);
+        writer.writeTruncate(4);
+        writer.writeStroke(store, 9);
+        writer.flush();
+
+        StrokeStore loaded = read(out.toByteArray());
+        assertEquals(5, loaded.size());
+        assertEquals(store.getColor(9), loaded.getColor(4));
+    }
+
+    @Test
+    public void truncatedTail_isIgnored() throws IOException {
+        StrokeStore store = randomStrokes(20, 30, new Random(9));
+        byte[] bytes = write(store);
+        StrokeStore full = read(bytes);
+
+        // 截掉最后一条记录的一部分，模拟写入中途进程被杀
+        StrokeStore loaded = read(Arrays.copyOf(bytes, bytes.length - 7));
+        assertEquals(full.size() - 1, loaded.size());
+    }
+
+    @Test
+    public void brushStrokes_preserveBrushAndWeights() throws IOException {
+        StrokeStore store = new StrokeStore();
+        addLine(store, 0xFF000000, 0, 0, 10, 10, 5);
+        store.beginStroke(0xFF00FF00, 20f, Brush.AIRBRUSH.id);
+        for (int i = 0; i < 40; i++) {
+            store.addPoint(i * 2, i, i / 39f);
+        }
+        store.endStroke();
+        StrokeStore loaded = read(write(store));
+
+        assertEquals(Brush.PEN.id, loaded.getBrush(0));
+        assertEquals(Brush.AIRBRUSH.id, loaded.getBrush(1));
+        assertEquals(1f, loaded.getWeight(0), 0f);
+        for (int i = loaded.getPointStart(1); i < loaded.totalPointCount(); i++) {
+            assertEquals(store.getWeight(i), loaded.getWeight(i), 0f);
+            assertEquals(store.getX(i), loaded.getX(i), 0.5f / DocumentFormat.COORDINATE_SCALE);
+        }
+    }
+
+    @Test
+    public void sampleTimes_roundTrip() throws IOException {
+        StrokeStore store = new StrokeStore();
+        addLine(store, 0xFF000000, 0, 0, 10, 10, 5);
+        long[] starts = {123_456_789L, 123_450_000L};
+        for (long start : starts) {
+            store.beginStroke(0xFF0000FF, 6f);
+            for (int i = 0; i < 30; i++) {
+                store.addPoint(i, i * 2, 1f, start + i * i);
+            }
+            store.endStroke();
+        }
+        StrokeStore loaded = read(write(store));
+
+        assertEquals(3, loaded.size());
+        assertFalse(loaded.hasTime(0));
+        for (int stroke = 1; stroke < 3; stroke++) {
+            assertEquals(starts[stroke - 1], loaded.getStartTime(stroke));
+            for (int i = loaded.getPointStart(stroke); i < loaded.getPointStart(stroke) + 30; i++) {
+                assertEquals(store.getTimeOffset(i), loaded.getTimeOffset(i));
+            }
+        }
+    }
+
+    @Test
+    public void layers_preserveAssignmentAndProperties() throws IOException {
+        StrokeStore store = new StrokeStore();
+        LayerTable layers = store.getLayers();
+        layers.add();
+        layers.add();
+        layers.setVisible(1, false);
+        layers.setAlpha(2, 128);
+        layers.setBlendMode(2, LayerTable.BLEND_MULTIPLY);
+        int[] assignment = {0, 2, 2, 1, 0, 2};
+        for (int i = 0; i < assignment.length; i++) {
+            addLine(store, 0xFF000000 | i, i, 0, i, 10, 3);
+            store.setLayer(i, assignment[i]);
+        }
+        StrokeStore loaded = read(write(store));
+
+        assertTrue(layers.contentEquals(loaded.getLayers()));
+        assertEquals(assignment.length, loaded.size());
+        for (int i = 0; i < assignment.length; i++) {
+            assertEquals(assignment[i], loaded.getLayer(i));
+        }
+    }
+
+    @Test
+    public void journal_recordsLayerChanges() throws IOException {
+        File file = new File(dir, "layers.mdoc");
+        StrokeStore store = randomStrokes(4, 5, new Random(5));
+        AutosaveJournal journal = new AutosaveJournal(file);
+        journal.rewrite(store, 4);
+        LayerTable layers = store.getLayers();
+        layers.add();
+        layers.setAlpha(1, 40);
+        journal.appendLayers(layers);
+        StrokeStore stroke = store.copy(3, 4);
+        stroke.setLayer(0, 1);
+        journal.append(stroke, 0);
+        // 之后的笔画回到图层 0
+        journal.append(store, 0);
+        journal.close();
+
+        StrokeStore loaded = journal.load();
+        assertEquals(2, loaded.getLayers().size());
+        assertEquals(40, loaded.getLayers().getAlpha(1));
+        assertEquals(6, loaded.size());
+        assertEquals(0, loaded.getLayer(3));
+        assertEquals(1, loaded.getLayer(4));
+        assertEquals(0, loaded.getLayer(5));
+    }
+
+    @Test
+    public void erasures_preserveVisibilityOrderAndGrouping() throws IOException {
+        StrokeStore store = randomStrokes(5, 10, new Random(13));
+        IntList erased = new IntList();
+        erased.add(1);
+        erased.add(3);
+        store.addErase(erased, false);
+        store.beginStroke(0xFF00FF00, 8f, Brush.INK.id);
+        store.addPoint(1, 2, 0.5f);
+        store.addPoint(3, 4, 1f);
+        int piece = store.endStroke();
+        store.setOrder(piece, 1);
+        store.setJoined(piece, true);
+        StrokeStore loaded = read(write(store));
+
+        assertEquals(7, loaded.size());
+        assertTrue(loaded.isErase(5));
+        assertFalse(loaded.isJoined(5));
+        assertFalse(loaded.isLive(1, 7));
+        assertFalse(loaded.isLive(3, 7));
+        assertTrue(loaded.isLive(6, 7));
+        assertTrue(loaded.isJoined(6));
+        assertEquals(1, loaded.getOrder(6));
+        assertEquals(Brush.INK.id, loaded.getBrush(6));
+        // 之后的普通笔画不受碎片属性影响
+        assertEquals(4, loaded.getOrder(4));
+    }
+
+    @Test
+    public void journal_undoOfEraseRestoresStrokes() throws IOException {
+        File file = new File(dir, "erase.mdoc");
+        StrokeStore store = randomStrokes(3, 5, new Random(17));
+        AutosaveJournal journal = new AutosaveJournal(file);
+        journal.rewrite(store, 3);
+        IntList erased = new IntList();
+        erased.add(0);
+        int record = store.addErase(erased, false);
+        journal.append(store.copy(record, record + 1), 0);
+        journal.close();
+
+        StrokeStore loaded = new AutosaveJournal(file).load();
+        assertEquals(4, loaded.size());
+        assertFalse(loaded.isLive(0, 4));
+
+        // 撤销擦除即截掉擦除记录
+        journal = new AutosaveJournal(file);
+        journal.rewrite(loaded, loaded.size());
+        journal.truncate(3);
+        journal.close();
+        loaded = new AutosaveJournal(file).load();
+        assertEquals(3, loaded.size());
+        assertTrue(loaded.isLive(0, 3));
+    }
+
+    @Test(expected = IOException.class)
+    public void newerVersion_isRejected() throws IOException {
+        byte[] bytes = write(randomStrokes(1, 2, new Random(1)));
+        bytes[DocumentFormat.MAGIC.length] = (byte) (DocumentFormat.VERSION + 1);
+        read(bytes);
+    }
+
+    @Test
+    public void journal_appendsTruncatesAndReloads() throws IOException {
+        File file = new File(dir, "autosave.mdoc");
+        StrokeStore store = randomStrokes(30, 10, new Random(11));
+
+        AutosaveJournal journal = new AutosaveJournal(file);
+        assertEquals(0, journal.load().size());
+        journal.rewrite(store, 10);
+        for (int i = 10; i < 20; i++) {
+            journal.append(store, i);
+        }
+        journal.truncate(15);
+        journal.append(store, 25);
+        journal.close();
+
+        StrokeStore loaded = new AutosaveJournal(file).load();
+        assertEquals(16, loaded.size());
+        assertEquals(store.getColor(14), loaded.getColor(14));
+        assertEquals(store.getColor(25), loaded.getColor(15));
+        long before = file.length();
+
+        // 重写后截断记录被压缩掉，内容不变
+        journal = new AutosaveJournal(file);
+        journal.rewrite(loaded, loaded.size());
+        journal.append(store, 26);
+        journal.close();
+        assertTrue(file.length() < before + 200);
+        assertFalse(new File(dir, "autosave.mdoc.tmp").exists());
+        assertEquals(17, new AutosaveJournal(file).load().size());
+    }
+
+    @Test
+    public void journal_compactsDiscardedStrokesAndKeepsAppending() throws IOException {
+        File file = new File(dir, "compact.mdoc");
+        StrokeStore store = randomStrokes(600, 5, new Random(19));
+        AutosaveJournal journal = new AutosaveJournal(file);
+        journal.rewrite(store, 100);
+        for (int i = 100; i < 600; i++) {
+            journal.append(store, i);
+        }
+        // 撤销 400 条：截掉的多于有效的 200 条
+        journal.truncate(300);
+        assertTrue(journal.hasDiscarded());
+        assertFalse(journal.needsCompaction());
+        journal.truncate(200);
+        assertTrue(journal.needsCompaction());
+        long before = file.length();
+
+        journal.compact();
+        assertFalse(journal.hasDiscarded());
+        assertTrue(file.length() < before / 2);
+        journal.append(store, 599);
+        journal.close();
+
+        StrokeStore loaded = new AutosaveJournal(file).load();
+        assertEquals(201, loaded.size());
+        assertEquals(store.getColor(199), loaded.getColor(199));
+        assertEquals(store.getColor(599), loaded.getColor(200));
+    }
+
+    @Test
+    public void writeDocument_encodesRandomWalksCompactly() throws IOException {
+        StrokeStore store = randomStrokes(2_000, 40, new Random(42));
+        byte[] bytes = write(store);
+        StrokeStore loaded = read(bytes);
+
+        // 载入耗时见 :benchmark 模块的 DocumentBenchmark
+        assertEquals(2_000, loaded.size());
+        assertEquals(store.totalPointCount(), loaded.totalPointCount());
+        double bytesPerPoint = (double) bytes.length / store.totalPointCount();
+        assertTrue("bytes/point " + bytesPerPoint, bytesPerPoint < 3);
+    }
+
+    private static byte[] write(StrokeStore store) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DocumentWriter writer = new DocumentWriter(Channels.newChannel(out));
+        writer.writeDocument(store, store.size());
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    private static StrokeStore read(byte[] bytes) throws IOException {
+        StrokeStore store = new StrokeStore();
+        new DocumentReader(Channels.newChannel(new ByteArrayInputStream(bytes))).read(store);
+        return store;
+    }
+
+    // 随机游走的笔画，相邻点间距 1~3 像素，颜色取自 8 种
+    private static StrokeStore randomStrokes(int strokes, int points, Random random) {
+        StrokeStore store = new StrokeStore();
+        for (int s = 0; s < strokes; s++) {
+            store.beginStroke(0xFF000000 | random.nextInt(8) * 0x202020, 4 + random.nextInt(20));
+            float x = random.nextFloat() * 1080;
+            float y = random.nextFloat() * 1920;
+            for (int i = 0; i < points; i++) {
+                x += random.nextFloat() * 4 - 2;
+                y += random.nextFloat() * 4 - 2;
+                store.addPoint(x, y);
+            }
+            store.endStroke();
+        }
+        return store;
+    }
+
+    private static void addLine(StrokeStore store, int color, float x0, float y0,
+                                float x1, float y1, int points) {
+        store.beginStroke(color, 12f);
+        for (int i = 0; i < points; i++) {
+            float t = points == 1 ? 0 : (float) i / (points - 1);
+            store.addPoint(x0 + (x1 - x0) * t, y0 + (y1 - y0) * t);
+        }
+        store.endStroke();
+    }
+}
@@ -0,0 +1,112 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ExportLayout 的本地单元测试
+ */
+public class ExportLayoutTest {
+
+    @Test
+    public void default_exportsWholeCanvas() {
+        ExportLayout layout = ExportLayout.compute(strokeAt(100, 200, 4), 1080, 2400, ExportOptions.DEFAULT);
+
+        assertEquals(0f, layout.left, 0f);
+        assertEquals(0f, layout.top, 0f);
+        assertEquals(1f, layout.scale, 0f);
+        assertEquals(1080, layout.width);
+        assertEquals(2400, layout.height);
+        assertFalse(layout.strips);
+    }
+
+    @Test
+    public void crop_coversInkWithMargin() {
+        StrokeStore strokes = strokeAt(100, 200, 4);
+        strokes.beginStroke(0xFF000000, 10);
+        strokes.addPoint(300, 250);
+        strokes.addPoint(310, 400);
+        strokes.endStroke();
+        ExportOptions options = new ExportOptions(ExportOptions.FORMAT_WEBP_LOSSY, 90, 0, true);
+
+        ExportLayout layout = ExportLayout.compute(strokes, 1080, 2400, options);
+
+        // 第一笔线宽 4，墨迹外扩 3；第二笔线宽 10，墨迹外扩 6
+        assertEquals(100 - 3 - ExportLayout.CROP_MARGIN, layout.left, 0f);
+        assertEquals(200 - 3 - ExportLayout.CROP_MARGIN, layout.top, 0f);
+        assertEquals(310 + 6 + ExportLayout.CROP_MARGIN - layout.left, layout.width, 0f);
+        assertEquals(400 + 6 + ExportLayout.CROP_MARGIN - layout.top, layout.height, 0f);
+    }
+
+    @Test
+    public void crop_ignoresHiddenLayersAndFallsBackToCanvas() {
+        StrokeStore strokes = strokeAt(100, 200, 4);
+        strokes.getLayers().add();
+        strokes.setLayer(0, 1);
+        strokes.getLayers().setVisible(1, false);
+        ExportOptions options = new ExportOptions(ExportOptions.FORMAT_PNG, 100, 0, true);
+
+        ExportLayout layout = ExportLayout.compute(strokes, 640, 480, options);
+
+        assertEquals(640, layout.width);
+        assertEquals(480, layout.height);
+    }
+
+    @Test
+    public void maxSize_limitsLongSide() {
+        ExportOptions options = new ExportOptions(ExportOptions.FORMAT_JPEG, 80, 512, false);
+
+        ExportLayout layout = ExportLayout.compute(new StrokeStore(), 1080, 2400, options);
+
+        assertEquals(512, layout.height);
+        assertEquals(230, layout.width);
+        assertEquals(2400 / 512f, 1 / layout.scale, 1e-3f);
+        assertEquals(2400f, layout.toDocumentY(512), 1e-2f);
+    }
+
+    @Test
+    public void hugePng_isEncodedInStrips() {
+        ExportLayout layout = ExportLayout.compute(new StrokeStore(), 4000, 3000, ExportOptions.DEFAULT);
+
+        assertTrue(layout.strips);
+        int rows = 0;
+        for (int i = 0; i < layout.getStripCount(); i++) {
+            assertEquals(rows, layout.getStripTop(i));
+            assertTrue(layout.getStripHeight(i) <= ExportLayout.STRIP_HEIGHT);
+            rows += layout.getStripHeight(i);
+        }
+        assertEquals(3000, rows);
+    }
+
+    @Test
+    public void hugeLossyExport_isDownscaledToFitOneBitmap() {
+        ExportOptions options = new ExportOptions(ExportOptions.FORMAT_WEBP_LOSSY, 90, 0, false);
+
+        ExportLayout layout = ExportLayout.compute(new StrokeStore(), 8000, 8000, options);
+
+        assertFalse(layout.strips);
+        assertTrue((long) layout.width * layout.height <= ExportLayout.MAX_BITMAP_PIXELS);
+        assertEquals(4096, layout.width, 1);
+    }
+
+    @Test
+    public void vectorExport_keepsFullSize() {
+        ExportOptions options = new ExportOptions(ExportOptions.FORMAT_SVG, 100, 0, false);
+
+        ExportLayout layout = ExportLayout.compute(new StrokeStore(), 8000, 8000, options);
+
+        assertFalse(layout.strips);
+        assertEquals(1f, layout.scale, 0f);
+        assertEquals(8000, layout.width);
+    }
+
+    private static StrokeStore strokeAt(float x, float y, float width) {
+        StrokeStore strokes = new StrokeStore();
+        strokes.beginStroke(0xFF000000, width);
+        strokes.addPoint(x, y);
+        strokes.addPoint(x + 50, y + 20);
+        strokes.endStroke();
+        return strokes;
+    }
+}
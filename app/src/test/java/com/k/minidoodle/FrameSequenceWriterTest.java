@@ -0,0 +1,70 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * FrameSequenceWriter 的本地单元测试
+ */
+public class FrameSequenceWriterTest {
+
+    @Test
+    public void frames_areWrittenAsNumberedPngs() throws IOException {
+        int width = 6;
+        int height = 4;
+        int[] argb = new int[width * height];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FrameSequenceWriter writer = new FrameSequenceWriter(out, width, height, 30)) {
+            for (int frame = 0; frame < 3; frame++) {
+                Arrays.fill(argb, 0xFF000000 | frame * 0x404040);
+                writer.writeFrame(argb, frame * 33_333L);
+            }
+            writer.finish();
+            assertEquals(3, writer.getFrameCount());
+        }
+
+        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+        for (int frame = 0; frame < 3; frame++) {
+            ZipEntry entry = zip.getNextEntry();
+            assertNotNull(entry);
+            assertEquals(String.format("%05d.png", frame), entry.getName());
+            byte[] header = new byte[24];
+            int n = 0;
+            while (n < header.length) {
+                n += zip.read(header, n, header.length - n);
+            }
+            // PNG 签名和 IHDR 中的尺寸
+            assertEquals((byte) 0x89, header[0]);
+            assertEquals('P', header[1]);
+            assertEquals(width, header[19]);
+            assertEquals(height, header[23]);
+        }
+        assertNull(zip.getNextEntry());
+    }
+
+    @Test
+    public void close_leavesOutputOpen() throws IOException {
+        final boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        FrameSequenceWriter writer = new FrameSequenceWriter(out, 2, 2, 30);
+        writer.writeFrame(new int[4], 0);
+        writer.finish();
+        writer.close();
+
+        assertFalse(closed[0]);
+        assertTrue(out.size() > 0);
+    }
+}
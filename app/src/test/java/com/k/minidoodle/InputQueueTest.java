@@ -0,0 +1,161 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * InputQueue 的本地单元测试：容量、满队列、不可丢弃的记录和跨线程的顺序与完整性
+ */
+public class InputQueueTest {
+
+    // 编译期常量，不会加载依赖 Android 的 RenderThread
+    private static final int DOWN = RenderThread.OP_DOWN;
+    private static final int MOVE = RenderThread.OP_MOVE;
+    private static final int UP = RenderThread.OP_UP;
+    private static final int UNDO = RenderThread.OP_UNDO;
+    private static final int CLEAR = RenderThread.OP_CLEAR;
+
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(8, new InputQueue(5).capacity());
+        assertEquals(8, new InputQueue(8).capacity());
+    }
+
+    @Test
+    public void offer_rejectsWhenFullUntilDrained() {
+        InputQueue queue = new InputQueue(4, 0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(1, i, 0, i, i));
+        }
+        assertFalse(queue.offer(1, 4, 0, 4, 4));
+        assertEquals(4, queue.size());
+
+        Recorder recorder = new Recorder(8);
+        assertEquals(4, queue.drain(recorder));
+        assertTrue(queue.offer(2, 5, 6, 7, 8));
+        assertEquals(1, queue.drain(recorder));
+        assertEquals(0, queue.size());
+        assertEquals(2, recorder.ops[4]);
+        assertEquals(5f, recorder.xs[4], 0f);
+        assertEquals(6f, recorder.ys[4], 0f);
+        assertEquals(7L, recorder.times[4]);
+        assertEquals(8, recorder.args[4]);
+    }
+
+    @Test
+    public void offer_leavesReserveForControlRecords() {
+        InputQueue queue = new InputQueue(8, 2);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(queue.offer(MOVE, i, 0, i, i));
+        }
+        assertFalse(queue.offer(MOVE, 6, 0, 6, 6));
+        queue.put(UP, 7, 0, 7, 7);
+        queue.put(UNDO, 0, 0, 8, 8);
+        assertEquals(8, queue.size());
+    }
+
+    @Test
+    public void put_neverDropsWhenFullAndKeepsOrder() {
+        InputQueue queue = new InputQueue(4, 1);
+        queue.put(DOWN, 0, 0, 0, 0);
+        for (int i = 1; i < 3; i++) {
+            assertTrue(queue.offer(MOVE, i, 0, i, i));
+        }
+        // 环形缓冲区已满：抬起和之后的编辑进入溢出区，此时的采样被丢弃
+        assertFalse(queue.offer(MOVE, 3, 0, 3, 3));
+        queue.put(UP, 4, 0, 4, 4);
+        queue.put(UNDO, 0, 0, 5, 5);
+        assertFalse(queue.offer(MOVE, 6, 0, 6, 6));
+        queue.put(CLEAR, 0, 0, 7, 7);
+        assertEquals(6, queue.size());
+
+        Recorder recorder = new Recorder(16);
+        assertEquals(6, queue.drain(recorder));
+        int[] expected = {DOWN, MOVE, MOVE, UP, UNDO, CLEAR};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], recorder.ops[i]);
+        }
+        assertEquals(7, recorder.args[5]);
+        // 溢出区取空后重新使用环形缓冲区
+        assertTrue(queue.offer(MOVE, 8, 0, 8, 8));
+        queue.put(UP, 9, 0, 9, 9);
+        assertEquals(2, queue.drain(recorder));
+        assertEquals(UP, recorder.ops[7]);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void concurrentProducer_deliversEveryControlRecordInOrder() throws Exception {
+        final int total = 500_000;
+        final InputQueue queue = new InputQueue(256);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // 每 8 条中有 1 条不可丢弃的记录，其余为可丢弃的采样
+                for (int i = 0; i < total; i++) {
+                    if ((i & 7) == 0) {
+                        queue.put(UP, i, -i, i, i);
+                    } else {
+                        queue.offer(MOVE, i, -i, i, i);
+                    }
+                }
+            }
+        });
+
+        // state: 上一条记录的序号、不可丢弃的记录数、错误数
+        final long[] state = {-1, 0, 0};
+        InputQueue.Sink checker = new InputQueue.Sink() {
+            @Override
+            public void onInput(int op, float x, float y, long time, int arg) {
+                if (arg <= state[0] || time != arg || x != (float) arg || y != (float) -arg
+                        || op != ((arg & 7) == 0 ? UP : MOVE)) {
+                    state[2]++;
+                }
+                if (op == UP) {
+                    state[1]++;
+                }
+                state[0] = arg;
+            }
+        };
+        producer.start();
+        while (producer.isAlive() || queue.size() > 0) {
+            if (queue.drain(checker) == 0) {
+                Thread.yield();
+            }
+        }
+        producer.join();
+        queue.drain(checker);
+
+        assertEquals(0, state[2]);
+        assertEquals(total / 8, state[1]);
+        assertEquals(0, queue.size());
+    }
+
+    private static class Recorder implements InputQueue.Sink {
+        final int[] ops;
+        final float[] xs;
+        final float[] ys;
+        final long[] times;
+        final int[] args;
+        int count;
+
+        Recorder(int capacity) {
+            ops = new int[capacity];
+            xs = new float[capacity];
+            ys = new float[capacity];
+            times = new long[capacity];
+            args = new int[capacity];
+        }
+
+        @Override
+        public void onInput(int op, float x, float y, long time, int arg) {
+            ops[count] = op;
+            xs[count] = x;
+            ys[count] = y;
+            times[count] = time;
+            args[count] = arg;
+            count++;
+        }
+    }
+}
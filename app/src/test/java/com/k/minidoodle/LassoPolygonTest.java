@@ -0,0 +1,144 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LassoPolygon 的本地单元测试
+ */
+public class LassoPolygonTest {
+
+    @Test
+    public void contains_square() {
+        LassoPolygon lasso = polygon(0, 0, 100, 0, 100, 100, 0, 100);
+
+        assertTrue(lasso.contains(50, 50));
+        assertTrue(lasso.contains(1, 99));
+        assertFalse(lasso.contains(-1, 50));
+        assertFalse(lasso.contains(50, 101));
+        assertFalse(lasso.contains(150, 50));
+    }
+
+    @Test
+    public void contains_excludesConcaveNotch() {
+        // U 形：中间的缺口不属于内部
+        LassoPolygon lasso = polygon(0, 0, 30, 0, 30, 70, 70, 70, 70, 0, 100, 0, 100, 100, 0, 100);
+
+        assertTrue(lasso.contains(15, 20));
+        assertTrue(lasso.contains(85, 20));
+        assertTrue(lasso.contains(50, 85));
+        assertFalse(lasso.contains(50, 20));
+    }
+
+    @Test
+    public void contains_selfIntersectionUsesEvenOdd() {
+        // 一笔画成的五角星：中心的五边形被绕了两圈，算外部
+        TouchSampleBuffer star = new TouchSampleBuffer();
+        for (int i = 0; i < 5; i++) {
+            double t = Math.toRadians(-90 + 144 * i);
+            star.add((float) (100 + Math.cos(t) * 100), (float) (100 + Math.sin(t) * 100), i);
+        }
+        LassoPolygon lasso = new LassoPolygon();
+        lasso.set(star);
+
+        assertTrue(lasso.contains(100, 15));
+        assertFalse(lasso.contains(100, 100));
+        assertFalse(lasso.contains(10, 10));
+    }
+
+    @Test
+    public void contains_matchesBruteForceOnLongLasso() {
+        Random random = new Random(5);
+        TouchSampleBuffer points = new TouchSampleBuffer();
+        for (int i = 0; i < 600; i++) {
+            double t = Math.PI * 2 * i / 600;
+            double r = 200 + 60 * Math.sin(7 * t) + random.nextGaussian() * 4;
+            points.add((float) (300 + Math.cos(t) * r), (float) (300 + Math.sin(t) * r), i);
+        }
+        LassoPolygon lasso = new LassoPolygon();
+        lasso.set(points);
+
+        for (int i = 0; i < 20_000; i++) {
+            float x = random.nextFloat() * 600;
+            float y = random.nextFloat() * 600;
+            assertEquals("(" + x + ", " + y + ")", bruteForce(points, x, y), lasso.contains(x, y));
+        }
+    }
+
+    @Test
+    public void set_reusesAfterShrinking() {
+        LassoPolygon lasso = polygon(0, 0, 1000, 0, 1000, 1000, 500, 1200, 0, 1000);
+        lasso.set(buffer(0, 0, 10, 0, 10, 10));
+
+        assertEquals(3, lasso.size());
+        assertTrue(lasso.contains(8, 2));
+        assertFalse(lasso.contains(2, 8));
+        assertFalse(lasso.contains(500, 500));
+    }
+
+    @Test
+    public void degenerateLasso_containsNothing() {
+        assertTrue(polygon(0, 0, 100, 100).isEmpty());
+        assertTrue(polygon(0, 50, 50, 50, 100, 50).isEmpty());
+        assertFalse(polygon(0, 50, 50, 50, 100, 50).contains(50, 50));
+        assertFalse(new LassoPolygon().contains(0, 0));
+    }
+
+    @Test
+    public void covers_needsHalfOfThePoints() {
+        LassoPolygon lasso = polygon(0, 0, 100, 0, 100, 100, 0, 100);
+        StrokeStore store = new StrokeStore();
+        int inside = addLine(store, 10, 50, 90, 50);
+        int mostlyInside = addLine(store, 40, 50, 140, 50);
+        int mostlyOutside = addLine(store, 70, 50, 170, 50);
+        int outside = addLine(store, 200, 0, 300, 100);
+        IntList erased = new IntList();
+        erased.add(inside);
+        int erase = store.addErase(erased, false);
+
+        assertTrue(lasso.covers(store, inside));
+        assertTrue(lasso.covers(store, mostlyInside));
+        assertFalse(lasso.covers(store, mostlyOutside));
+        assertFalse(lasso.covers(store, outside));
+        assertFalse(lasso.covers(store, erase));
+    }
+
+    private static boolean bruteForce(TouchSampleBuffer points, float x, float y) {
+        boolean inside = false;
+        int n = points.size();
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            float yi = points.getY(i);
+            float yj = points.getY(j);
+            if ((yi > y) != (yj > y) && x < points.getX(i)
+                    + (points.getX(j) - points.getX(i)) * (y - yi) / (yj - yi)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static int addLine(StrokeStore store, float x0, float y0, float x1, float y1) {
+        store.beginStroke(0xFF000000, 4f);
+        for (int i = 0; i <= 10; i++) {
+            store.addPoint(x0 + (x1 - x0) * i / 10, y0 + (y1 - y0) * i / 10);
+        }
+        return store.endStroke();
+    }
+
+    private static LassoPolygon polygon(float... xy) {
+        LassoPolygon lasso = new LassoPolygon();
+        lasso.set(buffer(xy));
+        return lasso;
+    }
+
+    private static TouchSampleBuffer buffer(float... xy) {
+        TouchSampleBuffer points = new TouchSampleBuffer();
+        for (int i = 0; i < xy.length; i += 2) {
+            points.add(xy[i], xy[i + 1], i);
+        }
+        return points;
+    }
+}
@@ -0,0 +1,125 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LatencyHistogram 和 DrawingMetrics 的本地单元测试
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_areContiguousWithBoundedError() {
+        long previousUpper = -1;
+        for (int i = 0; i < 64 * 16 - 64; i++) {
+            long upper = LatencyHistogram.bucketUpperBound(i);
+            long lower = previousUpper + 1;
+            assertEquals(i, LatencyHistogram.bucketIndex(lower));
+            assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            assertTrue("bucket " + i, upper - lower <= Math.max(0, lower / 16));
+            previousUpper = upper;
+            if (upper == Long.MAX_VALUE) {
+                break;
+            }
+        }
+        assertEquals(Long.MAX_VALUE, previousUpper);
+    }
+
+    @Test
+    public void percentiles_matchUniformData() {
+        LatencyHistogram histogram = new LatencyHistogram("test", "ns");
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000L, histogram.getMax());
+        assertEquals(50_000_500.0, histogram.getMean(), 1);
+        assertEquals(50_000_000, histogram.getPercentile(50), 50_000_000 / 16);
+        assertEquals(99_000_000, histogram.getPercentile(99), 99_000_000 / 16);
+        assertEquals(100_000_000L, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void record_isSafeAcrossThreads() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram("test", "ns");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 100_000; i++) {
+                        histogram.record(random.nextInt(1_000_000));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400_000, histogram.getCount());
+        assertTrue(histogram.getMax() < 1_000_000);
+    }
+
+    @Test
+    public void record_allocatesNothing() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        DrawingMetrics metrics = new DrawingMetrics();
+        // 预热，让 JIT 编译记录路径
+        recordFrames(metrics, 100_000);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        recordFrames(metrics, 100_000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("allocated " + allocated + " bytes", allocated < 1_024);
+    }
+
+    @Test
+    public void dump_reportsEveryHistogram() {
+        DrawingMetrics metrics = new DrawingMetrics();
+        metrics.drawTime.record(2_000_000);
+        metrics.recordHistory(12, 4_096);
+        StringWriter out = new StringWriter();
+        metrics.dump(new PrintWriter(out));
+
+        String report = out.toString();
+        assertTrue(report, report.startsWith("strokes=12 frames=0"));
+        assertTrue(report, report.contains("draw             n=1 "));
+        assertTrue(report, report.contains("p50=2.000"));
+        assertTrue(report, report.contains("history-memory"));
+        assertTrue(report, report.contains("export"));
+    }
+
+    private static void recordFrames(DrawingMetrics metrics, int frames) {
+        for (int i = 0; i < frames; i++) {
+            long start = System.nanoTime();
+            metrics.touchTime.recordSince(start);
+            metrics.recordFrame(start, start - 1_000);
+        }
+    }
+}
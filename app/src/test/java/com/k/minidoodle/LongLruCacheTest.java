@@ -0,0 +1,126 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LongLruCache 的本地单元测试
+ */
+public class LongLruCacheTest {
+
+    /** 记录被移除的键 */
+    private static class RecordingCache extends LongLruCache<String> {
+        final List<Long> removed = new ArrayList<>();
+
+        RecordingCache(long maxWeight) {
+            super(maxWeight);
+        }
+
+        @Override
+        protected void onRemoved(long key, String value) {
+            removed.add(key);
+        }
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedFirst() {
+        RecordingCache cache = new RecordingCache(3);
+        cache.put(1, "a", 1);
+        cache.put(2, "b", 1);
+        cache.put(3, "c", 1);
+        // 访问 1 之后，最久未用的是 2
+        assertEquals("a", cache.get(1));
+        cache.put(4, "d", 1);
+
+        assertNull(cache.get(2));
+        assertEquals("a", cache.get(1));
+        assertEquals("c", cache.get(3));
+        assertEquals("d", cache.get(4));
+        assertEquals(3, cache.size());
+        assertEquals(3, cache.weight());
+        assertEquals(1, cache.removed.size());
+        assertEquals(2L, (long) cache.removed.get(0));
+    }
+
+    @Test
+    public void put_keepsTotalWeightWithinLimit() {
+        RecordingCache cache = new RecordingCache(100);
+        cache.put(1, "a", 40);
+        cache.put(2, "b", 40);
+        cache.put(3, "c", 40);
+
+        assertEquals(80, cache.weight());
+        assertNull(cache.get(1));
+
+        // 单个超过上限的值放入后立即被淘汰
+        cache.put(4, "d", 200);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void put_replacesExistingValue() {
+        RecordingCache cache = new RecordingCache(100);
+        cache.put(7, "a", 10);
+        cache.put(7, "b", 30);
+
+        assertEquals("b", cache.get(7));
+        assertEquals(1, cache.size());
+        assertEquals(30, cache.weight());
+        assertEquals(1, cache.removed.size());
+    }
+
+    @Test
+    public void clear_removesEverything() {
+        RecordingCache cache = new RecordingCache(100);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "v" + i, 1);
+        }
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertEquals(10, cache.removed.size());
+        for (int i = 0; i < 10; i++) {
+            assertNull(cache.get(i));
+        }
+    }
+
+    @Test
+    public void randomOperations_matchReferenceLru() {
+        final int capacity = 64;
+        RecordingCache cache = new RecordingCache(capacity);
+        // LinkedHashMap 按访问顺序排列，作为参照实现
+        LinkedHashMap<Long, String> reference = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > capacity;
+            }
+        };
+        Random random = new Random(3);
+        for (int i = 0; i < 200_000; i++) {
+            // 键集中在小范围内，频繁命中、替换和淘汰；高位混入随机位检验哈希
+            long key = random.nextInt(256) | ((long) random.nextInt(4) << 40);
+            if (random.nextBoolean()) {
+                String value = "v" + i;
+                cache.put(key, value, 1);
+                reference.put(key, value);
+            } else {
+                assertEquals(reference.get(key), cache.get(key));
+            }
+            assertEquals(reference.size(), cache.size());
+        }
+        Map<Long, String> remaining = new HashMap<>(reference);
+        for (Map.Entry<Long, String> entry : remaining.entrySet()) {
+            assertEquals(entry.getValue(), cache.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * MemoryCap 的本地单元测试
+ */
+public class MemoryCapTest {
+
+    /** 每一级回收释放固定的字节数，并记下执行过的级别 */
+    private static class FakeTarget implements MemoryCap.Target {
+        long bytes;
+        final long[] freedPerStage;
+        final List<Integer> stages = new ArrayList<>();
+
+        FakeTarget(long bytes, long... freedPerStage) {
+            this.bytes = bytes;
+            this.freedPerStage = freedPerStage;
+        }
+
+        @Override
+        public long getByteCount() {
+            return bytes;
+        }
+
+        @Override
+        public boolean trim(int stage, long limit) {
+            if (stage >= freedPerStage.length) {
+                return false;
+            }
+            stages.add(stage);
+            bytes -= Math.min(bytes, freedPerStage[stage]);
+            return true;
+        }
+    }
+
+    @Test
+    public void enforce_underLimitDoesNothing() {
+        FakeTarget target = new FakeTarget(1_000, 500);
+        MemoryCap cap = new MemoryCap(1_000);
+
+        assertEquals(0, cap.enforce(target));
+        assertTrue(target.stages.isEmpty());
+        assertEquals(1_000, target.bytes);
+    }
+
+    @Test
+    public void enforce_trimsStageByStageUntilUnderLimit() {
+        FakeTarget target = new FakeTarget(1_000, 100, 300, 400);
+        MemoryCap cap = new MemoryCap(700);
+
+        // 第 0 级后仍有 900，第 1 级后为 600，第 2 级不再执行
+        assertEquals(2, cap.enforce(target));
+        assertEquals(List.of(0, 1), target.stages);
+        assertEquals(600, target.bytes);
+    }
+
+    @Test
+    public void enforce_stopsWhenStagesRunOut() {
+        FakeTarget target = new FakeTarget(1_000, 100, 100);
+        MemoryCap cap = new MemoryCap(100);
+
+        assertEquals(2, cap.enforce(target));
+        assertEquals(800, target.bytes);
+        // 再次超出时重新从最便宜的一级开始
+        target.bytes = 900;
+        assertEquals(2, cap.enforce(target));
+        assertEquals(List.of(0, 1, 0, 1), target.stages);
+    }
+
+    @Test
+    public void enforce_limitsStageCount() {
+        FakeTarget target = new FakeTarget(1_000, 100, 100, 100);
+        MemoryCap cap = new MemoryCap(500);
+
+        assertEquals(1, cap.enforce(target, 1));
+        assertEquals(List.of(0), target.stages);
+        assertEquals(900, target.bytes);
+    }
+
+    @Test
+    public void setLimit_appliesOnNextEnforce() {
+        FakeTarget target = new FakeTarget(1_000, 600);
+        MemoryCap cap = new MemoryCap(MemoryCap.UNLIMITED);
+        assertEquals(0, cap.enforce(target));
+
+        cap.setLimit(500);
+        assertEquals(500, cap.getLimit());
+        assertEquals(1, cap.enforce(target));
+        assertEquals(400, target.bytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setLimit_rejectsNonPositive() {
+        new MemoryCap(0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * PngStreamEncoder 的本地单元测试，用 JDK 自带的 PNG 解码器校验输出
+ */
+public class PngStreamEncoderTest {
+
+    @Test
+    public void rgba_decodesToSamePixels() throws IOException {
+        int width = 37;
+        int height = 23;
+        int[] pixels = new int[width * height];
+        Random random = new Random(7);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        BufferedImage image = decode(encode(pixels, width, height, true));
+
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(pixels[y * width + x], image.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void rgb_dropsAlpha() throws IOException {
+        int width = 300;
+        int height = 4;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | (i * 0x010203 & 0xFFFFFF);
+        }
+        BufferedImage image = decode(encode(pixels, width, height, false));
+
+        assertFalse(image.getColorModel().hasAlpha());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(pixels[y * width + x], image.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void blankCanvas_compressesToSmallFile() throws IOException {
+        int width = 1080;
+        int height = 2400;
+        int[] row = new int[width];
+        Arrays.fill(row, 0xFFFFFFFF);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PngStreamEncoder encoder = new PngStreamEncoder(out, width, height, false,
+                Deflater.DEFAULT_COMPRESSION)) {
+            for (int y = 0; y < height; y++) {
+                encoder.writeRow(row, 0);
+            }
+            encoder.finish();
+        }
+
+        assertTrue("size " + out.size(), out.size() < 16 * 1024);
+        assertEquals(0xFFFFFFFF, decode(out.toByteArray()).getRGB(500, 2000));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void finish_rejectsMissingRows() throws IOException {
+        try (PngStreamEncoder encoder = new PngStreamEncoder(new ByteArrayOutputStream(), 4, 4, true,
+                Deflater.BEST_SPEED)) {
+            encoder.writeRow(new int[4], 0);
+            encoder.finish();
+        }
+    }
+
+    private static byte[] encode(int[] pixels, int width, int height, boolean alpha) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PngStreamEncoder encoder = new PngStreamEncoder(out, width, height, alpha, Deflater.BEST_SPEED)) {
+            for (int y = 0; y < height; y++) {
+                encoder.writeRow(pixels, y * width);
+            }
+            encoder.finish();
+        }
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull("not a valid PNG", image);
+        return image;
+    }
+}
@@ -0,0 +1,340 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * ShapeRecognizer 的本地单元测试
+ * 合成笔画模拟手绘：按流水线输出的点距采样，叠加高频抖动和低频摆动，起点随机，闭合图形首尾有缺口或画过头。
+ */
+public class ShapeRecognizerTest {
+
+    private static final String[] NAMES = {"freehand", "line", "polyline", "ellipse", "rectangle"};
+
+    @Test
+    public void straightLine_becomesTwoPoints() {
+        TouchSampleBuffer points = new TouchSampleBuffer();
+        for (int i = 0; i <= 50; i++) {
+            points.add(10 + i * 4, 20 + i * 2 + (i % 2), 1_000 + i * 8, 0.5f);
+        }
+        ShapeRecognizer recognizer = new ShapeRecognizer();
+
+        assertEquals(ShapeRecognizer.SHAPE_LINE, recognizer.recognize(points));
+        TouchSampleBuffer out = new TouchSampleBuffer();
+        assertEquals(2, recognizer.writeShape(out));
+        assertEquals(10, out.getX(0), 1f);
+        assertEquals(210, out.getX(1), 1f);
+        // 保留原来的起止时间和平均权重
+        assertEquals(1_000, out.getTime(0));
+        assertEquals(1_400, out.getTime(1));
+        assertEquals(0.5f, out.getPressure(1), 1e-6f);
+    }
+
+    @Test
+    public void nearlyHorizontalLine_isLevelled() {
+        TouchSampleBuffer points = new TouchSampleBuffer();
+        for (int i = 0; i <= 40; i++) {
+            points.add(i * 5, 100 + i * 0.2f, 0);
+        }
+        ShapeRecognizer recognizer = new ShapeRecognizer();
+
+        assertEquals(ShapeRecognizer.SHAPE_LINE, recognizer.recognize(points));
+        assertEquals(recognizer.getVertexY(0), recognizer.getVertexY(1), 1e-3f);
+        assertEquals(104, recognizer.getVertexY(0), 1e-3f);
+        assertEquals(200, recognizer.getVertexX(1) - recognizer.getVertexX(0), 0.5f);
+    }
+
+    @Test
+    public void rectangle_fitsCenterSizeAndStartCorner() {
+        StrokeStore store = new StrokeStore();
+        store.beginStroke(0xFF000000, 4f);
+        // 从右上角开始逆时针（屏幕上）画，最后回到起点
+        float[][] corners = {{300, 100}, {100, 100}, {100, 250}, {300, 250}, {300, 100}};
+        long time = 5_000;
+        for (int c = 0; c < 4; c++) {
+            for (int i = 0; i < 20; i++) {
+                float t = i / 20f;
+                float x = corners[c][0] + (corners[c + 1][0] - corners[c][0]) * t;
+                float y = corners[c][1] + (corners[c + 1][1] - corners[c][1]) * t;
+                store.addPoint(x + (i % 3 - 1), y + (i % 2), 1f, time += 10);
+            }
+        }
+        store.addPoint(300, 101, 1f, time + 10);
+        store.endStroke();
+        ShapeRecognizer recognizer = new ShapeRecognizer();
+
+        assertEquals(ShapeRecognizer.SHAPE_RECTANGLE, recognizer.recognize(store, 0));
+        assertEquals(200, recognizer.getCenterX(), 2f);
+        assertEquals(175, recognizer.getCenterY(), 2f);
+        assertEquals(100, recognizer.getRadiusX(), 2f);
+        assertEquals(75, recognizer.getRadiusY(), 2f);
+        assertEquals(0, recognizer.getAngle(), 0);
+        TouchSampleBuffer out = new TouchSampleBuffer();
+        assertEquals(5, recognizer.writeShape(out));
+        assertEquals(300, out.getX(0), 2f);
+        assertEquals(100, out.getY(0), 2f);
+        assertEquals(100, out.getX(1), 2f);
+        assertEquals(100, out.getY(1), 2f);
+        assertEquals(out.getX(0), out.getX(4), 0);
+        assertEquals(5_010, out.getTime(0));
+        assertEquals(time + 10, out.getTime(4));
+    }
+
+    @Test
+    public void roughCircle_becomesCircle() {
+        Random random = new Random(7);
+        TouchSampleBuffer points = ellipse(random, 400, 300, 120, 115, 0.3, 0.0, 0.02f);
+        ShapeRecognizer recognizer = new ShapeRecognizer();
+
+        assertEquals(ShapeRecognizer.SHAPE_ELLIPSE, recognizer.recognize(points));
+        assertEquals(recognizer.getRadiusX(), recognizer.getRadiusY(), 0);
+        assertEquals(400, recognizer.getCenterX(), 5f);
+        assertEquals(300, recognizer.getCenterY(), 5f);
+        assertEquals(118, recognizer.getRadiusX(), 5f);
+        TouchSampleBuffer out = new TouchSampleBuffer();
+        int n = recognizer.writeShape(out);
+        assertTrue(n < points.size());
+        assertEquals(out.getX(0), out.getX(n - 1), 1e-3f);
+        assertEquals(out.getY(0), out.getY(n - 1), 1e-3f);
+    }
+
+    @Test
+    public void smallOrErasedStrokes_areLeftAlone() {
+        ShapeRecognizer recognizer = new ShapeRecognizer();
+        TouchSampleBuffer points = new TouchSampleBuffer();
+        for (int i = 0; i < 10; i++) {
+            points.add(i * 2, 0, 0);
+        }
+        assertEquals(ShapeRecognizer.SHAPE_FREEHAND, recognizer.recognize(points));
+        assertEquals(0, recognizer.writeShape(new TouchSampleBuffer()));
+
+        StrokeStore store = new StrokeStore();
+        store.beginStroke(0, 4f);
+        store.addPoint(0, 0);
+        store.addPoint(100, 0);
+        store.addPoint(200, 0);
+        store.endStroke();
+        IntList erased = new IntList();
+        erased.add(0);
+        int record = store.addErase(erased, false);
+        assertEquals(ShapeRecognizer.SHAPE_LINE, recognizer.recognize(store, 0));
+        assertEquals(ShapeRecognizer.SHAPE_FREEHAND, recognizer.recognize(store, record));
+    }
+
+    /** 耗时见 :benchmark 模块的 ShapeRecognitionBenchmark */
+    @Test
+    public void syntheticStrokes_areRecognizedAccurately() {
+        Random random = new Random(42);
+        ShapeRecognizer recognizer = new ShapeRecognizer();
+        int perClass = 200;
+        int[][] confusion = new int[NAMES.length][NAMES.length];
+        for (int expected = 0; expected < NAMES.length; expected++) {
+            for (int i = 0; i < perClass; i++) {
+                confusion[expected][recognizer.recognize(generate(random, expected, i))]++;
+            }
+        }
+
+        for (int expected = 0; expected < NAMES.length; expected++) {
+            assertTrue(NAMES[expected] + " " + confusion[expected][expected] + "/" + perClass,
+                    confusion[expected][expected] >= perClass * 0.9);
+        }
+        // 自由曲线被误判为形状会改掉用户的笔迹，要求更严
+        int freehand = confusion[ShapeRecognizer.SHAPE_FREEHAND][ShapeRecognizer.SHAPE_FREEHAND];
+        assertTrue("freehand " + freehand + "/" + perClass, freehand >= perClass * 0.95);
+    }
+
+    private static TouchSampleBuffer generate(Random random, int shape, int i) {
+        float cx = 200 + random.nextFloat() * 600;
+        float cy = 200 + random.nextFloat() * 600;
+        float size = 60 + random.nextFloat() * 340;
+        switch (shape) {
+            case ShapeRecognizer.SHAPE_LINE: {
+                double a = random.nextDouble() * Math.PI * 2;
+                float half = size / 2;
+                return polyline(random, false, cx - (float) Math.cos(a) * half, cy - (float) Math.sin(a) * half,
+                        cx + (float) Math.cos(a) * half, cy + (float) Math.sin(a) * half);
+            }
+            case ShapeRecognizer.SHAPE_POLYLINE: {
+                // 折线：3 到 5 个顶点，转角 50° 到 150°；一部分是闭合的三角形
+                if (i % 4 == 3) {
+                    double a = random.nextDouble() * Math.PI * 2;
+                    float[] v = new float[8];
+                    for (int k = 0; k < 3; k++) {
+                        double t = a + k * Math.PI * 2 / 3 + (random.nextDouble() - 0.5) * 0.4;
+                        v[k * 2] = cx + (float) Math.cos(t) * size / 2;
+                        v[k * 2 + 1] = cy + (float) Math.sin(t) * size / 2;
+                    }
+                    v[6] = v[0];
+                    v[7] = v[1];
+                    return polyline(random, true, v);
+                }
+                int n = 3 + random.nextInt(3);
+                float[] v = new float[n * 2];
+                double heading = random.nextDouble() * Math.PI * 2;
+                float x = cx;
+                float y = cy;
+                for (int k = 0; k < n; k++) {
+                    v[k * 2] = x;
+                    v[k * 2 + 1] = y;
+                    float length = size * (0.4f + random.nextFloat() * 0.6f);
+                    x += (float) Math.cos(heading) * length;
+                    y += (float) Math.sin(heading) * length;
+                    double turn = Math.toRadians(50 + random.nextDouble() * 100);
+                    heading += random.nextBoolean() ? turn : -turn;
+                }
+                return polyline(random, false, v);
+            }
+            case ShapeRecognizer.SHAPE_ELLIPSE: {
+                float ratio = 0.35f + random.nextFloat() * 0.65f;
+                return ellipse(random, cx, cy, size / 2, size / 2 * ratio, random.nextDouble() * Math.PI,
+                        random.nextDouble() * Math.PI * 2, 0.025f);
+            }
+            case ShapeRecognizer.SHAPE_RECTANGLE: {
+                float w = size / 2;
+                float h = w * (0.35f + random.nextFloat() * 0.65f);
+                double a = random.nextInt(3) == 0 ? random.nextDouble() * Math.PI : 0;
+                float cos = (float) Math.cos(a);
+                float sin = (float) Math.sin(a);
+                float[] u = {-w, w, w, -w};
+                float[] vv = {-h, -h, h, h};
+                int first = random.nextInt(4);
+                float[] v = new float[10];
+                for (int k = 0; k <= 4; k++) {
+                    int c = (first + k) % 4;
+                    v[k * 2] = cx + u[c] * cos - vv[c] * sin;
+                    v[k * 2 + 1] = cy + u[c] * sin + vv[c] * cos;
+                }
+                return polyline(random, true, v);
+            }
+            default:
+                return freehand(random, cx, cy, size, i);
+        }
+    }
+
+    // 自由曲线：圆弧、S 形、螺旋、波浪、涂鸦，都不应被识别成形状
+    private static TouchSampleBuffer freehand(Random random, float cx, float cy, float size, int i) {
+        TouchSampleBuffer out = new TouchSampleBuffer();
+        double phase = random.nextDouble() * Math.PI * 2;
+        int steps = (int) (size * 3 / 5);
+        for (int k = 0; k <= steps; k++) {
+            double t = (double) k / steps;
+            double x;
+            double y;
+            switch (i % 5) {
+                case 0:
+                    // 半圆到四分之三圆的弧
+                    double sweep = Math.PI * (1 + random.nextDouble() * 0.01 + (i % 3) * 0.25);
+                    x = Math.cos(phase + t * sweep) * size / 2;
+                    y = Math.sin(phase + t * sweep) * size / 2;
+                    break;
+                case 1:
+                    // S 形
+                    x = (t - 0.5) * size;
+                    y = Math.sin(t * Math.PI * 2) * size / 4;
+                    break;
+                case 2:
+                    // 螺旋
+                    double r = size / 2 * (0.3 + 0.7 * t);
+                    x = Math.cos(phase + t * Math.PI * 3.5) * r;
+                    y = Math.sin(phase + t * Math.PI * 3.5) * r;
+                    break;
+                case 3:
+                    // 波浪线
+                    x = (t - 0.5) * size * 1.5;
+                    y = Math.sin(t * Math.PI * 6) * size / 6;
+                    break;
+                default:
+                    // 数字 8
+                    x = Math.sin(t * Math.PI * 2) * size / 3;
+                    y = Math.sin(t * Math.PI * 4) * size / 2;
+                    break;
+            }
+            double cos = Math.cos(phase);
+            double sin = Math.sin(phase);
+            out.add((float) (cx + x * cos - y * sin), (float) (cy + x * sin + y * cos), k * 8L);
+        }
+        return jitter(random, out, size * 0.01f);
+    }
+
+    private static TouchSampleBuffer ellipse(Random random, float cx, float cy, float rx, float ry, double angle,
+                                             double start, float noise) {
+        TouchSampleBuffer out = new TouchSampleBuffer();
+        // 首尾缺口或画过头最多 8%
+        double sweep = Math.PI * 2 * (0.94 + random.nextDouble() * 0.14);
+        int direction = random.nextBoolean() ? 1 : -1;
+        int steps = Math.max(24, (int) ((rx + ry) * Math.PI / 5));
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        // 低频摆动：半径随角度缓慢变化
+        double wobblePhase = random.nextDouble() * Math.PI * 2;
+        for (int k = 0; k <= steps; k++) {
+            double t = start + direction * sweep * k / steps;
+            double wobble = 1 + noise * Math.sin(2 * t + wobblePhase);
+            double u = rx * Math.cos(t) * wobble;
+            double v = ry * Math.sin(t) * wobble;
+            out.add((float) (cx + u * cos - v * sin), (float) (cy + u * sin + v * cos), k * 8L);
+        }
+        return jitter(random, out, Math.max(rx, ry) * 0.01f);
+    }
+
+    // 沿顶点依次连线，点距约 5 像素；闭合时结尾随机留缺口或画过头
+    private static TouchSampleBuffer polyline(Random random, boolean closed, float... v) {
+        TouchSampleBuffer out = new TouchSampleBuffer();
+        float length = 0;
+        for (int k = 2; k < v.length; k += 2) {
+            length += (float) Math.hypot(v[k] - v[k - 2], v[k + 1] - v[k - 1]);
+        }
+        float step = 5;
+        long time = 0;
+        for (int k = 0; k + 2 < v.length; k += 2) {
+            float dx = v[k + 2] - v[k];
+            float dy = v[k + 3] - v[k + 1];
+            int n = Math.max(1, (int) (Math.hypot(dx, dy) / step));
+            // 每条边略有弯曲
+            float bow = (random.nextFloat() - 0.5f) * 0.03f;
+            for (int s = 0; s < n; s++) {
+                float t = (float) s / n;
+                float bend = bow * 4 * t * (1 - t);
+                out.add(v[k] + dx * t - dy * bend, v[k + 1] + dy * t + dx * bend, time += 8);
+            }
+        }
+        float endX = v[v.length - 2];
+        float endY = v[v.length - 1];
+        if (closed) {
+            // 沿第一条边画过头，或在起点前停下
+            float extra = (random.nextFloat() - 0.4f) * length * 0.06f;
+            float fx = v[2] - v[0];
+            float fy = v[3] - v[1];
+            float fl = (float) Math.hypot(fx, fy);
+            if (extra < 0) {
+                int trim = (int) (-extra / step);
+                out.truncate(Math.max(2, out.size() - trim));
+                endX = out.getX(out.size() - 1);
+                endY = out.getY(out.size() - 1);
+                out.truncate(out.size() - 1);
+            } else {
+                out.add(endX, endY, time += 8);
+                for (float d = step; d < extra; d += step) {
+                    endX = v[0] + fx / fl * d;
+                    endY = v[1] + fy / fl * d;
+                    out.add(endX, endY, time += 8);
+                }
+                out.truncate(out.size() - 1);
+            }
+        }
+        out.add(endX, endY, time + 8);
+        return jitter(random, out, Math.max(0.8f, length * 0.0025f));
+    }
+
+    private static TouchSampleBuffer jitter(Random random, TouchSampleBuffer in, float amount) {
+        TouchSampleBuffer out = new TouchSampleBuffer(in.size());
+        for (int k = 0; k < in.size(); k++) {
+            out.add(in.getX(k) + (float) random.nextGaussian() * amount,
+                    in.getY(k) + (float) random.nextGaussian() * amount, in.getTime(k), 1f);
+        }
+        return out;
+    }
+}
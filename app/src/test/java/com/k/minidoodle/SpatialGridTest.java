@@ -0,0 +1,134 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * SpatialGrid 和笔画命中测试的本地单元测试
+ */
+public class SpatialGridTest {
+
+    private static final float CELL = 256f;
+
+    @Test
+    public void query_matchesBruteForce() {
+        Random random = new Random(1);
+        float[][] boxes = randomBoxes(5_000, random);
+        SpatialGrid grid = build(boxes);
+        IntList result = new IntList();
+
+        for (int q = 0; q < 200; q++) {
+            float left = random.nextFloat() * 8_000 - 4_000;
+            float top = random.nextFloat() * 8_000 - 4_000;
+            float right = left + random.nextFloat() * 600;
+            float bottom = top + random.nextFloat() * 600;
+            grid.query(left, top, right, bottom, result);
+
+            // 网格结果是精确结果的超集，且按编号升序、不重复
+            int last = -1;
+            for (int i = 0; i < result.size(); i++) {
+                assertTrue(result.get(i) > last);
+                last = result.get(i);
+            }
+            for (int id = 0; id < boxes.length; id++) {
+                if (intersects(boxes[id], left, top, right, bottom)) {
+                    assertTrue("missing " + id, contains(result, id));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void remove_dropsEntryFromEveryCell() {
+        SpatialGrid grid = new SpatialGrid(CELL);
+        grid.insert(0, -300, -300, 300, 300);
+        grid.insert(1, 10, 10, 20, 20);
+        IntList result = new IntList();
+
+        assertEquals(2, grid.query(0, 0, 1, 1, result));
+        grid.remove(0, -300, -300, 300, 300);
+        assertEquals(0, grid.query(-300, -300, -1, -1, result));
+        assertEquals(1, grid.query(-300, -300, 300, 300, result));
+        assertEquals(1, result.get(0));
+    }
+
+    @Test
+    public void hugeQuery_scansOccupiedCellsOnly() {
+        SpatialGrid grid = new SpatialGrid(CELL);
+        grid.insert(0, 0, 0, 10, 10);
+        grid.insert(1, 1e6f, 1e6f, 1e6f + 10, 1e6f + 10);
+        IntList result = new IntList();
+
+        assertEquals(2, grid.query(-1e7f, -1e7f, 1e7f, 1e7f, result));
+        assertEquals(1, grid.query(-1e7f, -1e7f, 100, 100, result));
+        assertEquals(0, result.get(0));
+    }
+
+    @Test
+    public void distanceTo_measuresPolyline() {
+        StrokeStore store = new StrokeStore();
+        store.beginStroke(0, 12f);
+        store.addPoint(0, 0);
+        store.addPoint(100, 0);
+        store.addPoint(100, 100);
+        store.endStroke();
+
+        assertEquals(5f, store.distanceTo(0, 50, 5), 1e-4f);
+        assertEquals(10f, store.distanceTo(0, 110, 50), 1e-4f);
+        assertEquals(5f, store.distanceTo(0, -3, 4), 1e-4f);
+    }
+
+    @Test
+    public void query_tileSizedRegionReturnsFewCandidates() {
+        Random random = new Random(42);
+        float[][] boxes = randomBoxes(50_000, random);
+        SpatialGrid grid = build(boxes);
+        IntList result = new IntList();
+        int queries = 2_000;
+
+        // 候选数只取决于局部密度，不随笔画总数增长；查询耗时见 :benchmark 模块的 SpatialQueryBenchmark
+        long found = 0;
+        for (int q = 0; q < queries; q++) {
+            float x = random.nextFloat() * 8_000 - 4_000;
+            float y = random.nextFloat() * 8_000 - 4_000;
+            found += grid.query(x, y, x + CELL, y + CELL, result);
+        }
+        assertTrue((double) found / queries < boxes.length / 100.0);
+    }
+
+    // 分布在 8000 x 8000 平面上的随机包围盒，边长 1~200
+    private static float[][] randomBoxes(int n, Random random) {
+        float[][] boxes = new float[n][];
+        for (int i = 0; i < n; i++) {
+            float left = random.nextFloat() * 8_000 - 4_000;
+            float top = random.nextFloat() * 8_000 - 4_000;
+            boxes[i] = new float[]{left, top,
+                    left + 1 + random.nextFloat() * 199, top + 1 + random.nextFloat() * 199};
+        }
+        return boxes;
+    }
+
+    private static SpatialGrid build(float[][] boxes) {
+        SpatialGrid grid = new SpatialGrid(CELL);
+        for (int i = 0; i < boxes.length; i++) {
+            grid.insert(i, boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3]);
+        }
+        return grid;
+    }
+
+    private static boolean intersects(float[] box, float left, float top, float right, float bottom) {
+        return box[0] <= right && box[2] >= left && box[1] <= bottom && box[3] >= top;
+    }
+
+    private static boolean contains(IntList list, int value) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
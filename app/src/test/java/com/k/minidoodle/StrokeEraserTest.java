@@ -0,0 +1,131 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * StrokeEraser 的本地单元测试
+ */
+public class StrokeEraserTest {
+
+    @Test
+    public void touches_includesStrokeWidth() {
+        StrokeStore store = new StrokeStore();
+        int stroke = addLine(store, 0, 0, 100, 0, 2, 10f);
+        // 中心线距离 12，橡皮半径 8 加半个线宽 5 可以碰到
+        assertTrue(StrokeEraser.touches(store, stroke, path(50, 12), 0, 1, 8f));
+        assertFalse(StrokeEraser.touches(store, stroke, path(50, 14), 0, 1, 8f));
+    }
+
+    @Test
+    public void touches_detectsCrossingWithoutSamplesNearby() {
+        StrokeStore store = new StrokeStore();
+        int stroke = addLine(store, 0, 0, 100, 0, 2, 2f);
+        // 橡皮一步划过笔画，两个采样点都离笔画很远
+        assertTrue(StrokeEraser.touches(store, stroke, path(50, -40, 50, 40), 0, 2, 1f));
+    }
+
+    @Test
+    public void split_cutsStrokeAroundEraser() {
+        StrokeStore store = new StrokeStore();
+        int stroke = addLine(store, 0, 0, 100, 0, 2, 2f);
+        TouchSampleBuffer pieces = new TouchSampleBuffer();
+        IntList ends = new IntList();
+
+        assertTrue(StrokeEraser.split(store, stroke, path(50, 0), 0, 1, 10f, pieces, ends));
+        assertEquals(2, ends.size());
+        // 第一段从起点到切点，第二段从切点到终点；切点在覆盖范围（半径 10 加半个线宽）之外
+        assertEquals(0f, pieces.getX(0), 0f);
+        float firstCut = pieces.getX(ends.get(0) - 1);
+        float secondCut = pieces.getX(ends.get(0));
+        assertTrue(firstCut < 39f && firstCut > 35f);
+        assertTrue(secondCut > 61f && secondCut < 65f);
+        assertEquals(100f, pieces.getX(ends.get(1) - 1), 0f);
+        // 远离橡皮的线段不细分
+        assertEquals(4, pieces.size());
+    }
+
+    @Test
+    public void split_keepsOriginalPointsAwayFromEraser() {
+        StrokeStore store = new StrokeStore();
+        store.beginStroke(0, 2f);
+        for (int i = 0; i <= 20; i++) {
+            store.addPoint(i * 10, i % 2, i / 20f);
+        }
+        int stroke = store.endStroke();
+        TouchSampleBuffer pieces = new TouchSampleBuffer();
+        IntList ends = new IntList();
+
+        assertTrue(StrokeEraser.split(store, stroke, path(200, 0), 0, 1, 5f, pieces, ends));
+        assertEquals(1, ends.size());
+        // 终点附近被擦掉，前面的点原样保留，权重随点保存
+        for (int i = 0; i < 19; i++) {
+            assertEquals(i * 10f, pieces.getX(i), 0f);
+            assertEquals(i / 20f, pieces.getPressure(i), 1e-2f);
+        }
+        assertTrue(pieces.getX(ends.get(0) - 1) < 194f);
+    }
+
+    @Test
+    public void split_interpolatesTimeOffsets() {
+        StrokeStore store = new StrokeStore();
+        store.beginStroke(0xFF000000, 2f);
+        store.addPoint(0, 0, 1f, 5_000);
+        store.addPoint(100, 0, 1f, 5_100);
+        int stroke = store.endStroke();
+        TouchSampleBuffer pieces = new TouchSampleBuffer();
+        IntList ends = new IntList();
+
+        assertTrue(StrokeEraser.split(store, stroke, path(50, 0), 0, 1, 10f, pieces, ends));
+        // 时间通道为相对原笔画起点的毫秒数，切点按位置插值
+        assertEquals(0, pieces.getTime(0));
+        for (int i = 0; i < pieces.size(); i++) {
+            assertEquals(pieces.getX(i), pieces.getTime(i), 1f);
+        }
+        assertEquals(100, pieces.getTime(ends.get(1) - 1));
+    }
+
+    @Test
+    public void split_leavesUntouchedStrokeAndBuffersAlone() {
+        StrokeStore store = new StrokeStore();
+        int stroke = addLine(store, 0, 0, 100, 0, 5, 2f);
+        TouchSampleBuffer pieces = new TouchSampleBuffer();
+        pieces.add(-1, -1, 0);
+        IntList ends = new IntList();
+
+        assertFalse(StrokeEraser.split(store, stroke, path(50, 30), 0, 1, 10f, pieces, ends));
+        assertEquals(1, pieces.size());
+        assertEquals(0, ends.size());
+    }
+
+    @Test
+    public void split_removesFullyCoveredStroke() {
+        StrokeStore store = new StrokeStore();
+        int stroke = addLine(store, 0, 0, 10, 0, 3, 2f);
+        TouchSampleBuffer pieces = new TouchSampleBuffer();
+        IntList ends = new IntList();
+
+        assertTrue(StrokeEraser.split(store, stroke, path(0, 0, 10, 0), 0, 2, 4f, pieces, ends));
+        assertEquals(0, ends.size());
+        assertEquals(0, pieces.size());
+    }
+
+    private static TouchSampleBuffer path(float... coordinates) {
+        TouchSampleBuffer path = new TouchSampleBuffer();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            path.add(coordinates[i], coordinates[i + 1], i);
+        }
+        return path;
+    }
+
+    private static int addLine(StrokeStore store, float x0, float y0, float x1, float y1,
+                               int points, float width) {
+        store.beginStroke(0xFF000000, width);
+        for (int i = 0; i < points; i++) {
+            float t = points == 1 ? 0 : (float) i / (points - 1);
+            store.addPoint(x0 + (x1 - x0) * t, y0 + (y1 - y0) * t);
+        }
+        return store.endStroke();
+    }
+}
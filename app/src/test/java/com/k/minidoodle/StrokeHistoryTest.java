@@ -0,0 +1,234 @@
+package com.k.minidoodle;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * StrokeHistory 的本地单元测试，用整数列表模拟光栅，检查重放开销和快照内存统计
+ */
+public class StrokeHistoryTest {
+
+    private static final int STROKES = 10_000;
+    private static final int INTERVAL = 32;
+    private static final long SNAPSHOT_BYTES = 1_000;
+    private static final long BUDGET = 20 * SNAPSHOT_BYTES;
+
+    private FakeRenderer renderer;
+    private StrokeHistory<List<Integer>> history;
+
+    @Before
+    public void setUp() {
+        renderer = new FakeRenderer();
+        history = new StrokeHistory<>(renderer, INTERVAL, BUDGET);
+    }
+
+    @Test
+    public void undo_replaysOnlyStrokesSinceNearestCheckpoint() {
+        drawStrokes(STROKES);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(history.undo());
+            assertTrue("replayed " + history.getLastReplayCount(),
+                    history.getLastReplayCount() < INTERVAL);
+            assertRasterMatchesHistory();
+        }
+    }
+
+    @Test
+    public void snapshots_stayWithinMemoryBudget() {
+        for (int i = 0; i < STROKES; i++) {
+            drawStrokes(1);
+            assertTrue(history.getSnapshotBytes() <= BUDGET);
+        }
+        assertEquals(BUDGET / SNAPSHOT_BYTES, history.getCheckpointCount());
+        assertEquals(history.getCheckpointCount() * SNAPSHOT_BYTES, history.getSnapshotBytes());
+        assertEquals(renderer.liveSnapshots, history.getCheckpointCount());
+
+        history.setMemoryBudget(5 * SNAPSHOT_BYTES);
+        assertEquals(5, history.getCheckpointCount());
+        assertEquals(5, renderer.liveSnapshots);
+    }
+
+    @Test
+    public void redo_drawsOnlyTheRestoredStroke() {
+        drawStrokes(STROKES);
+        for (int i = 0; i < 50; i++) {
+            history.undo();
+        }
+        for (int i = 0; i < 50; i++) {
+            assertTrue(history.redo());
+            assertEquals(1, history.getLastReplayCount());
+        }
+        assertFalse(history.redo());
+        assertEquals(STROKES, history.size());
+        assertRasterMatchesHistory();
+    }
+
+    @Test
+    public void commitAfterUndo_discardsRedoBranch() {
+        drawStrokes(100);
+        for (int i = 0; i < 40; i++) {
+            history.undo();
+        }
+        drawStrokes(1);
+
+        assertFalse(history.canRedo());
+        assertEquals(61, history.size());
+        assertEquals(61, renderer.strokes.size());
+        assertRasterMatchesHistory();
+
+        for (int i = 0; i < 61; i++) {
+            assertTrue(history.undo());
+            assertRasterMatchesHistory();
+        }
+        assertFalse(history.undo());
+    }
+
+    @Test
+    public void truncate_dropsTailAndKeepsEarlierCheckpoints() {
+        drawStrokes(100);
+        history.undo();
+        history.truncate(70);
+        // 光栅由调用方负责，这里模拟调用方去掉末尾记录的绘制结果
+        renderer.raster.subList(70, renderer.raster.size()).clear();
+
+        assertFalse(history.canRedo());
+        assertEquals(70, history.size());
+        assertEquals(70, renderer.strokes.size());
+        drawStrokes(5);
+        assertRasterMatchesHistory();
+        for (int i = 0; i < 75; i++) {
+            assertTrue(history.undo());
+            assertRasterMatchesHistory();
+        }
+    }
+
+    @Test
+    public void rebuild_recreatesCheckpoints() {
+        drawStrokes(STROKES);
+        history.rebuild();
+
+        assertEquals(STROKES, history.getLastReplayCount());
+        assertEquals(BUDGET / SNAPSHOT_BYTES, history.getCheckpointCount());
+        assertRasterMatchesHistory();
+        history.undo();
+        assertTrue(history.getLastReplayCount() < INTERVAL);
+    }
+
+    @Test
+    public void clear_releasesEverything() {
+        drawStrokes(1_000);
+        history.clear();
+
+        assertEquals(0, history.size());
+        assertEquals(0, history.getSnapshotBytes());
+        assertEquals(0, renderer.liveSnapshots);
+        assertTrue(renderer.strokes.isEmpty());
+        assertTrue(renderer.raster.isEmpty());
+    }
+
+    @Test
+    public void load_adoptsExternalStrokes() {
+        for (int i = 0; i < STROKES; i++) {
+            renderer.strokes.add(renderer.nextId++);
+        }
+        history.load(STROKES);
+
+        assertEquals(STROKES, history.size());
+        assertFalse(history.canRedo());
+        assertRasterMatchesHistory();
+        assertTrue(history.getSnapshotBytes() <= BUDGET);
+        history.undo();
+        assertTrue(history.getLastReplayCount() < INTERVAL);
+        assertRasterMatchesHistory();
+    }
+
+    @Test
+    public void undo_prefersLocalRevert() {
+        drawStrokes(100);
+        renderer.supportsRevert = true;
+
+        assertTrue(history.undo());
+        assertEquals(0, history.getLastReplayCount());
+        assertEquals(99, history.size());
+        assertRasterMatchesHistory();
+        assertTrue(history.redo());
+        assertRasterMatchesHistory();
+    }
+
+    private void drawStrokes(int count) {
+        for (int i = 0; i < count; i++) {
+            int index = history.commit();
+            assertEquals(renderer.strokes.size(), index);
+            int stroke = renderer.nextId++;
+            renderer.strokes.add(stroke);
+            renderer.raster.add(stroke);
+        }
+    }
+
+    private void assertRasterMatchesHistory() {
+        assertEquals(renderer.strokes.subList(0, history.size()), renderer.raster);
+    }
+
+    /**
+     * 光栅用已绘制笔画编号的列表表示，快照即列表的拷贝
+     */
+    private static class FakeRenderer implements StrokeHistory.Renderer<List<Integer>> {
+        final List<Integer> strokes = new ArrayList<>();
+        final List<Integer> raster = new ArrayList<>();
+        int nextId;
+        int liveSnapshots;
+        boolean supportsRevert;
+
+        @Override
+        public void clearRaster() {
+            raster.clear();
+        }
+
+        @Override
+        public void replay(int index) {
+            raster.add(strokes.get(index));
+        }
+
+        @Override
+        public int revert(int index) {
+            if (!supportsRevert) {
+                return -1;
+            }
+            raster.remove(raster.size() - 1);
+            return 0;
+        }
+
+        @Override
+        public void discard(int from, int to) {
+            strokes.subList(from, to).clear();
+        }
+
+        @Override
+        public List<Integer> capture() {
+            liveSnapshots++;
+            return new ArrayList<>(raster);
+        }
+
+        @Override
+        public void restore(List<Integer> snapshot) {
+            raster.clear();
+            raster.addAll(snapshot);
+        }
+
+        @Override
+        public long sizeOf(List<Integer> snapshot) {
+            return SNAPSHOT_BYTES;
+        }
+
+        @Override
+        public void release(List<Integer> snapshot) {
+            liveSnapshots--;
+        }
+    }
+}
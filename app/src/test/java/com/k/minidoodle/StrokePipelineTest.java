@@ -0,0 +1,177 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 笔画处理流水线的本地单元测试
+ */
+public class StrokePipelineTest {
+
+    @Test
+    public void radialDecimator_collapsesStraightLine() {
+        TouchSampleBuffer out = run(new StrokePipeline(new RadialDecimator(1.5f, 4f)),
+                line(0, 0, 500, 250, 1_000));
+
+        assertEquals(2, out.size());
+        assertEquals(0f, out.getX(0), 0f);
+        assertEquals(500f, out.getX(1), 1e-3f);
+    }
+
+    @Test
+    public void radialDecimator_keepsCorners() {
+        TouchSampleBuffer raw = line(0, 0, 100, 0, 50);
+        appendLine(raw, 100, 0, 100, 100, 50);
+        TouchSampleBuffer out = run(new StrokePipeline(new RadialDecimator(1.5f, 4f)), raw);
+
+        assertEquals(3, out.size());
+        assertEquals(100f, out.getX(1), 1e-3f);
+        assertEquals(0f, out.getY(1), 1e-3f);
+    }
+
+    @Test
+    public void rdpDecimator_staysWithinTolerance() {
+        float tolerance = 0.5f;
+        TouchSampleBuffer raw = noisyCurve(5_000, new Random(1));
+        TouchSampleBuffer out = run(new StrokePipeline(new RdpDecimator(tolerance, 24)), raw);
+
+        assertTrue(out.size() < raw.size());
+        assertEquals(raw.getX(0), out.getX(0), 0f);
+        assertEquals(raw.getX(raw.size() - 1), out.getX(out.size() - 1), 0f);
+        // 输出是原始点的子序列，每个原始点到对应输出线段的距离不超过容差
+        int segment = 0;
+        for (int i = 0; i < raw.size(); i++) {
+            while (segment < out.size() - 2 && raw.getTime(i) > out.getTime(segment + 1)) {
+                segment++;
+            }
+            float d = distanceToSegment(raw.getX(i), raw.getY(i),
+                    out.getX(segment), out.getY(segment),
+                    out.getX(segment + 1), out.getY(segment + 1));
+            assertTrue("deviation " + d + " at " + i, d <= tolerance + 1e-3f);
+        }
+    }
+
+    @Test
+    public void catmullRomSmoother_passesThroughControlPoints() {
+        TouchSampleBuffer raw = new TouchSampleBuffer();
+        raw.add(0, 0, 0);
+        raw.add(30, 10, 10);
+        raw.add(60, -10, 20);
+        raw.add(90, 0, 30);
+        TouchSampleBuffer out = run(new StrokePipeline(new CatmullRomSmoother(6f, 8)), raw);
+
+        assertTrue(out.size() > raw.size());
+        int matched = 0;
+        for (int i = 0; i < out.size(); i++) {
+            for (int j = 0; j < raw.size(); j++) {
+                if (out.getX(i) == raw.getX(j) && out.getY(i) == raw.getY(j)) {
+                    matched++;
+                }
+            }
+        }
+        assertEquals(raw.size(), matched);
+        for (int i = 1; i < out.size(); i++) {
+            assertTrue(out.getTime(i) >= out.getTime(i - 1));
+        }
+    }
+
+    @Test
+    public void pipeline_incrementalFeedMatchesSingleBatch() {
+        TouchSampleBuffer raw = noisyCurve(2_000, new Random(7));
+        TouchSampleBuffer batch = copy(run(StrokePipeline.createDefault(), raw));
+
+        StrokePipeline pipeline = StrokePipeline.createDefault();
+        pipeline.reset();
+        TouchSampleBuffer growing = new TouchSampleBuffer();
+        for (int i = 0; i < raw.size(); i++) {
+            growing.add(raw.getX(i), raw.getY(i), raw.getTime(i));
+            if (i % 5 == 4) {
+                pipeline.feed(growing);
+            }
+        }
+        pipeline.finish(growing);
+
+        TouchSampleBuffer incremental = pipeline.output();
+        assertEquals(batch.size(), incremental.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(batch.getX(i), incremental.getX(i), 0f);
+            assertEquals(batch.getY(i), incremental.getY(i), 0f);
+        }
+    }
+
+    @Test
+    public void defaultPipeline_reducesNoisyCurvesByHalf() {
+        StrokePipeline pipeline = StrokePipeline.createDefault();
+        Random random = new Random(42);
+        long inputPoints = 0;
+        long outputPoints = 0;
+        for (int i = 0; i < 200; i++) {
+            TouchSampleBuffer stroke = noisyCurve(500, random);
+            inputPoints += stroke.size();
+            outputPoints += run(pipeline, stroke).size();
+        }
+
+        // 处理耗时见 :benchmark 模块的 DecimationBenchmark
+        double reduction = 1 - (double) outputPoints / inputPoints;
+        assertTrue("reduction " + reduction, reduction > 0.5);
+    }
+
+    private static TouchSampleBuffer run(StrokePipeline pipeline, TouchSampleBuffer raw) {
+        pipeline.reset();
+        pipeline.feed(raw);
+        pipeline.finish(raw);
+        return pipeline.output();
+    }
+
+    private static TouchSampleBuffer line(float x0, float y0, float x1, float y1, int n) {
+        TouchSampleBuffer buffer = new TouchSampleBuffer();
+        appendLine(buffer, x0, y0, x1, y1, n);
+        return buffer;
+    }
+
+    private static void appendLine(TouchSampleBuffer buffer, float x0, float y0,
+                                   float x1, float y1, int n) {
+        long time = buffer.size() == 0 ? 0 : buffer.getTime(buffer.size() - 1) + 1;
+        for (int i = 0; i < n; i++) {
+            float t = (float) i / (n - 1);
+            buffer.add(x0 + (x1 - x0) * t, y0 + (y1 - y0) * t, time + i);
+        }
+    }
+
+    // 模拟 120Hz 采样的手写曲线：螺旋加少量抖动，相邻点间距约 1 像素
+    private static TouchSampleBuffer noisyCurve(int n, Random random) {
+        TouchSampleBuffer buffer = new TouchSampleBuffer();
+        float cx = random.nextFloat() * 500;
+        float cy = random.nextFloat() * 500;
+        for (int i = 0; i < n; i++) {
+            double angle = i * 0.01;
+            double radius = 50 + i * 0.1;
+            buffer.add((float) (cx + radius * Math.cos(angle) + random.nextGaussian() * 0.15),
+                    (float) (cy + radius * Math.sin(angle) + random.nextGaussian() * 0.15),
+                    i * 8L);
+        }
+        return buffer;
+    }
+
+    private static TouchSampleBuffer copy(TouchSampleBuffer source) {
+        TouchSampleBuffer copy = new TouchSampleBuffer(source.size());
+        for (int i = 0; i < source.size(); i++) {
+            copy.add(source.getX(i), source.getY(i), source.getTime(i));
+        }
+        return copy;
+    }
+
+    private static float distanceToSegment(float px, float py, float ax, float ay,
+                                           float bx, float by) {
+        float dx = bx - ax;
+        float dy = by - ay;
+        float lenSq = dx * dx + dy * dy;
+        float t = lenSq == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lenSq));
+        float ex = px - ax - t * dx;
+        float ey = py - ay - t * dy;
+        return (float) Math.sqrt(ex * ex + ey * ey);
+    }
+}
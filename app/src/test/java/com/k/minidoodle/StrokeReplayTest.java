@@ -0,0 +1,183 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * StrokeReplay 的本地单元测试
+ */
+public class StrokeReplayTest {
+
+    @Test
+    public void advanceTo_followsRecordedTiming() {
+        StrokeStore store = new StrokeStore();
+        addTimedStroke(store, 10_000, 0, 16, 32, 48);
+        // 录制时隔了 200 毫秒
+        addTimedStroke(store, 10_248, 0, 10);
+        StrokeReplay replay = new StrokeReplay(store, 500, 1f);
+        RecordingRenderer renderer = new RecordingRenderer(store);
+
+        assertEquals(48 + 200 + 10, replay.getDuration());
+        assertEquals(248, replay.getStrokeStart(1));
+        assertEquals(1, replay.advanceTo(0, renderer));
+        assertEquals(2, replay.advanceTo(40, renderer));
+        assertEquals(1, replay.advanceTo(247, renderer));
+        assertEquals(2, replay.advanceTo(replay.getDuration(), renderer));
+        assertTrue(replay.isFinished());
+        assertEquals(0, replay.advanceTo(replay.getDuration() + 1_000, renderer));
+    }
+
+    @Test
+    public void pauses_areCappedAndNeverNegative() {
+        StrokeStore store = new StrokeStore();
+        addTimedStroke(store, 0, 0, 100);
+        // 离开了一分钟
+        addTimedStroke(store, 60_100, 0, 100);
+        // 重启应用后时钟从头计时
+        addTimedStroke(store, 50, 0, 100);
+        StrokeReplay replay = new StrokeReplay(store, 300, 1f);
+
+        assertEquals(400, replay.getStrokeStart(1));
+        assertEquals(500, replay.getStrokeStart(2));
+        assertEquals(600, replay.getDuration());
+    }
+
+    @Test
+    public void untimedStrokes_areEstimatedFromLength() {
+        StrokeStore store = new StrokeStore();
+        store.beginStroke(1, 4f);
+        store.addPoint(0, 0);
+        store.addPoint(30, 40);
+        store.addPoint(30, 140);
+        store.endStroke();
+        StrokeReplay replay = new StrokeReplay(store, 500, 0.5f);
+        RecordingRenderer renderer = new RecordingRenderer(store);
+
+        // 长度 150，每毫秒 0.5 像素
+        assertEquals(300, replay.getDuration());
+        assertEquals(1, replay.advanceTo(99, renderer));
+        assertEquals(1, replay.advanceTo(100, renderer));
+        assertEquals(0, replay.advanceTo(299, renderer));
+        assertEquals(1, replay.advanceTo(300, renderer));
+    }
+
+    @Test
+    public void replay_drawsEveryPointExactlyOnceInOrder() {
+        StrokeStore store = new StrokeStore();
+        for (int s = 0; s < 50; s++) {
+            long start = s * 1_000L;
+            store.beginStroke(s, 4f);
+            for (int i = 0; i < 20; i++) {
+                store.addPoint(i, s, 1f, start + i * 7);
+            }
+            store.endStroke();
+            if (s % 10 == 9) {
+                // 擦除记录和没有点的笔画被跳过
+                IntList erased = new IntList();
+                store.addErase(erased, false);
+                store.beginStroke(0, 1f);
+                store.endStroke();
+            }
+        }
+        StrokeReplay replay = new StrokeReplay(store);
+        RecordingRenderer renderer = new RecordingRenderer(store);
+        int drawn = 0;
+        for (long t = 0; !replay.isFinished(); t += 33) {
+            drawn += replay.advanceTo(t, renderer);
+        }
+
+        assertEquals(store.totalPointCount(), drawn);
+        assertEquals(store.totalPointCount(), renderer.next);
+    }
+
+    @Test
+    public void reset_startsOver() {
+        StrokeStore store = new StrokeStore();
+        addTimedStroke(store, 0, 0, 10, 20);
+        StrokeReplay replay = new StrokeReplay(store);
+        RecordingRenderer renderer = new RecordingRenderer(store);
+        replay.advanceTo(replay.getDuration(), renderer);
+
+        replay.reset();
+        renderer.next = 0;
+        assertFalse(replay.isFinished());
+        assertEquals(0, replay.getPosition());
+        assertEquals(3, replay.advanceTo(replay.getDuration(), renderer));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void advanceTo_cannotRewind() {
+        StrokeStore store = new StrokeStore();
+        addTimedStroke(store, 0, 0, 10, 20);
+        StrokeReplay replay = new StrokeReplay(store);
+        replay.advanceTo(15, new RecordingRenderer(store));
+        replay.advanceTo(14, new RecordingRenderer(store));
+    }
+
+    /** 耗时见 :benchmark 模块的 ReplayBenchmark */
+    @Test
+    public void advanceTo_drawsEachPointOnceRegardlessOfFrameRate() {
+        StrokeStore store = new StrokeStore();
+        for (int s = 0; s < 2_000; s++) {
+            store.beginStroke(s, 4f);
+            for (int i = 0; i < 50; i++) {
+                store.addPoint(i, s, 1f, s * 1_000L + i * 8);
+            }
+            store.endStroke();
+        }
+        for (long frameTime : new long[]{8, 33, 250}) {
+            RecordingRenderer renderer = new RecordingRenderer(store);
+            StrokeReplay replay = new StrokeReplay(store);
+            long frames = 0;
+            long drawn = 0;
+            for (long t = 0; !replay.isFinished(); t += frameTime) {
+                int calls = renderer.calls;
+                int points = replay.advanceTo(t, renderer);
+                // 笔画长 392 毫秒、间隔 500 毫秒，一帧至多跨过一次笔画边界；只交出新出现的点
+                assertTrue(renderer.calls - calls <= 2);
+                assertTrue(points <= 50);
+                drawn += points;
+                frames++;
+            }
+            // 总点数和调用次数与帧数无关，只与点数和笔画数有关
+            assertEquals(store.totalPointCount(), drawn);
+            assertEquals(store.totalPointCount(), renderer.next);
+            assertTrue(renderer.calls <= store.size() + frames);
+        }
+    }
+
+    // 依次给出的采样时间，横坐标为点序号
+    private static void addTimedStroke(StrokeStore store, long start, int... offsets) {
+        store.beginStroke(0xFF000000, 4f);
+        for (int i = 0; i < offsets.length; i++) {
+            store.addPoint(i, 0, 1f, start + offsets[i]);
+        }
+        store.endStroke();
+    }
+
+    /**
+     * 检查收到的点首尾相接、不重不漏
+     */
+    private static class RecordingRenderer implements StrokeReplay.Renderer {
+        private final StrokeStore store;
+        // 下一个应当收到的点
+        int next;
+        // drawPoints 被调用的次数
+        int calls;
+
+        RecordingRenderer(StrokeStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public void drawPoints(StrokeStore store, int stroke, int from, int to) {
+            assertSame(this.store, store);
+            int start = store.getPointStart(stroke);
+            assertTrue(from >= start && to <= start + store.getPointCount(stroke) && from < to);
+            assertEquals(next, from);
+            next = to;
+            calls++;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * StrokeStore 的本地单元测试
+ */
+public class StrokeStoreTest {
+
+    @Test
+    public void add_packsPointsAndComputesBounds() {
+        StrokeStore store = new StrokeStore(1, 1);
+        addLine(store, 0xFF000000, 0, 0, 10, 20, 5);
+        addLine(store, 0xFFFF0000, -5, 3, 7, -8, 4);
+
+        assertEquals(2, store.size());
+        assertEquals(9, store.totalPointCount());
+        assertEquals(5, store.getPointStart(1));
+        assertEquals(4, store.getPointCount(1));
+        assertEquals(0xFFFF0000, store.getColor(1));
+        assertEquals(12f, store.getWidth(1), 0f);
+
+        assertEquals(-5f, store.getLeft(1), 0f);
+        assertEquals(-8f, store.getTop(1), 0f);
+        assertEquals(7f, store.getRight(1), 0f);
+        assertEquals(3f, store.getBottom(1), 0f);
+
+        int last = store.getPointStart(1) + store.getPointCount(1) - 1;
+        assertEquals(7f, store.getX(last), 1e-5f);
+        assertEquals(-8f, store.getY(last), 1e-5f);
+    }
+
+    @Test
+    public void truncate_dropsTrailingStrokesAndPoints() {
+        StrokeStore store = new StrokeStore();
+        for (int i = 0; i < 10; i++) {
+            addLine(store, i, 0, 0, i, i, 3);
+        }
+        store.truncate(4);
+
+        assertEquals(4, store.size());
+        assertEquals(12, store.totalPointCount());
+
+        int index = addLine(store, 42, 1, 1, 2, 2, 2);
+        assertEquals(4, index);
+        assertEquals(12, store.getPointStart(index));
+        assertEquals(42, store.getColor(index));
+    }
+
+    @Test
+    public void copy_isIndependentAndTrimmed() {
+        StrokeStore store = new StrokeStore();
+        addLine(store, 1, 0, 0, 1, 1, 100);
+        StrokeStore copy = store.copy();
+        store.clear();
+
+        assertEquals(1, copy.size());
+        assertEquals(100, copy.totalPointCount());
+        assertTrue(copy.estimatedBytes() < store.estimatedBytes());
+    }
+
+    @Test
+    public void estimatedBytes_tracksCapacity() {
+        StrokeStore store = new StrokeStore(1, 1);
+        for (int i = 0; i < 1_000; i++) {
+            addLine(store, i, 0, 0, 100, 100, 50);
+        }
+        store.trimToSize();
+
+        // 5 万个点各 13 字节（坐标、1 字节权重和时间偏移），1000 条笔画各 65 字节（起点、点数、颜色、线宽、笔刷、
+        // 图层、起始时间、4 个包围盒值、标志、顺序偏移、擦除者、擦除列表的起点和长度），空的擦除列表收缩为 1 项
+        assertEquals(50_000L * 13 + 1_000L * 65 + 4, store.estimatedBytes());
+    }
+
+    @Test
+    public void addErase_hidesStrokesUntilTruncated() {
+        StrokeStore store = new StrokeStore();
+        for (int i = 0; i < 4; i++) {
+            addLine(store, i, 0, i * 10, 100, i * 10, 5);
+        }
+        IntList erased = new IntList();
+        erased.add(1);
+        erased.add(3);
+        int record = store.addErase(erased, false);
+
+        assertEquals(4, record);
+        assertTrue(store.isErase(record));
+        assertEquals(0, store.getPointCount(record));
+        assertEquals(2, store.getErasureCount(record));
+        assertEquals(3, store.getErasedStroke(record, 1));
+        assertTrue(store.isLive(0, 5));
+        assertFalse(store.isLive(1, 5));
+        assertFalse(store.isLive(record, 5));
+        // 只应用前 4 条记录时擦除尚未发生
+        assertTrue(store.isLive(1, 4));
+        // 包围盒覆盖被擦笔画的墨迹
+        assertEquals(-6f, store.getLeft(record), 0f);
+        assertEquals(36f, store.getBottom(record), 0f);
+
+        store.truncate(4);
+        assertTrue(store.isLive(1, 4));
+        assertTrue(store.isLive(3, 4));
+    }
+
+    @Test
+    public void copy_keepsErasuresRelative() {
+        StrokeStore store = new StrokeStore();
+        for (int i = 0; i < 3; i++) {
+            addLine(store, i, 0, i, 10, i, 3);
+        }
+        IntList erased = new IntList();
+        erased.add(1);
+        int record = store.addErase(erased, true);
+
+        // 单独拷贝出的擦除记录追加到另一份相同的存储上，擦掉的是同一条笔画
+        StrokeStore mirror = store.copy(3);
+        mirror.append(store.copy(record, record + 1), 0);
+        assertTrue(mirror.isErase(3));
+        assertTrue(mirror.isJoined(3));
+        assertFalse(mirror.isLive(1, 4));
+        assertTrue(mirror.isLive(2, 4));
+    }
+
+    @Test
+    public void copyLive_dropsErasedStrokesAndKeepsDrawOrder() {
+        StrokeStore store = new StrokeStore();
+        for (int i = 0; i < 3; i++) {
+            addLine(store, i, 0, i, 10, i, 3);
+        }
+        IntList erased = new IntList();
+        erased.add(0);
+        store.addErase(erased, false);
+        // 笔画 0 切出的碎片排在笔画 1 之前
+        int piece = addLine(store, 100, 0, 0, 4, 0, 2);
+        store.setOrder(piece, 0);
+        store.setJoined(piece, true);
+
+        StrokeStore live = store.copyLive(store.size());
+        assertEquals(3, live.size());
+        assertEquals(100, live.getColor(0));
+        assertEquals(1, live.getColor(1));
+        assertEquals(2, live.getColor(2));
+        assertFalse(live.isJoined(0));
+        assertEquals(0, live.getOrder(0));
+        assertEquals(2, live.getPointCount(0));
+    }
+
+    @Test
+    public void add_recordsSampleTimesRelativeToFirstPoint() {
+        TouchSampleBuffer samples = new TouchSampleBuffer();
+        samples.add(0, 0, 1_000);
+        samples.add(5, 0, 1_016);
+        samples.add(10, 0, 1_008);  // 时钟倒退的点沿用前一个点的时间
+        samples.add(15, 0, 1_040);
+        StrokeStore store = new StrokeStore();
+        int stroke = store.add(samples, 1, 4f);
+        int untimed = addLine(store, 2, 0, 0, 10, 0, 3);
+
+        assertTrue(store.hasTime(stroke));
+        assertEquals(1_000, store.getStartTime(stroke));
+        int start = store.getPointStart(stroke);
+        assertEquals(0, store.getTimeOffset(start));
+        assertEquals(16, store.getTimeOffset(start + 1));
+        assertEquals(16, store.getTimeOffset(start + 2));
+        assertEquals(40, store.getTimeOffset(start + 3));
+        assertFalse(store.hasTime(untimed));
+        assertEquals(StrokeStore.NO_TIME, store.getStartTime(untimed));
+        assertEquals(0, store.getTimeOffset(store.getPointStart(untimed) + 2));
+    }
+
+    @Test
+    public void copies_keepSampleTimes() {
+        StrokeStore store = new StrokeStore();
+        store.beginStroke(1, 4f);
+        store.addPoint(0, 0, 1f, 500);
+        store.addPoint(1, 0, 1f, 520);
+        store.endStroke();
+        addLine(store, 2, 0, 0, 10, 0, 3);
+
+        StrokeStore[] copies = {store.copy(), store.copyLive(store.size()), new StrokeStore(1, 1)};
+        copies[2].append(store, 0);
+        copies[2].append(store, 1);
+        for (StrokeStore copy : copies) {
+            assertEquals(500, copy.getStartTime(0));
+            assertEquals(20, copy.getTimeOffset(1));
+            assertFalse(copy.hasTime(1));
+        }
+        store.trimToSize();
+        assertEquals(20, store.getTimeOffset(1));
+    }
+
+    @Test
+    public void appendTransformed_mapsPointsAndScalesWidth() {
+        StrokeStore store = new StrokeStore(1, 1);
+        store.beginStroke(0xFF00FF00, 4f, Brush.INK.id);
+        store.addPoint(10, 0, 0.5f, 1_000);
+        store.addPoint(20, 0, 1f, 1_030);
+        int stroke = store.endStroke();
+        store.setLayer(stroke, 2);
+        // 绕原点旋转 90 度并放大 2 倍，再平移 (5, 7)
+        int copy = store.appendTransformed(stroke, new float[]{0, -2, 5, 2, 0, 7});
+
+        int p = store.getPointStart(copy);
+        assertEquals(5f, store.getX(p), 1e-4f);
+        assertEquals(27f, store.getY(p), 1e-4f);
+        assertEquals(47f, store.getY(p + 1), 1e-4f);
+        assertEquals(8f, store.getWidth(copy), 1e-4f);
+        assertEquals(0.5f, store.getWeight(p), 0.01f);
+        assertEquals(1_000, store.getStartTime(copy));
+        assertEquals(30, store.getTimeOffset(p + 1));
+        assertEquals(0xFF00FF00, store.getColor(copy));
+        assertEquals(Brush.INK.id, store.getBrush(copy));
+        assertEquals(2, store.getLayer(copy));
+        assertEquals(27f, store.getTop(copy), 1e-4f);
+        assertEquals(47f, store.getBottom(copy), 1e-4f);
+        assertEquals(copy, store.getOrder(copy));
+    }
+
+    @Test
+    public void reopenLast_appendsToLastStroke() {
+        StrokeStore store = new StrokeStore(1, 1);
+        addLine(store, 1, 0, 0, 1, 1, 3);
+        addLine(store, 2, 0, 0, 4, 4, 2);
+
+        store.reopenLast();
+        store.addPoint(-3, 9);
+        assertEquals(1, store.endStroke());
+
+        assertEquals(2, store.size());
+        assertEquals(3, store.getPointCount(1));
+        assertEquals(2, store.getColor(1));
+        assertEquals(-3f, store.getLeft(1), 0f);
+        assertEquals(9f, store.getBottom(1), 0f);
+        assertEquals(4f, store.getRight(1), 0f);
+        assertEquals(-3f, store.getX(store.totalPointCount() - 1), 1e-5f);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void reopenLast_rejectsEmptyStore() {
+        new StrokeStore().reopenLast();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addPoint_withoutStrokeFails() {
+        new StrokeStore().addPoint(0, 0);
+    }
+
+    private static int addLine(StrokeStore store, int color, float x0, float y0,
+                               float x1, float y1, int points) {
+        store.beginStroke(color, 12f);
+        for (int i = 0; i < points; i++) {
+            float t = points == 1 ? 0 : (float) i / (points - 1);
+            store.addPoint(x0 + (x1 - x0) * t, y0 + (y1 - y0) * t);
+        }
+        return store.endStroke();
+    }
+}
@@ -0,0 +1,176 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * StrokeVectorizer 的本地单元测试，用记录调用的 Sink 检查合并、量化和图层
+ */
+public class StrokeVectorizerTest {
+
+    @Test
+    public void adjacentOpaqueStrokes_mergeIntoOnePath() throws IOException {
+        StrokeStore strokes = new StrokeStore();
+        line(strokes, 0xFF000000, 4, 0, 0, 10, 0);
+        line(strokes, 0xFF000000, 4, 0, 5, 10, 5);
+        line(strokes, 0xFFFF0000, 4, 0, 10, 10, 10);
+        line(strokes, 0xFF000000, 4, 0, 15, 10, 15);
+
+        List<String> calls = vectorize(strokes, 0, 0, 1);
+
+        // 第三笔换了颜色，第四笔不能并入第一条路径，否则会被红线压住
+        assertEquals(3, count(calls, "path"));
+        assertEquals("path 0 ff000000 40", calls.get(0));
+        assertEquals("M 0 0", calls.get(1));
+        assertEquals("L 100 0", calls.get(2));
+        assertEquals("M 0 50", calls.get(3));
+        assertEquals("L 100 50", calls.get(4));
+        assertEquals("end", calls.get(5));
+    }
+
+    @Test
+    public void translucentStrokes_stayAsSeparatePaths() throws IOException {
+        StrokeStore strokes = new StrokeStore();
+        line(strokes, 0x80000000, 4, 0, 0, 10, 0);
+        line(strokes, 0x80000000, 4, 0, 0, 10, 0);
+
+        List<String> calls = vectorize(strokes, 0, 0, 1);
+
+        assertEquals(2, count(calls, "path"));
+    }
+
+    @Test
+    public void quantization_dropsPointsOnSameUnitAndAppliesLayout() throws IOException {
+        StrokeStore strokes = new StrokeStore();
+        strokes.beginStroke(0xFF000000, 2);
+        strokes.addPoint(100, 200);
+        strokes.addPoint(100.01f, 200.02f);
+        strokes.addPoint(102, 200);
+        strokes.endStroke();
+
+        List<String> calls = vectorize(strokes, 100, 200, 0.5f);
+
+        assertEquals("path 0 ff000000 10", calls.get(0));
+        assertEquals("M 0 0", calls.get(1));
+        assertEquals("L 10 0", calls.get(2));
+        assertEquals("end", calls.get(3));
+    }
+
+    @Test
+    public void collapsedStroke_keepsZeroLengthSegment() throws IOException {
+        StrokeStore strokes = new StrokeStore();
+        line(strokes, 0xFF000000, 4, 5, 5, 5.01f, 5);
+
+        List<String> calls = vectorize(strokes, 0, 0, 1);
+
+        assertEquals("L 50 50", calls.get(2));
+    }
+
+    @Test
+    public void outlineBrush_writesClosedFillWithRoundEnds() throws IOException {
+        StrokeStore strokes = new StrokeStore();
+        strokes.beginStroke(0xFF0000FF, 10, Brush.INK.id);
+        strokes.addPoint(0, 0, 1);
+        strokes.addPoint(20, 0, 1);
+        strokes.endStroke();
+
+        List<String> calls = vectorize(strokes, 0, 0, 1);
+
+        assertEquals("path 1 ff0000ff 0", calls.get(0));
+        assertEquals("M 0 50", calls.get(1));
+        assertTrue(calls.contains("close"));
+        assertEquals(2, count(calls, "circle"));
+        assertEquals("circle 0 0 50", calls.get(calls.size() - 3));
+    }
+
+    @Test
+    public void layers_skipHiddenAndIsolateNonPlain() throws IOException {
+        StrokeStore strokes = new StrokeStore();
+        line(strokes, 0xFF000000, 4, 0, 0, 10, 0);
+        line(strokes, 0xFF000000, 4, 0, 5, 10, 5);
+        line(strokes, 0xFF000000, 4, 0, 10, 10, 10);
+        LayerTable layers = strokes.getLayers();
+        layers.add();
+        layers.add();
+        layers.setAlpha(1, 128);
+        layers.setVisible(2, false);
+        strokes.setLayer(1, 1);
+        strokes.setLayer(2, 2);
+
+        List<String> calls = vectorize(strokes, 0, 0, 1);
+
+        assertEquals(2, count(calls, "path"));
+        assertEquals(1, count(calls, "layer 1"));
+        assertEquals("endLayer", calls.get(calls.size() - 1));
+        assertFalse(calls.contains("M 0 100"));
+    }
+
+    private static void line(StrokeStore strokes, int color, float width, float x0, float y0, float x1, float y1) {
+        strokes.beginStroke(color, width);
+        strokes.addPoint(x0, y0);
+        strokes.addPoint(x1, y1);
+        strokes.endStroke();
+    }
+
+    private static int count(List<String> calls, String prefix) {
+        int n = 0;
+        for (String call : calls) {
+            if (call.startsWith(prefix)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static List<String> vectorize(StrokeStore strokes, float left, float top, float scale)
+            throws IOException {
+        final List<String> calls = new ArrayList<>();
+        new StrokeVectorizer(left, top, scale).write(strokes, new StrokeVectorizer.Sink() {
+            @Override
+            public void beginLayer(LayerTable layers, int layer) {
+                calls.add("layer " + layer);
+            }
+
+            @Override
+            public void endLayer() {
+                calls.add("endLayer");
+            }
+
+            @Override
+            public void beginPath(int style, int color, int width) {
+                calls.add("path " + style + " " + Integer.toHexString(color) + " " + width);
+            }
+
+            @Override
+            public void moveTo(int x, int y) {
+                calls.add("M " + x + " " + y);
+            }
+
+            @Override
+            public void lineTo(int x, int y) {
+                calls.add("L " + x + " " + y);
+            }
+
+            @Override
+            public void closePath() {
+                calls.add("close");
+            }
+
+            @Override
+            public void circle(int x, int y, int radius) {
+                calls.add("circle " + x + " " + y + " " + radius);
+            }
+
+            @Override
+            public void endPath() {
+                calls.add("end");
+            }
+        });
+        return calls;
+    }
+}
@@ -0,0 +1,119 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * SvgWriter 的本地单元测试，用 JDK 自带的 XML 解析器校验输出
+ */
+public class SvgWriterTest {
+
+    @Test
+    public void header_usesQuantizedViewBoxAndBackground() throws Exception {
+        Document svg = parse(write(new StrokeStore(), 0xFFFFFFFF));
+
+        Element root = svg.getDocumentElement();
+        assertEquals("svg", root.getTagName());
+        assertEquals("640", root.getAttribute("width"));
+        assertEquals("0 0 6400 4800", root.getAttribute("viewBox"));
+        Element rect = (Element) svg.getElementsByTagName("rect").item(0);
+        assertEquals("#ffffff", rect.getAttribute("fill"));
+    }
+
+    @Test
+    public void transparentBackground_isOmitted() throws Exception {
+        Document svg = parse(write(new StrokeStore(), 0));
+
+        assertEquals(0, svg.getElementsByTagName("rect").getLength());
+    }
+
+    @Test
+    public void pathData_isRelativeAndCompact() throws Exception {
+        StrokeStore strokes = new StrokeStore();
+        strokes.beginStroke(0x80FF8000, 3);
+        strokes.addPoint(10, 20);
+        strokes.addPoint(15, 18);
+        strokes.addPoint(12, 25);
+        strokes.endStroke();
+
+        NodeList paths = parse(write(strokes, 0xFFFFFFFF)).getElementsByTagName("path");
+
+        assertEquals(1, paths.getLength());
+        Element path = (Element) paths.item(0);
+        assertEquals("none", path.getAttribute("fill"));
+        assertEquals("#ff8000", path.getAttribute("stroke"));
+        assertEquals("0.502", path.getAttribute("stroke-opacity"));
+        assertEquals("30", path.getAttribute("stroke-width"));
+        assertEquals("M100 200l50-20-30 70", path.getAttribute("d"));
+    }
+
+    @Test
+    public void circle_writesTwoArcs() throws Exception {
+        StrokeStore strokes = new StrokeStore();
+        strokes.beginStroke(0xFF000000, 4, Brush.INK.id);
+        strokes.addPoint(10, 10, 1);
+        strokes.endStroke();
+
+        Element path = (Element) parse(write(strokes, 0)).getElementsByTagName("path").item(0);
+
+        assertEquals("#000000", path.getAttribute("fill"));
+        assertEquals("M80 100a20 20 0 1 1 40 0a20 20 0 1 1-40 0z", path.getAttribute("d"));
+    }
+
+    @Test
+    public void layer_writesOpacityAndBlendMode() throws Exception {
+        StrokeStore strokes = new StrokeStore();
+        strokes.beginStroke(0xFF000000, 4);
+        strokes.addPoint(0, 0);
+        strokes.addPoint(10, 10);
+        strokes.endStroke();
+        strokes.getLayers().setAlpha(0, 51);
+        strokes.getLayers().setBlendMode(0, LayerTable.BLEND_MULTIPLY);
+
+        NodeList groups = parse(write(strokes, 0)).getElementsByTagName("g");
+
+        Element layer = (Element) groups.item(1);
+        assertEquals("0.2", layer.getAttribute("opacity"));
+        assertEquals("mix-blend-mode:multiply", layer.getAttribute("style"));
+        assertEquals(1, layer.getElementsByTagName("path").getLength());
+    }
+
+    @Test
+    public void manyStrokes_spanBufferFlushes() throws Exception {
+        StrokeStore strokes = new StrokeStore();
+        for (int i = 0; i < 2_000; i++) {
+            strokes.beginStroke(0xFF000000 | (i % 3) * 0x40, 2);
+            strokes.addPoint(i % 640, i % 480);
+            strokes.addPoint(639 - i % 640, 479 - i % 480);
+            strokes.endStroke();
+        }
+
+        NodeList paths = parse(write(strokes, 0xFFFFFFFF)).getElementsByTagName("path");
+
+        assertEquals(2_000, paths.getLength());
+    }
+
+    private static byte[] write(StrokeStore strokes, int background) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SvgWriter writer = new SvgWriter(out, 640, 480, background);
+        new StrokeVectorizer(0, 0, 1).write(strokes, writer);
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private static Document parse(byte[] svg) throws Exception {
+        assertTrue(new String(svg, StandardCharsets.US_ASCII).endsWith("</svg>\n"));
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(svg));
+    }
+}
@@ -0,0 +1,76 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * TouchSampleBuffer 的本地单元测试
+ */
+public class TouchSampleBufferTest {
+
+    @Test
+    public void add_keepsSamplesInOrderAcrossGrowth() {
+        TouchSampleBuffer buffer = new TouchSampleBuffer(4);
+        for (int i = 0; i < 1_000; i++) {
+            buffer.add(i, -i, 1_000L + i);
+        }
+
+        assertEquals(1_000, buffer.size());
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i, buffer.getX(i), 0f);
+            assertEquals(-i, buffer.getY(i), 0f);
+            assertEquals(1_000L + i, buffer.getTime(i));
+        }
+    }
+
+    @Test
+    public void clear_reusesCapacity() {
+        TouchSampleBuffer buffer = new TouchSampleBuffer(4);
+        for (int i = 0; i < 100; i++) {
+            buffer.add(i, i, i);
+        }
+        int capacity = buffer.capacity();
+        buffer.clear();
+
+        assertEquals(0, buffer.size());
+        assertEquals(capacity, buffer.capacity());
+    }
+
+    @Test
+    public void add_allocatesNothingPerSample() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int samples = 100_000;
+        TouchSampleBuffer buffer = new TouchSampleBuffer();
+        buffer.ensureCapacity(samples);
+        // 预热，让 JIT 编译 add
+        fill(buffer, samples);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        fill(buffer, samples);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // 只允许测量本身产生的少量固定开销，与采样点数量无关
+        assertTrue("allocated " + allocated + " bytes for " + samples + " samples",
+                allocated < 1_024);
+    }
+
+    private static void fill(TouchSampleBuffer buffer, int samples) {
+        buffer.clear();
+        for (int i = 0; i < samples; i++) {
+            buffer.add(i * 0.5f, i * 0.25f, i);
+        }
+    }
+}
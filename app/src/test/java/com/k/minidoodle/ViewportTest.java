@@ -0,0 +1,69 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Viewport 的本地单元测试
+ */
+public class ViewportTest {
+
+    @Test
+    public void mapping_roundTrips() {
+        Viewport viewport = new Viewport();
+        viewport.set(2.5f, -120, 40);
+
+        float x = viewport.toViewX(333);
+        float y = viewport.toViewY(-77);
+        assertEquals(333f, viewport.toDocumentX(x), 1e-3f);
+        assertEquals(-77f, viewport.toDocumentY(y), 1e-3f);
+    }
+
+    @Test
+    public void zoomBy_keepsFocusPointFixed() {
+        Viewport viewport = new Viewport();
+        viewport.panBy(30, -50);
+        float docX = viewport.toDocumentX(400);
+        float docY = viewport.toDocumentY(700);
+
+        viewport.zoomBy(1.7f, 400, 700);
+        viewport.zoomBy(0.3f, 400, 700);
+
+        assertEquals(1.7f * 0.3f, viewport.getScale(), 1e-5f);
+        assertEquals(400f, viewport.toViewX(docX), 1e-3f);
+        assertEquals(700f, viewport.toViewY(docY), 1e-3f);
+    }
+
+    @Test
+    public void zoomBy_clampsScale() {
+        Viewport viewport = new Viewport();
+        float docX = viewport.toDocumentX(100);
+        for (int i = 0; i < 20; i++) {
+            viewport.zoomBy(2f, 100, 100);
+        }
+        assertEquals(Viewport.MAX_SCALE, viewport.getScale(), 0f);
+        assertEquals(100f, viewport.toViewX(docX), 1e-3f);
+
+        for (int i = 0; i < 40; i++) {
+            viewport.zoomBy(0.5f, 100, 100);
+        }
+        assertEquals(Viewport.MIN_SCALE, viewport.getScale(), 0f);
+    }
+
+    @Test
+    public void detailLevel_growsAsScaleHalves() {
+        Viewport viewport = new Viewport();
+        assertEquals(0, viewport.getDetailLevel(4));
+        viewport.set(0.6f, 0, 0);
+        assertEquals(0, viewport.getDetailLevel(4));
+        viewport.set(0.5f, 0, 0);
+        assertEquals(1, viewport.getDetailLevel(4));
+        viewport.set(0.2f, 0, 0);
+        assertEquals(2, viewport.getDetailLevel(4));
+        viewport.set(Viewport.MIN_SCALE, 0, 0);
+        assertEquals(4, viewport.getDetailLevel(4));
+        viewport.set(4f, 0, 0);
+        assertEquals(0, viewport.getDetailLevel(4));
+    }
+}
@@ -0,0 +1,92 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * WetStroke 的本地单元测试：逐帧增量更新的结果与每帧整条重算一致
+ */
+public class WetStrokeTest {
+
+    @Test
+    public void update_matchesFullRecomputation() {
+        TouchSampleBuffer raw = new TouchSampleBuffer();
+        TouchSampleBuffer output = new TouchSampleBuffer();
+        WetStroke wet = new WetStroke();
+        wet.reset();
+
+        for (int i = 0; i < 200; i++) {
+            raw.add(i * 3f, (float) Math.sin(i * 0.2) * 40f, i * 8L, 0.3f + (i % 7) * 0.1f);
+            // 输出点落后原始点三个采样，模拟平滑器的延迟
+            if (i >= 3) {
+                int k = i - 3;
+                output.add(raw.getX(k), raw.getY(k) * 0.9f, raw.getTime(k) + 4);
+            }
+            wet.update(output, raw, 0xFF000000, 12f, Brush.INK);
+            assertMatchesFull(wet.getStrokes(), output, raw, Brush.INK);
+        }
+    }
+
+    @Test
+    public void update_rebuildsWhenBrushChanges() {
+        TouchSampleBuffer raw = new TouchSampleBuffer();
+        TouchSampleBuffer output = new TouchSampleBuffer();
+        WetStroke wet = new WetStroke();
+        for (int i = 0; i < 20; i++) {
+            raw.add(i * 5f, 0, i * 10L, 0.5f);
+            output.add(i * 5f, 0, i * 10L);
+        }
+        wet.update(output, raw, 1, 12f, Brush.INK);
+        wet.update(output, raw, 2, 12f, Brush.AIRBRUSH);
+
+        StrokeStore strokes = wet.getStrokes();
+        assertEquals(2, strokes.getColor(0));
+        assertEquals(Brush.AIRBRUSH.id, strokes.getBrush(0));
+        assertMatchesFull(strokes, output, raw, Brush.AIRBRUSH);
+    }
+
+    @Test
+    public void update_withoutOutputPreviewsRawSamples() {
+        TouchSampleBuffer raw = new TouchSampleBuffer();
+        WetStroke wet = new WetStroke();
+        raw.add(0, 0, 0, 1f);
+        raw.add(10, 0, 16, 1f);
+
+        wet.update(null, raw, 1, 12f, Brush.INK);
+
+        assertEquals(1, wet.getStrokes().size());
+        assertEquals(2, wet.getStrokes().getPointCount(0));
+    }
+
+    // 整条重算：已输出的点接上晚于最后输出点的原始点，一次算完权重
+    private static void assertMatchesFull(StrokeStore strokes, TouchSampleBuffer output,
+                                          TouchSampleBuffer raw, Brush brush) {
+        TouchSampleBuffer full = new TouchSampleBuffer();
+        for (int i = 0; i < output.size(); i++) {
+            full.add(output.getX(i), output.getY(i), output.getTime(i));
+        }
+        long settledTime = output.size() == 0 ? Long.MIN_VALUE : output.getTime(output.size() - 1);
+        for (int i = 0; i < raw.size(); i++) {
+            if (raw.getTime(i) > settledTime) {
+                full.add(raw.getX(i), raw.getY(i), raw.getTime(i));
+            }
+        }
+        BrushDynamics.apply(raw, full, brush);
+
+        // 尾段的第一个点与已输出部分的最后一个点重合
+        int index = 0;
+        for (int stroke = 0; stroke < strokes.size(); stroke++) {
+            if (stroke > 0) {
+                index--;
+            }
+            int start = strokes.getPointStart(stroke);
+            for (int p = start; p < start + strokes.getPointCount(stroke); p++, index++) {
+                assertEquals(full.getX(index), strokes.getX(p), 1e-4f);
+                assertEquals(full.getY(index), strokes.getY(p), 1e-4f);
+                assertEquals(full.getPressure(index), strokes.getWeight(p), 1f / 255);
+            }
+        }
+        assertEquals(full.size(), index);
+    }
+}
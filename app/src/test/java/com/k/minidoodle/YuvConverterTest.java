@@ -0,0 +1,81 @@
+package com.k.minidoodle;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * YuvConverter 的本地单元测试
+ */
+public class YuvConverterTest {
+
+    @Test
+    public void primaries_matchBt601LimitedRange() {
+        assertEquals(16, YuvConverter.luma(0xFF000000) & 0xFF);
+        assertEquals(235, YuvConverter.luma(0xFFFFFFFF) & 0xFF);
+        assertEquals(82, YuvConverter.luma(0xFFFF0000) & 0xFF);
+        assertEquals(144, YuvConverter.luma(0xFF00FF00) & 0xFF);
+        assertEquals(41, YuvConverter.luma(0xFF0000FF) & 0xFF);
+    }
+
+    @Test
+    public void planar_writesLumaPerPixelAndAveragedChroma() {
+        int width = 4;
+        int height = 2;
+        int[] argb = new int[width * height];
+        // 左边 2×2 块纯红，右边 2×2 块灰白相间
+        Arrays.fill(argb, 0xFFFF0000);
+        argb[2] = 0xFFFFFFFF;
+        argb[3] = 0xFF000000;
+        argb[6] = 0xFF000000;
+        argb[7] = 0xFFFFFFFF;
+        // 行跨度比宽度大，模拟编码器的对齐
+        ByteBuffer y = ByteBuffer.allocate(8 * height);
+        ByteBuffer u = ByteBuffer.allocate(4);
+        ByteBuffer v = ByteBuffer.allocate(4);
+        YuvConverter.convert(argb, width, height, new ByteBuffer[]{y, u, v}, new int[]{8, 4, 4},
+                new int[]{1, 1, 1});
+
+        assertEquals(82, y.get(0) & 0xFF);
+        assertEquals(235, y.get(2) & 0xFF);
+        assertEquals(16, y.get(3) & 0xFF);
+        assertEquals(16, y.get(8 + 2) & 0xFF);
+        assertEquals(0, y.get(4));
+        assertEquals(90, u.get(0) & 0xFF);
+        assertEquals(240, v.get(0) & 0xFF);
+        // 平均为中灰，色度为 128
+        assertEquals(128, u.get(1) & 0xFF);
+        assertEquals(128, v.get(1) & 0xFF);
+    }
+
+    @Test
+    public void semiPlanar_interleavesChroma() {
+        int width = 4;
+        int height = 4;
+        int[] argb = new int[width * height];
+        Arrays.fill(argb, 0xFF0000FF);
+        // NV12：U、V 交错存放在同一块内存中，V 平面从第二个字节开始
+        ByteBuffer y = ByteBuffer.allocate(width * height);
+        ByteBuffer uv = ByteBuffer.allocate(width * height / 2);
+        ByteBuffer u = uv.duplicate();
+        uv.position(1);
+        ByteBuffer v = uv.slice();
+        YuvConverter.convert(argb, width, height, new ByteBuffer[]{y, u, v}, new int[]{width, width, width},
+                new int[]{1, 2, 2});
+
+        for (int i = 0; i < width * height / 2; i += 2) {
+            assertEquals(240, uv.get(i) & 0xFF);
+            assertEquals(110, uv.get(i + 1) & 0xFF);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void oddSize_isRejected() {
+        ByteBuffer plane = ByteBuffer.allocate(16);
+        YuvConverter.convert(new int[9], 3, 3, new ByteBuffer[]{plane, plane, plane}, new int[]{3, 2, 2},
+                new int[]{1, 1, 1});
+    }
+}
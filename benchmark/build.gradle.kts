@@ -0,0 +1,62 @@
+// 绘图热点路径的 JMH 基准测试，运行：./gradlew :benchmark:jmh
+// 结果写入 build/reports/jmh/results.json，可与之前的结果对比发现性能回退
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// 源码注释为中文
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+// 不依赖 Android 的类直接从 app 模块的源码编译，在桌面 JVM 上测量
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/k/minidoodle/TouchSampleBuffer.java",
+                "com/k/minidoodle/StrokeStage.java",
+                "com/k/minidoodle/StrokePipeline.java",
+                "com/k/minidoodle/RadialDecimator.java",
+                "com/k/minidoodle/RdpDecimator.java",
+                "com/k/minidoodle/CatmullRomSmoother.java",
+                "com/k/minidoodle/StrokeStore.java",
+                "com/k/minidoodle/Brush.java",
+                "com/k/minidoodle/LayerTable.java",
+                "com/k/minidoodle/StrokeHistory.java",
+                "com/k/minidoodle/DocumentFormat.java",
+                "com/k/minidoodle/DocumentWriter.java",
+                "com/k/minidoodle/DocumentReader.java",
+                "com/k/minidoodle/IntList.java",
+                "com/k/minidoodle/SpatialGrid.java",
+                "com/k/minidoodle/Viewport.java",
+                "com/k/minidoodle/StrokeGeometry.java",
+                "com/k/minidoodle/StrokeVectorizer.java",
+                "com/k/minidoodle/SvgWriter.java",
+                "com/k/minidoodle/ColorFormat.java",
+                "com/k/minidoodle/ColorState.java",
+                "com/k/minidoodle/StrokeReplay.java",
+                "com/k/minidoodle/ShapeRecognizer.java",
+                "com/k/minidoodle/LassoPolygon.java",
+                "com/k/minidoodle/InputQueue.java"
+            )
+        }
+    }
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    // 固定的预热、测量轮数和进程数，输入数据使用固定随机种子，结果可重复
+    fork.set(2)
+    warmupIterations.set(5)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+}
@@ -0,0 +1,73 @@
+package com.k.minidoodle;
+
+import java.util.Random;
+
+/**
+ * 基准测试的输入数据，全部使用固定随机种子生成，每次运行完全相同
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 模拟 120Hz 采样的手写曲线：螺旋加少量抖动，相邻点间距约 1 像素
+     */
+    static TouchSampleBuffer noisyCurve(int n, long seed) {
+        Random random = new Random(seed);
+        TouchSampleBuffer buffer = new TouchSampleBuffer(n);
+        float cx = random.nextFloat() * 1_000;
+        float cy = random.nextFloat() * 1_000;
+        for (int i = 0; i < n; i++) {
+            double angle = i * 0.01;
+            double radius = 50 + i * 0.1;
+            buffer.add((float) (cx + radius * Math.cos(angle) + random.nextGaussian() * 0.15),
+                    (float) (cy + radius * Math.sin(angle) + random.nextGaussian() * 0.15),
+                    i * 8L);
+        }
+        return buffer;
+    }
+
+    /**
+     * 分布在 size x size 平面上的随机游走笔画，颜色取自 8 种
+     */
+    static StrokeStore randomStrokes(int strokes, int points, float size, long seed) {
+        Random random = new Random(seed);
+        StrokeStore store = new StrokeStore(strokes, strokes * points);
+        for (int s = 0; s < strokes; s++) {
+            store.beginStroke(0xFF000000 | random.nextInt(8) * 0x202020, 4 + random.nextInt(20));
+            float x = random.nextFloat() * size;
+            float y = random.nextFloat() * size;
+            for (int i = 0; i < points; i++) {
+                x += random.nextFloat() * 8 - 4;
+                y += random.nextFloat() * 8 - 4;
+                store.addPoint(x, y);
+            }
+            store.endStroke();
+        }
+        return store;
+    }
+
+    /**
+     * 同 {@link #randomStrokes}，带 120Hz 的采样时间，笔画之间停顿 0 到 1 秒
+     */
+    static StrokeStore timedStrokes(int strokes, int points, float size, long seed) {
+        Random random = new Random(seed);
+        StrokeStore store = new StrokeStore(strokes, strokes * points);
+        long time = 0;
+        for (int s = 0; s < strokes; s++) {
+            store.beginStroke(0xFF000000 | random.nextInt(8) * 0x202020, 4 + random.nextInt(20));
+            float x = random.nextFloat() * size;
+            float y = random.nextFloat() * size;
+            for (int i = 0; i < points; i++) {
+                x += random.nextFloat() * 8 - 4;
+                y += random.nextFloat() * 8 - 4;
+                store.addPoint(x, y, 1f, time);
+                time += 8;
+            }
+            store.endStroke();
+            time += random.nextInt(1_000);
+        }
+        return store;
+    }
+}
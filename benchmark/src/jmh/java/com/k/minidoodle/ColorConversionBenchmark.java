@@ -0,0 +1,63 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 取色器中颜色和十六进制文本的互相转换。
+ * 拖动滑块时每次刷新都会执行一次。formatHex、parseHex 是取色器原来的写法，保留作对比；
+ * 带 Chars 后缀的是 ColorFormat 写入复用数组、直接解析 CharSequence 的写法，hsvToRgb 是拖动 HSV 滑块的开销。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ColorConversionBenchmark {
+
+    private int red = 18;
+    private int green = 200;
+    private int blue = 77;
+    private String hex = "12C84D";
+    private final char[] chars = new char[ColorFormat.MAX_HEX_LENGTH];
+    private final StringBuilder editable = new StringBuilder("12C84D");
+    private int hue;
+
+    /** 滑块回调：String.format 生成十六进制文本 */
+    @Benchmark
+    public String formatHex() {
+        red = (red + 1) & 0xFF;
+        return String.format("%02X%02X%02X", red, green, blue);
+    }
+
+    /** 输入框回调：拼接 '#' 后解析（Color.parseColor 对 6 位十六进制的等价处理） */
+    @Benchmark
+    public int parseHex() {
+        String text = "#" + hex;
+        return 0xFF000000 | (int) Long.parseLong(text.substring(1), 16);
+    }
+
+    /** 滑块回调：写入复用的 char 数组 */
+    @Benchmark
+    public int formatHexChars() {
+        red = (red + 1) & 0xFF;
+        return ColorFormat.formatHex(0xFF000000 | red << 16 | green << 8 | blue, chars);
+    }
+
+    /** 输入框回调：直接解析输入框内容 */
+    @Benchmark
+    public long parseHexChars() {
+        return ColorFormat.parseHex(editable);
+    }
+
+    /** 色相滑块回调：HSV 转 RGB */
+    @Benchmark
+    public int hsvToRgb() {
+        hue = (hue + 1) % 360;
+        return ColorState.hsvToRgb(hue, 0.75f, 0.8f);
+    }
+}
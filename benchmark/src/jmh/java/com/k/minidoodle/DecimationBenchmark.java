@@ -0,0 +1,62 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流水线各阶段单独的处理耗时，输入为 2000 个采样点的曲线
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DecimationBenchmark {
+
+    private TouchSampleBuffer raw;
+    private StrokePipeline radial;
+    private StrokePipeline rdp;
+    private StrokePipeline smoother;
+    private StrokePipeline full;
+
+    @Setup
+    public void setUp() {
+        raw = BenchmarkData.noisyCurve(2_000, 7);
+        radial = new StrokePipeline(new RadialDecimator(1.5f, 4f));
+        rdp = new StrokePipeline(new RdpDecimator(0.5f, 24));
+        smoother = new StrokePipeline(new CatmullRomSmoother(6f, 8));
+        full = StrokePipeline.createDefault();
+    }
+
+    @Benchmark
+    public int radialDecimator() {
+        return run(radial);
+    }
+
+    @Benchmark
+    public int rdpDecimator() {
+        return run(rdp);
+    }
+
+    @Benchmark
+    public int catmullRomSmoother() {
+        return run(smoother);
+    }
+
+    @Benchmark
+    public int defaultPipeline() {
+        return run(full);
+    }
+
+    private int run(StrokePipeline pipeline) {
+        pipeline.reset();
+        pipeline.feed(raw);
+        pipeline.finish(raw);
+        return pipeline.output().size();
+    }
+}
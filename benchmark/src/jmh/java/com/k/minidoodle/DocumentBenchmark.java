@@ -0,0 +1,68 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档序列化：整份保存、整份载入，以及自动保存时追加单条笔画
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DocumentBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int strokes;
+
+    private StrokeStore document;
+    private byte[] encoded;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Setup
+    public void setUp() throws IOException {
+        document = BenchmarkData.randomStrokes(strokes, 40, 4_000, 42);
+        encoded = write();
+    }
+
+    @Benchmark
+    public int save() throws IOException {
+        return write().length;
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        StrokeStore store = new StrokeStore();
+        new DocumentReader(Channels.newChannel(new ByteArrayInputStream(encoded))).read(store);
+        return store.size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int appendStroke() throws IOException {
+        out.reset();
+        DocumentWriter writer = new DocumentWriter(Channels.newChannel(out));
+        writer.writeStroke(document, strokes - 1);
+        writer.flush();
+        return out.size();
+    }
+
+    private byte[] write() throws IOException {
+        out.reset();
+        DocumentWriter writer = new DocumentWriter(Channels.newChannel(out));
+        writer.writeDocument(document, document.size());
+        writer.flush();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,65 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主线程到渲染线程的输入队列：一个线程写入移动采样和少量不可丢弃的记录，另一个线程批量取出，
+ * 与 SurfacePaintView 和 RenderThread 的用法相同。吞吐量按各自线程的操作次数分别报告
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InputQueueBenchmark {
+
+    // 与 RenderThread 的操作码相同
+    private static final int OP_MOVE = 2;
+    private static final int OP_UP = 3;
+
+    private InputQueue queue;
+    // 只由生产者线程读写
+    private int next;
+    // 只由消费者线程读写
+    private long checksum;
+    private final InputQueue.Sink sink = new InputQueue.Sink() {
+        @Override
+        public void onInput(int op, float x, float y, long time, int arg) {
+            checksum += arg;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        queue = new InputQueue(4096);
+    }
+
+    /** 每 64 条中有 1 条抬起，其余为可以丢弃的移动采样 */
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean produce() {
+        int i = next++;
+        if ((i & 63) == 0) {
+            queue.put(OP_UP, i, i, i, i);
+            return true;
+        }
+        return queue.offer(OP_MOVE, i, i, i, i);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public long consume() {
+        queue.drain(sink);
+        return checksum;
+    }
+}
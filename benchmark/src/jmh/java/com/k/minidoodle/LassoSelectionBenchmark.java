@@ -0,0 +1,69 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 抬起套索时的选择：建立条带，再与 StrokeLayer.select 相同地从空间索引取候选、逐点判断。
+ * 套索是 600 个顶点的波浪形闭合曲线，圈住画布中央约 5% 的面积
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LassoSelectionBenchmark {
+
+    private static final float CANVAS_SIZE = 8_000;
+    private static final float CELL_SIZE = 256;
+
+    @Param({"1000", "10000", "50000"})
+    public int strokes;
+
+    private StrokeStore store;
+    private SpatialGrid grid;
+    private final TouchSampleBuffer points = new TouchSampleBuffer();
+    private final LassoPolygon lasso = new LassoPolygon();
+    private final IntList candidates = new IntList();
+    private final IntList selection = new IntList();
+
+    @Setup
+    public void setUp() {
+        store = BenchmarkData.randomStrokes(strokes, 30, CANVAS_SIZE, 42);
+        grid = new SpatialGrid(CELL_SIZE);
+        for (int i = 0; i < store.size(); i++) {
+            grid.insert(i, store.getLeft(i), store.getTop(i), store.getRight(i), store.getBottom(i));
+        }
+        for (int i = 0; i < 600; i++) {
+            double t = Math.PI * 2 * i / 600;
+            double r = 1_000 + 150 * Math.sin(9 * t);
+            points.add((float) (CANVAS_SIZE / 2 + Math.cos(t) * r), (float) (CANVAS_SIZE / 2 + Math.sin(t) * r), i * 8L);
+        }
+        lasso.set(points);
+    }
+
+    @Benchmark
+    public int build() {
+        lasso.set(points);
+        return lasso.size();
+    }
+
+    @Benchmark
+    public int select() {
+        grid.query(lasso.getLeft(), lasso.getTop(), lasso.getRight(), lasso.getBottom(), candidates);
+        selection.clear();
+        for (int i = 0; i < candidates.size(); i++) {
+            int stroke = candidates.get(i);
+            if (lasso.covers(store, stroke)) {
+                selection.add(stroke);
+            }
+        }
+        return selection.size();
+    }
+}
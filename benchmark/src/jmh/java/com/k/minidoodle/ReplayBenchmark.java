@@ -0,0 +1,60 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回放时间线：按 30fps 从头推进到结尾，只计时间线本身，不含绘制。
+ * 开销应与点数成正比，不随帧数（文档时长）平方增长
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReplayBenchmark {
+
+    private static final long FRAME_TIME = 33;
+
+    @Param({"1000", "10000", "100000"})
+    public int strokes;
+
+    /** 是否带采样时间；没有时按长度估计 */
+    @Param({"true", "false"})
+    public boolean timed;
+
+    private StrokeStore store;
+    private final CountingRenderer renderer = new CountingRenderer();
+
+    @Setup
+    public void setUp() {
+        store = timed ? BenchmarkData.timedStrokes(strokes, 40, 4_000, 42)
+                : BenchmarkData.randomStrokes(strokes, 40, 4_000, 42);
+    }
+
+    /** 返回交给绘制的点数 */
+    @Benchmark
+    public long fullReplay() {
+        renderer.points = 0;
+        StrokeReplay replay = new StrokeReplay(store);
+        for (long t = 0; !replay.isFinished(); t += FRAME_TIME) {
+            replay.advanceTo(t, renderer);
+        }
+        return renderer.points;
+    }
+
+    private static final class CountingRenderer implements StrokeReplay.Renderer {
+        long points;
+
+        @Override
+        public void drawPoints(StrokeStore store, int stroke, int from, int to) {
+            points += to - from;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 抬笔时识别一条笔画的耗时。自由曲线要把各种形状都试一遍才被否定，是最慢的情况
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShapeRecognitionBenchmark {
+
+    private final ShapeRecognizer recognizer = new ShapeRecognizer();
+    private final TouchSampleBuffer shape = new TouchSampleBuffer();
+    private TouchSampleBuffer freehand;
+    private TouchSampleBuffer circle;
+    private TouchSampleBuffer rectangle;
+
+    @Setup
+    public void setUp() {
+        // 流水线输出的点距约为 5 像素
+        StrokePipeline pipeline = StrokePipeline.createDefault();
+        TouchSampleBuffer raw = BenchmarkData.noisyCurve(2_000, 7);
+        pipeline.feed(raw);
+        pipeline.finish(raw);
+        freehand = copy(pipeline.output());
+
+        Random random = new Random(11);
+        circle = new TouchSampleBuffer();
+        for (int i = 0; i <= 160; i++) {
+            double t = Math.PI * 2 * i / 160;
+            circle.add((float) (400 + Math.cos(t) * 120 + random.nextGaussian()),
+                    (float) (300 + Math.sin(t) * 120 + random.nextGaussian()), i * 8L);
+        }
+        rectangle = new TouchSampleBuffer();
+        float[] x = {100, 400, 400, 100, 100};
+        float[] y = {100, 100, 300, 300, 100};
+        for (int side = 0; side < 4; side++) {
+            for (int i = 0; i < 50; i++) {
+                float t = i / 50f;
+                rectangle.add(x[side] + (x[side + 1] - x[side]) * t + (float) random.nextGaussian(),
+                        y[side] + (y[side + 1] - y[side]) * t + (float) random.nextGaussian(), side * 400L + i * 8);
+            }
+        }
+        rectangle.add(100, 100, 1_600);
+    }
+
+    @Benchmark
+    public int freehand() {
+        return recognizer.recognize(freehand);
+    }
+
+    /** 识别并写出细分后的圆 */
+    @Benchmark
+    public int circle() {
+        recognizer.recognize(circle);
+        return recognizer.writeShape(shape);
+    }
+
+    @Benchmark
+    public int rectangle() {
+        recognizer.recognize(rectangle);
+        return recognizer.writeShape(shape);
+    }
+
+    private static TouchSampleBuffer copy(TouchSampleBuffer source) {
+        TouchSampleBuffer out = new TouchSampleBuffer(source.size());
+        for (int i = 0; i < source.size(); i++) {
+            out.add(source.getX(i), source.getY(i), source.getTime(i));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,84 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 空间索引查询：重绘一个块、查询整个屏幕、命中测试。
+ * 笔画分布在固定大小的平面上，笔画越多密度越高。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpatialQueryBenchmark {
+
+    private static final float CANVAS_SIZE = 8_000;
+    private static final float CELL_SIZE = 256;
+    private static final int QUERY_POINTS = 1024;
+
+    @Param({"1000", "10000", "50000"})
+    public int strokes;
+
+    private StrokeStore store;
+    private SpatialGrid grid;
+    private final IntList result = new IntList();
+    private final float[] queryX = new float[QUERY_POINTS];
+    private final float[] queryY = new float[QUERY_POINTS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        store = BenchmarkData.randomStrokes(strokes, 30, CANVAS_SIZE, 42);
+        grid = new SpatialGrid(CELL_SIZE);
+        for (int i = 0; i < store.size(); i++) {
+            grid.insert(i, store.getLeft(i), store.getTop(i), store.getRight(i), store.getBottom(i));
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < QUERY_POINTS; i++) {
+            queryX[i] = random.nextFloat() * CANVAS_SIZE;
+            queryY[i] = random.nextFloat() * CANVAS_SIZE;
+        }
+    }
+
+    @Benchmark
+    public int queryTile() {
+        int i = nextQuery();
+        return grid.query(queryX[i], queryY[i], queryX[i] + CELL_SIZE, queryY[i] + CELL_SIZE, result);
+    }
+
+    @Benchmark
+    public int queryScreen() {
+        int i = nextQuery();
+        return grid.query(queryX[i], queryY[i], queryX[i] + 1080, queryY[i] + 2400, result);
+    }
+
+    /** 与 PaintView.findStrokeAt 相同的流程：格子查询后逐条精确计算距离 */
+    @Benchmark
+    public int hitTest() {
+        int i = nextQuery();
+        float x = queryX[i];
+        float y = queryY[i];
+        grid.query(x - 8, y - 8, x + 8, y + 8, result);
+        for (int k = result.size() - 1; k >= 0; k--) {
+            int stroke = result.get(k);
+            if (store.distanceTo(stroke, x, y) <= store.getWidth(stroke) / 2 + 8) {
+                return stroke;
+            }
+        }
+        return -1;
+    }
+
+    private int nextQuery() {
+        next = (next + 1) & (QUERY_POINTS - 1);
+        return next;
+    }
+}
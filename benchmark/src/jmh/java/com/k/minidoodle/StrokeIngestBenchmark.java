@@ -0,0 +1,64 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 笔画采集和处理：写入采样缓冲区、抽稀平滑流水线、存入 StrokeStore。
+ * 模拟 onTouchEvent 每批收到若干历史点的情况。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StrokeIngestBenchmark {
+
+    // 每个 MOVE 事件合并的采样点数
+    private static final int BATCH = 4;
+
+    @Param({"100", "500", "2000"})
+    public int samples;
+
+    private TouchSampleBuffer raw;
+    private final TouchSampleBuffer buffer = new TouchSampleBuffer();
+    private final StrokePipeline pipeline = StrokePipeline.createDefault();
+    private final StrokeStore store = new StrokeStore();
+
+    @Setup
+    public void setUp() {
+        raw = BenchmarkData.noisyCurve(samples, 42);
+    }
+
+    /** 只写入采样点，不经过流水线 */
+    @Benchmark
+    public int ingestRaw() {
+        buffer.clear();
+        for (int i = 0; i < raw.size(); i++) {
+            buffer.add(raw.getX(i), raw.getY(i), raw.getTime(i));
+        }
+        return buffer.size();
+    }
+
+    /** 按批写入并逐批送入流水线，最后存为一条笔画 */
+    @Benchmark
+    public int ingestAndCommit() {
+        buffer.clear();
+        pipeline.reset();
+        for (int i = 0; i < raw.size(); i++) {
+            buffer.add(raw.getX(i), raw.getY(i), raw.getTime(i));
+            if (i % BATCH == BATCH - 1) {
+                pipeline.feed(buffer);
+            }
+        }
+        pipeline.finish(buffer);
+        store.clear();
+        return store.add(pipeline.output(), 0xFF000000, 12f);
+    }
+}
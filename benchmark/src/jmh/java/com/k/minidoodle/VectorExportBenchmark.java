@@ -0,0 +1,60 @@
+package com.k.minidoodle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SVG 导出：从笔画生成量化、合并后的路径并写出文本。输出只计字节数，不含存储写入
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VectorExportBenchmark {
+
+    private static final int CANVAS_SIZE = 4_000;
+
+    @Param({"1000", "10000", "100000"})
+    public int strokes;
+
+    private StrokeStore store;
+    private final CountingOutputStream out = new CountingOutputStream();
+
+    @Setup
+    public void setUp() {
+        store = BenchmarkData.randomStrokes(strokes, 40, CANVAS_SIZE, 42);
+    }
+
+    /** 返回输出的字节数 */
+    @Benchmark
+    public long svg() throws IOException {
+        out.count = 0;
+        SvgWriter writer = new SvgWriter(out, CANVAS_SIZE, CANVAS_SIZE, 0xFFFFFFFF);
+        new StrokeVectorizer(0, 0, 1).write(store, writer);
+        writer.finish();
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -24,3 +24,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "MiniDoodle"
 include(":app")
+include(":benchmark")